@@ -0,0 +1,133 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Delegate for ease of customization.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ApplicationResourceWrapper implements ApplicationResource {
+
+    /**
+     * The original resource.
+     */
+    private ApplicationResource resource;
+
+    /**
+     * Constructor.
+     *
+     * @param resource The original resource.
+     */
+    public ApplicationResourceWrapper(ApplicationResource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the wrapped resource.
+     *
+     * @return The wrapped resource.
+     */
+    public ApplicationResource getWrappedResource() {
+        return resource;
+    }
+
+    /**
+     * Finds a resource of a given type in a chain of wrappers.
+     *
+     * @param <T> The type of the resource.
+     * @param resource The resource, possibly wrapped several times.
+     * @param type The type of the resource to find.
+     * @return The resource itself, or the first wrapped resource, that is an
+     * instance of the type, or <code>null</code> if there is none.
+     */
+    public static <T extends ApplicationResource> T unwrap(ApplicationResource resource, Class<T> type) {
+        ApplicationResource current = resource;
+        while (current != null) {
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+            if (!(current instanceof ApplicationResourceWrapper)) {
+                return null;
+            }
+            current = ((ApplicationResourceWrapper) current).getWrappedResource();
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public String getLocalePath() {
+        return resource.getLocalePath();
+    }
+
+    /** {@inheritDoc} */
+    public String getPath() {
+        return resource.getPath();
+    }
+
+    /** {@inheritDoc} */
+    public Locale getLocale() {
+        return resource.getLocale();
+    }
+
+    /** {@inheritDoc} */
+    public String getLocalePath(Locale locale) {
+        return resource.getLocalePath(locale);
+    }
+
+    /** {@inheritDoc} */
+    public InputStream getInputStream() throws IOException {
+        return resource.getInputStream();
+    }
+
+    /** {@inheritDoc} */
+    public long getLastModified() throws IOException {
+        return resource.getLastModified();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return resource.hashCode();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return resource.equals(((ApplicationResourceWrapper) obj).resource);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return resource.toString();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.request;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * An {@link ApplicationResource} whose content can be read through NIO buffers
+ * and channels, avoiding a copy of the content at every read.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface ChannelApplicationResource extends ApplicationResource {
+
+    /**
+     * Returns the whole content of this resource, as a read-only buffer.
+     * Every call returns a new buffer, with its own position and limit, but the
+     * underlying content may be shared between calls and threads.
+     *
+     * @return The content, positioned at its beginning.
+     * @throws IOException if the contents cannot be read.
+     */
+    ByteBuffer getContent() throws IOException;
+
+    /**
+     * Opens a channel to read the contents of this resource.
+     *
+     * @return The channel. It must be closed by the caller.
+     * @throws IOException if the contents cannot be read.
+     */
+    ReadableByteChannel openChannel() throws IOException;
+}
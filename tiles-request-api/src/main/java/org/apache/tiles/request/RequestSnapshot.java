@@ -0,0 +1,482 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.tiles.request.attribute.Addable;
+
+/**
+ * An immutable copy of the parts of a {@link Request} needed to render a
+ * fragment outside of the container thread.
+ * It holds only the headers, parameters, roles and scope attributes selected
+ * through {@link RequestSnapshotBuilder}, never the container request itself.
+ * Scope attributes can be written: each scope is copied the first time it is
+ * modified, so the copied attributes are never changed. Header and parameter
+ * arrays are cloned when read.
+ * Output is written to an internal buffer and response headers are recorded:
+ * call {@link #flushTo(Request)} from the container thread, after rendering
+ * completed, to copy them to the real response.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RequestSnapshot implements Request {
+
+    /**
+     * The application context.
+     */
+    private final ApplicationContext applicationContext;
+
+    /**
+     * The available scopes.
+     */
+    private final List<String> availableScopes;
+
+    /**
+     * The copied header values, keyed case-insensitively.
+     */
+    private final Map<String, String[]> headerValues;
+
+    /**
+     * The copied parameter values.
+     */
+    private final Map<String, String[]> paramValues;
+
+    /**
+     * The attributes, per scope, copied on write.
+     */
+    private final Map<String, Map<String, Object>> scopes;
+
+    /**
+     * The copied role checks.
+     */
+    private final Map<String, Boolean> roles;
+
+    /**
+     * The request locale.
+     */
+    private final Locale locale;
+
+    /**
+     * The lazily built map of the first header values.
+     */
+    private volatile Map<String, String> header;
+
+    /**
+     * The lazily built map of the first parameter values.
+     */
+    private volatile Map<String, String> param;
+
+    /**
+     * The buffer that receives the output.
+     */
+    private final StringWriter buffer = new StringWriter();
+
+    /**
+     * The writer on the buffer.
+     */
+    private final PrintWriter writer = new PrintWriter(buffer);
+
+    /**
+     * The recorded response headers, as name-value pairs.
+     */
+    private final List<String> responseHeaders = new ArrayList<String>();
+
+    /**
+     * Constructor. Use {@link RequestSnapshotBuilder} to create instances.
+     * The maps are not copied: they must not be modified afterwards.
+     *
+     * @param applicationContext The application context.
+     * @param availableScopes The available scopes.
+     * @param headerValues The copied header values.
+     * @param paramValues The copied parameter values.
+     * @param scopes The copied attributes, per scope.
+     * @param roles The copied role checks.
+     * @param locale The request locale.
+     */
+    RequestSnapshot(ApplicationContext applicationContext,
+            List<String> availableScopes, Map<String, String[]> headerValues,
+            Map<String, String[]> paramValues,
+            Map<String, Map<String, Object>> scopes,
+            Map<String, Boolean> roles, Locale locale) {
+        this.applicationContext = applicationContext;
+        this.availableScopes = Collections.unmodifiableList(new ArrayList<String>(availableScopes));
+        Map<String, String[]> headerCopy = new TreeMap<String, String[]>(String.CASE_INSENSITIVE_ORDER);
+        headerCopy.putAll(headerValues);
+        this.headerValues = new ArrayCloningMap(headerCopy);
+        this.paramValues = new ArrayCloningMap(paramValues);
+        Map<String, Map<String, Object>> scopesCopy = new HashMap<String, Map<String, Object>>();
+        for (String scope : availableScopes) {
+            Map<String, Object> attributes = scopes.get(scope);
+            if (attributes == null) {
+                attributes = Collections.<String, Object>emptyMap();
+            }
+            scopesCopy.put(scope, new CopyOnWriteScope(attributes));
+        }
+        this.scopes = scopesCopy;
+        this.roles = Collections.unmodifiableMap(new HashMap<String, Boolean>(roles));
+        this.locale = locale;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String> getHeader() {
+        Map<String, String> retValue = header;
+        if (retValue == null) {
+            Map<String, String> firstValues = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+            copyFirstValues(headerValues, firstValues);
+            retValue = Collections.unmodifiableMap(firstValues);
+            header = retValue;
+        }
+        return retValue;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String[]> getHeaderValues() {
+        return headerValues;
+    }
+
+    /**
+     * Returns an object that records the response headers, to be applied by
+     * {@link #flushTo(Request)}.
+     *
+     * @return The recording object.
+     */
+    public Addable<String> getResponseHeaders() {
+        return new Addable<String>() {
+
+            @Override
+            public void setValue(String key, String value) {
+                synchronized (responseHeaders) {
+                    responseHeaders.add(key);
+                    responseHeaders.add(value);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the attributes of a scope. The copied attributes are copied
+     * again the first time the scope is modified.
+     *
+     * @param scope The name of the scope.
+     * @return The attributes of the scope.
+     */
+    public Map<String, Object> getContext(String scope) {
+        Map<String, Object> retValue = scopes.get(scope);
+        if (retValue == null) {
+            throw new IllegalArgumentException(scope + " does not exist. Call getAvailableScopes() first to check.");
+        }
+        return retValue;
+    }
+
+    /** {@inheritDoc} */
+    public List<String> getAvailableScopes() {
+        return availableScopes;
+    }
+
+    /** {@inheritDoc} */
+    public ApplicationContext getApplicationContext() {
+        return applicationContext;
+    }
+
+    /**
+     * Not available: snapshots can only write characters.
+     *
+     * @return Nothing, it always throws an exception.
+     */
+    public OutputStream getOutputStream() {
+        throw new NotAvailableFeatureException("Request snapshots do not support output streams");
+    }
+
+    /**
+     * Returns a writer that writes in the internal buffer.
+     *
+     * @return The buffered writer.
+     */
+    public Writer getWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns a writer that writes in the internal buffer.
+     *
+     * @return The buffered writer.
+     */
+    public PrintWriter getPrintWriter() {
+        return writer;
+    }
+
+    /**
+     * Snapshots write in a buffer, so their response is never committed.
+     *
+     * @return <code>false</code>.
+     */
+    public boolean isResponseCommitted() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String> getParam() {
+        Map<String, String> retValue = param;
+        if (retValue == null) {
+            Map<String, String> firstValues = new HashMap<String, String>();
+            copyFirstValues(paramValues, firstValues);
+            retValue = Collections.unmodifiableMap(firstValues);
+            param = retValue;
+        }
+        return retValue;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String[]> getParamValues() {
+        return paramValues;
+    }
+
+    /** {@inheritDoc} */
+    public Locale getRequestLocale() {
+        return locale;
+    }
+
+    /**
+     * Checks a role copied when the snapshot was taken.
+     *
+     * @param role The role to check.
+     * @return <code>true</code> if the user is in the given role.
+     * @throws NotAvailableFeatureException If the role was not copied.
+     */
+    public boolean isUserInRole(String role) {
+        Boolean retValue = roles.get(role);
+        if (retValue == null) {
+            throw new NotAvailableFeatureException("Role '" + role
+                    + "' has not been copied in the request snapshot");
+        }
+        return retValue;
+    }
+
+    /**
+     * Returns what has been written in the buffer so far.
+     *
+     * @return The buffered output.
+     */
+    public String getBufferedOutput() {
+        writer.flush();
+        return buffer.toString();
+    }
+
+    /**
+     * Writes the buffered output and the recorded response headers to a
+     * request. It must be called from the thread that owns the target request,
+     * after rendering completed.
+     *
+     * @param request The request to write to.
+     * @throws IOException If something goes wrong when writing.
+     */
+    public void flushTo(Request request) throws IOException {
+        synchronized (responseHeaders) {
+            if (!responseHeaders.isEmpty()) {
+                Addable<String> targetHeaders = request.getResponseHeaders();
+                for (int i = 0; i < responseHeaders.size(); i += 2) {
+                    targetHeaders.setValue(responseHeaders.get(i), responseHeaders.get(i + 1));
+                }
+            }
+        }
+        request.getWriter().write(getBufferedOutput());
+    }
+
+    /**
+     * Copies the first value of each array in a map.
+     *
+     * @param source The map of arrays.
+     * @param target The map of first values.
+     */
+    private static void copyFirstValues(Map<String, String[]> source, Map<String, String> target) {
+        for (Map.Entry<String, String[]> entry : source.entrySet()) {
+            String[] values = entry.getValue();
+            if (values != null && values.length > 0) {
+                target.put(entry.getKey(), values[0]);
+            }
+        }
+    }
+
+    /**
+     * A read-only map of string arrays, that clones the arrays it returns.
+     */
+    private static final class ArrayCloningMap extends AbstractMap<String, String[]> {
+
+        /**
+         * The wrapped map.
+         */
+        private final Map<String, String[]> map;
+
+        /**
+         * Constructor.
+         *
+         * @param map The map to wrap.
+         */
+        private ArrayCloningMap(Map<String, String[]> map) {
+            this.map = map;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String[] get(Object key) {
+            String[] values = map.get(key);
+            return values != null ? values.clone() : null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Set<Map.Entry<String, String[]>> entrySet() {
+            return new AbstractSet<Map.Entry<String, String[]>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, String[]>> iterator() {
+                    final Iterator<Map.Entry<String, String[]>> it = map.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, String[]>>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, String[]> next() {
+                            Map.Entry<String, String[]> entry = it.next();
+                            String[] values = entry.getValue();
+                            return new SimpleImmutableEntry<String, String[]>(entry.getKey(),
+                                    values != null ? values.clone() : null);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("Request snapshots are read-only");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return map.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * The attributes of a scope. Reads use the copied attributes until the
+     * first write, that copies them; every write replaces the map, so reads
+     * never need locking.
+     */
+    private static final class CopyOnWriteScope extends AbstractMap<String, Object> {
+
+        /**
+         * The current attributes. The map is never modified once published.
+         */
+        private volatile Map<String, Object> attributes;
+
+        /**
+         * Constructor.
+         *
+         * @param attributes The copied attributes.
+         */
+        private CopyOnWriteScope(Map<String, Object> attributes) {
+            this.attributes = attributes;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object get(Object key) {
+            return attributes.get(key);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean containsKey(Object key) {
+            return attributes.containsKey(key);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size() {
+            return attributes.size();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized Object put(String key, Object value) {
+            Map<String, Object> copy = new HashMap<String, Object>(attributes);
+            Object retValue = copy.put(key, value);
+            attributes = copy;
+            return retValue;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized Object remove(Object key) {
+            if (!attributes.containsKey(key)) {
+                return null;
+            }
+            Map<String, Object> copy = new HashMap<String, Object>(attributes);
+            Object retValue = copy.remove(key);
+            attributes = copy;
+            return retValue;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized void clear() {
+            attributes = Collections.<String, Object>emptyMap();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return Collections.unmodifiableMap(attributes).entrySet();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds instances of {@link RequestSnapshot}. It must be used in the thread
+ * that owns the source request: only the items explicitly added are read
+ * from it, so the cost of a snapshot is proportional to what the fragment
+ * needs.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class RequestSnapshotBuilder {
+
+    /**
+     * The request to copy.
+     */
+    private Request source;
+
+    /**
+     * The copied header values.
+     */
+    private Map<String, String[]> headerValues = new HashMap<String, String[]>();
+
+    /**
+     * The copied parameter values.
+     */
+    private Map<String, String[]> paramValues = new HashMap<String, String[]>();
+
+    /**
+     * The copied attributes, per scope.
+     */
+    private Map<String, Map<String, Object>> scopes = new HashMap<String, Map<String, Object>>();
+
+    /**
+     * The copied role checks.
+     */
+    private Map<String, Boolean> roles = new HashMap<String, Boolean>();
+
+    /**
+     * Constructor.
+     *
+     * @param source The request to copy.
+     */
+    private RequestSnapshotBuilder(Request source) {
+        this.source = source;
+    }
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param source The request to copy.
+     * @return A new instance of the builder.
+     */
+    public static RequestSnapshotBuilder createInstance(Request source) {
+        return new RequestSnapshotBuilder(source);
+    }
+
+    /**
+     * Copies all the values of a header, if present.
+     *
+     * @param name The name of the header.
+     * @return This object.
+     */
+    public RequestSnapshotBuilder addHeader(String name) {
+        String[] values = source.getHeaderValues().get(name);
+        if (values != null) {
+            headerValues.put(name, values.clone());
+        }
+        return this;
+    }
+
+    /**
+     * Copies all the values of a parameter, if present.
+     *
+     * @param name The name of the parameter.
+     * @return This object.
+     */
+    public RequestSnapshotBuilder addParam(String name) {
+        String[] values = source.getParamValues().get(name);
+        if (values != null) {
+            paramValues.put(name, values.clone());
+        }
+        return this;
+    }
+
+    /**
+     * Copies all the parameters.
+     *
+     * @return This object.
+     */
+    public RequestSnapshotBuilder addAllParams() {
+        for (Map.Entry<String, String[]> entry : source.getParamValues().entrySet()) {
+            paramValues.put(entry.getKey(), entry.getValue().clone());
+        }
+        return this;
+    }
+
+    /**
+     * Copies the result of {@link Request#isUserInRole(String)} for a role.
+     *
+     * @param role The role to check.
+     * @return This object.
+     */
+    public RequestSnapshotBuilder addRole(String role) {
+        roles.put(role, source.isUserInRole(role));
+        return this;
+    }
+
+    /**
+     * Copies an attribute of a scope, if present. The value itself is not
+     * copied, so it should be immutable or thread-safe.
+     *
+     * @param scope The name of the scope.
+     * @param name The name of the attribute.
+     * @return This object.
+     */
+    public RequestSnapshotBuilder addAttribute(String scope, String name) {
+        Object value = source.getContext(scope).get(name);
+        if (value != null) {
+            Map<String, Object> attributes = scopes.get(scope);
+            if (attributes == null) {
+                attributes = new HashMap<String, Object>();
+                scopes.put(scope, attributes);
+            }
+            attributes.put(name, value);
+        }
+        return this;
+    }
+
+    /**
+     * Creates a new {@link RequestSnapshot} with the copied data. The copied
+     * data is handed over to the snapshot without copying it again, and the
+     * builder starts afresh.
+     *
+     * @return A new request snapshot.
+     */
+    public RequestSnapshot build() {
+        RequestSnapshot snapshot = new RequestSnapshot(source.getApplicationContext(),
+                source.getAvailableScopes(), headerValues, paramValues, scopes,
+                roles, source.getRequestLocale());
+        headerValues = new HashMap<String, String[]>();
+        paramValues = new HashMap<String, String[]>();
+        scopes = new HashMap<String, Map<String, Object>>();
+        roles = new HashMap<String, Boolean>();
+        return snapshot;
+    }
+}
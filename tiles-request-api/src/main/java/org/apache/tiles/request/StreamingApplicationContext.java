@@ -0,0 +1,44 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request;
+
+import java.util.Iterator;
+
+/**
+ * An {@link ApplicationContext} that can return the resources matching a path
+ * one at a time, creating each of them only when it is reached.
+ * It is useful with broad patterns, when only the first matches are needed.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface StreamingApplicationContext extends ApplicationContext {
+
+    /**
+     * Returns the resources matching a path, as they are iterated.
+     * The matches and their order are the same as
+     * {@link ApplicationContext#getResources(String)}.
+     *
+     * @param path the path to the resources.
+     * @return An iterator over the resources. It does not support removal.
+     * @see ApplicationContext#getResources(String)
+     */
+    Iterator<ApplicationResource> getResourceIterator(String path);
+}
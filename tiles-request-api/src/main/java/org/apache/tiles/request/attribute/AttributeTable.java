@@ -0,0 +1,222 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.attribute;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact String to Object table, using open addressing with linear probing.
+ * It is meant to keep a handful of request-local attributes, so it is not
+ * thread-safe and does not accept <code>null</code> keys or values.
+ *
+ * @version $Rev$ $Date$
+ */
+public class AttributeTable {
+
+    /**
+     * The initial number of slots. Must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The keys, indexed by slot.
+     */
+    private String[] keys = new String[INITIAL_CAPACITY];
+
+    /**
+     * The values, indexed by slot.
+     */
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    /**
+     * The number of stored attributes.
+     */
+    private int size;
+
+    /**
+     * Returns the value of an attribute.
+     *
+     * @param key The key of the attribute.
+     * @return The value, or <code>null</code> if not present.
+     */
+    public Object get(String key) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * Sets the value of an attribute.
+     *
+     * @param key The key of the attribute.
+     * @param value The value of the attribute. It must not be <code>null</code>.
+     * @return The previous value, or <code>null</code> if not present.
+     */
+    public Object put(String key, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not allowed, call remove instead");
+        }
+        int mask = keys.length - 1;
+        int index = mix(key.hashCode()) & mask;
+        while (keys[index] != null) {
+            if (keys[index].equals(key)) {
+                Object previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+            return put(key, value);
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes an attribute.
+     *
+     * @param key The key of the attribute.
+     * @return The removed value, or <code>null</code> if not present.
+     */
+    public Object remove(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object previous = values[index];
+        int mask = keys.length - 1;
+        // Backward shift deletion: move following entries of the same cluster
+        // back, so that lookups never stop on a hole.
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (keys[next] != null) {
+            int home = mix(keys[next].hashCode()) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        size--;
+        return previous;
+    }
+
+    /**
+     * Returns the number of stored attributes.
+     *
+     * @return The size of the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a snapshot of the keys of the stored attributes.
+     *
+     * @return The keys.
+     */
+    public Enumeration<String> keys() {
+        if (size == 0) {
+            return Collections.enumeration(Collections.<String>emptyList());
+        }
+        final String[] snapshot = new String[size];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                snapshot[count++] = keys[i];
+            }
+        }
+        return new Enumeration<String>() {
+
+            private int position = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return position < snapshot.length;
+            }
+
+            @Override
+            public String nextElement() {
+                if (position >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[position++];
+            }
+        };
+    }
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key The key.
+     * @return The slot, or -1 if not present.
+     */
+    private int indexOf(String key) {
+        int mask = keys.length - 1;
+        int index = mix(key.hashCode()) & mask;
+        while (keys[index] != null) {
+            if (keys[index].equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Doubles the number of slots, rehashing the stored attributes.
+     */
+    private void grow() {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = mix(oldKeys[i].hashCode()) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash code, so that the low bits are usable as an index.
+     *
+     * @param hash The hash code.
+     * @return The mixed hash.
+     */
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
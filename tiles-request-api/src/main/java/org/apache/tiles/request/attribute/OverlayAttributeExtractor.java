@@ -0,0 +1,112 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.attribute;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Keeps a set of "local" attributes in an {@link AttributeTable}, writing
+ * through to the wrapped extractor only the other attributes.
+ * Local attributes are owned by the framework: they are read, written and
+ * removed only in the overlay and never reach the wrapped extractor, so
+ * accessing them never calls the container.
+ *
+ * @version $Rev$ $Date$
+ */
+public class OverlayAttributeExtractor implements AttributeExtractor {
+
+    /**
+     * The wrapped extractor.
+     */
+    private AttributeExtractor delegate;
+
+    /**
+     * The table containing local attributes.
+     */
+    private AttributeTable overlay;
+
+    /**
+     * The names of the attributes to keep local.
+     */
+    private Set<String> localNames;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The wrapped extractor.
+     * @param overlay The table containing local attributes.
+     * @param localNames The names of the attributes to keep local.
+     */
+    public OverlayAttributeExtractor(AttributeExtractor delegate,
+            AttributeTable overlay, Set<String> localNames) {
+        this.delegate = delegate;
+        this.overlay = overlay;
+        this.localNames = localNames;
+    }
+
+    @Override
+    public Enumeration<String> getKeys() {
+        if (overlay.size() == 0) {
+            return delegate.getKeys();
+        }
+        Set<String> keys = new LinkedHashSet<String>();
+        for (Enumeration<String> e = overlay.keys(); e.hasMoreElements();) {
+            keys.add(e.nextElement());
+        }
+        for (Enumeration<String> e = delegate.getKeys(); e.hasMoreElements();) {
+            keys.add(e.nextElement());
+        }
+        return Collections.enumeration(keys);
+    }
+
+    @Override
+    public Object getValue(String key) {
+        if (localNames.contains(key)) {
+            return overlay.get(key);
+        }
+        return delegate.getValue(key);
+    }
+
+    @Override
+    public void setValue(String key, Object value) {
+        if (localNames.contains(key)) {
+            if (value != null) {
+                overlay.put(key, value);
+            } else {
+                overlay.remove(key);
+            }
+        } else {
+            delegate.setValue(key, value);
+        }
+    }
+
+    @Override
+    public void removeValue(String key) {
+        if (localNames.contains(key)) {
+            overlay.remove(key);
+        } else {
+            delegate.removeValue(key);
+        }
+    }
+}
@@ -23,19 +23,27 @@ package org.apache.tiles.request.collection;
 import static org.apache.tiles.request.collection.CollectionUtil.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.tiles.request.attribute.EnumeratedValuesExtractor;
 
 
 /**
  * Exposes an {@link EnumeratedValuesExtractor} object as a read-only map.
+ * Header names are case-insensitive: {@link #equals(Object)} and
+ * {@link #hashCode()} compare two header maps with names in lower case, and
+ * values as unordered arrays. Other kinds of maps are compared as
+ * {@link java.util.AbstractMap} does, and since values are arrays, compared
+ * by identity, they are equal only when both maps are empty.
  *
  * @version $Rev$ $Date$
  */
@@ -46,6 +54,15 @@ public class HeaderValuesMap implements Map<String, String[]> {
      */
     private EnumeratedValuesExtractor request;
 
+    /**
+     * The headers, lazily read. Headers do not change during a request, so
+     * they are read once for comparisons. Like {@link String#hashCode()},
+     * this is a benign race: threads may read the headers more than once,
+     * but the fields of {@link CanonicalHeaders} are final, so they always
+     * see a complete object.
+     */
+    private CanonicalHeaders canonical;
+
     /**
      * Constructor.
      *
@@ -73,11 +90,10 @@ public class HeaderValuesMap implements Map<String, String[]> {
         if (!(value instanceof String[])) {
             return (false);
         }
-        String[] test = (String[]) value;
-        Enumeration<String> names = request.getKeys();
-        while (names.hasMoreElements()) {
-            String name = names.nextElement();
-            if (compareHeaders(name, array2set(test))) {
+        String[] test = ((String[]) value).clone();
+        Arrays.sort(test);
+        for (String[] values : canonicalize().values) {
+            if (Arrays.equals(values, test)) {
                 return true;
             }
         }
@@ -94,17 +110,22 @@ public class HeaderValuesMap implements Map<String, String[]> {
     /** {@inheritDoc} */
     @Override
     public boolean equals(Object o) {
-        EnumeratedValuesExtractor otherRequest = ((HeaderValuesMap) o).request;
-        boolean retValue = true;
-        for (Enumeration<String> attribs = request.getKeys(); attribs
-                .hasMoreElements()
-                && retValue;) {
-            String parameterName = attribs.nextElement();
-            Set<String> valueSet = enumeration2set(otherRequest.getValues(parameterName));
-            retValue = compareHeaders(parameterName, valueSet);
+        if (o == this) {
+            return true;
         }
-
-        return retValue;
+        if (o instanceof HeaderValuesMap) {
+            CanonicalHeaders headers = canonicalize();
+            CanonicalHeaders otherHeaders = ((HeaderValuesMap) o).canonicalize();
+            return headers.hash == otherHeaders.hash
+                    && Arrays.equals(headers.names, otherHeaders.names)
+                    && Arrays.deepEquals(headers.values, otherHeaders.values);
+        }
+        if (!(o instanceof Map)) {
+            return false;
+        }
+        // Values are new arrays at every call, so they never equal the values
+        // of other maps.
+        return ((Map<?, ?>) o).isEmpty() && isEmpty();
     }
 
 
@@ -116,18 +137,7 @@ public class HeaderValuesMap implements Map<String, String[]> {
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
-        int retValue = 0;
-        for (Enumeration<String> attribs = request.getKeys(); attribs
-                .hasMoreElements();) {
-            String parameterName = attribs.nextElement();
-            Enumeration<String> values = request.getValues(parameterName);
-            int valueHash = 0;
-            while (values.hasMoreElements()) {
-                valueHash += values.nextElement().hashCode();
-            }
-            retValue += parameterName.hashCode() ^ valueHash;
-        }
-        return retValue;
+        return canonicalize().hash;
     }
 
 
@@ -190,17 +200,33 @@ public class HeaderValuesMap implements Map<String, String[]> {
     }
 
     /**
-     * Converts the content of a string enumeration to an array of strings.
+     * Reads all the headers once, storing lower case names and values as
+     * sorted arrays.
      *
-     * @param enumeration The enumeration to convert.
-     * @return The corresponding array.
+     * @return The headers.
      */
-    private Set<String> enumeration2set(Enumeration<String> enumeration) {
-        Set<String> retValue = new HashSet<String>();
-        while (enumeration.hasMoreElements()) {
-            retValue.add(enumeration.nextElement());
+    private CanonicalHeaders canonicalize() {
+        CanonicalHeaders headers = canonical;
+        if (headers != null) {
+            return headers;
+        }
+        Map<String, String> names = new TreeMap<String, String>();
+        for (Enumeration<String> e = request.getKeys(); e.hasMoreElements();) {
+            String name = e.nextElement();
+            String lowerName = name.toLowerCase(Locale.ENGLISH);
+            if (!names.containsKey(lowerName)) {
+                names.put(lowerName, name);
+            }
         }
-        return retValue;
+        String[] sortedNames = names.keySet().toArray(new String[names.size()]);
+        String[][] sortedValues = new String[sortedNames.length][];
+        for (int i = 0; i < sortedNames.length; i++) {
+            sortedValues[i] = getHeaderValues(names.get(sortedNames[i]));
+            Arrays.sort(sortedValues[i]);
+        }
+        headers = new CanonicalHeaders(sortedNames, sortedValues);
+        canonical = headers;
+        return headers;
     }
 
     /**
@@ -218,23 +244,45 @@ public class HeaderValuesMap implements Map<String, String[]> {
     }
 
     /**
-     * Checks if values of a header attribute are the same as the one passed in
-     * the set.
-     *
-     * @param name The name of the header.
-     * @param testSet The set of values it must contain.
-     * @return <code>true</code> if all the values, and only them, are present
-     * in the header values.
+     * The headers, with lower case names and values as sorted arrays.
      */
-    private boolean compareHeaders(String name, Set<String> testSet) {
-        Enumeration<String> values = request.getValues(name);
-        boolean matched = true;
-        while (values.hasMoreElements() && matched) {
-            String currentValue = values.nextElement();
-            matched = testSet.remove(currentValue);
-        }
-        matched = matched && testSet.isEmpty();
-        return matched;
+    private static final class CanonicalHeaders {
+
+        /**
+         * The sorted header names, in lower case.
+         */
+        private final String[] names;
+
+        /**
+         * The sorted values of each header, in the same order as
+         * {@link #names}.
+         */
+        private final String[][] values;
+
+        /**
+         * The hash code of the headers.
+         */
+        private final int hash;
+
+        /**
+         * Constructor.
+         *
+         * @param names The sorted header names, in lower case.
+         * @param values The sorted values of each header.
+         */
+        private CanonicalHeaders(String[] names, String[][] values) {
+            this.names = names;
+            this.values = values;
+            int retValue = 0;
+            for (int i = 0; i < names.length; i++) {
+                int valueHash = 0;
+                for (String value : values[i]) {
+                    valueHash += value.hashCode();
+                }
+                retValue += names[i].hashCode() ^ valueHash;
+            }
+            hash = retValue;
+        }
     }
 
     /**
@@ -0,0 +1,318 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.collection;
+
+import org.apache.tiles.request.attribute.HasKeys;
+
+/**
+ * Exposes the parameters of a {@link HasKeys} object as typed values.
+ * Each parameter is read and parsed at most once: parsed numbers and booleans
+ * are kept in primitive arrays, so repeated reads do not box nor re-parse.
+ * Missing or malformed parameters resolve to the default value passed by the caller.
+ * <p>
+ * Instances are meant to live as long as a single request and are not thread-safe.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class TypedParameterView {
+
+    /**
+     * The initial number of slots of the parse cache. Must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Flag: the parameter has been parsed as a number.
+     */
+    private static final byte NUMBER_PARSED = 1;
+
+    /**
+     * Flag: the parameter is a valid number.
+     */
+    private static final byte NUMBER_VALID = 2;
+
+    /**
+     * Flag: the parameter has been parsed as a boolean.
+     */
+    private static final byte BOOLEAN_PARSED = 4;
+
+    /**
+     * Flag: the parameter is a valid boolean.
+     */
+    private static final byte BOOLEAN_VALID = 8;
+
+    /**
+     * Flag: the parameter is the boolean <code>true</code>.
+     */
+    private static final byte BOOLEAN_TRUE = 16;
+
+    /**
+     * The parameters to read.
+     */
+    private HasKeys<String> parameters;
+
+    /**
+     * The names of the cached parameters, indexed by slot.
+     */
+    private String[] names;
+
+    /**
+     * The raw values of the cached parameters, indexed by slot.
+     */
+    private String[] rawValues;
+
+    /**
+     * The parsed numeric values, indexed by slot.
+     */
+    private long[] numbers;
+
+    /**
+     * The parse state of each slot, as a combination of the flags above.
+     */
+    private byte[] flags;
+
+    /**
+     * The last parsed enum constant for each slot, or the enum class that
+     * could not parse the value.
+     */
+    private Object[] enums;
+
+    /**
+     * The number of used slots.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param parameters The parameters to read.
+     */
+    public TypedParameterView(HasKeys<String> parameters) {
+        this.parameters = parameters;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the raw value of a parameter.
+     *
+     * @param name The name of the parameter.
+     * @return The value, or <code>null</code> if the parameter is not present.
+     */
+    public String getString(String name) {
+        return rawValues[slot(name)];
+    }
+
+    /**
+     * Returns a parameter as an <code>int</code>.
+     *
+     * @param name The name of the parameter.
+     * @param defaultValue The value to return if the parameter is missing, is
+     * not a number or does not fit in an <code>int</code>.
+     * @return The parsed value.
+     */
+    public int getInt(String name, int defaultValue) {
+        int slot = parseNumber(slot(name));
+        if ((flags[slot] & NUMBER_VALID) != 0) {
+            long value = numbers[slot];
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns a parameter as a <code>long</code>.
+     *
+     * @param name The name of the parameter.
+     * @param defaultValue The value to return if the parameter is missing or is
+     * not a number.
+     * @return The parsed value.
+     */
+    public long getLong(String name, long defaultValue) {
+        int slot = parseNumber(slot(name));
+        if ((flags[slot] & NUMBER_VALID) != 0) {
+            return numbers[slot];
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns a parameter as a <code>boolean</code>. Only "true" and "false",
+     * ignoring case, are recognized.
+     *
+     * @param name The name of the parameter.
+     * @param defaultValue The value to return if the parameter is missing or is
+     * not a boolean.
+     * @return The parsed value.
+     */
+    public boolean getBoolean(String name, boolean defaultValue) {
+        int slot = slot(name);
+        byte state = flags[slot];
+        if ((state & BOOLEAN_PARSED) == 0) {
+            String value = rawValues[slot];
+            state |= BOOLEAN_PARSED;
+            if ("true".equalsIgnoreCase(value)) {
+                state |= BOOLEAN_VALID | BOOLEAN_TRUE;
+            } else if ("false".equalsIgnoreCase(value)) {
+                state |= BOOLEAN_VALID;
+            }
+            flags[slot] = state;
+        }
+        if ((state & BOOLEAN_VALID) != 0) {
+            return (state & BOOLEAN_TRUE) != 0;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns a parameter as an enum constant, matching the constant name exactly.
+     *
+     * @param <E> The type of the enum.
+     * @param name The name of the parameter.
+     * @param enumType The class of the enum.
+     * @param defaultValue The value to return if the parameter is missing or is
+     * not the name of a constant of the enum.
+     * @return The parsed value.
+     */
+    public <E extends Enum<E>> E getEnum(String name, Class<E> enumType, E defaultValue) {
+        int slot = slot(name);
+        Object cached = enums[slot];
+        if (cached == enumType) {
+            return defaultValue;
+        }
+        if (cached != null && ((Enum<?>) cached).getDeclaringClass() == enumType) {
+            return enumType.cast(cached);
+        }
+        String value = rawValues[slot];
+        if (value != null) {
+            try {
+                E retValue = Enum.valueOf(enumType, value);
+                enums[slot] = retValue;
+                return retValue;
+            } catch (IllegalArgumentException e) {
+                // Not a constant of this enum, remember the miss below.
+            }
+        }
+        enums[slot] = enumType;
+        return defaultValue;
+    }
+
+    /**
+     * Parses the value in the given slot as a number, if not already done.
+     *
+     * @param slot The slot.
+     * @return The same slot.
+     */
+    private int parseNumber(int slot) {
+        byte state = flags[slot];
+        if ((state & NUMBER_PARSED) == 0) {
+            state |= NUMBER_PARSED;
+            String value = rawValues[slot];
+            if (value != null) {
+                try {
+                    numbers[slot] = Long.parseLong(value.trim());
+                    state |= NUMBER_VALID;
+                } catch (NumberFormatException e) {
+                    // Malformed, the default value will be used.
+                }
+            }
+            flags[slot] = state;
+        }
+        return slot;
+    }
+
+    /**
+     * Finds the slot of a parameter, reading its raw value the first time it is
+     * requested.
+     *
+     * @param name The name of the parameter.
+     * @return The slot.
+     */
+    private int slot(String name) {
+        int mask = names.length - 1;
+        int index = mix(name.hashCode()) & mask;
+        while (names[index] != null) {
+            if (names[index].equals(name)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        if ((size + 1) * 2 > names.length) {
+            grow();
+            return slot(name);
+        }
+        names[index] = name;
+        rawValues[index] = parameters.getValue(name);
+        size++;
+        return index;
+    }
+
+    /**
+     * Doubles the capacity of the cache, rehashing the used slots.
+     */
+    private void grow() {
+        String[] oldNames = names;
+        String[] oldRawValues = rawValues;
+        long[] oldNumbers = numbers;
+        byte[] oldFlags = flags;
+        Object[] oldEnums = enums;
+        allocate(oldNames.length * 2);
+        int mask = names.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int index = mix(oldNames[i].hashCode()) & mask;
+                while (names[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                names[index] = oldNames[i];
+                rawValues[index] = oldRawValues[i];
+                numbers[index] = oldNumbers[i];
+                flags[index] = oldFlags[i];
+                enums[index] = oldEnums[i];
+            }
+        }
+    }
+
+    /**
+     * Allocates the slot arrays.
+     *
+     * @param capacity The number of slots.
+     */
+    private void allocate(int capacity) {
+        names = new String[capacity];
+        rawValues = new String[capacity];
+        numbers = new long[capacity];
+        flags = new byte[capacity];
+        enums = new Object[capacity];
+    }
+
+    /**
+     * Spreads the bits of a hash code, so that the low bits are usable as an index.
+     *
+     * @param hash The hash code.
+     * @return The mixed hash.
+     */
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
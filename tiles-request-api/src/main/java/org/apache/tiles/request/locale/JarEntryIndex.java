@@ -0,0 +1,283 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.request.locale;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The entries of a jar file, read once and shared by all the
+ * {@link URLApplicationResource}s of the same jar. The index is rebuilt when
+ * the modification date or the size of the jar file change.
+ * <p>
+ * Only the names and the modification dates of the entries are kept: the jar
+ * file is closed as soon as it has been listed. Entries are read through
+ * {@link JarURLConnection}, so that the open jar files are the ones cached
+ * and owned by the JVM, never closed while another thread reads them. Once
+ * the jar file has changed, the JVM cache may hold the previous content, so
+ * entries are then read through uncached connections, whose jar file is
+ * closed with the stream.
+ * </p>
+ * <p>
+ * Indexes are weakly referenced: an index is kept as long as a resource of its
+ * jar is in use.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+final class JarEntryIndex {
+
+    /**
+     * The shared indexes, by canonical path of the jar file.
+     */
+    private static final ConcurrentMap<String, WeakReference<JarEntryIndex>> INDEXES =
+        new ConcurrentHashMap<String, WeakReference<JarEntryIndex>>();
+
+    /**
+     * The jar file.
+     */
+    private final File file;
+
+    /**
+     * The current content of the jar file.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Constructor.
+     *
+     * @param file The jar file.
+     */
+    private JarEntryIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the shared index of a jar file.
+     *
+     * @param file The jar file.
+     * @return The index.
+     */
+    static JarEntryIndex get(File file) {
+        String key = file.getAbsolutePath();
+        WeakReference<JarEntryIndex> reference = INDEXES.get(key);
+        JarEntryIndex retValue = reference != null ? reference.get() : null;
+        if (retValue == null) {
+            // Clean up the indexes that have been collected.
+            for (Map.Entry<String, WeakReference<JarEntryIndex>> entry : INDEXES.entrySet()) {
+                if (entry.getValue().get() == null) {
+                    INDEXES.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            retValue = new JarEntryIndex(file);
+            WeakReference<JarEntryIndex> newReference = new WeakReference<JarEntryIndex>(retValue);
+            while (true) {
+                reference = INDEXES.putIfAbsent(key, newReference);
+                if (reference == null) {
+                    break;
+                }
+                JarEntryIndex existing = reference.get();
+                if (existing != null) {
+                    return existing;
+                }
+                if (INDEXES.replace(key, reference, newReference)) {
+                    break;
+                }
+            }
+        }
+        return retValue;
+    }
+
+    /**
+     * Returns the modification date of an entry.
+     *
+     * @param name The name of the entry.
+     * @return The modification date.
+     * @throws IOException If the jar cannot be read or the entry does not exist.
+     */
+    long getLastModified(String name) throws IOException {
+        return getEntry(name).time;
+    }
+
+    /**
+     * Opens an entry. Missing entries are detected through the index, without
+     * opening a connection.
+     *
+     * @param name The name of the entry.
+     * @param url The <code>jar:</code> URL of the entry.
+     * @return The stream to read the entry.
+     * @throws IOException If the jar cannot be read or the entry does not exist.
+     */
+    InputStream getInputStream(String name, URL url) throws IOException {
+        Snapshot current = getSnapshot();
+        if (!current.entries.containsKey(name)) {
+            throw new FileNotFoundException("JAR entry " + name + " not found in " + file);
+        }
+        URLConnection connection = url.openConnection();
+        if (!(connection instanceof JarURLConnection)) {
+            throw new IOException("Not a JAR URL: " + url);
+        }
+        if (current.changed) {
+            connection.setUseCaches(false);
+        }
+        return connection.getInputStream();
+    }
+
+    /**
+     * Returns the metadata of an entry.
+     *
+     * @param name The name of the entry.
+     * @return The metadata.
+     * @throws IOException If the jar cannot be read or the entry does not exist.
+     */
+    private EntryInfo getEntry(String name) throws IOException {
+        EntryInfo retValue = getSnapshot().entries.get(name);
+        if (retValue == null) {
+            throw new FileNotFoundException("JAR entry " + name + " not found in " + file);
+        }
+        return retValue;
+    }
+
+    /**
+     * Returns the up-to-date entries of the jar file, listing them if needed.
+     *
+     * @return The entries.
+     * @throws IOException If the jar cannot be read.
+     */
+    private Snapshot getSnapshot() throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Snapshot current = snapshot;
+        if (current == null || current.lastModified != lastModified || current.length != length) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null || current.lastModified != lastModified || current.length != length) {
+                    current = new Snapshot(listEntries(), lastModified, length, current != null);
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Lists the entries of the jar file, through a private handle closed
+     * before returning.
+     *
+     * @return The entries, by name.
+     * @throws IOException If the jar file cannot be read.
+     */
+    private Map<String, EntryInfo> listEntries() throws IOException {
+        JarFile jarFile;
+        try {
+            jarFile = new JarFile(file);
+        } catch (IOException e) {
+            FileNotFoundException fne = new FileNotFoundException(file.toString());
+            fne.initCause(e);
+            throw fne;
+        }
+        try {
+            Map<String, EntryInfo> retValue = new HashMap<String, EntryInfo>();
+            for (Enumeration<JarEntry> e = jarFile.entries(); e.hasMoreElements();) {
+                JarEntry entry = e.nextElement();
+                retValue.put(entry.getName(), new EntryInfo(entry.getTime()));
+            }
+            return retValue;
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    /**
+     * The entries of a jar file at a given time.
+     */
+    private static final class Snapshot {
+
+        /**
+         * The modification date of the jar file.
+         */
+        private final long lastModified;
+
+        /**
+         * The size of the jar file.
+         */
+        private final long length;
+
+        /**
+         * The entries, by name.
+         */
+        private final Map<String, EntryInfo> entries;
+
+        /**
+         * Whether the jar file changed since it was first listed.
+         */
+        private final boolean changed;
+
+        /**
+         * Constructor.
+         *
+         * @param entries The entries, by name.
+         * @param lastModified The modification date of the jar file.
+         * @param length The size of the jar file.
+         * @param changed Whether the jar file changed since it was first listed.
+         */
+        private Snapshot(Map<String, EntryInfo> entries, long lastModified, long length, boolean changed) {
+            this.entries = entries;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.changed = changed;
+        }
+    }
+
+    /**
+     * The metadata of an entry.
+     */
+    private static final class EntryInfo {
+
+        /**
+         * The modification date, converted once.
+         */
+        private final long time;
+
+        /**
+         * Constructor.
+         *
+         * @param time The modification date.
+         */
+        private EntryInfo(long time) {
+            this.time = time;
+        }
+    }
+}
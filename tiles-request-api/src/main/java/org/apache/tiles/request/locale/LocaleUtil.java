@@ -20,7 +20,15 @@
  */
 package org.apache.tiles.request.locale;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Utilities for locale manipulation.
@@ -37,6 +45,14 @@ public final class LocaleUtil {
     @Deprecated
     public static final Locale NULL_LOCALE = Locale.ROOT;
 
+    /**
+     * The computed fallback chains, per locale. Only the locales accepted by
+     * {@link #isMemoized(Locale)} are stored, so the map cannot grow with
+     * locales chosen by clients.
+     */
+    private static final ConcurrentMap<Locale, List<Locale>> FALLBACK_CHAINS =
+        new ConcurrentHashMap<Locale, List<Locale>>();
+
     /**
      * Private constructor to avoid instantiation.
      */
@@ -74,4 +90,84 @@ public final class LocaleUtil {
 
         return retValue;
     }
+
+    /**
+     * <p>
+     * Returns the fallback chain of a locale, i.e. the locale itself followed
+     * by all its parents, as returned by {@link #getParentLocale(Locale)}, down
+     * to {@link Locale#ROOT}.
+     * </p>
+     * <p>
+     * Chains of the locales installed in the JVM are computed once and shared:
+     * the parents in the chain are the same instances found in the chain of
+     * the parent locale. Chains of other locales are computed on each call.
+     * </p>
+     *
+     * @param locale The original locale.
+     * @return The immutable fallback chain.
+     */
+    public static List<Locale> getFallbackChain(Locale locale) {
+        List<Locale> retValue = FALLBACK_CHAINS.get(locale);
+        if (retValue == null) {
+            Locale parent = getParentLocale(locale);
+            List<Locale> chain = new ArrayList<Locale>();
+            chain.add(locale);
+            if (parent != null) {
+                chain.addAll(getFallbackChain(parent));
+            }
+            retValue = Collections.unmodifiableList(chain);
+            if (isMemoized(locale)) {
+                List<Locale> existing = FALLBACK_CHAINS.putIfAbsent(locale, retValue);
+                if (existing != null) {
+                    retValue = existing;
+                }
+            }
+        }
+        return retValue;
+    }
+
+    /**
+     * Checks if the fallback chain of a locale can be stored.
+     *
+     * @param locale The locale.
+     * @return <code>true</code> if the locale is {@link Locale#ROOT} or one of
+     * the locales returned by {@link Locale#getAvailableLocales()}.
+     */
+    private static boolean isMemoized(Locale locale) {
+        return isAvailable(locale);
+    }
+
+    /**
+     * Checks if a locale is installed in the JVM.
+     *
+     * @param locale The locale.
+     * @return <code>true</code> if the locale is {@link Locale#ROOT} or one of
+     * the locales returned by {@link Locale#getAvailableLocales()}.
+     */
+    static boolean isAvailable(Locale locale) {
+        return AvailableLocales.LOCALES.contains(locale);
+    }
+
+    /**
+     * Holds the installed locales, loaded at first use.
+     */
+    private static final class AvailableLocales {
+
+        /**
+         * The installed locales, including {@link Locale#ROOT}.
+         */
+        private static final Set<Locale> LOCALES;
+
+        static {
+            Set<Locale> locales = new HashSet<Locale>(Arrays.asList(Locale.getAvailableLocales()));
+            locales.add(Locale.ROOT);
+            LOCALES = Collections.unmodifiableSet(locales);
+        }
+
+        /**
+         * Private constructor to avoid instantiation.
+         */
+        private AvailableLocales() {
+        }
+    }
 }
@@ -21,11 +21,11 @@
 
 package org.apache.tiles.request.locale;
 
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.tiles.request.ApplicationResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,46 +50,36 @@ public abstract class PostfixedApplicationResource implements ApplicationResourc
 
     private static final Logger LOG = LoggerFactory.getLogger(PostfixedApplicationResource.class);
 
-    /** The path without its suffix and its locale postfix. */
-    private String pathPrefix;
-    /** The suffix. */
-    private String suffix;
-    /** The Locale. */
-    private Locale locale;
+    /** The maximum number of cached parsed paths. */
+    private static final int MAX_CACHED_PATHS = 65536;
+    /** The maximum number of cached locales and postfixes. */
+    private static final int MAX_CACHED_LOCALES = 1024;
+    /** The maximum number of paths remembered as already warned about. */
+    private static final int MAX_WARNED_PATHS = 1024;
+
+    /** The parsed locale paths, shared by all the resources of the same path. */
+    private static final ConcurrentMap<String, ParsedPath> PARSED_PATHS = new ConcurrentHashMap<String, ParsedPath>();
+    /** The canonical validated locales, by locale postfix. */
+    private static final ConcurrentMap<String, Locale> LOCALES = new ConcurrentHashMap<String, Locale>();
+    /** The canonical instances of the validated locales. */
+    private static final ConcurrentMap<Locale, Locale> CANONICAL_LOCALES = new ConcurrentHashMap<Locale, Locale>();
+    /** The postfixes, by locale. */
+    private static final ConcurrentMap<Locale, String> POSTFIXES = new ConcurrentHashMap<Locale, String>();
+    /** The paths for which a TILES-571 warning has already been logged. */
+    private static final ConcurrentMap<String, Boolean> WARNED_PATHS = new ConcurrentHashMap<String, Boolean>();
+
+    /** The path including localization, parsed at first use. */
+    private final String localePath;
+    /** The parsed path. */
+    private volatile ParsedPath parsed;
 
     /**
      * Create a new PostfixedApplicationResource for the specified path.
+     * The path is parsed when it, or the locale, is first needed.
      * @param localePath the path including localization.
      */
     protected PostfixedApplicationResource(String localePath) {
-        int prefixIndex = localePath.indexOf('_', localePath.lastIndexOf("/"));
-        int suffixIndex = localePath.lastIndexOf('.');
-        if (suffixIndex < 0) {
-            suffix = "";
-            suffixIndex = localePath.length();
-        } else {
-            suffix = localePath.substring(suffixIndex);
-        }
-        if (prefixIndex < 0) {
-            pathPrefix = localePath.substring(0, suffixIndex);
-            locale = Locale.ROOT;
-        } else {
-            pathPrefix = localePath.substring(0, prefixIndex);
-            String localeString = localePath.substring(prefixIndex + 1, suffixIndex);
-            Locale found = localeFrom(localeString);
-            locale = validateLocale(found);
-            if (Locale.ROOT.equals(locale)) {
-                pathPrefix = suffixIndex < 0 ? localePath : localePath.substring(0, suffixIndex);
-
-                LOG.warn("No supported matching language for locale \"" + localeString + "\". Using "
-                        + getPath() + " as a non-localized resource path. see TILES-571");
-
-            } else if (!localeString.equalsIgnoreCase(getPostfix(locale).substring(1))) {
-                LOG.warn("For resource " + localePath
-                        + " the closest supported matching locale to \"" + localeString + "\" is \"" + locale
-                        + "\". Using " + getPath() + " as resource path. see TILES-571");
-            }
-        }
+        this.localePath = localePath;
     }
 
     /**
@@ -98,33 +88,74 @@ public abstract class PostfixedApplicationResource implements ApplicationResourc
      * @param locale the Locale.
      */
     protected PostfixedApplicationResource(String path, Locale locale) {
+        localePath = null;
         int suffixIndex = path.lastIndexOf('.');
         if (suffixIndex < 0) {
-            suffix = "";
-            pathPrefix = path;
+            parsed = new ParsedPath(path, "", locale, null);
         } else {
-            pathPrefix = path.substring(0, suffixIndex);
-            suffix = path.substring(suffixIndex);
+            parsed = new ParsedPath(path.substring(0, suffixIndex), path.substring(suffixIndex), locale, null);
+        }
+    }
+
+    /**
+     * Returns the parsed path, parsing it at first call.
+     * @return the parsed path.
+     */
+    private ParsedPath parsed() {
+        ParsedPath result = parsed;
+        if (result == null) {
+            String path = localePath;
+            result = PARSED_PATHS.get(path);
+            if (result == null) {
+                result = parse(path);
+                if (PARSED_PATHS.size() < MAX_CACHED_PATHS) {
+                    PARSED_PATHS.putIfAbsent(path, result);
+                }
+            }
+            if (result.warning != null) {
+                warnOnce(path, result.warning);
+            }
+            parsed = result;
+        }
+        return result;
+    }
+
+    /**
+     * Logs a TILES-571 warning the first time a path is parsed. Once
+     * {@link #MAX_WARNED_PATHS} paths have been warned about, the warnings of
+     * the other paths are logged at debug level, since they cannot be
+     * remembered.
+     * @param path the locale path.
+     * @param warning the warning.
+     */
+    private static void warnOnce(String path, String warning) {
+        if (WARNED_PATHS.size() < MAX_WARNED_PATHS) {
+            if (WARNED_PATHS.putIfAbsent(path, Boolean.TRUE) == null) {
+                LOG.warn(warning);
+            }
+        } else if (!WARNED_PATHS.containsKey(path)) {
+            LOG.debug(warning);
         }
-        this.locale = locale;
     }
 
     /** {@inheritDoc} */
     @Override
     public final String getLocalePath() {
-        return getLocalePath(locale);
+        return getLocalePath(parsed().locale);
     }
 
     /** {@inheritDoc} */
     @Override
     public final String getPath() {
-        return pathPrefix + suffix;
+        ParsedPath path = parsed();
+        return path.pathPrefix + path.suffix;
     }
 
     /** {@inheritDoc} */
     @Override
     public final String getLocalePath(Locale newLocale) {
-        return pathPrefix + getPostfix(newLocale) + suffix;
+        ParsedPath path = parsed();
+        return path.pathPrefix + getPostfix(newLocale) + path.suffix;
     }
 
     /**
@@ -137,6 +168,10 @@ public abstract class PostfixedApplicationResource implements ApplicationResourc
             return "";
         }
 
+        String postfix = POSTFIXES.get(locale);
+        if (postfix != null) {
+            return postfix;
+        }
         StringBuilder builder = new StringBuilder();
         String language = locale.getLanguage();
         String country = locale.getCountry();
@@ -153,23 +188,28 @@ public abstract class PostfixedApplicationResource implements ApplicationResourc
                 }
             }
         }
-        return builder.toString();
+        postfix = builder.toString();
+        if (POSTFIXES.size() < MAX_CACHED_LOCALES) {
+            POSTFIXES.putIfAbsent(locale, postfix);
+        }
+        return postfix;
     }
 
     /** {@inheritDoc} */
     @Override
     public final Locale getLocale() {
-        return locale;
+        return parsed().locale;
     }
 
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
+        ParsedPath path = parsed();
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((locale == null) ? 0 : locale.hashCode());
-        result = prime * result + ((pathPrefix == null) ? 0 : pathPrefix.hashCode());
-        result = prime * result + ((suffix == null) ? 0 : suffix.hashCode());
+        result = prime * result + ((path.locale == null) ? 0 : path.locale.hashCode());
+        result = prime * result + ((path.pathPrefix == null) ? 0 : path.pathPrefix.hashCode());
+        result = prime * result + ((path.suffix == null) ? 0 : path.suffix.hashCode());
         return result;
     }
 
@@ -182,21 +222,22 @@ public abstract class PostfixedApplicationResource implements ApplicationResourc
             return false;
         if (getClass() != obj.getClass())
             return false;
-        PostfixedApplicationResource other = (PostfixedApplicationResource) obj;
-        if (locale == null) {
+        ParsedPath path = parsed();
+        ParsedPath other = ((PostfixedApplicationResource) obj).parsed();
+        if (path.locale == null) {
             if (other.locale != null)
                 return false;
-        } else if (!locale.equals(other.locale))
+        } else if (!path.locale.equals(other.locale))
             return false;
-        if (pathPrefix == null) {
+        if (path.pathPrefix == null) {
             if (other.pathPrefix != null)
                 return false;
-        } else if (!pathPrefix.equals(other.pathPrefix))
+        } else if (!path.pathPrefix.equals(other.pathPrefix))
             return false;
-        if (suffix == null) {
+        if (path.suffix == null) {
             if (other.suffix != null)
                 return false;
-        } else if (!suffix.equals(other.suffix))
+        } else if (!path.suffix.equals(other.suffix))
             return false;
         return true;
     }
@@ -245,7 +286,70 @@ public abstract class PostfixedApplicationResource implements ApplicationResourc
     }
     */
 
-    private static Set<Locale> availableLocales = new HashSet<Locale>(Arrays.asList(Locale.getAvailableLocales()));
+    /**
+     * Parses a locale path.
+     * @param localePath the path including localization.
+     * @return the parsed path.
+     */
+    private static ParsedPath parse(String localePath) {
+        String pathPrefix;
+        String suffix;
+        Locale locale;
+        String warning = null;
+        int prefixIndex = localePath.indexOf('_', localePath.lastIndexOf("/"));
+        int suffixIndex = localePath.lastIndexOf('.');
+        if (suffixIndex < 0) {
+            suffix = "";
+            suffixIndex = localePath.length();
+        } else {
+            suffix = localePath.substring(suffixIndex);
+        }
+        if (prefixIndex < 0) {
+            pathPrefix = localePath.substring(0, suffixIndex);
+            locale = Locale.ROOT;
+        } else {
+            pathPrefix = localePath.substring(0, prefixIndex);
+            String localeString = localePath.substring(prefixIndex + 1, suffixIndex);
+            locale = canonicalLocale(localeString);
+            if (Locale.ROOT.equals(locale)) {
+                pathPrefix = suffixIndex < 0 ? localePath : localePath.substring(0, suffixIndex);
+
+                warning = "No supported matching language for locale \"" + localeString + "\". Using "
+                        + pathPrefix + suffix + " as a non-localized resource path. see TILES-571";
+
+            } else if (!localeString.equalsIgnoreCase(getPostfix(locale).substring(1))) {
+                warning = "For resource " + localePath
+                        + " the closest supported matching locale to \"" + localeString + "\" is \"" + locale
+                        + "\". Using " + pathPrefix + suffix + " as resource path. see TILES-571";
+            }
+        }
+        return new ParsedPath(pathPrefix, suffix, locale, warning);
+    }
+
+    /**
+     * Returns the canonical, validated locale of a locale postfix.
+     * @param localeString the locale postfix, without the leading underscore.
+     * @return the canonical locale.
+     */
+    private static Locale canonicalLocale(String localeString) {
+        Locale result = LOCALES.get(localeString);
+        if (result == null) {
+            result = validateLocale(localeFrom(localeString));
+            if (CANONICAL_LOCALES.size() < MAX_CACHED_LOCALES) {
+                Locale canonical = CANONICAL_LOCALES.putIfAbsent(result, result);
+                if (canonical != null) {
+                    result = canonical;
+                }
+            }
+            if (LOCALES.size() < MAX_CACHED_LOCALES) {
+                Locale previous = LOCALES.putIfAbsent(localeString, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+        }
+        return result;
+    }
 
     private static Locale validateLocale(Locale locale) {
         Locale withoutVariant = locale.getVariant().isEmpty()
@@ -253,14 +357,43 @@ public abstract class PostfixedApplicationResource implements ApplicationResourc
                 : new Locale(locale.getLanguage(), locale.getCountry());
 
         Locale result = locale;
-        if (!availableLocales.contains(withoutVariant)) {
+        if (!LocaleUtil.isAvailable(withoutVariant)) {
             if (!result.getCountry().isEmpty()) {
                 result = new Locale(result.getLanguage());
             }
-            if (!availableLocales.contains(result)) {
+            if (!LocaleUtil.isAvailable(result)) {
                 result = Locale.ROOT;
             }
         }
         return result;
     }
+
+    /**
+     * The result of parsing a locale path.
+     */
+    private static final class ParsedPath {
+
+        /** The path without its suffix and its locale postfix. */
+        private final String pathPrefix;
+        /** The suffix. */
+        private final String suffix;
+        /** The Locale. */
+        private final Locale locale;
+        /** The TILES-571 warning to log, if any. */
+        private final String warning;
+
+        /**
+         * Constructor.
+         * @param pathPrefix the path without its suffix and its locale postfix.
+         * @param suffix the suffix.
+         * @param locale the locale.
+         * @param warning the warning to log, or <code>null</code>.
+         */
+        private ParsedPath(String pathPrefix, String suffix, Locale locale, String warning) {
+            this.pathPrefix = pathPrefix;
+            this.suffix = suffix;
+            this.locale = locale;
+            this.warning = warning;
+        }
+    }
 }
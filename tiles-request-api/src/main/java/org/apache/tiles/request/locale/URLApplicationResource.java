@@ -21,20 +21,29 @@
 
 package org.apache.tiles.request.locale;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.JarURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 
+import org.apache.tiles.request.ChannelApplicationResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,22 +52,35 @@ import static java.util.Collections.unmodifiableSet;
 
 /**
  * A {@link PostfixedApplicationResource} that can be accessed through a URL.
+ * <p>
+ * The content of local resources is kept in a heap buffer, shared until the
+ * last modification date of the resource changes. Remote resources are read
+ * at every call. Files in the directories listed in the
+ * <code>tiles.mappedDirectories</code> system property are memory-mapped
+ * instead: see {@link #initMappedDirectories()}.
+ * </p>
  *
  * @version $Rev$ $Date$
  */
 
-public class URLApplicationResource extends PostfixedApplicationResource {
+public class URLApplicationResource extends PostfixedApplicationResource implements ChannelApplicationResource {
     /**
      * System parameter to specify additional remote protocols. If a url has a remote protocol, then any
      * {@link IOException} will be thrown directly. If a url has a local protocol, then any {@link IOException}
      * will be caught and transformed into a {@link FileNotFoundException}.
      */
     static final String REMOTE_PROTOCOLS_PROPERTY = "tiles.remoteProtocols";
+    /**
+     * System parameter to specify the directories whose files are memory-mapped by {@link #getContent()}.
+     */
+    static final String MAPPED_DIRECTORIES_PROPERTY = "tiles.mappedDirectories";
     private static final Logger LOG = LoggerFactory.getLogger(URLApplicationResource.class);
     private static final Set<String> REMOTE_PROTOCOLS;
+    private static final Set<String> MAPPED_DIRECTORIES;
 
     static {
         REMOTE_PROTOCOLS = initRemoteProtocols();
+        MAPPED_DIRECTORIES = initMappedDirectories();
     }
 
     /**
@@ -105,16 +127,64 @@ public class URLApplicationResource extends PostfixedApplicationResource {
         return unmodifiableSet(remoteProtocols);
     }
 
+    /**
+     * Creates an unmodifiable set of the directories whose files are memory-mapped by {@link #getContent()},
+     * instead of being read into a heap buffer. Mapping avoids copying large files on the heap, but a mapped
+     * file must never be modified in place: truncating it crashes the JVM on access, and on Windows the
+     * mapping prevents replacing or deleting it. List only directories of immutable files, e.g. an exploded
+     * release that is replaced as a whole, in the system property {@code tiles.mappedDirectories}
+     * (use ";" as separator):
+     * <pre>
+     *     -Dtiles.mappedDirectories=/opt/app/static;/opt/app/templates
+     * </pre>
+     * By default no file is mapped.
+     *
+     * @return Unmodifiable set of absolute directory paths, ending with the separator, never {@code null}
+     */
+    static Set<String> initMappedDirectories() {
+        Set<String> mappedDirectories = new HashSet<String>();
+        String directoriesProp = getProperty(MAPPED_DIRECTORIES_PROPERTY);
+        if (directoriesProp != null) {
+            for (String directory : directoriesProp.split(";")) {
+                directory = directory.trim();
+                if (directory.length() > 0) {
+                    String path = new File(directory).getAbsolutePath();
+                    mappedDirectories.add(path.endsWith(File.separator) ? path : path + File.separator);
+                }
+            }
+        }
+        return unmodifiableSet(mappedDirectories);
+    }
+
     private static boolean isLocal(URL url) {
         return !REMOTE_PROTOCOLS.contains(url.getProtocol());
     }
 
+    private static boolean isMapped(File file) {
+        if (MAPPED_DIRECTORIES.isEmpty()) {
+            return false;
+        }
+        String path = file.getAbsolutePath();
+        for (String directory : MAPPED_DIRECTORIES) {
+            if (path.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** the URL where the contents can be found. */
     private final URL url;
     /** if the URL matches a file, this is the file. */
     private File file;
     /** if the URL points to a local resource */
     private final boolean local;
+    /** if the URL matches an entry of a jar file, this is the index of the jar. */
+    private JarEntryIndex jarEntryIndex;
+    /** if the URL matches an entry of a jar file, this is the name of the entry. */
+    private String jarEntryName;
+    /** the cached content, for local resources. */
+    private volatile CachedContent content;
 
     /**
      * Creates a URLApplicationResource for the specified path that can be accessed through the specified URL.
@@ -127,6 +197,8 @@ public class URLApplicationResource extends PostfixedApplicationResource {
         this.url = url;
         if ("file".equals(url.getProtocol())) {
             file = getFile(url);
+        } else if ("jar".equals(url.getProtocol())) {
+            initJarEntry(url);
         }
         local = isLocal(url);
     }
@@ -143,6 +215,8 @@ public class URLApplicationResource extends PostfixedApplicationResource {
         this.url = url;
         if ("file".equals(url.getProtocol())) {
             file = getFile(url);
+        } else if ("jar".equals(url.getProtocol())) {
+            initJarEntry(url);
         }
         local = isLocal(url);
     }
@@ -163,6 +237,29 @@ public class URLApplicationResource extends PostfixedApplicationResource {
         }
     }
 
+    private void initJarEntry(URL url) {
+        String spec = url.toExternalForm();
+        int separator = spec.indexOf("!/");
+        if (separator < 0 || !spec.startsWith("jar:file:") || spec.indexOf("!/", separator + 2) >= 0) {
+            // nested jars and remote jars are read through the URL connection
+            return;
+        }
+        File jarFile;
+        try {
+            jarFile = getFile(new URL(spec.substring("jar:".length(), separator)));
+            jarEntryName = URLDecoder.decode(spec.substring(separator + 2).replace("+", "%2B"), "UTF-8");
+        } catch (IOException e) {
+            LOG.debug("Cannot translate URL to jar entry, expect a performance impact", e);
+            return;
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Cannot translate URL to jar entry, expect a performance impact", e);
+            return;
+        }
+        if (jarFile != null) {
+            jarEntryIndex = JarEntryIndex.get(jarFile);
+        }
+    }
+
     private static File getFile(URL url) {
         try {
             return new File(new URI(url.toExternalForm()).getSchemeSpecificPart());
@@ -177,6 +274,8 @@ public class URLApplicationResource extends PostfixedApplicationResource {
     public InputStream getInputStream() throws IOException {
         if (file != null) {
             return new FileInputStream(file);
+        } else if (jarEntryIndex != null) {
+            return jarEntryIndex.getInputStream(jarEntryName, url);
         } else {
             return openConnection().getInputStream();
         }
@@ -187,6 +286,8 @@ public class URLApplicationResource extends PostfixedApplicationResource {
     public long getLastModified() throws IOException {
         if (file != null) {
             return file.lastModified();
+        } else if (jarEntryIndex != null) {
+            return jarEntryIndex.getLastModified(jarEntryName);
         } else {
             URLConnection connection = openConnection();
             if (connection instanceof JarURLConnection) {
@@ -198,17 +299,118 @@ public class URLApplicationResource extends PostfixedApplicationResource {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public ByteBuffer getContent() throws IOException {
+        if (!local) {
+            return ByteBuffer.wrap(readFully()).asReadOnlyBuffer();
+        }
+        long lastModified = getLastModified();
+        if (file == null && lastModified == 0L) {
+            // the modification date is unknown, so the content cannot be cached
+            return ByteBuffer.wrap(readFully()).asReadOnlyBuffer();
+        }
+        CachedContent current = content;
+        if (current == null || current.lastModified != lastModified
+                || (file != null && current.buffer.capacity() != file.length())) {
+            current = new CachedContent(file != null && isMapped(file) ? map() : ByteBuffer.wrap(readFully()),
+                    lastModified);
+            content = current;
+        }
+        return current.buffer.asReadOnlyBuffer();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ReadableByteChannel openChannel() throws IOException {
+        if (file != null) {
+            return new FileInputStream(file).getChannel();
+        }
+        CachedContent current = content;
+        if (current != null && current.lastModified != 0L && current.lastModified == getLastModified()) {
+            ByteBuffer buffer = current.buffer;
+            return Channels.newChannel(new ByteArrayInputStream(buffer.array(),
+                    buffer.arrayOffset(), buffer.capacity()));
+        }
+        return Channels.newChannel(getInputStream());
+    }
+
+    /**
+     * Maps the file of this resource in memory. Only used for the files in
+     * the directories returned by {@link #initMappedDirectories()}.
+     *
+     * @return The mapped content.
+     * @throws IOException If the file cannot be read.
+     */
+    private ByteBuffer map() throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads the whole content of this resource.
+     *
+     * @return The content.
+     * @throws IOException If the content cannot be read.
+     */
+    private byte[] readFully() throws IOException {
+        InputStream stream = getInputStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = stream.read(chunk)) >= 0) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
         return "Resource " + getLocalePath() + " at " + url.toString();
     }
 
-    protected URL getURL(){
+    /**
+     * Returns the URL where the contents can be found.
+     *
+     * @return The URL.
+     */
+    public URL getURL(){
         return url;
     }
 
     protected File getFile(){
         return file;
     }
+
+    /**
+     * The content of a resource, with the modification date it refers to.
+     */
+    private static final class CachedContent {
+
+        /** the content. */
+        private final ByteBuffer buffer;
+        /** the last modification date of the resource when it was read. */
+        private final long lastModified;
+
+        /**
+         * Constructor.
+         *
+         * @param buffer the content.
+         * @param lastModified the last modification date of the resource.
+         */
+        private CachedContent(ByteBuffer buffer, long lastModified) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+        }
+    }
 }
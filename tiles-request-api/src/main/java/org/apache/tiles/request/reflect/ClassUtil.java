@@ -23,7 +23,18 @@ package org.apache.tiles.request.reflect;
 import java.beans.BeanInfo;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,11 +42,85 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Utilities to work with dynamic class loading and instantiation.
+ * <p>
+ * Loaded classes are cached per class loader, with weak references to the
+ * class loaders, so that redeployed applications can be garbage collected.
+ * Missing class names are remembered for a minute.
+ * </p>
+ * <p>
+ * Default constructors, bean infos and property accessors are cached per
+ * class, attached to the class itself. A value attached to a class keeps the
+ * class loader of ClassUtil alive as long as the class lives, so only the
+ * classes loaded by that class loader, or by one of its descendants, are
+ * cached: classes of parent class loaders, such as the ones of the JDK or of
+ * the container, are inspected at every call.
+ * </p>
  *
  * @version $Rev$ $Date$
  */
 public final class ClassUtil {
 
+    /**
+     * The maximum number of missing class names remembered per class loader.
+     */
+    private static final int MAX_MISSING_CLASSES = 1024;
+
+    /**
+     * The time, in milliseconds, during which a missing class name is remembered.
+     */
+    private static final long MISSING_CLASS_TTL = 60000L;
+
+    /**
+     * The loaded classes, per class loader.
+     */
+    private static final ConcurrentMap<LoaderKey, LoaderCache> LOADER_CACHES =
+            new ConcurrentHashMap<LoaderKey, LoaderCache>();
+
+    /**
+     * The keys of {@link #LOADER_CACHES} whose class loader has been garbage collected.
+     */
+    private static final ReferenceQueue<ClassLoader> STALE_LOADERS = new ReferenceQueue<ClassLoader>();
+
+    /**
+     * The type of the default constructors, once adapted.
+     */
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    /**
+     * The default constructors, as method handles.
+     */
+    private static final ClassValue<Constructor> CONSTRUCTORS = new ClassValue<Constructor>() {
+
+        @Override
+        protected Constructor computeValue(Class<?> type) {
+            return new Constructor(type);
+        }
+    };
+
+    /**
+     * The property descriptors of the introspected classes, by property name.
+     */
+    private static final ClassValue<Map<String, PropertyDescriptor>> BEAN_INFOS =
+            new ClassValue<Map<String, PropertyDescriptor>>() {
+
+        @Override
+        protected Map<String, PropertyDescriptor> computeValue(Class<?> type) {
+            return introspect(type);
+        }
+    };
+
+    /**
+     * The property accessors of the introspected classes, by property name.
+     */
+    private static final ClassValue<Map<String, PropertyAccessor>> PROPERTY_ACCESSORS =
+            new ClassValue<Map<String, PropertyAccessor>>() {
+
+        @Override
+        protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+            return createAccessors(BEAN_INFOS.get(type));
+        }
+    };
+
     /**
      * Constructor, private to avoid instantiation.
      */
@@ -60,8 +145,14 @@ public final class ClassUtil {
         if (classLoader == null) {
             classLoader = ClassUtil.class.getClassLoader();
         }
-        return Class.forName(className, true, classLoader)
-                .asSubclass(baseClass);
+        LoaderCache cache = getLoaderCache(classLoader);
+        WeakReference<Class<?>> reference = cache.classes.get(className);
+        Class<?> namedClass = reference != null ? reference.get() : null;
+        if (namedClass == null) {
+            namedClass = Class.forName(className, true, classLoader);
+            cache.classes.put(className, new WeakReference<Class<?>>(namedClass));
+        }
+        return namedClass.asSubclass(baseClass);
     }
 
     /**
@@ -93,11 +184,25 @@ public final class ClassUtil {
         if (classLoader == null) {
             classLoader = ClassUtil.class.getClassLoader();
         }
+        LoaderCache cache = null;
+        if (returnNull) {
+            cache = getLoaderCache(classLoader);
+            Long missingSince = cache.missing.get(className);
+            if (missingSince != null) {
+                if (System.currentTimeMillis() - missingSince < MISSING_CLASS_TTL) {
+                    return null;
+                }
+                cache.missing.remove(className, missingSince);
+            }
+        }
         try {
             Class<? extends Object> namedClass = getClass(className, Object.class);
-            return namedClass.newInstance();
+            return getConstructor(namedClass).newInstance();
         } catch (ClassNotFoundException e) {
             if (returnNull) {
+                if (cache.missing.size() < MAX_MISSING_CLASSES) {
+                    cache.missing.put(className, System.currentTimeMillis());
+                }
                 return null;
             }
             throw new CannotInstantiateObjectException(
@@ -114,8 +219,73 @@ public final class ClassUtil {
         }
     }
 
+    /**
+     * Drops the cached classes and the remembered missing class names of all
+     * the class loaders.
+     */
+    public static void clearCache() {
+        LOADER_CACHES.clear();
+    }
+
+    /**
+     * Returns the cache of a class loader, creating it if needed.
+     *
+     * @param classLoader The class loader.
+     * @return The cache.
+     */
+    private static LoaderCache getLoaderCache(ClassLoader classLoader) {
+        LoaderCache retValue = LOADER_CACHES.get(new LoaderKey(classLoader, null));
+        if (retValue == null) {
+            for (Reference<? extends ClassLoader> stale = STALE_LOADERS.poll(); stale != null;
+                    stale = STALE_LOADERS.poll()) {
+                LOADER_CACHES.remove(stale);
+            }
+            LoaderCache cache = new LoaderCache();
+            retValue = LOADER_CACHES.putIfAbsent(new LoaderKey(classLoader, STALE_LOADERS), cache);
+            if (retValue == null) {
+                retValue = cache;
+            }
+        }
+        return retValue;
+    }
+
+    /**
+     * Returns the default constructor of a class, cached if the class can be
+     * cached safely.
+     *
+     * @param type The class.
+     * @return The constructor.
+     * @see #isCacheable(Class)
+     */
+    private static Constructor getConstructor(Class<?> type) {
+        return isCacheable(type) ? CONSTRUCTORS.get(type) : new Constructor(type);
+    }
+
+    /**
+     * Checks if values can be attached to a class without keeping the class
+     * loader of ClassUtil alive longer than it: the class must be loaded by
+     * that class loader, or by one of its descendants.
+     *
+     * @param type The class.
+     * @return <code>true</code> if values can be attached to the class.
+     */
+    private static boolean isCacheable(Class<?> type) {
+        ClassLoader ownLoader = ClassUtil.class.getClassLoader();
+        if (ownLoader == null) {
+            return true;
+        }
+        for (ClassLoader loader = type.getClassLoader(); loader != null; loader = loader.getParent()) {
+            if (loader == ownLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Collects bean infos from a class and filling a list.
+     * Classes that can be cached safely are introspected once: the
+     * descriptors are shared between calls and must not be modified.
      *
      * @param clazz The class to be inspected.
      * @param name2descriptor The map in the form: name of the property ->
@@ -123,6 +293,44 @@ public final class ClassUtil {
      */
     public static void collectBeanInfo(Class<?> clazz,
             Map<String, PropertyDescriptor> name2descriptor) {
+        name2descriptor.putAll(isCacheable(clazz) ? BEAN_INFOS.get(clazz) : introspect(clazz));
+    }
+
+    /**
+     * Returns the accessors of the properties of a class, that read and write
+     * properties through method handles instead of reflection.
+     *
+     * @param clazz The class to be inspected.
+     * @return The immutable map in the form: name of the property -> accessor.
+     */
+    public static Map<String, PropertyAccessor> getPropertyAccessors(Class<?> clazz) {
+        if (isCacheable(clazz)) {
+            return PROPERTY_ACCESSORS.get(clazz);
+        }
+        return createAccessors(introspect(clazz));
+    }
+
+    /**
+     * Creates the accessors of properties.
+     *
+     * @param name2descriptor The descriptors of the properties, by name.
+     * @return The immutable map in the form: name of the property -> accessor.
+     */
+    private static Map<String, PropertyAccessor> createAccessors(Map<String, PropertyDescriptor> name2descriptor) {
+        Map<String, PropertyAccessor> accessors = new HashMap<String, PropertyAccessor>();
+        for (PropertyDescriptor descriptor : name2descriptor.values()) {
+            accessors.put(descriptor.getName(), new PropertyAccessor(descriptor));
+        }
+        return Collections.unmodifiableMap(accessors);
+    }
+
+    /**
+     * Introspects a class.
+     *
+     * @param clazz The class to be inspected.
+     * @return The immutable map in the form: name of the property -> descriptor.
+     */
+    private static Map<String, PropertyDescriptor> introspect(Class<?> clazz) {
         Logger log = LoggerFactory.getLogger(ClassUtil.class);
         BeanInfo info = null;
         try {
@@ -133,12 +341,147 @@ public final class ClassUtil {
             }
         }
         if (info == null) {
-            return;
+            return Collections.emptyMap();
         }
+        Map<String, PropertyDescriptor> name2descriptor = new HashMap<String, PropertyDescriptor>();
         for (PropertyDescriptor pd : info.getPropertyDescriptors()) {
             pd.setValue("type", pd.getPropertyType());
             pd.setValue("resolvableAtDesignTime", Boolean.TRUE);
             name2descriptor.put(pd.getName(), pd);
         }
+        return Collections.unmodifiableMap(name2descriptor);
+    }
+
+    /**
+     * The classes loaded through a class loader. Classes are weakly
+     * referenced, so that they do not keep their class loader alive.
+     */
+    private static final class LoaderCache {
+
+        /**
+         * The loaded classes, by name.
+         */
+        private final ConcurrentMap<String, WeakReference<Class<?>>> classes =
+                new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+
+        /**
+         * The names of the classes that could not be found, with the time
+         * when they were looked for.
+         */
+        private final ConcurrentMap<String, Long> missing = new ConcurrentHashMap<String, Long>();
+    }
+
+    /**
+     * A weak reference to a class loader, compared by identity.
+     */
+    private static final class LoaderKey extends WeakReference<ClassLoader> {
+
+        /**
+         * The identity hash code of the class loader.
+         */
+        private final int hash;
+
+        /**
+         * Constructor.
+         *
+         * @param classLoader The class loader.
+         * @param queue The queue to register with, or <code>null</code> for lookups.
+         */
+        private LoaderKey(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+            hash = System.identityHashCode(classLoader);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof LoaderKey)) {
+                return false;
+            }
+            ClassLoader classLoader = get();
+            return classLoader != null && classLoader == ((LoaderKey) obj).get();
+        }
+    }
+
+    /**
+     * The default constructor of a class, or the reason why it cannot be used.
+     */
+    private static final class Constructor {
+
+        /**
+         * The class to instantiate.
+         */
+        private final Class<?> type;
+
+        /**
+         * The constructor, adapted to return an object, or <code>null</code>.
+         */
+        private final MethodHandle handle;
+
+        /**
+         * Why the class cannot be instantiated, or <code>null</code>.
+         */
+        private final ReflectiveOperationException error;
+
+        /**
+         * Constructor.
+         *
+         * @param type The class to instantiate.
+         */
+        private Constructor(Class<?> type) {
+            MethodHandle constructor = null;
+            ReflectiveOperationException exception = null;
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                exception = new InstantiationException(type.getName());
+            } else {
+                try {
+                    constructor = MethodHandles.publicLookup()
+                            .findConstructor(type, MethodType.methodType(void.class))
+                            .asType(CONSTRUCTOR_TYPE);
+                } catch (NoSuchMethodException e) {
+                    exception = (InstantiationException) new InstantiationException(type.getName()).initCause(e);
+                } catch (IllegalAccessException e) {
+                    exception = e;
+                }
+            }
+            this.type = type;
+            this.handle = constructor;
+            this.error = exception;
+        }
+
+        /**
+         * Creates a new instance.
+         *
+         * @return The new instance.
+         * @throws InstantiationException If the class has no default constructor.
+         * @throws IllegalAccessException If the constructor is not accessible.
+         */
+        private Object newInstance() throws InstantiationException, IllegalAccessException {
+            // new exceptions at every call, so that stack traces are accurate
+            if (error instanceof InstantiationException) {
+                throw (InstantiationException) new InstantiationException(error.getMessage()).initCause(error);
+            } else if (error instanceof IllegalAccessException) {
+                throw (IllegalAccessException) new IllegalAccessException(error.getMessage()).initCause(error);
+            }
+            try {
+                return (Object) handle.invokeExact();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new CannotInstantiateObjectException("Exception while instantiating "
+                        + type.getName(), e);
+            }
+        }
     }
 }
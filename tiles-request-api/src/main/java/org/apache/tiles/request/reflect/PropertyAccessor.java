@@ -0,0 +1,190 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.reflect;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Reads and writes a bean property through method handles, avoiding the
+ * overhead of {@link Method#invoke(Object, Object...)} at every access.
+ * Instances are obtained through {@link ClassUtil#getPropertyAccessors(Class)}.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class PropertyAccessor {
+
+    /**
+     * The type of getters, once adapted.
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * The type of setters, once adapted.
+     */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * The name of the property.
+     */
+    private final String name;
+
+    /**
+     * The type of the property.
+     */
+    private final Class<?> propertyType;
+
+    /**
+     * The getter, or <code>null</code> if the property cannot be read.
+     */
+    private final MethodHandle getter;
+
+    /**
+     * The setter, or <code>null</code> if the property cannot be written.
+     */
+    private final MethodHandle setter;
+
+    /**
+     * Constructor.
+     *
+     * @param descriptor The descriptor of the property.
+     */
+    PropertyAccessor(PropertyDescriptor descriptor) {
+        name = descriptor.getName();
+        propertyType = descriptor.getPropertyType();
+        MethodHandle readHandle = unreflect(descriptor.getReadMethod());
+        getter = readHandle != null ? readHandle.asType(GETTER_TYPE) : null;
+        MethodHandle writeHandle = unreflect(descriptor.getWriteMethod());
+        setter = writeHandle != null ? writeHandle.asType(SETTER_TYPE) : null;
+    }
+
+    /**
+     * Returns the name of the property.
+     *
+     * @return The name of the property.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the type of the property.
+     *
+     * @return The type of the property, or <code>null</code> for indexed
+     * properties without a non-indexed accessor.
+     */
+    public Class<?> getPropertyType() {
+        return propertyType;
+    }
+
+    /**
+     * Checks if the property can be read.
+     *
+     * @return <code>true</code> if the property has an accessible getter.
+     */
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    /**
+     * Checks if the property can be written.
+     *
+     * @return <code>true</code> if the property has an accessible setter.
+     */
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    /**
+     * Reads the property.
+     *
+     * @param bean The bean to read.
+     * @return The value of the property.
+     * @throws CannotAccessMethodException If the property cannot be read, or
+     * if the getter throws a checked exception.
+     */
+    public Object getValue(Object bean) {
+        if (getter == null) {
+            throw new CannotAccessMethodException("Property '" + name + "' is not readable");
+        }
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new CannotAccessMethodException("Unable to read property '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Writes the property.
+     *
+     * @param bean The bean to write.
+     * @param value The new value of the property.
+     * @throws CannotAccessMethodException If the property cannot be written,
+     * or if the setter throws a checked exception.
+     */
+    public void setValue(Object bean, Object value) {
+        if (setter == null) {
+            throw new CannotAccessMethodException("Property '" + name + "' is not writable");
+        }
+        try {
+            setter.invokeExact(bean, value);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new CannotAccessMethodException("Unable to write property '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Converts a method to a method handle. Public methods of non-public
+     * classes are made accessible first.
+     *
+     * @param method The method. It can be <code>null</code>.
+     * @return The method handle, or <code>null</code> if the method is
+     * <code>null</code> or cannot be accessed.
+     */
+    private static MethodHandle unreflect(Method method) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            try {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException e2) {
+                return null;
+            } catch (SecurityException e2) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.IOException;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+
+/**
+ * Returns resources whose {@link ApplicationResource#getLastModified()} is
+ * answered by a {@link ResourceChangeMonitor}, so that checking a resource for
+ * changes does not hit the file system every time.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ChangeMonitoringApplicationContext extends ResourceDecoratingApplicationContext {
+
+    /**
+     * The change monitor.
+     */
+    private ResourceChangeMonitor monitor;
+
+    /**
+     * Constructor.
+     *
+     * @param context The original context.
+     * @param monitor The change monitor.
+     */
+    public ChangeMonitoringApplicationContext(ApplicationContext context, ResourceChangeMonitor monitor) {
+        super(context);
+        this.monitor = monitor;
+    }
+
+    /**
+     * Returns the change monitor.
+     *
+     * @return The change monitor.
+     */
+    public ResourceChangeMonitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Decorates a resource, so that its modification date is read through the monitor.
+     *
+     * @param resource The resource.
+     * @return The decorated resource.
+     */
+    @Override
+    protected ApplicationResource decorate(ApplicationResource resource) {
+        return new MonitoredApplicationResource(resource, this);
+    }
+
+    /**
+     * A resource whose modification date is read through the monitor.
+     */
+    private static final class MonitoredApplicationResource extends DecoratedApplicationResource {
+
+        /**
+         * The change monitor.
+         */
+        private final ResourceChangeMonitor monitor;
+
+        /**
+         * Constructor.
+         *
+         * @param resource The wrapped resource.
+         * @param context The context that decorates the resource.
+         */
+        private MonitoredApplicationResource(ApplicationResource resource,
+                ChangeMonitoringApplicationContext context) {
+            super(resource, context);
+            this.monitor = context.monitor;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long getLastModified() throws IOException {
+            return monitor.getLastModified(getWrappedResource());
+        }
+    }
+}
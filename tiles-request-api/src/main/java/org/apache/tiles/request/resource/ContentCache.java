@@ -0,0 +1,302 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ChannelApplicationResource;
+
+/**
+ * A cache of the content of {@link ApplicationResource}s, bounded by the total
+ * number of cached bytes. The least recently used entries are evicted first.
+ * <p>
+ * Content can be kept in heap buffers or, in off-heap mode, in direct buffers,
+ * so that large sets of templates do not fill the old generation. Entries older
+ * than the revalidation interval are checked with
+ * {@link ApplicationResource#getLastModified()} and read again if the
+ * resource changed.
+ * </p>
+ * <p>
+ * Resources are read through their channels or streams, never through
+ * {@link ChannelApplicationResource#getContent()}, so that they do not keep
+ * their own copy of the content. Files are read straight into the buffer of
+ * the entry.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class ContentCache {
+
+    /**
+     * The size of the chunks used to read resources.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The cached entries, in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * The maximum number of cached bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * The maximum size of a single cached resource.
+     */
+    private final long maxEntryBytes;
+
+    /**
+     * The revalidation interval, in milliseconds.
+     */
+    private final long revalidateInterval;
+
+    /**
+     * Whether content is kept in direct buffers.
+     */
+    private final boolean offHeap;
+
+    /**
+     * The number of cached bytes.
+     */
+    private long cachedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes The maximum number of cached bytes.
+     * @param maxEntryBytes The maximum size of a single cached resource. Bigger
+     * resources are read at every access.
+     * @param revalidateInterval The interval, in milliseconds, after which an
+     * entry is checked again. Negative values disable revalidation.
+     * @param offHeap If <code>true</code>, content is kept in direct buffers.
+     */
+    public ContentCache(long maxBytes, long maxEntryBytes, long revalidateInterval, boolean offHeap) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.revalidateInterval = revalidateInterval;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns the content of a resource, reading it if it is not cached or if
+     * it changed.
+     *
+     * @param resource The resource.
+     * @return The content, as a new read-only buffer positioned at its beginning.
+     * @throws IOException If the resource cannot be read.
+     */
+    public ByteBuffer get(ApplicationResource resource) throws IOException {
+        String key = resource.getLocalePath();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        long now = System.currentTimeMillis();
+        if (entry != null && (revalidateInterval < 0 || now - entry.checkedAt < revalidateInterval)) {
+            return entry.buffer.asReadOnlyBuffer();
+        }
+        long lastModified = revalidateInterval >= 0 ? resource.getLastModified() : -1L;
+        if (entry != null && lastModified == entry.lastModified) {
+            entry.checkedAt = now;
+            return entry.buffer.asReadOnlyBuffer();
+        }
+        ByteBuffer buffer = read(resource);
+        if (buffer.remaining() > maxEntryBytes) {
+            invalidate(key);
+            return buffer.asReadOnlyBuffer();
+        }
+        if (buffer.isDirect() != offHeap || buffer.capacity() != buffer.remaining()) {
+            ByteBuffer copy = allocate(buffer.remaining());
+            copy.put(buffer);
+            copy.flip();
+            buffer = copy;
+        }
+        put(key, new Entry(buffer, lastModified, now));
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param localePath The locale path of the resource.
+     */
+    public void invalidate(String localePath) {
+        synchronized (entries) {
+            Entry entry = entries.remove(localePath);
+            if (entry != null) {
+                cachedBytes -= entry.buffer.capacity();
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    /**
+     * Returns the number of cached resources.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of cached bytes.
+     *
+     * @return The number of bytes.
+     */
+    public long getCachedBytes() {
+        synchronized (entries) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * Stores an entry, evicting the least recently used ones if needed.
+     *
+     * @param key The key of the entry.
+     * @param entry The entry.
+     */
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                cachedBytes -= previous.buffer.capacity();
+            }
+            cachedBytes += entry.buffer.capacity();
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (cachedBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (eldest.getValue() != entry) {
+                    cachedBytes -= eldest.getValue().buffer.capacity();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the whole content of a resource. Files that can be cached are
+     * read straight into a buffer of the right kind and size.
+     *
+     * @param resource The resource.
+     * @return The content.
+     * @throws IOException If the resource cannot be read.
+     */
+    private ByteBuffer read(ApplicationResource resource) throws IOException {
+        ReadableByteChannel channel;
+        if (resource instanceof ChannelApplicationResource) {
+            channel = ((ChannelApplicationResource) resource).openChannel();
+        } else {
+            channel = Channels.newChannel(resource.getInputStream());
+        }
+        try {
+            if (channel instanceof FileChannel) {
+                long size = ((FileChannel) channel).size();
+                if (size <= maxEntryBytes) {
+                    ByteBuffer buffer = allocate((int) size);
+                    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                        // Read until the buffer is full or the file ends.
+                    }
+                    buffer.flip();
+                    return buffer;
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            while (channel.read(chunk) >= 0) {
+                out.write(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Allocates a buffer for an entry.
+     *
+     * @param capacity The capacity of the buffer.
+     * @return A direct buffer in off-heap mode, a heap buffer otherwise.
+     */
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static final class Entry {
+
+        /**
+         * The content.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * The last modification date of the resource when it was read.
+         */
+        private final long lastModified;
+
+        /**
+         * When the entry was last checked.
+         */
+        private volatile long checkedAt;
+
+        /**
+         * Constructor.
+         *
+         * @param buffer The content.
+         * @param lastModified The last modification date of the resource.
+         * @param checkedAt When the entry was checked.
+         */
+        private Entry(ByteBuffer buffer, long lastModified, long checkedAt) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+
+/**
+ * Serves the content of the resources of the wrapped application context from
+ * a {@link ContentCache}. Resolution of resources is still performed by the
+ * wrapped context; only reading their content is cached.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ContentCachingApplicationContext extends ResourceDecoratingApplicationContext {
+
+    /**
+     * The content cache.
+     */
+    private ContentCache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param context The original context.
+     * @param cache The content cache.
+     */
+    public ContentCachingApplicationContext(ApplicationContext context, ContentCache cache) {
+        super(context);
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the content cache.
+     *
+     * @return The content cache.
+     */
+    public ContentCache getContentCache() {
+        return cache;
+    }
+
+    /**
+     * Decorates a resource, so that its content is read through the cache.
+     *
+     * @param resource The resource.
+     * @return The decorated resource.
+     */
+    @Override
+    protected ApplicationResource decorate(ApplicationResource resource) {
+        return new CachedApplicationResource(resource, this);
+    }
+
+    /**
+     * A resource whose content is read through the cache.
+     */
+    private static final class CachedApplicationResource extends DecoratedApplicationResource {
+
+        /**
+         * The content cache.
+         */
+        private final ContentCache cache;
+
+        /**
+         * Constructor.
+         *
+         * @param resource The wrapped resource.
+         * @param context The context that decorates the resource.
+         */
+        private CachedApplicationResource(ApplicationResource resource, ContentCachingApplicationContext context) {
+            super(resource, context);
+            this.cache = context.cache;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteBufferInputStream(cache.get(getWrappedResource()));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ByteBuffer getContent() throws IOException {
+            return cache.get(getWrappedResource());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReadableByteChannel openChannel() throws IOException {
+            return Channels.newChannel(getInputStream());
+        }
+    }
+
+    /**
+     * An input stream that reads a buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        /**
+         * The buffer to read.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructor.
+         *
+         * @param buffer The buffer to read.
+         */
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ChannelApplicationResource;
+import org.apache.tiles.request.Request;
+import org.apache.tiles.request.attribute.Addable;
+
+/**
+ * Computes and caches content hashes ("fingerprints") of
+ * {@link ApplicationResource}s. A fingerprint is computed once and kept with
+ * the modification date of the resource, and computed again only when
+ * {@link ApplicationResource#getLastModified()} changes. Resources whose
+ * modification date is unknown are hashed at every call.
+ * <p>
+ * Content is streamed through the digest, using
+ * {@link ChannelApplicationResource#openChannel()} when available, so whole
+ * resources are never loaded in memory.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class ContentFingerprinter {
+
+    /**
+     * The default digest algorithm.
+     */
+    public static final String DEFAULT_ALGORITHM = "MD5";
+
+    /**
+     * The default maximum number of cached fingerprints.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /**
+     * The number of characters of a fingerprint used in fingerprinted paths.
+     */
+    private static final int PATH_FINGERPRINT_LENGTH = 10;
+
+    /**
+     * The max age of fingerprinted resources, in seconds: one year.
+     */
+    private static final long IMMUTABLE_MAX_AGE = 31536000L;
+
+    /**
+     * The size of the buffer used to read resources.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The characters used in hexadecimal fingerprints.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The cached fingerprints, in access order.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * The digest algorithm.
+     */
+    private final String algorithm;
+
+    /**
+     * Constructor, with default size and algorithm.
+     */
+    public ContentFingerprinter() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_ALGORITHM);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum number of cached fingerprints.
+     * @param algorithm The name of the {@link MessageDigest} algorithm.
+     */
+    public ContentFingerprinter(final int maxSize, String algorithm) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        this.algorithm = algorithm;
+        newDigest();
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the fingerprint of a resource, computing it if it is not cached
+     * or if the resource changed.
+     *
+     * @param resource The resource.
+     * @return The fingerprint, in hexadecimal.
+     * @throws IOException If the resource cannot be read.
+     */
+    public String getFingerprint(ApplicationResource resource) throws IOException {
+        String key = resource.getLocalePath();
+        long lastModified = resource.getLastModified();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && lastModified != 0L && entry.lastModified == lastModified) {
+            return entry.fingerprint;
+        }
+        String fingerprint = hash(resource);
+        if (lastModified != 0L) {
+            synchronized (entries) {
+                entries.put(key, new Entry(fingerprint, lastModified));
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the locale path of a resource with its fingerprint inserted
+     * before the extension, e.g. <code>/css/site.0123456789.css</code>.
+     *
+     * @param resource The resource.
+     * @return The fingerprinted path.
+     * @throws IOException If the resource cannot be read.
+     */
+    public String getFingerprintedPath(ApplicationResource resource) throws IOException {
+        String path = resource.getLocalePath();
+        String fingerprint = getFingerprint(resource);
+        if (fingerprint.length() > PATH_FINGERPRINT_LENGTH) {
+            fingerprint = fingerprint.substring(0, PATH_FINGERPRINT_LENGTH);
+        }
+        int suffixIndex = path.lastIndexOf('.');
+        if (suffixIndex < 0 || suffixIndex < path.lastIndexOf('/')) {
+            return path + "." + fingerprint;
+        }
+        return path.substring(0, suffixIndex) + "." + fingerprint + path.substring(suffixIndex);
+    }
+
+    /**
+     * Adds the response headers of a fingerprinted resource: a strong
+     * <code>ETag</code> and an immutable, long-lived <code>Cache-Control</code>.
+     *
+     * @param request The request whose response receives the headers.
+     * @param fingerprint The fingerprint of the served resource.
+     */
+    public static void setImmutableHeaders(Request request, String fingerprint) {
+        Addable<String> headers = request.getResponseHeaders();
+        headers.setValue("ETag", "\"" + fingerprint + "\"");
+        headers.setValue("Cache-Control", "public, max-age=" + IMMUTABLE_MAX_AGE + ", immutable");
+    }
+
+    /**
+     * Removes a cached fingerprint.
+     *
+     * @param localePath The locale path of the resource.
+     */
+    public void invalidate(String localePath) {
+        synchronized (entries) {
+            entries.remove(localePath);
+        }
+    }
+
+    /**
+     * Removes all the cached fingerprints.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached fingerprints.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Hashes the content of a resource.
+     *
+     * @param resource The resource.
+     * @return The hash, in hexadecimal.
+     * @throws IOException If the resource cannot be read.
+     */
+    private String hash(ApplicationResource resource) throws IOException {
+        MessageDigest digest = newDigest();
+        ReadableByteChannel channel;
+        if (resource instanceof ChannelApplicationResource) {
+            channel = ((ChannelApplicationResource) resource).openChannel();
+        } else {
+            channel = Channels.newChannel(resource.getInputStream());
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        byte[] hash = digest.digest();
+        char[] retValue = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            retValue[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            retValue[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(retValue);
+    }
+
+    /**
+     * Creates a digest of the configured algorithm.
+     *
+     * @return The digest.
+     */
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown digest algorithm " + algorithm, e);
+        }
+    }
+
+    /**
+     * A cached fingerprint.
+     */
+    private static final class Entry {
+
+        /**
+         * The fingerprint.
+         */
+        private final String fingerprint;
+
+        /**
+         * The last modification date of the resource when it was hashed.
+         */
+        private final long lastModified;
+
+        /**
+         * Constructor.
+         *
+         * @param fingerprint The fingerprint.
+         * @param lastModified The last modification date of the resource.
+         */
+        private Entry(String fingerprint, long lastModified) {
+            this.fingerprint = fingerprint;
+            this.lastModified = lastModified;
+        }
+    }
+}
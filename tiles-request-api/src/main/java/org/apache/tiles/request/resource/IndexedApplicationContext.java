@@ -0,0 +1,71 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationContextWrapper;
+import org.apache.tiles.request.ApplicationResource;
+
+/**
+ * Resolves localized versions of resources through a
+ * {@link LocalizedResourceIndex}. Resources whose path is not indexed are
+ * resolved by the wrapped application context.
+ *
+ * @version $Rev$ $Date$
+ */
+public class IndexedApplicationContext extends ApplicationContextWrapper {
+
+    /**
+     * The index of localized resources.
+     */
+    private LocalizedResourceIndex index;
+
+    /**
+     * Constructor.
+     *
+     * @param context The original context.
+     * @param index The index of localized resources. It should already be built.
+     */
+    public IndexedApplicationContext(ApplicationContext context, LocalizedResourceIndex index) {
+        super(context);
+        this.index = index;
+    }
+
+    /**
+     * Returns the index of localized resources.
+     *
+     * @return The index.
+     */
+    public LocalizedResourceIndex getIndex() {
+        return index;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ApplicationResource getResource(ApplicationResource base, Locale locale) {
+        if (index.isIndexed(base.getPath())) {
+            return index.getResource(base.getPath(), locale);
+        }
+        return super.getResource(base, locale);
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.Request;
+import org.apache.tiles.request.locale.LocaleUtil;
+
+/**
+ * Chooses the best locale for a request among the available ones, using all
+ * the language ranges of the <code>Accept-Language</code> header with their
+ * quality values.
+ * <p>
+ * Each range is matched with its fallback chain, as returned by
+ * {@link LocaleUtil#getFallbackChain(Locale)}: <code>fr-CA</code> matches a
+ * <code>fr_CA</code> variant first, then a <code>fr</code> variant. Ranges are
+ * tried in decreasing quality order. Parsed headers, and the results of
+ * negotiations against a {@link LocalizedResourceIndex}, are memoized by raw
+ * header string; when the memo is full, the least recently used entry is
+ * removed.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocaleNegotiator {
+
+    /**
+     * The name of the negotiated header.
+     */
+    public static final String ACCEPT_LANGUAGE = "Accept-Language";
+
+    /**
+     * The default maximum number of memoized headers.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * Sorts weighted ranges by decreasing quality. The sort is stable, so
+     * ranges with the same quality keep the order of the header.
+     */
+    private static final Comparator<WeightedLocale> BY_QUALITY = new Comparator<WeightedLocale>() {
+
+        @Override
+        public int compare(WeightedLocale o1, WeightedLocale o2) {
+            return Float.compare(o2.quality, o1.quality);
+        }
+    };
+
+    /**
+     * The parsed headers, as locales in preference order, the least recently
+     * used first.
+     */
+    private final Map<String, List<Locale>> preferences;
+
+    /**
+     * The results of the negotiations of indexed resources, keyed by header
+     * and path, the least recently used first.
+     */
+    private final Map<String, Negotiation> negotiations;
+
+    /**
+     * The maximum number of memoized headers, and of memoized negotiations.
+     */
+    private final int maxSize;
+
+    /**
+     * Constructor, with default size.
+     */
+    public LocaleNegotiator() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum number of memoized headers. When it is
+     * reached, the least recently used header is forgotten.
+     */
+    public LocaleNegotiator(int maxSize) {
+        this.maxSize = maxSize;
+        preferences = new LinkedHashMap<String, List<Locale>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Locale>> eldest) {
+                return size() > LocaleNegotiator.this.maxSize;
+            }
+        };
+        negotiations = new LinkedHashMap<String, Negotiation>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Negotiation> eldest) {
+                return size() > LocaleNegotiator.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the locales of an <code>Accept-Language</code> header, in
+     * preference order. Ranges with a quality of 0 and the <code>*</code>
+     * range are ignored.
+     *
+     * @param header The header value. It can be <code>null</code>.
+     * @return The immutable list of locales.
+     */
+    public List<Locale> getPreferredLocales(String header) {
+        if (header == null) {
+            return Collections.emptyList();
+        }
+        List<Locale> retValue;
+        synchronized (preferences) {
+            retValue = preferences.get(header);
+        }
+        if (retValue == null) {
+            retValue = parse(header);
+            synchronized (preferences) {
+                preferences.put(header, retValue);
+            }
+        }
+        return retValue;
+    }
+
+    /**
+     * Chooses the best available locale for a header.
+     *
+     * @param header The <code>Accept-Language</code> header. It can be <code>null</code>.
+     * @param available The available locales.
+     * @return The best locale, or <code>null</code> if none matches.
+     */
+    public Locale negotiate(String header, Collection<Locale> available) {
+        return match(getPreferredLocales(header), available);
+    }
+
+    /**
+     * Chooses the best available locale for a request. If the request has no
+     * <code>Accept-Language</code> header, its locale is used.
+     *
+     * @param request The request.
+     * @param available The available locales.
+     * @return The best locale, or <code>null</code> if none matches.
+     */
+    public Locale negotiate(Request request, Collection<Locale> available) {
+        String header = request.getHeader().get(ACCEPT_LANGUAGE);
+        if (header == null) {
+            Locale locale = request.getRequestLocale();
+            if (locale == null) {
+                return null;
+            }
+            return match(Collections.singletonList(locale), available);
+        }
+        return negotiate(header, available);
+    }
+
+    /**
+     * Chooses the best localized variant of an indexed resource for a
+     * request. If no variant matches, the non-localized one is returned.
+     *
+     * @param request The request.
+     * @param index The index of localized resources.
+     * @param path The path of the resource, without locale postfix.
+     * @return The best variant, or <code>null</code> if the resource is not indexed.
+     */
+    public ApplicationResource negotiate(Request request, LocalizedResourceIndex index, String path) {
+        Map<Locale, ApplicationResource> variants = index.getVariants(path);
+        String header = request.getHeader().get(ACCEPT_LANGUAGE);
+        Locale locale;
+        if (header == null) {
+            locale = negotiate(request, variants.keySet());
+        } else {
+            String key = header + '\u0000' + path;
+            Negotiation negotiation;
+            synchronized (negotiations) {
+                negotiation = negotiations.get(key);
+            }
+            // variants are replaced, not modified, when the index changes
+            if (negotiation != null && negotiation.variants == variants) {
+                locale = negotiation.locale;
+            } else {
+                locale = negotiate(header, variants.keySet());
+                synchronized (negotiations) {
+                    negotiations.put(key, new Negotiation(variants, locale));
+                }
+            }
+        }
+        return variants.get(locale != null ? locale : Locale.ROOT);
+    }
+
+    /**
+     * Removes all the memoized headers and negotiations.
+     */
+    public void clear() {
+        synchronized (preferences) {
+            preferences.clear();
+        }
+        synchronized (negotiations) {
+            negotiations.clear();
+        }
+    }
+
+    /**
+     * Matches locales in preference order against the available ones.
+     *
+     * @param preferred The locales, in preference order.
+     * @param available The available locales.
+     * @return The first available locale in the fallback chains of the
+     * preferred locales, or <code>null</code>.
+     */
+    private static Locale match(List<Locale> preferred, Collection<Locale> available) {
+        for (Locale locale : preferred) {
+            for (Locale candidate : LocaleUtil.getFallbackChain(locale)) {
+                if (!Locale.ROOT.equals(candidate) && available.contains(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses an <code>Accept-Language</code> header.
+     *
+     * @param header The header value.
+     * @return The immutable list of locales, in preference order.
+     */
+    private static List<Locale> parse(String header) {
+        List<WeightedLocale> ranges = new ArrayList<WeightedLocale>();
+        for (String range : header.split(",")) {
+            String tag = range;
+            float quality = 1f;
+            int parametersIndex = range.indexOf(';');
+            if (parametersIndex >= 0) {
+                tag = range.substring(0, parametersIndex);
+                quality = parseQuality(range.substring(parametersIndex + 1));
+            }
+            tag = tag.trim();
+            if (quality > 0f && tag.length() > 0 && !"*".equals(tag)) {
+                Locale locale = Locale.forLanguageTag(tag);
+                if (!"".equals(locale.getLanguage())) {
+                    ranges.add(new WeightedLocale(new Locale(locale.getLanguage(),
+                            locale.getCountry(), locale.getVariant()), quality));
+                }
+            }
+        }
+        Collections.sort(ranges, BY_QUALITY);
+        List<Locale> retValue = new ArrayList<Locale>(ranges.size());
+        for (WeightedLocale range : ranges) {
+            if (!retValue.contains(range.locale)) {
+                retValue.add(range.locale);
+            }
+        }
+        return Collections.unmodifiableList(retValue);
+    }
+
+    /**
+     * Parses the parameters of a language range, looking for its quality.
+     *
+     * @param parameters The parameters, e.g. <code>q=0.8</code>.
+     * @return The quality. Malformed qualities are treated as 0.
+     */
+    private static float parseQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    float quality = Float.parseFloat(trimmed.substring(2).trim());
+                    return quality > 1f ? 1f : quality;
+                } catch (NumberFormatException e) {
+                    return 0f;
+                }
+            }
+        }
+        return 1f;
+    }
+
+    /**
+     * A locale with its quality.
+     */
+    private static final class WeightedLocale {
+
+        /**
+         * The locale.
+         */
+        private final Locale locale;
+
+        /**
+         * The quality.
+         */
+        private final float quality;
+
+        /**
+         * Constructor.
+         *
+         * @param locale The locale.
+         * @param quality The quality.
+         */
+        private WeightedLocale(Locale locale, float quality) {
+            this.locale = locale;
+            this.quality = quality;
+        }
+    }
+
+    /**
+     * The memoized result of a negotiation.
+     */
+    private static final class Negotiation {
+
+        /**
+         * The variants the negotiation was made against.
+         */
+        private final Map<Locale, ApplicationResource> variants;
+
+        /**
+         * The chosen locale, or <code>null</code>.
+         */
+        private final Locale locale;
+
+        /**
+         * Constructor.
+         *
+         * @param variants The variants the negotiation was made against.
+         * @param locale The chosen locale, or <code>null</code>.
+         */
+        private Negotiation(Map<Locale, ApplicationResource> variants, Locale locale) {
+            this.variants = variants;
+            this.locale = locale;
+        }
+    }
+}
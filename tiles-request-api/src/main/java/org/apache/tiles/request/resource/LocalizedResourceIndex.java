@@ -0,0 +1,451 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ApplicationResourceWrapper;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the resources matching a set of patterns, grouped by path with
+ * all their localized variants, as parsed by
+ * {@link org.apache.tiles.request.locale.PostfixedApplicationResource}.
+ * Once built, finding a localized variant of an indexed resource is a hash
+ * lookup, and missing variants are detected without probing the container.
+ * <p>
+ * Resources are enumerated through {@link ApplicationContext#getResources(String)},
+ * so patterns are only supported by wildcard-enabled application contexts.
+ * {@link #refresh()} always enumerates every pattern again and compares the
+ * result with the index.
+ * </p>
+ * <p>
+ * With a {@link ResourceChangeMonitor} (see {@link #setMonitor(ResourceChangeMonitor)})
+ * the index follows file system events: deleted files are removed from the
+ * index without enumerating anything, while files created next to indexed
+ * files and changed archives require a refresh, since their paths cannot be
+ * matched against the patterns without enumerating them. Such refreshes are
+ * coalesced: however many changes are notified, one refresh is queued. It
+ * runs on the executor set with {@link #setRefreshExecutor(Executor)} or,
+ * without executor, at the next lookup, so never inside the notification of
+ * the monitor.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocalizedResourceIndex implements ResourceChangeMonitor.Listener {
+
+    /**
+     * The logging object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(LocalizedResourceIndex.class);
+
+    /**
+     * The application context used to enumerate resources.
+     */
+    private ApplicationContext applicationContext;
+
+    /**
+     * The patterns of the indexed resources.
+     */
+    private List<String> patterns;
+
+    /**
+     * The variants of each indexed path. The maps of variants are immutable
+     * and replaced as a whole when they change.
+     */
+    private final ConcurrentMap<String, Map<Locale, ApplicationResource>> variants =
+        new ConcurrentHashMap<String, Map<Locale, ApplicationResource>>();
+
+    /**
+     * The change monitor, if any.
+     */
+    private volatile ResourceChangeMonitor monitor;
+
+    /**
+     * The indexed resources stored in their own file, by file.
+     */
+    private final ConcurrentMap<File, ApplicationResource> files =
+        new ConcurrentHashMap<File, ApplicationResource>();
+
+    /**
+     * The archives and directories containing indexed resources.
+     */
+    private final Set<File> containers = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    /**
+     * The executor of the refreshes caused by changes, or <code>null</code>
+     * to refresh at the next lookup.
+     */
+    private volatile Executor refreshExecutor;
+
+    /**
+     * Whether a refresh caused by changes is queued.
+     */
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param applicationContext The application context used to enumerate resources.
+     * @param patterns The patterns of the resources to index, e.g.
+     * <code>/WEB-INF/tiles/*.jsp</code>.
+     */
+    public LocalizedResourceIndex(ApplicationContext applicationContext,
+            Collection<String> patterns) {
+        this.applicationContext = applicationContext;
+        this.patterns = new ArrayList<String>(patterns);
+    }
+
+    /**
+     * Makes the index follow the changes reported by a monitor. The index
+     * registers itself as a listener, and the indexed file-backed resources
+     * are tracked by the monitor.
+     *
+     * @param monitor The change monitor.
+     */
+    public void setMonitor(ResourceChangeMonitor monitor) {
+        this.monitor = monitor;
+        monitor.addListener(this);
+        for (Map<Locale, ApplicationResource> resources : variants.values()) {
+            for (ApplicationResource resource : resources.values()) {
+                track(resource);
+            }
+        }
+    }
+
+    /**
+     * Sets the executor of the refreshes caused by changes reported by the
+     * monitor.
+     *
+     * @param refreshExecutor The executor, or <code>null</code> to refresh at
+     * the next lookup.
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Builds, or rebuilds, the index in the current thread.
+     * Only the paths whose variants changed are updated.
+     */
+    public void refresh() {
+        refreshPending.set(false);
+        doRefresh();
+    }
+
+    /**
+     * Builds, or rebuilds, the index in the current thread.
+     */
+    private void doRefresh() {
+        List<Collection<ApplicationResource>> found = new ArrayList<Collection<ApplicationResource>>();
+        for (String pattern : patterns) {
+            found.add(applicationContext.getResources(pattern));
+        }
+        apply(found);
+    }
+
+    /**
+     * Builds, or rebuilds, the index, enumerating each pattern in a separate
+     * task. Only the paths whose variants changed are updated.
+     *
+     * @param executor The executor that enumerates the patterns.
+     */
+    public void refresh(ExecutorService executor) {
+        refreshPending.set(false);
+        List<Future<Collection<ApplicationResource>>> futures =
+            new ArrayList<Future<Collection<ApplicationResource>>>();
+        for (final String pattern : patterns) {
+            futures.add(executor.submit(new Callable<Collection<ApplicationResource>>() {
+
+                @Override
+                public Collection<ApplicationResource> call() {
+                    return applicationContext.getResources(pattern);
+                }
+            }));
+        }
+        List<Collection<ApplicationResource>> found = new ArrayList<Collection<ApplicationResource>>();
+        try {
+            for (Future<Collection<ApplicationResource>> future : futures) {
+                found.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while indexing resources", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot index resources", e.getCause());
+        }
+        apply(found);
+    }
+
+    /**
+     * Checks if a path is indexed, i.e. if at least one of its variants exists.
+     *
+     * @param path The path of the resource, without locale postfix.
+     * @return <code>true</code> if the path is indexed.
+     */
+    public boolean isIndexed(String path) {
+        refreshIfPending();
+        return variants.containsKey(path);
+    }
+
+    /**
+     * Returns a localized variant of an indexed resource.
+     *
+     * @param path The path of the resource, without locale postfix.
+     * @param locale The exact locale of the variant.
+     * @return The variant, or <code>null</code> if it is not indexed.
+     */
+    public ApplicationResource getResource(String path, Locale locale) {
+        refreshIfPending();
+        Map<Locale, ApplicationResource> resources = variants.get(path);
+        if (resources == null) {
+            return null;
+        }
+        return resources.get(locale);
+    }
+
+    /**
+     * Returns all the localized variants of an indexed resource.
+     *
+     * @param path The path of the resource, without locale postfix.
+     * @return The variants, keyed by locale. It can be empty.
+     */
+    public Map<Locale, ApplicationResource> getVariants(String path) {
+        refreshIfPending();
+        Map<Locale, ApplicationResource> resources = variants.get(path);
+        if (resources == null) {
+            return Collections.emptyMap();
+        }
+        return resources;
+    }
+
+    /**
+     * Adds, or replaces, a resource in the index.
+     *
+     * @param resource The resource.
+     */
+    public void add(ApplicationResource resource) {
+        String path = resource.getPath();
+        while (true) {
+            Map<Locale, ApplicationResource> current = variants.get(path);
+            Map<Locale, ApplicationResource> updated;
+            if (current == null) {
+                updated = Collections.singletonMap(resource.getLocale(), resource);
+                if (variants.putIfAbsent(path, updated) == null) {
+                    track(resource);
+                    return;
+                }
+            } else {
+                updated = new HashMap<Locale, ApplicationResource>(current);
+                updated.put(resource.getLocale(), resource);
+                if (variants.replace(path, current, Collections.unmodifiableMap(updated))) {
+                    track(resource);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a resource from the index.
+     *
+     * @param resource The resource.
+     */
+    public void remove(ApplicationResource resource) {
+        File file = ResourceChangeMonitor.getTrackedFile(resource);
+        if (file != null) {
+            files.remove(file, resource);
+        }
+        String path = resource.getPath();
+        while (true) {
+            Map<Locale, ApplicationResource> current = variants.get(path);
+            if (current == null || !current.containsKey(resource.getLocale())) {
+                return;
+            }
+            if (current.size() == 1) {
+                if (variants.remove(path, current)) {
+                    return;
+                }
+            } else {
+                Map<Locale, ApplicationResource> updated = new HashMap<Locale, ApplicationResource>(current);
+                updated.remove(resource.getLocale());
+                if (variants.replace(path, current, Collections.unmodifiableMap(updated))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indexed paths.
+     *
+     * @return The number of paths.
+     */
+    public int size() {
+        return variants.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void fileChanged(File file) {
+        ApplicationResource resource = files.get(file);
+        if (resource != null) {
+            if (file.exists()) {
+                // The content changed: keep the resource tracked.
+                track(resource);
+            } else {
+                remove(resource);
+            }
+        } else if (containers.contains(file)
+                || (file.exists() && containers.contains(file.getParentFile()))) {
+            queueRefresh();
+        }
+    }
+
+    /**
+     * Queues a refresh, unless one is already queued.
+     */
+    private void queueRefresh() {
+        if (!refreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        Executor executor = refreshExecutor;
+        if (executor == null) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (refreshPending.compareAndSet(true, false)) {
+                        doRefresh();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshPending.set(false);
+            LOG.warn("Cannot queue the refresh of the resource index", e);
+        }
+    }
+
+    /**
+     * Runs the queued refresh in the current thread, if there is one and no
+     * executor runs it.
+     */
+    private void refreshIfPending() {
+        if (refreshPending.get() && refreshExecutor == null && refreshPending.compareAndSet(true, false)) {
+            doRefresh();
+        }
+    }
+
+    /**
+     * Applies the result of an enumeration, updating only the changed paths.
+     *
+     * @param found The enumerated resources, per pattern.
+     */
+    private void apply(List<Collection<ApplicationResource>> found) {
+        Map<String, Map<Locale, ApplicationResource>> scanned =
+            new HashMap<String, Map<Locale, ApplicationResource>>();
+        for (Collection<ApplicationResource> resources : found) {
+            for (ApplicationResource resource : resources) {
+                if (resource == null) {
+                    continue;
+                }
+                Map<Locale, ApplicationResource> resourceVariants = scanned.get(resource.getPath());
+                if (resourceVariants == null) {
+                    resourceVariants = new HashMap<Locale, ApplicationResource>();
+                    scanned.put(resource.getPath(), resourceVariants);
+                }
+                resourceVariants.put(resource.getLocale(), resource);
+            }
+        }
+        for (Map.Entry<String, Map<Locale, ApplicationResource>> entry : scanned.entrySet()) {
+            if (!entry.getValue().equals(variants.get(entry.getKey()))) {
+                variants.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+            }
+        }
+        variants.keySet().retainAll(scanned.keySet());
+        for (Iterator<ApplicationResource> it = files.values().iterator(); it.hasNext();) {
+            ApplicationResource resource = it.next();
+            if (getResource(resource.getPath(), resource.getLocale()) != resource) {
+                it.remove();
+            }
+        }
+        for (Map<Locale, ApplicationResource> resources : variants.values()) {
+            for (ApplicationResource resource : resources.values()) {
+                track(resource);
+            }
+        }
+    }
+
+    /**
+     * Tracks an indexed resource through the monitor, if any.
+     *
+     * @param resource The resource.
+     */
+    private void track(ApplicationResource resource) {
+        ResourceChangeMonitor currentMonitor = monitor;
+        if (currentMonitor == null) {
+            return;
+        }
+        File file = ResourceChangeMonitor.getTrackedFile(resource);
+        if (file == null) {
+            return;
+        }
+        if ("file".equals(ApplicationResourceWrapper.unwrap(resource, URLApplicationResource.class)
+                .getURL().getProtocol())) {
+            files.put(file, resource);
+            containers.add(file.getParentFile());
+        } else {
+            containers.add(file);
+        }
+        try {
+            currentMonitor.getLastModified(resource);
+        } catch (IOException e) {
+            LOG.debug("Cannot track " + file, e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.locale.LocaleUtil;
+
+/**
+ * Resolves the most specific localized version of a resource, walking the
+ * fallback chain of the requested locale, as computed by
+ * {@link LocaleUtil#getFallbackChain(Locale)}.
+ * The final answer of each (path, locale) pair is memoized in a
+ * {@link ResolvedResourceCache}, so that the intermediate lookups of the chain
+ * are performed only once.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocalizedResourceResolver {
+
+    /**
+     * The application context used to resolve resources.
+     */
+    private ApplicationContext applicationContext;
+
+    /**
+     * The cache of resolved resources.
+     */
+    private ResolvedResourceCache cache;
+
+    /**
+     * Constructor, with a cache of default size and revalidation interval, so
+     * that resources added or removed later are found after at most
+     * {@link ResolvedResourceCache#DEFAULT_REVALIDATE_INTERVAL} milliseconds.
+     *
+     * @param applicationContext The application context used to resolve resources.
+     */
+    public LocalizedResourceResolver(ApplicationContext applicationContext) {
+        this(applicationContext, new ResolvedResourceCache());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param applicationContext The application context used to resolve resources.
+     * @param cache The cache of resolved resources.
+     */
+    public LocalizedResourceResolver(ApplicationContext applicationContext,
+            ResolvedResourceCache cache) {
+        this.applicationContext = applicationContext;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the most specific existing version of a resource for a locale.
+     *
+     * @param path The path of the resource, without locale postfix.
+     * @param locale The requested locale. If <code>null</code>,
+     * {@link Locale#ROOT} is used.
+     * @return The resource, or <code>null</code> if neither the resource nor
+     * any of its localized versions exist.
+     */
+    public ApplicationResource resolve(final String path, Locale locale) {
+        final Locale actualLocale = locale != null ? locale : Locale.ROOT;
+        String key = ResolvedResourceCache.getLocalizedKey(path, actualLocale);
+        return cache.get(key, new ResolvedResourceCache.Lookup() {
+
+            @Override
+            public ApplicationResource lookup(String key) {
+                return walkChain(path, actualLocale);
+            }
+        });
+    }
+
+    /**
+     * Removes all the memoized results.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Walks the fallback chain of a locale, returning the first existing resource.
+     *
+     * @param path The path of the resource, without locale postfix.
+     * @param locale The requested locale.
+     * @return The resource, or <code>null</code> if it does not exist.
+     */
+    private ApplicationResource walkChain(String path, Locale locale) {
+        ApplicationResource base = applicationContext.getResource(path);
+        if (base == null) {
+            return null;
+        }
+        List<Locale> chain = LocaleUtil.getFallbackChain(locale);
+        for (int i = 0; i < chain.size() - 1; i++) {
+            ApplicationResource resource = applicationContext.getResource(base, chain.get(i));
+            if (resource != null) {
+                return resource;
+            }
+        }
+        return base;
+    }
+}
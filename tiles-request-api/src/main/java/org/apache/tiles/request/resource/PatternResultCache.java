@@ -0,0 +1,184 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tiles.request.ApplicationResource;
+
+/**
+ * A bounded cache of the resources matching wildcard patterns. The least
+ * recently used patterns are evicted first.
+ * <p>
+ * Results are dropped after the revalidation interval, so that new matching
+ * resources are found again. Registered as a {@link ResourceChangeMonitor.Listener},
+ * the cache also drops every result as soon as a tracked file changes.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class PatternResultCache implements ResourceChangeMonitor.Listener {
+
+    /**
+     * The default maximum number of cached patterns.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /**
+     * The maximum number of cached patterns.
+     */
+    private final int maxSize;
+
+    /**
+     * The revalidation interval, in milliseconds.
+     */
+    private final long revalidateInterval;
+
+    /**
+     * The cached results, in access order.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * Constructor, with default size and revalidation interval.
+     */
+    public PatternResultCache() {
+        this(DEFAULT_MAX_SIZE, ResolvedResourceCache.DEFAULT_REVALIDATE_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum number of cached patterns.
+     * @param revalidateInterval The interval, in milliseconds, after which a
+     * result is dropped. Negative values disable revalidation.
+     */
+    public PatternResultCache(int maxSize, long revalidateInterval) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.revalidateInterval = revalidateInterval;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PatternResultCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of a pattern.
+     *
+     * @param pattern The pattern.
+     * @return An unmodifiable view of the matching resources, or
+     * <code>null</code> if the result is not cached or stale.
+     */
+    public Collection<ApplicationResource> get(String pattern) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(pattern);
+            if (entry != null && revalidateInterval >= 0
+                    && System.currentTimeMillis() - entry.createdAt >= revalidateInterval) {
+                entries.remove(pattern);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        return entry.resources;
+    }
+
+    /**
+     * Stores the result of a pattern.
+     *
+     * @param pattern The pattern.
+     * @param resources The matching resources.
+     */
+    public void put(String pattern, Collection<ApplicationResource> resources) {
+        Entry entry = new Entry(Collections.unmodifiableList(new ArrayList<ApplicationResource>(resources)));
+        synchronized (entries) {
+            entries.put(pattern, entry);
+        }
+    }
+
+    /**
+     * Removes all the results.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached patterns.
+     *
+     * @return The number of patterns.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void fileChanged(File file) {
+        invalidateAll();
+    }
+
+    /**
+     * A cached result.
+     */
+    private static final class Entry {
+
+        /**
+         * The matching resources.
+         */
+        private final List<ApplicationResource> resources;
+
+        /**
+         * When the result has been computed.
+         */
+        private final long createdAt;
+
+        /**
+         * Constructor.
+         *
+         * @param resources The matching resources.
+         */
+        private Entry(List<ApplicationResource> resources) {
+            this.resources = resources;
+            this.createdAt = System.currentTimeMillis();
+        }
+    }
+}
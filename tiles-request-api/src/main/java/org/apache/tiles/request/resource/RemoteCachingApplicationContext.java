@@ -0,0 +1,138 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ApplicationResourceWrapper;
+import org.apache.tiles.request.locale.URLApplicationResource;
+
+/**
+ * Reads the content of the remote {@link URLApplicationResource}s of the
+ * wrapped application context, even when they are decorated by other
+ * contexts, through a {@link RemoteResourceCache}. Other resources are
+ * returned unchanged.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RemoteCachingApplicationContext extends ResourceDecoratingApplicationContext {
+
+    /**
+     * The cache of remote content.
+     */
+    private RemoteResourceCache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param context The original context.
+     * @param cache The cache of remote content.
+     */
+    public RemoteCachingApplicationContext(ApplicationContext context, RemoteResourceCache cache) {
+        super(context);
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache of remote content.
+     *
+     * @return The cache of remote content.
+     */
+    public RemoteResourceCache getRemoteResourceCache() {
+        return cache;
+    }
+
+    /**
+     * Decorates a resource, if it is, or wraps, a URL resource whose URL can be cached.
+     *
+     * @param resource The resource.
+     * @return The decorated resource, or the resource itself.
+     */
+    @Override
+    protected ApplicationResource decorate(ApplicationResource resource) {
+        URLApplicationResource urlResource = ApplicationResourceWrapper.unwrap(resource, URLApplicationResource.class);
+        if (urlResource != null && cache.isCacheable(urlResource.getURL())) {
+            return new RemoteApplicationResource(resource, urlResource.getURL(), this);
+        }
+        return resource;
+    }
+
+    /**
+     * A remote resource whose content is read through the cache.
+     */
+    private static final class RemoteApplicationResource extends DecoratedApplicationResource {
+
+        /**
+         * The cache of remote content.
+         */
+        private final RemoteResourceCache cache;
+
+        /**
+         * The URL of the resource.
+         */
+        private final URL url;
+
+        /**
+         * Constructor.
+         *
+         * @param resource The wrapped resource.
+         * @param url The URL of the resource.
+         * @param context The context that decorates the resource.
+         */
+        private RemoteApplicationResource(ApplicationResource resource, URL url,
+                RemoteCachingApplicationContext context) {
+            super(resource, context);
+            this.url = url;
+            this.cache = context.cache;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return cache.getInputStream(url);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long getLastModified() throws IOException {
+            return cache.getLastModified(url);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ByteBuffer getContent() throws IOException {
+            return readFully(getInputStream());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReadableByteChannel openChannel() throws IOException {
+            return Channels.newChannel(getInputStream());
+        }
+    }
+}
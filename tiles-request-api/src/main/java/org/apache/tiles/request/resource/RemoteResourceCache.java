@@ -0,0 +1,723 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A disk-backed cache of the content of remote <code>http:</code> and
+ * <code>https:</code> resources.
+ * <p>
+ * Content is considered fresh for a configurable time after it has been
+ * fetched or revalidated. After that, it is revalidated with a conditional
+ * request, using the <code>ETag</code> and <code>Last-Modified</code> headers
+ * of the previous response, so that unchanged content is not downloaded
+ * again. If an executor is given, content that is stale by less than the
+ * stale window is returned immediately and revalidated in the background.
+ * </p>
+ * <p>
+ * Concurrent fetches of the same URL share a single request. If a
+ * revalidation fails for any other reason than the resource being gone, the
+ * stale content is returned and the next access tries again.
+ * </p>
+ * <p>
+ * Content and validators are stored in the cache directory, so they survive
+ * restarts. If a maximum size is set, the content validated least recently
+ * is removed when the stored content exceeds it.
+ * </p>
+ * <p>
+ * Requests use a connect timeout and a read timeout, that can be changed with
+ * {@link #setConnectTimeout(int)} and {@link #setReadTimeout(int)}.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class RemoteResourceCache {
+
+    /**
+     * The default freshness time, in milliseconds.
+     */
+    public static final long DEFAULT_FRESHNESS = 60000L;
+
+    /**
+     * The default connect timeout, in milliseconds.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * The default read timeout, in milliseconds.
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    /**
+     * The logging object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(RemoteResourceCache.class);
+
+    /**
+     * The characters used in hexadecimal file names.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The extension of content files.
+     */
+    private static final String DATA_EXTENSION = ".data";
+
+    /**
+     * The extension of validator files.
+     */
+    private static final String META_EXTENSION = ".properties";
+
+    /**
+     * The cache directory.
+     */
+    private final File directory;
+
+    /**
+     * The time, in milliseconds, during which content is fresh.
+     */
+    private final long freshness;
+
+    /**
+     * The time, in milliseconds, during which stale content is returned while
+     * being revalidated in the background.
+     */
+    private final long staleWindow;
+
+    /**
+     * The executor of background revalidations, or <code>null</code>.
+     */
+    private final Executor revalidator;
+
+    /**
+     * The connect timeout, in milliseconds.
+     */
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * The read timeout, in milliseconds.
+     */
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    /**
+     * The maximum size of the stored content, in bytes, or 0 if unbounded.
+     */
+    private long maxSize;
+
+    /**
+     * The known entries, keyed by URL.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * The running fetches, keyed by URL.
+     */
+    private final ConcurrentMap<String, FutureTask<Entry>> fetches = new ConcurrentHashMap<String, FutureTask<Entry>>();
+
+    /**
+     * Constructor, revalidating stale content synchronously.
+     *
+     * @param directory The cache directory. It is created if needed.
+     * @param freshness The time, in milliseconds, during which content is fresh.
+     */
+    public RemoteResourceCache(File directory, long freshness) {
+        this(directory, freshness, 0L, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory The cache directory. It is created if needed.
+     * @param freshness The time, in milliseconds, during which content is fresh.
+     * @param staleWindow The time, in milliseconds, after the end of freshness,
+     * during which stale content is returned while being revalidated in the
+     * background.
+     * @param revalidator The executor of background revalidations. If
+     * <code>null</code>, stale content is always revalidated synchronously.
+     */
+    public RemoteResourceCache(File directory, long freshness, long staleWindow, Executor revalidator) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create the cache directory " + directory);
+        }
+        this.directory = directory;
+        this.freshness = freshness;
+        this.staleWindow = staleWindow;
+        this.revalidator = revalidator;
+    }
+
+    /**
+     * Sets the timeout used when connecting to remote servers.
+     *
+     * @param connectTimeout The timeout, in milliseconds. 0 means no timeout.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the timeout used when reading from remote servers.
+     *
+     * @param readTimeout The timeout, in milliseconds. 0 means no timeout.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sets the maximum size of the content stored in the cache directory.
+     *
+     * @param maxSize The maximum size, in bytes. 0 means unbounded, that is
+     * the default.
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Checks if the content of a URL can be cached.
+     *
+     * @param url The URL.
+     * @return <code>true</code> for <code>http:</code> and <code>https:</code> URLs.
+     */
+    public boolean isCacheable(URL url) {
+        String protocol = url.getProtocol();
+        return "http".equals(protocol) || "https".equals(protocol);
+    }
+
+    /**
+     * Opens the cached content of a URL, fetching or revalidating it if needed.
+     *
+     * @param url The URL.
+     * @return The stream of the content.
+     * @throws IOException If the content cannot be fetched.
+     */
+    public InputStream getInputStream(URL url) throws IOException {
+        Entry entry = getEntry(url);
+        try {
+            return new FileInputStream(entry.dataFile);
+        } catch (FileNotFoundException e) {
+            // Invalidated between the lookup and the opening.
+            entries.remove(url.toExternalForm(), entry);
+            return new FileInputStream(getEntry(url).dataFile);
+        }
+    }
+
+    /**
+     * Returns the last modification date of the content of a URL, fetching or
+     * revalidating it if needed. If the server does not send a
+     * <code>Last-Modified</code> header, the date of the last download of
+     * changed content is returned.
+     *
+     * @param url The URL.
+     * @return The last modification date.
+     * @throws IOException If the content cannot be fetched.
+     */
+    public long getLastModified(URL url) throws IOException {
+        Entry entry = getEntry(url);
+        return entry.lastModified > 0L ? entry.lastModified : entry.downloadedAt;
+    }
+
+    /**
+     * Removes the cached content of a URL. Streams already opened on the
+     * content can still be read.
+     *
+     * @param url The URL.
+     */
+    public void invalidate(URL url) {
+        String key = url.toExternalForm();
+        entries.remove(key);
+        String name = getFileName(key);
+        discard(new File(directory, name + META_EXTENSION));
+        discard(new File(directory, name + DATA_EXTENSION));
+    }
+
+    /**
+     * Returns the entry of a URL, fetching or revalidating its content if it
+     * is missing or stale.
+     *
+     * @param url The URL.
+     * @return The entry.
+     * @throws IOException If the content cannot be fetched.
+     */
+    private Entry getEntry(URL url) throws IOException {
+        String key = url.toExternalForm();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = loadEntry(key);
+            if (entry == null) {
+                return fetch(url, null);
+            }
+            entries.putIfAbsent(key, entry);
+        }
+        long age = System.currentTimeMillis() - entry.validatedAt;
+        if (age < freshness) {
+            return entry;
+        }
+        if (revalidator != null && age < freshness + staleWindow) {
+            revalidateLater(url, entry);
+            return entry;
+        }
+        try {
+            return fetch(url, entry);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            LOG.warn("Cannot revalidate " + url + ", stale content is used", e);
+            return entry;
+        }
+    }
+
+    /**
+     * Revalidates an entry in the background, unless a revalidation is
+     * already running.
+     *
+     * @param url The URL.
+     * @param entry The entry to revalidate.
+     */
+    private void revalidateLater(final URL url, final Entry entry) {
+        if (!entry.revalidating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            revalidator.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        fetch(url, entry);
+                    } catch (IOException e) {
+                        LOG.warn("Cannot revalidate " + url + ", stale content is kept", e);
+                    } finally {
+                        entry.revalidating.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.revalidating.set(false);
+            LOG.debug("Background revalidation of " + url + " rejected", e);
+        }
+    }
+
+    /**
+     * Fetches the content of a URL, or waits for the fetch of another thread
+     * if one is running.
+     *
+     * @param url The URL.
+     * @param previous The previous entry, or <code>null</code>.
+     * @return The new entry.
+     * @throws IOException If the content cannot be fetched.
+     */
+    private Entry fetch(final URL url, final Entry previous) throws IOException {
+        String key = url.toExternalForm();
+        FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+
+            @Override
+            public Entry call() throws IOException {
+                return doFetch(url, previous);
+            }
+        });
+        FutureTask<Entry> running = fetches.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                fetches.remove(key, task);
+            }
+            running = task;
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Cannot fetch " + url, cause);
+        }
+    }
+
+    /**
+     * Fetches the content of a URL, with a conditional request if a previous
+     * entry exists.
+     *
+     * @param url The URL.
+     * @param previous The previous entry, or <code>null</code>.
+     * @return The new entry.
+     * @throws IOException If the content cannot be fetched.
+     */
+    private Entry doFetch(URL url, Entry previous) throws IOException {
+        String key = url.toExternalForm();
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        if (previous != null) {
+            if (previous.etag != null) {
+                connection.setRequestProperty("If-None-Match", previous.etag);
+            }
+            if (previous.lastModified > 0L) {
+                connection.setIfModifiedSince(previous.lastModified);
+            }
+        }
+        long now = System.currentTimeMillis();
+        Entry entry;
+        boolean downloaded = false;
+        if (previous != null && connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            connection.getInputStream().close();
+            entry = new Entry(previous.dataFile, previous.etag, previous.lastModified, previous.downloadedAt, now);
+        } else {
+            InputStream stream;
+            try {
+                stream = connection.getInputStream();
+            } catch (FileNotFoundException e) {
+                if (previous != null) {
+                    invalidate(url);
+                }
+                throw e;
+            }
+            File dataFile = new File(directory, getFileName(key) + DATA_EXTENSION);
+            File tempFile = null;
+            boolean moved = false;
+            try {
+                tempFile = File.createTempFile("fetch", ".tmp", directory);
+                OutputStream out = new FileOutputStream(tempFile);
+                try {
+                    copy(stream, out);
+                } finally {
+                    out.close();
+                }
+                move(tempFile, dataFile);
+                moved = true;
+            } finally {
+                stream.close();
+                if (tempFile != null && !moved && !tempFile.delete()) {
+                    tempFile.deleteOnExit();
+                }
+            }
+            entry = new Entry(dataFile, connection.getHeaderField("ETag"), connection.getLastModified(), now, now);
+            downloaded = true;
+        }
+        storeEntry(key, entry);
+        entries.put(key, entry);
+        if (downloaded && maxSize > 0L) {
+            trim(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the content validated least recently until the stored content
+     * fits the maximum size. The validators files are used to sort the
+     * content, since they are rewritten at every revalidation.
+     *
+     * @param kept The entry that has just been stored, that is never removed.
+     */
+    private void trim(Entry kept) {
+        File[] dataFiles = directory.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(DATA_EXTENSION);
+            }
+        });
+        if (dataFiles == null) {
+            return;
+        }
+        long size = 0L;
+        final Map<File, Long> validatedAt = new HashMap<File, Long>();
+        for (File dataFile : dataFiles) {
+            size += dataFile.length();
+            validatedAt.put(dataFile, getMetaFile(dataFile).lastModified());
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Arrays.sort(dataFiles, new Comparator<File>() {
+
+            @Override
+            public int compare(File o1, File o2) {
+                long time1 = validatedAt.get(o1);
+                long time2 = validatedAt.get(o2);
+                return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < dataFiles.length && size > maxSize; i++) {
+            File dataFile = dataFiles[i];
+            if (dataFile.equals(kept.dataFile)) {
+                continue;
+            }
+            size -= dataFile.length();
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+                if (it.next().dataFile.equals(dataFile)) {
+                    it.remove();
+                }
+            }
+            discard(getMetaFile(dataFile));
+            discard(dataFile);
+        }
+    }
+
+    /**
+     * Returns the validators file stored along a content file.
+     *
+     * @param dataFile The content file.
+     * @return The validators file.
+     */
+    private File getMetaFile(File dataFile) {
+        String name = dataFile.getName();
+        return new File(directory, name.substring(0, name.length() - DATA_EXTENSION.length()) + META_EXTENSION);
+    }
+
+    /**
+     * Loads an entry from the cache directory.
+     *
+     * @param key The URL of the entry.
+     * @return The entry, or <code>null</code> if it is not stored.
+     */
+    private Entry loadEntry(String key) {
+        String name = getFileName(key);
+        File metaFile = new File(directory, name + META_EXTENSION);
+        File dataFile = new File(directory, name + DATA_EXTENSION);
+        if (!metaFile.isFile() || !dataFile.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream stream = new FileInputStream(metaFile);
+            try {
+                properties.load(stream);
+            } finally {
+                stream.close();
+            }
+            if (!key.equals(properties.getProperty("url"))) {
+                return null;
+            }
+            return new Entry(dataFile, properties.getProperty("etag"),
+                    Long.parseLong(properties.getProperty("lastModified")),
+                    Long.parseLong(properties.getProperty("downloadedAt")),
+                    Long.parseLong(properties.getProperty("validatedAt")));
+        } catch (IOException e) {
+            LOG.debug("Cannot read cache entry " + metaFile, e);
+            return null;
+        } catch (NumberFormatException e) {
+            LOG.debug("Corrupted cache entry " + metaFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the validators of an entry in the cache directory.
+     *
+     * @param key The URL of the entry.
+     * @param entry The entry.
+     * @throws IOException If the validators cannot be written.
+     */
+    private void storeEntry(String key, Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", key);
+        if (entry.etag != null) {
+            properties.setProperty("etag", entry.etag);
+        }
+        properties.setProperty("lastModified", Long.toString(entry.lastModified));
+        properties.setProperty("downloadedAt", Long.toString(entry.downloadedAt));
+        properties.setProperty("validatedAt", Long.toString(entry.validatedAt));
+        File tempFile = File.createTempFile("meta", ".tmp", directory);
+        OutputStream out = new FileOutputStream(tempFile);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+        move(tempFile, new File(directory, getFileName(key) + META_EXTENSION));
+    }
+
+    /**
+     * Replaces a file with another one, atomically when possible.
+     *
+     * @param source The new file.
+     * @param target The file to replace.
+     * @throws IOException If the file cannot be moved.
+     */
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes a file that may still be open: it is first renamed, so that
+     * its name can be used again at once, then deleted.
+     *
+     * @param file The file to delete.
+     */
+    private void discard(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        File trash = null;
+        try {
+            trash = File.createTempFile("trash", ".tmp", directory);
+            move(file, trash);
+        } catch (IOException e) {
+            LOG.debug("Cannot rename " + file + " before deleting it", e);
+            if (trash != null) {
+                trash.delete();
+            }
+            trash = file;
+        }
+        if (!trash.delete()) {
+            trash.deleteOnExit();
+        }
+    }
+
+    /**
+     * Copies a stream.
+     *
+     * @param in The source stream.
+     * @param out The target stream.
+     * @throws IOException If something goes wrong.
+     */
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) >= 0) {
+            out.write(chunk, 0, read);
+        }
+    }
+
+    /**
+     * Returns the base name of the files of a URL.
+     *
+     * @param key The URL.
+     * @return The SHA-1 digest of the URL, in hexadecimal.
+     */
+    private static String getFileName(String key) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(Charset.forName("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+        char[] name = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            name[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            name[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(name);
+    }
+
+    /**
+     * The cached content of a URL, with its validators.
+     */
+    private static final class Entry {
+
+        /**
+         * The file containing the content.
+         */
+        private final File dataFile;
+
+        /**
+         * The entity tag sent by the server, or <code>null</code>.
+         */
+        private final String etag;
+
+        /**
+         * The last modification date sent by the server, or 0.
+         */
+        private final long lastModified;
+
+        /**
+         * When the content has been downloaded.
+         */
+        private final long downloadedAt;
+
+        /**
+         * When the content has been fetched or revalidated.
+         */
+        private final long validatedAt;
+
+        /**
+         * Whether a background revalidation is running.
+         */
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+
+        /**
+         * Constructor.
+         *
+         * @param dataFile The file containing the content.
+         * @param etag The entity tag sent by the server, or <code>null</code>.
+         * @param lastModified The last modification date sent by the server, or 0.
+         * @param downloadedAt When the content has been downloaded.
+         * @param validatedAt When the content has been fetched or revalidated.
+         */
+        private Entry(File dataFile, String etag, long lastModified, long downloadedAt, long validatedAt) {
+            this.dataFile = dataFile;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.downloadedAt = downloadedAt;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
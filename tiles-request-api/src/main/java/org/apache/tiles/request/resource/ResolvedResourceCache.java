@@ -0,0 +1,345 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tiles.request.ApplicationResource;
+
+/**
+ * A concurrent, bounded cache of resolved {@link ApplicationResource}s,
+ * including negative entries for paths that do not exist.
+ * <p>
+ * Entries older than the revalidation interval are checked again: positive
+ * entries are kept while {@link ApplicationResource#getLastModified()} does not
+ * change, negative entries are resolved again. A negative interval disables
+ * revalidation, so entries are only removed through {@link #invalidate(String)},
+ * {@link #invalidateAll()} or when the cache is full.
+ * </p>
+ * <p>
+ * When the cache is full, one entry is removed per insertion with the "clock"
+ * algorithm: entries are visited in insertion order, entries that have been
+ * read since the hand last passed are given a second chance, the first one
+ * that has not is removed.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class ResolvedResourceCache {
+
+    /**
+     * Resolves a resource that is not in the cache.
+     */
+    public interface Lookup {
+
+        /**
+         * Resolves a resource.
+         *
+         * @param key The key of the resource.
+         * @return The resource, or <code>null</code> if it does not exist.
+         */
+        ApplicationResource lookup(String key);
+    }
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /**
+     * The default revalidation interval, in milliseconds.
+     */
+    public static final long DEFAULT_REVALIDATE_INTERVAL = 5000L;
+
+    /**
+     * The separator between the path and the locale in the keys of localized
+     * lookups.
+     */
+    private static final char LOCALE_SEPARATOR = '\u0000';
+
+    /**
+     * The cached entries.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * The entries in the order the clock hand visits them. It may contain
+     * entries that have been replaced or invalidated: they are skipped.
+     */
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<Entry>();
+
+    /**
+     * The approximate number of elements in {@link #clock}.
+     */
+    private final AtomicInteger clockSize = new AtomicInteger();
+
+    /**
+     * The maximum number of entries.
+     */
+    private final int maxSize;
+
+    /**
+     * The revalidation interval, in milliseconds.
+     */
+    private final long revalidateInterval;
+
+    /**
+     * Constructor, with default size and revalidation interval.
+     */
+    public ResolvedResourceCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_REVALIDATE_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum number of entries.
+     * @param revalidateInterval The interval, in milliseconds, after which an
+     * entry is checked again. Negative values disable revalidation.
+     */
+    public ResolvedResourceCache(int maxSize, long revalidateInterval) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.revalidateInterval = revalidateInterval;
+    }
+
+    /**
+     * Returns a resource, resolving it if it is not cached or if its entry is stale.
+     *
+     * @param key The key of the resource, typically its locale path.
+     * @param lookup Resolves the resource when needed.
+     * @return The resource, or <code>null</code> if it does not exist.
+     */
+    public ApplicationResource get(String key, Lookup lookup) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            if (!isStale(entry)) {
+                return entry.resource;
+            }
+        }
+        ApplicationResource resource = lookup.lookup(key);
+        long lastModified = revalidateInterval >= 0 ? lastModified(resource) : -1L;
+        put(new Entry(key, resource, lastModified));
+        return resource;
+    }
+
+    /**
+     * Returns the key of the lookup of a localized version of a resource.
+     * Such entries are removed by {@link #invalidate(String)} together with
+     * the entry of the path.
+     *
+     * @param path The path of the resource, without locale postfix.
+     * @param locale The locale.
+     * @return The key.
+     */
+    public static String getLocalizedKey(String path, Locale locale) {
+        return path + LOCALE_SEPARATOR + locale;
+    }
+
+    /**
+     * Removes an entry, and the entries of the localized lookups of the same
+     * path, created with {@link #getLocalizedKey(String, Locale)}.
+     *
+     * @param key The key of the resource.
+     */
+    public void invalidate(String key) {
+        entries.remove(key);
+        String prefix = key + LOCALE_SEPARATOR;
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext();) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void invalidateAll() {
+        entries.clear();
+        clock.clear();
+        clockSize.set(0);
+    }
+
+    /**
+     * Returns the number of cached entries, both positive and negative.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks if an entry must be resolved again. Positive entries whose
+     * resource did not change are refreshed in place.
+     *
+     * @param entry The entry to check.
+     * @return <code>true</code> if the entry is stale.
+     */
+    private boolean isStale(Entry entry) {
+        if (revalidateInterval < 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt < revalidateInterval) {
+            return false;
+        }
+        if (entry.resource == null) {
+            return true;
+        }
+        if (lastModified(entry.resource) != entry.lastModified) {
+            return true;
+        }
+        entry.checkedAt = now;
+        return false;
+    }
+
+    /**
+     * Stores an entry, evicting one entry if the cache is full.
+     *
+     * @param entry The entry.
+     */
+    private void put(Entry entry) {
+        entries.put(entry.key, entry);
+        clock.offer(entry);
+        if (clockSize.incrementAndGet() > 2 * maxSize) {
+            purgeClock();
+        }
+        while (entries.size() > maxSize && evictOne()) {
+            // Keep evicting until the size is back to the limit.
+        }
+    }
+
+    /**
+     * Advances the clock hand until an entry is removed. Entries read since
+     * the hand last passed are marked as unread and moved behind the hand.
+     *
+     * @return <code>true</code> if an entry has been removed.
+     */
+    private boolean evictOne() {
+        // Every live entry is visited at most twice.
+        for (int i = 2 * clockSize.get() + 1; i > 0; i--) {
+            Entry entry = clock.poll();
+            if (entry == null) {
+                return false;
+            }
+            clockSize.decrementAndGet();
+            if (entries.get(entry.key) != entry) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.offer(entry);
+                clockSize.incrementAndGet();
+            } else if (entries.remove(entry.key, entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the replaced and invalidated entries from the clock. It runs
+     * once every <code>maxSize</code> insertions at most.
+     */
+    private void purgeClock() {
+        for (Iterator<Entry> it = clock.iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entries.get(entry.key) != entry) {
+                it.remove();
+                clockSize.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the last modification date of a resource.
+     *
+     * @param resource The resource. It can be <code>null</code>.
+     * @return The last modification date, or -1 if it cannot be read.
+     */
+    private static long lastModified(ApplicationResource resource) {
+        if (resource == null) {
+            return -1L;
+        }
+        try {
+            return resource.getLastModified();
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static final class Entry {
+
+        /**
+         * The key of the entry.
+         */
+        private final String key;
+
+        /**
+         * The resource, or <code>null</code> for a negative entry.
+         */
+        private final ApplicationResource resource;
+
+        /**
+         * The last modification date of the resource when it was resolved.
+         */
+        private final long lastModified;
+
+        /**
+         * When the entry was last checked.
+         */
+        private volatile long checkedAt;
+
+        /**
+         * Whether the entry has been read since the clock hand last passed.
+         */
+        private volatile boolean referenced;
+
+        /**
+         * Constructor.
+         *
+         * @param key The key of the entry.
+         * @param resource The resource, or <code>null</code> for a negative entry.
+         * @param lastModified The last modification date of the resource.
+         */
+        private Entry(String key, ApplicationResource resource, long lastModified) {
+            this.key = key;
+            this.resource = resource;
+            this.lastModified = lastModified;
+            this.checkedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ApplicationResourceWrapper;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the last modification dates of file-backed resources, updating them
+ * only when the file system reports a change through a {@link WatchService}.
+ * <p>
+ * Resources in <code>file:</code> URLs are tracked through their own file,
+ * resources in <code>jar:file:</code> URLs through the archive that contains
+ * them: their modification date is read once and kept until the archive
+ * changes. Other resources are not tracked. Resources decorated through
+ * {@link org.apache.tiles.request.ApplicationResourceWrapper}s are tracked
+ * through the URL resource they wrap.
+ * </p>
+ * <p>
+ * Events are processed at every call to {@link #getLastModified(ApplicationResource)}
+ * or, after {@link #start()}, by a background thread, which also notifies the
+ * registered {@link Listener}s as soon as a change happens. Listeners are
+ * notified when a tracked file changes and when a file is created in a watched
+ * directory.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class ResourceChangeMonitor implements Closeable {
+
+    /**
+     * Receives change notifications.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a tracked file, or archive, changed or has been deleted,
+         * or when a file has been created in a directory containing tracked files.
+         *
+         * @param file The file.
+         */
+        void fileChanged(File file);
+    }
+
+    /**
+     * The logging object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceChangeMonitor.class);
+
+    /**
+     * The separator between the archive URL and the entry name in jar URLs.
+     */
+    private static final String JAR_SEPARATOR = "!/";
+
+    /**
+     * Marks a file whose modification date is being read.
+     */
+    private static final Long READING = Long.MIN_VALUE;
+
+    /**
+     * The watch service.
+     */
+    private final WatchService watchService;
+
+    /**
+     * The watched directories.
+     */
+    private final ConcurrentMap<Path, WatchKey> directories = new ConcurrentHashMap<Path, WatchKey>();
+
+    /**
+     * The modification dates of the tracked files.
+     */
+    private final ConcurrentMap<File, Long> fileTimes = new ConcurrentHashMap<File, Long>();
+
+    /**
+     * The modification dates of the tracked archive entries, per archive.
+     */
+    private final ConcurrentMap<File, ConcurrentMap<String, Long>> entryTimes =
+        new ConcurrentHashMap<File, ConcurrentMap<String, Long>>();
+
+    /**
+     * The registered listeners.
+     */
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * The background thread, if started.
+     */
+    private Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @throws IOException If the watch service cannot be created.
+     */
+    public ResourceChangeMonitor() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the last modification date of a resource. Tracked resources are
+     * checked on the file system only the first time, or after a change.
+     *
+     * @param resource The resource.
+     * @return The last modification date.
+     * @throws IOException If the date cannot be read.
+     */
+    public long getLastModified(ApplicationResource resource) throws IOException {
+        processEvents();
+        URLApplicationResource urlResource = ApplicationResourceWrapper.unwrap(resource, URLApplicationResource.class);
+        if (urlResource != null) {
+            URL url = urlResource.getURL();
+            if ("file".equals(url.getProtocol())) {
+                File file = toFile(url.toExternalForm());
+                if (file != null) {
+                    return getFileTime(file);
+                }
+            } else if ("jar".equals(url.getProtocol())) {
+                String spec = url.toExternalForm();
+                int separator = spec.indexOf(JAR_SEPARATOR);
+                if (separator > 0 && spec.startsWith("jar:file:")) {
+                    File archive = toFile(spec.substring("jar:".length(), separator));
+                    if (archive != null) {
+                        return getEntryTime(archive, spec.substring(separator + JAR_SEPARATOR.length()), resource);
+                    }
+                }
+            }
+        }
+        return resource.getLastModified();
+    }
+
+    /**
+     * Processes the pending file system events, without waiting.
+     */
+    public void processEvents() {
+        WatchKey key;
+        try {
+            while ((key = watchService.poll()) != null) {
+                process(key);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Nothing more to process.
+        }
+    }
+
+    /**
+     * Starts a daemon thread that processes file system events as they happen.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        process(watchService.take());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ClosedWatchServiceException e) {
+                    // The monitor has been closed.
+                }
+            }
+        }, "tiles-resource-change-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file system and the background thread, if started.
+     *
+     * @throws IOException If the watch service cannot be closed.
+     */
+    public void close() throws IOException {
+        watchService.close();
+        synchronized (this) {
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the tracked modification date of a file.
+     *
+     * @param file The file.
+     * @return The modification date.
+     * @throws IOException If the parent directory cannot be watched.
+     */
+    private long getFileTime(File file) throws IOException {
+        Long retValue = fileTimes.get(file);
+        if (retValue == null && fileTimes.putIfAbsent(file, READING) == null) {
+            long time;
+            try {
+                watch(file);
+                time = file.lastModified();
+            } catch (IOException e) {
+                fileTimes.remove(file, READING);
+                throw e;
+            }
+            // A change notified while reading removes the marker: in that
+            // case the date may be stale, so it is not stored.
+            fileTimes.replace(file, READING, time);
+            return time;
+        }
+        if (retValue == null || READING.equals(retValue)) {
+            // Another thread is reading the date, or the file has just changed.
+            return file.lastModified();
+        }
+        return retValue;
+    }
+
+    /**
+     * Returns the tracked modification date of an archive entry.
+     *
+     * @param archive The archive.
+     * @param entry The name of the entry.
+     * @param resource The resource, used to read the date the first time.
+     * @return The modification date.
+     * @throws IOException If the date cannot be read.
+     */
+    private long getEntryTime(File archive, String entry, ApplicationResource resource) throws IOException {
+        ConcurrentMap<String, Long> times = entryTimes.get(archive);
+        if (times == null) {
+            watch(archive);
+            times = new ConcurrentHashMap<String, Long>();
+            ConcurrentMap<String, Long> existing = entryTimes.putIfAbsent(archive, times);
+            if (existing != null) {
+                times = existing;
+            }
+        }
+        Long retValue = times.get(entry);
+        if (retValue == null) {
+            retValue = resource.getLastModified();
+            times.put(entry, retValue);
+        }
+        return retValue;
+    }
+
+    /**
+     * Watches the parent directory of a file.
+     *
+     * @param file The file.
+     * @throws IOException If the directory cannot be watched.
+     */
+    private void watch(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent == null) {
+            return;
+        }
+        Path directory = parent.toPath();
+        if (!directories.containsKey(directory)) {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            directories.put(directory, key);
+        }
+    }
+
+    /**
+     * Processes the events of a watch key.
+     *
+     * @param key The key.
+     */
+    private void process(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                forgetDirectory(directory.toFile());
+            } else {
+                changed(directory.resolve((Path) event.context()).toFile(),
+                        event.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(directory);
+            forgetDirectory(directory.toFile());
+        }
+    }
+
+    /**
+     * Forgets the dates of all the files in a directory, since events have been lost.
+     *
+     * @param directory The directory.
+     */
+    private void forgetDirectory(File directory) {
+        for (File file : fileTimes.keySet()) {
+            if (directory.equals(file.getAbsoluteFile().getParentFile())) {
+                changed(file, false);
+            }
+        }
+        for (File file : entryTimes.keySet()) {
+            if (directory.equals(file.getAbsoluteFile().getParentFile())) {
+                changed(file, false);
+            }
+        }
+    }
+
+    /**
+     * Forgets the dates of a changed file and notifies the listeners.
+     *
+     * @param file The changed file.
+     * @param created <code>true</code> if the file has just been created.
+     */
+    private void changed(File file, boolean created) {
+        boolean tracked = fileTimes.remove(file) != null;
+        tracked |= entryTimes.remove(file) != null;
+        if (tracked || created) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.fileChanged(file);
+                } catch (RuntimeException e) {
+                    LOG.warn("Listener failed to process the change of " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the file that is tracked for a resource: the file itself for
+     * <code>file:</code> URLs, the archive for <code>jar:file:</code> URLs.
+     *
+     * @param resource The resource.
+     * @return The tracked file, or <code>null</code> if the resource cannot be tracked.
+     */
+    static File getTrackedFile(ApplicationResource resource) {
+        URLApplicationResource urlResource = ApplicationResourceWrapper.unwrap(resource, URLApplicationResource.class);
+        if (urlResource != null) {
+            String spec = urlResource.getURL().toExternalForm();
+            if (spec.startsWith("file:")) {
+                return toFile(spec);
+            }
+            int separator = spec.indexOf(JAR_SEPARATOR);
+            if (separator > 0 && spec.startsWith("jar:file:")) {
+                return toFile(spec.substring("jar:".length(), separator));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts a <code>file:</code> URL to a file.
+     *
+     * @param spec The URL.
+     * @return The file, or <code>null</code> if the URL cannot be converted.
+     */
+    private static File toFile(String spec) {
+        try {
+            return new File(new URI(spec).getSchemeSpecificPart()).getAbsoluteFile();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationContextWrapper;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ApplicationResourceWrapper;
+import org.apache.tiles.request.ChannelApplicationResource;
+
+/**
+ * Base class of the application contexts that decorate the resources of the
+ * wrapped context. Subclasses only implement {@link #decorate(ApplicationResource)};
+ * resources passed back to {@link #getResource(ApplicationResource, Locale)}
+ * are unwrapped before reaching the wrapped context.
+ * <p>
+ * Decorators can be stacked in any order: decorated resources are
+ * {@link ApplicationResourceWrapper}s, so a decorator looking for a specific
+ * kind of resource should use {@link ApplicationResourceWrapper#unwrap(ApplicationResource, Class)}
+ * instead of <code>instanceof</code>.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public abstract class ResourceDecoratingApplicationContext extends ApplicationContextWrapper {
+
+    /**
+     * The size of the chunks used when reading a stream.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Constructor.
+     *
+     * @param context The original context.
+     */
+    public ResourceDecoratingApplicationContext(ApplicationContext context) {
+        super(context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ApplicationResource getResource(String localePath) {
+        return decorateOrNull(super.getResource(localePath));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ApplicationResource getResource(ApplicationResource base, Locale locale) {
+        if (base instanceof DecoratedApplicationResource
+                && ((DecoratedApplicationResource) base).decorator == this) {
+            base = ((DecoratedApplicationResource) base).getWrappedResource();
+        }
+        return decorateOrNull(super.getResource(base, locale));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<ApplicationResource> getResources(String path) {
+        Collection<ApplicationResource> resources = super.getResources(path);
+        if (resources == null) {
+            return null;
+        }
+        Collection<ApplicationResource> retValue = new ArrayList<ApplicationResource>(resources.size());
+        for (ApplicationResource resource : resources) {
+            retValue.add(decorateOrNull(resource));
+        }
+        return retValue;
+    }
+
+    /**
+     * Decorates a resource of the wrapped context.
+     *
+     * @param resource The resource, never <code>null</code>.
+     * @return The decorated resource, usually a {@link DecoratedApplicationResource},
+     * or the resource itself if it must not be decorated.
+     */
+    protected abstract ApplicationResource decorate(ApplicationResource resource);
+
+    /**
+     * Reads the whole content of a stream, and closes it.
+     *
+     * @param stream The stream.
+     * @return The content, as a read-only buffer.
+     * @throws IOException If the stream cannot be read.
+     */
+    protected static ByteBuffer readFully(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = stream.read(chunk)) >= 0) {
+                out.write(chunk, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Decorates a resource, if not <code>null</code>.
+     *
+     * @param resource The resource. It can be <code>null</code>.
+     * @return The decorated resource, or <code>null</code>.
+     */
+    private ApplicationResource decorateOrNull(ApplicationResource resource) {
+        if (resource == null) {
+            return null;
+        }
+        return decorate(resource);
+    }
+
+    /**
+     * A resource decorated by a {@link ResourceDecoratingApplicationContext}.
+     * By default every call is delegated to the wrapped resource, reading its
+     * content through a channel when it is a {@link ChannelApplicationResource}.
+     * Subclasses that change the content must override {@link #getContent()}
+     * and {@link #openChannel()} along with {@link #getInputStream()}.
+     */
+    protected static class DecoratedApplicationResource extends ApplicationResourceWrapper
+            implements ChannelApplicationResource {
+
+        /**
+         * The context that decorated the resource.
+         */
+        private final ResourceDecoratingApplicationContext decorator;
+
+        /**
+         * Constructor.
+         *
+         * @param resource The wrapped resource.
+         * @param decorator The context that decorates the resource.
+         */
+        protected DecoratedApplicationResource(ApplicationResource resource,
+                ResourceDecoratingApplicationContext decorator) {
+            super(resource);
+            this.decorator = decorator;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ByteBuffer getContent() throws IOException {
+            ApplicationResource resource = getWrappedResource();
+            if (resource instanceof ChannelApplicationResource) {
+                return ((ChannelApplicationResource) resource).getContent();
+            }
+            return readFully(resource.getInputStream());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReadableByteChannel openChannel() throws IOException {
+            ApplicationResource resource = getWrappedResource();
+            if (resource instanceof ChannelApplicationResource) {
+                return ((ChannelApplicationResource) resource).openChannel();
+            }
+            return Channels.newChannel(resource.getInputStream());
+        }
+    }
+}
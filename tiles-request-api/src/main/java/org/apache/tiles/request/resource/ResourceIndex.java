@@ -0,0 +1,336 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The merged content of the resource index files found in the classpath, at
+ * {@link #LOCATION}. Each index file lists, one per line, the paths of the
+ * resources contained in the same classpath root (directory or jar), relative
+ * to that root. Empty lines and lines starting with <code>#</code> are ignored,
+ * except for the {@link #SUFFIXES_HEADER} line, that lists the suffixes of the
+ * indexed files when the index is restricted to some suffixes.
+ * <p>
+ * Index files are generated at build time by {@link ResourceIndexGenerator},
+ * so that classpath wildcard patterns can be matched without scanning jars.
+ * Roots without an index file, and patterns for suffixes that have not been
+ * indexed, are not covered: see {@link #isCovered(String, String)}.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public final class ResourceIndex {
+
+    /**
+     * The location of the index files in each classpath root.
+     */
+    public static final String LOCATION = "META-INF/tiles-request/resources.idx";
+
+    /**
+     * The prefix of the line that lists the suffixes of the indexed files.
+     */
+    public static final String SUFFIXES_HEADER = "# suffixes:";
+
+    /**
+     * The encoding of the index files.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * The indexed resources.
+     */
+    private List<Entry> entries;
+
+    /**
+     * The classpath roots that have an index file, keyed by URL, in class
+     * loader order.
+     */
+    private Map<String, Root> roots;
+
+    /**
+     * Constructor.
+     *
+     * @param entries The indexed resources.
+     * @param roots The classpath roots that have an index file, keyed by URL.
+     */
+    private ResourceIndex(List<Entry> entries, Map<String, Root> roots) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.roots = Collections.unmodifiableMap(roots);
+    }
+
+    /**
+     * Loads and merges all the index files visible from a class loader.
+     *
+     * @param classLoader The class loader.
+     * @return The merged index, or <code>null</code> if no index file exists.
+     * @throws IOException If an index file cannot be read.
+     */
+    public static ResourceIndex load(ClassLoader classLoader) throws IOException {
+        Enumeration<URL> indexes = classLoader.getResources(LOCATION);
+        if (!indexes.hasMoreElements()) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<Entry>();
+        Map<String, Root> roots = new LinkedHashMap<String, Root>();
+        while (indexes.hasMoreElements()) {
+            Root root = read(indexes.nextElement());
+            if (!roots.containsKey(root.url)) {
+                roots.put(root.url, root);
+                entries.addAll(root.entries);
+            }
+        }
+        return new ResourceIndex(entries, roots);
+    }
+
+    /**
+     * Returns the indexed resources.
+     *
+     * @return The indexed resources, in the order they were read.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the URLs of the classpath roots that have an index file.
+     *
+     * @return The URLs of the roots, in class loader order.
+     */
+    public Collection<String> getRoots() {
+        return roots.keySet();
+    }
+
+    /**
+     * Returns the indexed resources of a classpath root.
+     *
+     * @param rootUrl The URL of the root, ending with a slash.
+     * @return The resources of the root, empty if the root is not indexed.
+     */
+    public List<Entry> getEntries(String rootUrl) {
+        Root root = roots.get(rootUrl);
+        return root != null ? root.entries : Collections.<Entry>emptyList();
+    }
+
+    /**
+     * Checks if a classpath root has an index file.
+     *
+     * @param rootUrl The URL of the root, e.g. <code>jar:file:/lib/a.jar!/</code>
+     * or <code>file:/classes/</code>, ending with a slash.
+     * @return <code>true</code> if the root is indexed.
+     * @see #isCovered(String, String)
+     */
+    public boolean isIndexedRoot(String rootUrl) {
+        return roots.containsKey(rootUrl);
+    }
+
+    /**
+     * Checks if all the resources of a classpath root matching a pattern are
+     * listed in this index: the root must have an index file, and if the
+     * index is restricted to some suffixes, the pattern must end with one of
+     * them.
+     *
+     * @param rootUrl The URL of the root, ending with a slash.
+     * @param pattern The pattern, relative to the root.
+     * @return <code>true</code> if the index can be used instead of scanning the root.
+     */
+    public boolean isCovered(String rootUrl, String pattern) {
+        Root root = roots.get(rootUrl);
+        if (root == null) {
+            return false;
+        }
+        if (root.suffixes.isEmpty()) {
+            return true;
+        }
+        for (String suffix : root.suffixes) {
+            if (pattern.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes an index file listing every file of a root.
+     *
+     * @param paths The paths of the resources, relative to the classpath root.
+     * @param stream The stream to write to. It is not closed.
+     * @throws IOException If something goes wrong when writing.
+     */
+    public static void write(Collection<String> paths, OutputStream stream) throws IOException {
+        write(paths, Collections.<String>emptyList(), stream);
+    }
+
+    /**
+     * Writes an index file.
+     *
+     * @param paths The paths of the resources, relative to the classpath root.
+     * @param suffixes The suffixes the files have been restricted to. If
+     * empty, every file of the root is listed.
+     * @param stream The stream to write to. It is not closed.
+     * @throws IOException If something goes wrong when writing.
+     */
+    public static void write(Collection<String> paths, Collection<String> suffixes, OutputStream stream)
+            throws IOException {
+        Writer writer = new OutputStreamWriter(stream, ENCODING);
+        writer.write("# Generated by " + ResourceIndexGenerator.class.getName() + "\n");
+        if (!suffixes.isEmpty()) {
+            writer.write(SUFFIXES_HEADER);
+            for (String suffix : suffixes) {
+                writer.write(' ');
+                writer.write(suffix);
+            }
+            writer.write('\n');
+        }
+        for (String path : paths) {
+            writer.write(path);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads an index file.
+     *
+     * @param indexUrl The URL of the index file.
+     * @return The classpath root containing the index file.
+     * @throws IOException If something goes wrong when reading.
+     */
+    private static Root read(URL indexUrl) throws IOException {
+        String indexString = indexUrl.toExternalForm();
+        String root = indexString.substring(0, indexString.length() - LOCATION.length());
+        List<Entry> entries = new ArrayList<Entry>();
+        List<String> suffixes = Collections.emptyList();
+        InputStream stream = indexUrl.openStream();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream, ENCODING));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith(SUFFIXES_HEADER)) {
+                    String list = line.substring(SUFFIXES_HEADER.length()).trim();
+                    if (list.length() > 0) {
+                        suffixes = Arrays.asList(list.split("\\s+"));
+                    }
+                } else if (line.length() > 0 && line.charAt(0) != '#') {
+                    entries.add(new Entry(line, new URL(root + line)));
+                }
+            }
+        } finally {
+            stream.close();
+        }
+        return new Root(root, Collections.unmodifiableList(entries), suffixes);
+    }
+
+    /**
+     * A classpath root with an index file.
+     */
+    private static final class Root {
+
+        /**
+         * The URL of the root.
+         */
+        private final String url;
+
+        /**
+         * The indexed resources of the root.
+         */
+        private final List<Entry> entries;
+
+        /**
+         * The suffixes the index is restricted to, or an empty list.
+         */
+        private final List<String> suffixes;
+
+        /**
+         * Constructor.
+         *
+         * @param url The URL of the root.
+         * @param entries The indexed resources of the root.
+         * @param suffixes The suffixes the index is restricted to, or an empty list.
+         */
+        private Root(String url, List<Entry> entries, List<String> suffixes) {
+            this.url = url;
+            this.entries = entries;
+            this.suffixes = suffixes;
+        }
+    }
+
+    /**
+     * An indexed resource.
+     */
+    public static final class Entry {
+
+        /**
+         * The path, relative to the classpath root.
+         */
+        private String path;
+
+        /**
+         * The URL of the resource.
+         */
+        private URL url;
+
+        /**
+         * Constructor.
+         *
+         * @param path The path, relative to the classpath root.
+         * @param url The URL of the resource.
+         */
+        private Entry(String path, URL url) {
+            this.path = path;
+            this.url = url;
+        }
+
+        /**
+         * Returns the path, relative to the classpath root.
+         *
+         * @return The path.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the URL of the resource.
+         *
+         * @return The URL.
+         */
+        public URL getURL() {
+            return url;
+        }
+    }
+}
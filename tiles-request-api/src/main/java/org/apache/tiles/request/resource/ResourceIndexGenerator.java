@@ -0,0 +1,159 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates the {@link ResourceIndex#LOCATION} file of a classpath root
+ * directory, typically <code>target/classes</code>, listing the files it
+ * contains. It is meant to be run at build time, for instance with the
+ * <code>exec-maven-plugin</code> in the <code>process-classes</code> phase:
+ * <pre>
+ * java org.apache.tiles.request.resource.ResourceIndexGenerator target/classes .xml .jsp
+ * </pre>
+ * The arguments after the directory are the suffixes of the files to index;
+ * if none is given, every file is indexed. The suffixes are written in the
+ * index, so that patterns for other files still scan the root.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class ResourceIndexGenerator {
+
+    /**
+     * The root directory.
+     */
+    private File root;
+
+    /**
+     * The suffixes of the files to index. If empty, every file is indexed.
+     */
+    private List<String> suffixes;
+
+    /**
+     * Constructor.
+     *
+     * @param root The root directory.
+     * @param suffixes The suffixes of the files to index. If empty, every file is indexed.
+     */
+    public ResourceIndexGenerator(File root, List<String> suffixes) {
+        this.root = root;
+        this.suffixes = suffixes;
+    }
+
+    /**
+     * Runs the generator.
+     *
+     * @param args The root directory, followed by the suffixes of the files to index.
+     * @throws IOException If something goes wrong.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: " + ResourceIndexGenerator.class.getName()
+                    + " <classes directory> [suffix...]");
+            System.exit(1);
+        }
+        List<String> suffixes = Arrays.asList(args).subList(1, args.length);
+        File index = new ResourceIndexGenerator(new File(args[0]), suffixes).generate();
+        System.out.println("Written " + index);
+    }
+
+    /**
+     * Lists the files to index, sorted by path.
+     *
+     * @return The paths of the files, relative to the root directory.
+     */
+    public List<String> list() {
+        List<String> paths = new ArrayList<String>();
+        collect(root, "", paths);
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Writes the index file in the root directory.
+     *
+     * @return The written file.
+     * @throws IOException If something goes wrong when writing.
+     */
+    public File generate() throws IOException {
+        List<String> paths = list();
+        File index = new File(root, ResourceIndex.LOCATION.replace('/', File.separatorChar));
+        File parent = index.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        OutputStream stream = new FileOutputStream(index);
+        try {
+            ResourceIndex.write(paths, suffixes, stream);
+        } finally {
+            stream.close();
+        }
+        return index;
+    }
+
+    /**
+     * Collects the files of a directory, recursively.
+     *
+     * @param directory The directory.
+     * @param prefix The path of the directory, relative to the root.
+     * @param paths The list that receives the paths.
+     */
+    private void collect(File directory, String prefix, List<String> paths) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String path = prefix + file.getName();
+            if (file.isDirectory()) {
+                collect(file, path + "/", paths);
+            } else if (!ResourceIndex.LOCATION.equals(path) && isIndexed(path)) {
+                paths.add(path);
+            }
+        }
+    }
+
+    /**
+     * Checks if a file must be indexed.
+     *
+     * @param path The path of the file.
+     * @return <code>true</code> if the file must be indexed.
+     */
+    private boolean isIndexed(String path) {
+        if (suffixes.isEmpty()) {
+            return true;
+        }
+        for (String suffix : suffixes) {
+            if (path.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
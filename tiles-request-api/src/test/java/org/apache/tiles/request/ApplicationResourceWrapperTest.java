@@ -0,0 +1,100 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ApplicationResourceWrapper}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ApplicationResourceWrapperTest {
+
+    /**
+     * Test method for the delegating methods of {@link ApplicationResourceWrapper}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testDelegate() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        InputStream stream = createMock(InputStream.class);
+        expect(resource.getLocalePath()).andReturn("/my/path_fr.html");
+        expect(resource.getPath()).andReturn("/my/path.html");
+        expect(resource.getLocale()).andReturn(Locale.FRENCH);
+        expect(resource.getLocalePath(Locale.ITALIAN)).andReturn("/my/path_it.html");
+        expect(resource.getInputStream()).andReturn(stream);
+        expect(resource.getLastModified()).andReturn(1L);
+
+        replay(resource, stream);
+        ApplicationResourceWrapper wrapper = new ApplicationResourceWrapper(resource);
+        assertSame(resource, wrapper.getWrappedResource());
+        assertEquals("/my/path_fr.html", wrapper.getLocalePath());
+        assertEquals("/my/path.html", wrapper.getPath());
+        assertEquals(Locale.FRENCH, wrapper.getLocale());
+        assertEquals("/my/path_it.html", wrapper.getLocalePath(Locale.ITALIAN));
+        assertSame(stream, wrapper.getInputStream());
+        assertEquals(1L, wrapper.getLastModified());
+        verify(resource, stream);
+    }
+
+    /**
+     * Test method for {@link ApplicationResourceWrapper#equals(Object)}.
+     */
+    @Test
+    public void testEquals() {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        ApplicationResource other = createMock(ApplicationResource.class);
+
+        replay(resource, other);
+        ApplicationResourceWrapper wrapper = new ApplicationResourceWrapper(resource);
+        assertEquals(wrapper, new ApplicationResourceWrapper(resource));
+        assertFalse(wrapper.equals(new ApplicationResourceWrapper(other)));
+        assertFalse(wrapper.equals(resource));
+        verify(resource, other);
+    }
+
+    /**
+     * Test method for {@link ApplicationResourceWrapper#unwrap(ApplicationResource, Class)}.
+     */
+    @Test
+    public void testUnwrap() {
+        ChannelApplicationResource resource = createMock(ChannelApplicationResource.class);
+
+        replay(resource);
+        ApplicationResourceWrapper wrapper = new ApplicationResourceWrapper(new ApplicationResourceWrapper(resource));
+        assertSame(resource, ApplicationResourceWrapper.unwrap(wrapper, ChannelApplicationResource.class));
+        assertSame(wrapper, ApplicationResourceWrapper.unwrap(wrapper, ApplicationResourceWrapper.class));
+        assertSame(resource, ApplicationResourceWrapper.unwrap(resource, ChannelApplicationResource.class));
+        assertNull(ApplicationResourceWrapper.unwrap(resource, ApplicationResourceWrapper.class));
+        assertNull(ApplicationResourceWrapper.unwrap(null, ApplicationResource.class));
+        verify(resource);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RequestSnapshotBuilder}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RequestSnapshotBuilderTest {
+
+    /**
+     * Test method for {@link RequestSnapshotBuilder#build()}.
+     */
+    @Test
+    public void testBuild() {
+        Request request = createMock(Request.class);
+        ApplicationContext applicationContext = createMock(ApplicationContext.class);
+        Map<String, String[]> headerValues = new HashMap<String, String[]>();
+        headerValues.put("Accept", new String[] {"text/html", "text/plain"});
+        Map<String, String[]> paramValues = new HashMap<String, String[]>();
+        paramValues.put("page", new String[] {"1"});
+        paramValues.put("ignored", new String[] {"2"});
+        Map<String, Object> requestScope = new HashMap<String, Object>();
+        requestScope.put("attribute", "value");
+
+        expect(request.getHeaderValues()).andReturn(headerValues).times(2);
+        expect(request.getParamValues()).andReturn(paramValues);
+        expect(request.isUserInRole("admin")).andReturn(true);
+        expect(request.getContext("request")).andReturn(requestScope).times(2);
+        expect(request.getApplicationContext()).andReturn(applicationContext);
+        expect(request.getAvailableScopes()).andReturn(Arrays.asList("request", "application"));
+        expect(request.getRequestLocale()).andReturn(Locale.ITALY);
+
+        replay(request, applicationContext);
+        RequestSnapshot snapshot = RequestSnapshotBuilder.createInstance(request)
+                .addHeader("Accept").addHeader("Missing").addParam("page")
+                .addRole("admin").addAttribute("request", "attribute")
+                .addAttribute("request", "missing").build();
+        headerValues.get("Accept")[0] = "changed";
+        requestScope.put("attribute", "changed");
+
+        assertSame(applicationContext, snapshot.getApplicationContext());
+        assertEquals(Arrays.asList("request", "application"), snapshot.getAvailableScopes());
+        assertArrayEquals(new String[] {"text/html", "text/plain"}, snapshot.getHeaderValues().get("accept"));
+        assertEquals(1, snapshot.getHeaderValues().size());
+        assertEquals("1", snapshot.getParam().get("page"));
+        assertEquals(1, snapshot.getParamValues().size());
+        assertTrue(snapshot.isUserInRole("admin"));
+        assertEquals("value", snapshot.getContext("request").get("attribute"));
+        assertEquals(1, snapshot.getContext("request").size());
+        assertTrue(snapshot.getContext("application").isEmpty());
+        assertEquals(Locale.ITALY, snapshot.getRequestLocale());
+        verify(request, applicationContext);
+    }
+
+    /**
+     * Test method for {@link RequestSnapshotBuilder#addAllParams()}.
+     */
+    @Test
+    public void testAddAllParams() {
+        Request request = createMock(Request.class);
+        Map<String, String[]> paramValues = new HashMap<String, String[]>();
+        paramValues.put("one", new String[] {"1"});
+        paramValues.put("two", new String[] {"2", "3"});
+
+        expect(request.getParamValues()).andReturn(paramValues);
+        expect(request.getApplicationContext()).andReturn(null);
+        expect(request.getAvailableScopes()).andReturn(Arrays.asList("request", "application"));
+        expect(request.getRequestLocale()).andReturn(Locale.ITALY);
+
+        replay(request);
+        RequestSnapshot snapshot = RequestSnapshotBuilder.createInstance(request).addAllParams().build();
+        assertEquals(2, snapshot.getParamValues().size());
+        assertArrayEquals(new String[] {"2", "3"}, snapshot.getParamValues().get("two"));
+        assertEquals("2", snapshot.getParam().get("two"));
+        verify(request);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tiles.request.attribute.Addable;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link RequestSnapshot}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RequestSnapshotTest {
+
+    /**
+     * The snapshot to test.
+     */
+    private RequestSnapshot snapshot;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp() {
+        Map<String, String[]> headerValues = new HashMap<String, String[]>();
+        headerValues.put("Accept-Language", new String[] {"it", "en"});
+        Map<String, Map<String, Object>> scopes = new HashMap<String, Map<String, Object>>();
+        snapshot = new RequestSnapshot(null, Arrays.asList("request", "application"),
+                headerValues, Collections.<String, String[]>emptyMap(), scopes,
+                Collections.singletonMap("user", false), Locale.ITALY);
+    }
+
+    /**
+     * Test method for {@link RequestSnapshot#getHeader()}.
+     */
+    @Test
+    public void testGetHeader() {
+        assertEquals("it", snapshot.getHeader().get("accept-language"));
+        assertSame(snapshot.getHeader(), snapshot.getHeader());
+    }
+
+    /**
+     * Test method for {@link RequestSnapshot#getContext(String)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetContextWrongScope() {
+        snapshot.getContext("session");
+    }
+
+    /**
+     * Tests that scopes are copied on write.
+     */
+    @Test
+    public void testGetContextCopyOnWrite() {
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("one", 1);
+        Map<String, Map<String, Object>> scopes = new HashMap<String, Map<String, Object>>();
+        scopes.put("request", attributes);
+        RequestSnapshot snapshot = new RequestSnapshot(null, Arrays.asList("request"),
+                Collections.<String, String[]>emptyMap(), Collections.<String, String[]>emptyMap(),
+                scopes, Collections.<String, Boolean>emptyMap(), Locale.ITALY);
+        Map<String, Object> scope = snapshot.getContext("request");
+        assertEquals(1, scope.get("one"));
+        assertNull(scope.put("two", 2));
+        assertEquals(1, scope.remove("one"));
+        assertEquals(1, scope.size());
+        assertEquals(2, scope.get("two"));
+        assertEquals(1, attributes.size());
+        assertEquals(1, attributes.get("one"));
+    }
+
+    /**
+     * Tests that header arrays cannot be changed through the snapshot.
+     */
+    @Test
+    public void testGetHeaderValuesCloned() {
+        snapshot.getHeaderValues().get("Accept-Language")[0] = "fr";
+        snapshot.getHeaderValues().entrySet().iterator().next().getValue()[0] = "fr";
+        assertArrayEquals(new String[] {"it", "en"}, snapshot.getHeaderValues().get("accept-language"));
+    }
+
+    /**
+     * Test method for {@link RequestSnapshot#isUserInRole(String)}.
+     */
+    @Test
+    public void testIsUserInRole() {
+        assertFalse(snapshot.isUserInRole("user"));
+    }
+
+    /**
+     * Test method for {@link RequestSnapshot#isUserInRole(String)}.
+     */
+    @Test(expected = NotAvailableFeatureException.class)
+    public void testIsUserInRoleNotCopied() {
+        snapshot.isUserInRole("admin");
+    }
+
+    /**
+     * Test method for {@link RequestSnapshot#getOutputStream()}.
+     */
+    @Test(expected = NotAvailableFeatureException.class)
+    public void testGetOutputStream() {
+        snapshot.getOutputStream();
+    }
+
+    /**
+     * Test method for {@link RequestSnapshot#flushTo(Request)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFlushTo() throws IOException {
+        Request request = createMock(Request.class);
+        Addable<String> responseHeaders = createMock(Addable.class);
+        StringWriter writer = new StringWriter();
+
+        expect(request.getResponseHeaders()).andReturn(responseHeaders);
+        responseHeaders.setValue("Cache-Control", "no-cache");
+        expect(request.getWriter()).andReturn(writer);
+
+        replay(request, responseHeaders);
+        snapshot.getPrintWriter().print("Hello");
+        snapshot.getWriter().write(" world");
+        snapshot.getResponseHeaders().setValue("Cache-Control", "no-cache");
+        assertFalse(snapshot.isResponseCommitted());
+        assertEquals("Hello world", snapshot.getBufferedOutput());
+        snapshot.flushTo(request);
+        assertEquals("Hello world", writer.toString());
+        verify(request, responseHeaders);
+    }
+}
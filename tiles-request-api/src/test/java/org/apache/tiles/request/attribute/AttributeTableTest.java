@@ -0,0 +1,111 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.attribute;
+
+import static org.junit.Assert.*;
+
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link AttributeTable}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class AttributeTableTest {
+
+    /**
+     * The table to test.
+     */
+    private AttributeTable table;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp() {
+        table = new AttributeTable();
+    }
+
+    /**
+     * Test method for {@link AttributeTable#put(String, Object)} and {@link AttributeTable#get(String)}.
+     */
+    @Test
+    public void testPutGet() {
+        assertNull(table.put("one", 1));
+        assertEquals(1, table.put("one", 2));
+        assertEquals(2, table.get("one"));
+        assertNull(table.get("two"));
+        assertEquals(1, table.size());
+    }
+
+    /**
+     * Test method for {@link AttributeTable#put(String, Object)} with a null value.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutNull() {
+        table.put("one", null);
+    }
+
+    /**
+     * Test method for {@link AttributeTable#remove(String)}, checking that
+     * entries of the same cluster remain reachable.
+     */
+    @Test
+    public void testRemove() {
+        for (int i = 0; i < 50; i++) {
+            table.put("key" + i, i);
+        }
+        for (int i = 0; i < 50; i += 2) {
+            assertEquals(i, table.remove("key" + i));
+        }
+        assertNull(table.remove("key0"));
+        assertEquals(25, table.size());
+        for (int i = 0; i < 50; i++) {
+            if (i % 2 == 0) {
+                assertNull(table.get("key" + i));
+            } else {
+                assertEquals(i, table.get("key" + i));
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link AttributeTable#keys()}.
+     */
+    @Test
+    public void testKeys() {
+        assertFalse(table.keys().hasMoreElements());
+        table.put("one", 1);
+        table.put("two", 2);
+        Set<String> keys = new HashSet<String>();
+        for (Enumeration<String> e = table.keys(); e.hasMoreElements();) {
+            keys.add(e.nextElement());
+        }
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains("one"));
+        assertTrue(keys.contains("two"));
+    }
+}
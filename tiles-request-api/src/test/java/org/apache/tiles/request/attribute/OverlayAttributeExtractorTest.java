@@ -0,0 +1,134 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.attribute;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link OverlayAttributeExtractor}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class OverlayAttributeExtractorTest {
+
+    /**
+     * The wrapped extractor.
+     */
+    private AttributeExtractor delegate;
+
+    /**
+     * The overlay.
+     */
+    private AttributeTable overlay;
+
+    /**
+     * The extractor to test.
+     */
+    private OverlayAttributeExtractor extractor;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp() {
+        delegate = createMock(AttributeExtractor.class);
+        overlay = new AttributeTable();
+        extractor = new OverlayAttributeExtractor(delegate, overlay, Collections.singleton("local"));
+    }
+
+    /**
+     * Test method for {@link OverlayAttributeExtractor#setValue(String, Object)}.
+     */
+    @Test
+    public void testSetValue() {
+        delegate.setValue("other", "value");
+
+        replay(delegate);
+        extractor.setValue("local", "value");
+        extractor.setValue("other", "value");
+        assertEquals(1, overlay.size());
+        assertEquals("value", extractor.getValue("local"));
+        extractor.setValue("local", null);
+        assertEquals(0, overlay.size());
+        verify(delegate);
+    }
+
+    /**
+     * Test method for {@link OverlayAttributeExtractor#getValue(String)}.
+     */
+    @Test
+    public void testGetValue() {
+        expect(delegate.getValue("other")).andReturn("otherValue");
+
+        replay(delegate);
+        assertEquals("otherValue", extractor.getValue("other"));
+        assertNull(extractor.getValue("local"));
+        extractor.setValue("local", "value");
+        assertEquals("value", extractor.getValue("local"));
+        verify(delegate);
+    }
+
+    /**
+     * Test method for {@link OverlayAttributeExtractor#removeValue(String)}.
+     */
+    @Test
+    public void testRemoveValue() {
+        delegate.removeValue("other");
+
+        replay(delegate);
+        extractor.setValue("local", "value");
+        extractor.removeValue("local");
+        extractor.removeValue("other");
+        assertEquals(0, overlay.size());
+        verify(delegate);
+    }
+
+    /**
+     * Test method for {@link OverlayAttributeExtractor#getKeys()}.
+     */
+    @Test
+    public void testGetKeys() {
+        Vector<String> keys = new Vector<String>();
+        keys.add("other");
+        keys.add("local");
+        Enumeration<String> empty = new Vector<String>().elements();
+        expect(delegate.getKeys()).andReturn(empty);
+        expect(delegate.getKeys()).andReturn(keys.elements());
+
+        replay(delegate);
+        assertSame(empty, extractor.getKeys());
+        extractor.setValue("local", "value");
+        Enumeration<String> result = extractor.getKeys();
+        assertEquals("local", result.nextElement());
+        assertEquals("other", result.nextElement());
+        assertFalse(result.hasMoreElements());
+        verify(delegate);
+    }
+}
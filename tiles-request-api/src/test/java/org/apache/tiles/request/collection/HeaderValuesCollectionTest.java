@@ -108,6 +108,7 @@ public class HeaderValuesCollectionTest {
         expect(keys.nextElement()).andReturn("one");
         expect(keys.hasMoreElements()).andReturn(true);
         expect(keys.nextElement()).andReturn("two");
+        expect(keys.hasMoreElements()).andReturn(false);
 
         expect(extractor.getValues("one")).andReturn(values1);
         expect(values1.hasMoreElements()).andReturn(true);
@@ -170,18 +171,14 @@ public class HeaderValuesCollectionTest {
         Enumeration<String> values1 = createMock(Enumeration.class);
         Enumeration<String> values2 = createMock(Enumeration.class);
 
-        expect(extractor.getKeys()).andReturn(keys).times(2);
-        expect(keys.hasMoreElements()).andReturn(true);
-        expect(keys.nextElement()).andReturn("one");
+        expect(extractor.getKeys()).andReturn(keys);
         expect(keys.hasMoreElements()).andReturn(true);
         expect(keys.nextElement()).andReturn("one");
         expect(keys.hasMoreElements()).andReturn(true);
         expect(keys.nextElement()).andReturn("two");
+        expect(keys.hasMoreElements()).andReturn(false);
 
-        expect(extractor.getValues("one")).andReturn(values1).times(2);
-        expect(values1.hasMoreElements()).andReturn(true);
-        expect(values1.nextElement()).andReturn("value1");
-        expect(values1.hasMoreElements()).andReturn(false);
+        expect(extractor.getValues("one")).andReturn(values1);
         expect(values1.hasMoreElements()).andReturn(true);
         expect(values1.nextElement()).andReturn("value1");
         expect(values1.hasMoreElements()).andReturn(false);
@@ -227,6 +224,8 @@ public class HeaderValuesCollectionTest {
         expect(values2.hasMoreElements()).andReturn(true);
         expect(values2.nextElement()).andReturn("value2");
         expect(values2.hasMoreElements()).andReturn(true);
+        expect(values2.nextElement()).andReturn("value3");
+        expect(values2.hasMoreElements()).andReturn(false);
 
         replay(extractor, keys, values1, values2);
         List<String[]> coll = new ArrayList<String[]>();
@@ -0,0 +1,198 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.collection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tiles.request.attribute.EnumeratedValuesExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for {@link HeaderValuesMap} comparisons. Not run by the unit
+ * tests; after <code>mvn test-compile</code> run them with:
+ * <pre>
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; org.openjdk.jmh.Main HeaderValuesMapBenchmark
+ * </pre>
+ *
+ * @version $Rev$ $Date$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderValuesMapBenchmark {
+
+    /**
+     * The number of headers.
+     */
+    @Param({"5", "20"})
+    private int headerCount;
+
+    /**
+     * The headers, shared by the extractors.
+     */
+    private Map<String, List<String>> headers;
+
+    /**
+     * A map whose hash has already been computed.
+     */
+    private HeaderValuesMap cachedMap;
+
+    /**
+     * Another map with the same content as {@link #cachedMap}.
+     */
+    private HeaderValuesMap cachedOtherMap;
+
+    /**
+     * The value to look for.
+     */
+    private String[] lastValues;
+
+    /**
+     * Sets up the headers.
+     */
+    @Setup
+    public void setUp() {
+        headers = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < headerCount; i++) {
+            List<String> values = new ArrayList<String>();
+            values.add("value" + i + "b");
+            values.add("value" + i + "a");
+            headers.put("Header-" + i, values);
+        }
+        lastValues = new String[] {"value" + (headerCount - 1) + "a", "value" + (headerCount - 1) + "b"};
+        cachedMap = new HeaderValuesMap(new MapValuesExtractor(headers));
+        cachedOtherMap = new HeaderValuesMap(new MapValuesExtractor(headers));
+        cachedMap.hashCode();
+        cachedOtherMap.hashCode();
+    }
+
+    /**
+     * Compares two maps that have never been compared.
+     *
+     * @return The result of the comparison.
+     */
+    @Benchmark
+    public boolean equalsFresh() {
+        return new HeaderValuesMap(new MapValuesExtractor(headers)).equals(
+                new HeaderValuesMap(new MapValuesExtractor(headers)));
+    }
+
+    /**
+     * Compares two maps that have been already compared.
+     *
+     * @return The result of the comparison.
+     */
+    @Benchmark
+    public boolean equalsCached() {
+        return cachedMap.equals(cachedOtherMap);
+    }
+
+    /**
+     * Computes the hash code of a map for the first time.
+     *
+     * @return The hash code.
+     */
+    @Benchmark
+    public int hashCodeFresh() {
+        return new HeaderValuesMap(new MapValuesExtractor(headers)).hashCode();
+    }
+
+    /**
+     * Computes the hash code of a map again.
+     *
+     * @return The hash code.
+     */
+    @Benchmark
+    public int hashCodeCached() {
+        return cachedMap.hashCode();
+    }
+
+    /**
+     * Looks for the values of the last header.
+     *
+     * @return The result of the search.
+     */
+    @Benchmark
+    public boolean containsValue() {
+        return cachedMap.containsValue(lastValues);
+    }
+
+    /**
+     * Extracts header values from a map.
+     */
+    private static class MapValuesExtractor implements EnumeratedValuesExtractor {
+
+        /**
+         * The headers.
+         */
+        private Map<String, List<String>> headers;
+
+        /**
+         * Constructor.
+         *
+         * @param headers The headers.
+         */
+        public MapValuesExtractor(Map<String, List<String>> headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            return Collections.enumeration(headers.keySet());
+        }
+
+        @Override
+        public String getValue(String key) {
+            List<String> values = headers.get(key);
+            return values != null ? values.get(0) : null;
+        }
+
+        @Override
+        public Enumeration<String> getValues(String key) {
+            List<String> values = headers.get(key);
+            return Collections.enumeration(values != null ? values : Collections.<String>emptyList());
+        }
+
+        @Override
+        public void setValue(String key, String value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
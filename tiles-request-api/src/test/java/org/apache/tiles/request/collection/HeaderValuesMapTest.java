@@ -26,6 +26,8 @@ import static org.junit.Assert.*;
 
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
 
 import org.apache.tiles.request.attribute.EnumeratedValuesExtractor;
 import org.junit.Before;
@@ -134,6 +136,7 @@ public class HeaderValuesMapTest {
         expect(keys.nextElement()).andReturn("one");
         expect(keys.hasMoreElements()).andReturn(true);
         expect(keys.nextElement()).andReturn("two");
+        expect(keys.hasMoreElements()).andReturn(false);
 
         expect(extractor.getValues("one")).andReturn(values1);
         expect(values1.hasMoreElements()).andReturn(true);
@@ -196,6 +199,7 @@ public class HeaderValuesMapTest {
         Enumeration<String> values1 = createMock(Enumeration.class);
         Enumeration<String> values2 = createMock(Enumeration.class);
         EnumeratedValuesExtractor otherExtractor = createMock(EnumeratedValuesExtractor.class);
+        Enumeration<String> otherKeys = createMock(Enumeration.class);
         Enumeration<String> otherValues1 = createMock(Enumeration.class);
         Enumeration<String> otherValues2 = createMock(Enumeration.class);
 
@@ -218,6 +222,13 @@ public class HeaderValuesMapTest {
         expect(values2.nextElement()).andReturn("value3");
         expect(values2.hasMoreElements()).andReturn(false);
 
+        expect(otherExtractor.getKeys()).andReturn(otherKeys);
+        expect(otherKeys.hasMoreElements()).andReturn(true);
+        expect(otherKeys.nextElement()).andReturn("two");
+        expect(otherKeys.hasMoreElements()).andReturn(true);
+        expect(otherKeys.nextElement()).andReturn("one");
+        expect(otherKeys.hasMoreElements()).andReturn(false);
+
         expect(otherExtractor.getValues("one")).andReturn(otherValues1);
         expect(otherValues1.hasMoreElements()).andReturn(true);
         expect(otherValues1.nextElement()).andReturn("value1");
@@ -225,15 +236,90 @@ public class HeaderValuesMapTest {
 
         expect(otherExtractor.getValues("two")).andReturn(otherValues2);
         expect(otherValues2.hasMoreElements()).andReturn(true);
-        expect(otherValues2.nextElement()).andReturn("value2");
-        expect(otherValues2.hasMoreElements()).andReturn(true);
         expect(otherValues2.nextElement()).andReturn("value3");
+        expect(otherValues2.hasMoreElements()).andReturn(true);
+        expect(otherValues2.nextElement()).andReturn("value2");
         expect(otherValues2.hasMoreElements()).andReturn(false);
 
-        replay(extractor, otherExtractor, keys, values1, values2, otherValues1, otherValues2);
+        replay(extractor, otherExtractor, keys, otherKeys, values1, values2, otherValues1, otherValues2);
         HeaderValuesMap otherMap = new HeaderValuesMap(otherExtractor);
         assertTrue(map.equals(otherMap));
-        verify(extractor, otherExtractor, keys, values1, values2, otherValues1, otherValues2);
+        assertTrue(otherMap.equals(map));
+        assertEquals(map.hashCode(), otherMap.hashCode());
+        verify(extractor, otherExtractor, keys, otherKeys, values1, values2, otherValues1, otherValues2);
+    }
+
+    /**
+     * Test method for {@link org.apache.tiles.request.collection.HeaderValuesMap#equals(java.lang.Object)}
+     * when values differ.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEqualsObjectFalse() {
+        Enumeration<String> keys = createMock(Enumeration.class);
+        Enumeration<String> values1 = createMock(Enumeration.class);
+        EnumeratedValuesExtractor otherExtractor = createMock(EnumeratedValuesExtractor.class);
+        Enumeration<String> otherKeys = createMock(Enumeration.class);
+        Enumeration<String> otherValues1 = createMock(Enumeration.class);
+
+        expect(extractor.getKeys()).andReturn(keys);
+        expect(keys.hasMoreElements()).andReturn(true);
+        expect(keys.nextElement()).andReturn("one");
+        expect(keys.hasMoreElements()).andReturn(false);
+        expect(extractor.getValues("one")).andReturn(values1);
+        expect(values1.hasMoreElements()).andReturn(true);
+        expect(values1.nextElement()).andReturn("value1");
+        expect(values1.hasMoreElements()).andReturn(false);
+
+        expect(otherExtractor.getKeys()).andReturn(otherKeys);
+        expect(otherKeys.hasMoreElements()).andReturn(true);
+        expect(otherKeys.nextElement()).andReturn("one");
+        expect(otherKeys.hasMoreElements()).andReturn(false);
+        expect(otherExtractor.getValues("one")).andReturn(otherValues1);
+        expect(otherValues1.hasMoreElements()).andReturn(true);
+        expect(otherValues1.nextElement()).andReturn("value2");
+        expect(otherValues1.hasMoreElements()).andReturn(false);
+
+        replay(extractor, otherExtractor, keys, otherKeys, values1, otherValues1);
+        HeaderValuesMap otherMap = new HeaderValuesMap(otherExtractor);
+        assertFalse(map.equals(otherMap));
+        assertFalse(map.equals(otherMap));
+        assertFalse(map.equals("one"));
+        assertTrue(map.equals(map));
+        verify(extractor, otherExtractor, keys, otherKeys, values1, otherValues1);
+    }
+
+    /**
+     * Test method for {@link org.apache.tiles.request.collection.HeaderValuesMap#equals(java.lang.Object)}
+     * against other maps, that are equal only when both are empty.
+     */
+    @Test
+    public void testEqualsOtherMap() {
+        Vector<String> keys = new Vector<String>();
+        keys.add("Accept");
+        keys.add("X-Custom");
+        Vector<String> values1 = new Vector<String>();
+        values1.add("text/html");
+        values1.add("text/plain");
+
+        expect(extractor.getKeys()).andReturn(keys.elements());
+        expect(extractor.getValues("Accept")).andReturn(values1.elements());
+        expect(extractor.getKeys()).andReturn(keys.elements());
+        expect(extractor.getKeys()).andReturn(new Vector<String>().elements());
+        expect(extractor.getKeys()).andReturn(new Vector<String>().elements());
+
+        replay(extractor);
+        Map<String, String[]> other = new HashMap<String, String[]>();
+        other.put("Accept", new String[] {"text/html", "text/plain"});
+        other.put("X-Custom", new String[] {"value"});
+        assertFalse(map.equals(other));
+        assertFalse(other.equals(map));
+        other.clear();
+        assertFalse(map.equals(other));
+        HeaderValuesMap emptyMap = new HeaderValuesMap(extractor);
+        assertTrue(emptyMap.equals(other));
+        assertEquals(other.hashCode(), emptyMap.hashCode());
+        verify(extractor);
     }
 
     /**
@@ -0,0 +1,150 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.collection;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tiles.request.attribute.HasKeys;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link TypedParameterView}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TypedParameterViewTest {
+
+    /**
+     * The extractor to use.
+     */
+    private HasKeys<String> extractor;
+
+    /**
+     * The view to test.
+     */
+    private TypedParameterView view;
+
+    /**
+     * Sets up the test.
+     */
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        extractor = createMock(HasKeys.class);
+        view = new TypedParameterView(extractor);
+    }
+
+    /**
+     * Test method for {@link TypedParameterView#getInt(String, int)}.
+     */
+    @Test
+    public void testGetInt() {
+        expect(extractor.getValue("one")).andReturn("1").once();
+        expect(extractor.getValue("huge")).andReturn("12345678901").once();
+        expect(extractor.getValue("bad")).andReturn("x1").once();
+        expect(extractor.getValue("missing")).andReturn(null).once();
+
+        replay(extractor);
+        assertEquals(1, view.getInt("one", 0));
+        assertEquals(1, view.getInt("one", 0));
+        assertEquals(-1, view.getInt("huge", -1));
+        assertEquals(-1, view.getInt("bad", -1));
+        assertEquals(-1, view.getInt("bad", -1));
+        assertEquals(-1, view.getInt("missing", -1));
+        assertEquals(-1, view.getInt("missing", -1));
+        verify(extractor);
+    }
+
+    /**
+     * Test method for {@link TypedParameterView#getLong(String, long)}.
+     */
+    @Test
+    public void testGetLong() {
+        expect(extractor.getValue("huge")).andReturn(" 12345678901 ").once();
+        expect(extractor.getValue("bad")).andReturn("1.5").once();
+
+        replay(extractor);
+        assertEquals(12345678901L, view.getLong("huge", 0L));
+        assertEquals(0, view.getInt("huge", 0));
+        assertEquals(12345678901L, view.getLong("huge", 0L));
+        assertEquals(2L, view.getLong("bad", 2L));
+        verify(extractor);
+    }
+
+    /**
+     * Test method for {@link TypedParameterView#getBoolean(String, boolean)}.
+     */
+    @Test
+    public void testGetBoolean() {
+        expect(extractor.getValue("yes")).andReturn("TRUE").once();
+        expect(extractor.getValue("no")).andReturn("false").once();
+        expect(extractor.getValue("other")).andReturn("1").once();
+
+        replay(extractor);
+        assertTrue(view.getBoolean("yes", false));
+        assertTrue(view.getBoolean("yes", false));
+        assertFalse(view.getBoolean("no", true));
+        assertTrue(view.getBoolean("other", true));
+        assertEquals(1, view.getInt("other", 0));
+        verify(extractor);
+    }
+
+    /**
+     * Test method for {@link TypedParameterView#getEnum(String, Class, Enum)}.
+     */
+    @Test
+    public void testGetEnum() {
+        expect(extractor.getValue("unit")).andReturn("SECONDS").once();
+        expect(extractor.getValue("bad")).andReturn("seconds").once();
+
+        replay(extractor);
+        assertEquals(TimeUnit.SECONDS, view.getEnum("unit", TimeUnit.class, TimeUnit.DAYS));
+        assertEquals(TimeUnit.SECONDS, view.getEnum("unit", TimeUnit.class, TimeUnit.DAYS));
+        assertEquals(TimeUnit.DAYS, view.getEnum("bad", TimeUnit.class, TimeUnit.DAYS));
+        assertEquals(TimeUnit.HOURS, view.getEnum("bad", TimeUnit.class, TimeUnit.HOURS));
+        verify(extractor);
+    }
+
+    /**
+     * Tests that the cache keeps working after it grows.
+     */
+    @Test
+    public void testGrow() {
+        for (int i = 0; i < 100; i++) {
+            expect(extractor.getValue("p" + i)).andReturn(String.valueOf(i)).once();
+        }
+
+        replay(extractor);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, view.getInt("p" + i, -1));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), view.getString("p" + i));
+            assertEquals(i, view.getLong("p" + i, -1L));
+        }
+        verify(extractor);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.request.locale;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link JarEntryIndex}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class JarEntryIndexTest {
+
+    /**
+     * The jar file.
+     */
+    private File jar;
+
+    /**
+     * Sets up the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Before
+    public void setUp() throws IOException {
+        jar = File.createTempFile("tiles-templates", ".jar");
+        writeJar(100000L, "<html/>");
+    }
+
+    /**
+     * Tears down the test.
+     */
+    @After
+    public void tearDown() {
+        jar.delete();
+    }
+
+    /**
+     * Tests {@link JarEntryIndex#get(File)}.
+     */
+    @Test
+    public void testGet() {
+        JarEntryIndex index = JarEntryIndex.get(jar);
+        assertSame(index, JarEntryIndex.get(new File(jar.getAbsolutePath())));
+    }
+
+    /**
+     * Tests {@link JarEntryIndex#getLastModified(String)} and
+     * {@link JarEntryIndex#getInputStream(String, URL)}, also when the jar changes.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testRead() throws IOException {
+        URL url = getEntryURL();
+        JarEntryIndex index = JarEntryIndex.get(jar);
+        assertEquals(100000L, index.getLastModified("dir/page with space.html"));
+        assertEquals("<html/>", read(index.getInputStream("dir/page with space.html", url)));
+
+        writeJar(200000L, "<html>changed</html>");
+        assertEquals(200000L, index.getLastModified("dir/page with space.html"));
+        assertEquals("<html>changed</html>", read(index.getInputStream("dir/page with space.html", url)));
+    }
+
+    /**
+     * Tests {@link JarEntryIndex#getLastModified(String)} with a missing entry.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingEntry() throws IOException {
+        JarEntryIndex.get(jar).getLastModified("missing.html");
+    }
+
+    /**
+     * Tests {@link JarEntryIndex#getInputStream(String, URL)} with a missing entry.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingEntryStream() throws IOException {
+        JarEntryIndex.get(jar).getInputStream("missing.html",
+                new URL("jar:" + jar.toURI().toURL().toExternalForm() + "!/missing.html"));
+    }
+
+    /**
+     * Tests that {@link URLApplicationResource} reads jar entries through the index.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testURLApplicationResource() throws IOException {
+        URL url = getEntryURL();
+        URLApplicationResource resource = new URLApplicationResource("/dir/page with space.html", url);
+        assertEquals(100000L, resource.getLastModified());
+        assertEquals("<html/>", read(resource.getInputStream()));
+    }
+
+    /**
+     * Returns the URL of the entry of the jar.
+     *
+     * @return The URL.
+     * @throws IOException If something goes wrong.
+     */
+    private URL getEntryURL() throws IOException {
+        return new URL("jar:" + jar.toURI().toURL().toExternalForm() + "!/dir/page%20with%20space.html");
+    }
+
+    /**
+     * Writes the jar with a single entry.
+     *
+     * @param time The time of the entry.
+     * @param content The content of the entry.
+     * @throws IOException If something goes wrong.
+     */
+    private void writeJar(long time, String content) throws IOException {
+        JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            ZipEntry entry = new ZipEntry("dir/page with space.html");
+            entry.setTime(time);
+            stream.putNextEntry(entry);
+            stream.write(content.getBytes("UTF-8"));
+            stream.closeEntry();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads a stream as a string.
+     *
+     * @param stream The stream.
+     * @return The content.
+     * @throws IOException If something goes wrong.
+     */
+    private static String read(InputStream stream) throws IOException {
+        try {
+            StringBuilder builder = new StringBuilder();
+            int c;
+            while ((c = stream.read()) >= 0) {
+                builder.append((char) c);
+            }
+            return builder.toString();
+        } finally {
+            stream.close();
+        }
+    }
+}
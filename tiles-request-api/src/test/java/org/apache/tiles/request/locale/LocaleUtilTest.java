@@ -21,6 +21,8 @@
 
 package org.apache.tiles.request.locale;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 import junit.framework.TestCase;
@@ -48,4 +50,20 @@ public class LocaleUtilTest extends TestCase {
         assertEquals("The parent locale of 'es_ES_Traditional_WIN' is not correct",
                 parentLocale, LocaleUtil.getParentLocale(locale));
     }
+
+    /**
+     * Test method for {@link LocaleUtil#getFallbackChain(Locale)}.
+     */
+    public void testGetFallbackChain() {
+        Locale locale = new Locale("es", "ES", "Traditional_WIN");
+        List<Locale> chain = LocaleUtil.getFallbackChain(locale);
+        assertEquals(Arrays.asList(locale, new Locale("es", "ES"),
+                new Locale("es"), Locale.ROOT), chain);
+        assertEquals(chain, LocaleUtil.getFallbackChain(locale));
+        assertNotSame(chain, LocaleUtil.getFallbackChain(locale));
+        List<Locale> parentChain = LocaleUtil.getFallbackChain(new Locale("es", "ES"));
+        assertSame(parentChain, LocaleUtil.getFallbackChain(new Locale("es", "ES")));
+        assertSame(chain.get(1), parentChain.get(0));
+        assertEquals(Arrays.asList(Locale.ROOT), LocaleUtil.getFallbackChain(Locale.ROOT));
+    }
 }
@@ -32,6 +32,8 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
 import java.net.URLStreamHandlerFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Locale;
 
 import org.junit.After;
@@ -40,9 +42,12 @@ import org.junit.Test;
 
 import static java.lang.System.setProperty;
 import static java.lang.reflect.Modifier.FINAL;
+import static org.apache.tiles.request.locale.URLApplicationResource.MAPPED_DIRECTORIES_PROPERTY;
 import static org.apache.tiles.request.locale.URLApplicationResource.REMOTE_PROTOCOLS_PROPERTY;
+import static org.apache.tiles.request.locale.URLApplicationResource.initMappedDirectories;
 import static org.apache.tiles.request.locale.URLApplicationResource.initRemoteProtocols;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -81,8 +86,11 @@ public class URLApplicationResourceTest {
     }
 
     @After
-    public void tearDown() {
+    public void tearDown() throws Exception {
         setProperty(REMOTE_PROTOCOLS_PROPERTY, "");
+        setRemoteProtocols();
+        setProperty(MAPPED_DIRECTORIES_PROPERTY, "");
+        setMappedDirectories();
     }
 
     /**
@@ -225,6 +233,67 @@ public class URLApplicationResourceTest {
     	is.close();
     }
 
+    @Test
+    public void testGetContent() throws IOException {
+        URL url = getClass().getClassLoader().getResource("org/apache/tiles/request/test/locale/resource.txt");
+        URLApplicationResource resource = new URLApplicationResource("org/apache/tiles/request/test/locale/resource.txt", url);
+        ByteBuffer content = resource.getContent();
+        assertTrue(content.isReadOnly());
+        assertFalse(content.isDirect());
+        assertEquals(new File(url.getFile()).length(), content.remaining());
+        content.position(content.limit());
+        ByteBuffer other = resource.getContent();
+        assertEquals(0, other.position());
+        assertEquals(content.limit(), other.remaining());
+    }
+
+    @Test
+    public void testGetContentMapped() throws Exception {
+        URL url = getClass().getClassLoader().getResource("org/apache/tiles/request/test/locale/resource.txt");
+        File file = new File(url.toURI());
+        setProperty(MAPPED_DIRECTORIES_PROPERTY, "/nonexistent;" + file.getParent());
+        setMappedDirectories();
+        URLApplicationResource resource = new URLApplicationResource("org/apache/tiles/request/test/locale/resource.txt", url);
+        ByteBuffer content = resource.getContent();
+        assertTrue(content.isReadOnly());
+        assertTrue(content.isDirect());
+        assertEquals(file.length(), content.remaining());
+    }
+
+    @Test
+    public void testGetContentFromJar() throws IOException {
+        URL url = Test.class.getResource("Test.class");
+        assertEquals("jar", url.getProtocol());
+        URLApplicationResource resource = new URLApplicationResource(url.toExternalForm(), url);
+        ByteBuffer content = resource.getContent();
+        assertTrue(content.isReadOnly());
+        assertFalse(content.isDirect());
+        assertEquals(0xCA, content.get(0) & 0xFF);
+        assertEquals(content.remaining(), resource.getContent().remaining());
+        ReadableByteChannel channel = resource.openChannel();
+        ByteBuffer read = ByteBuffer.allocate(content.remaining() + 1);
+        while (channel.read(read) >= 0) {
+            // read everything
+        }
+        channel.close();
+        read.flip();
+        assertEquals(content, read);
+    }
+
+    @Test
+    public void testOpenChannel() throws IOException {
+        URL url = getClass().getClassLoader().getResource("org/apache/tiles/request/test/locale/resource.txt");
+        URLApplicationResource resource = new URLApplicationResource("org/apache/tiles/request/test/locale/resource.txt", url);
+        ReadableByteChannel channel = resource.openChannel();
+        ByteBuffer read = ByteBuffer.allocate(1024);
+        while (channel.read(read) >= 0) {
+            // read everything
+        }
+        channel.close();
+        read.flip();
+        assertEquals(resource.getContent(), read);
+    }
+
     @Test(expected = FileNotFoundException.class)
     public void testLocalProtocol() throws IOException {
         URL url = new URL("test1://foo/bar.txt");
@@ -235,12 +304,7 @@ public class URLApplicationResourceTest {
     @Test
     public void testAdditionalRemoteProtocolViaSystemProperties() throws Exception {
         setProperty(REMOTE_PROTOCOLS_PROPERTY, "test1;test2");
-        Field f = URLApplicationResource.class.getDeclaredField("REMOTE_PROTOCOLS");
-        Field m = Field.class.getDeclaredField("modifiers");
-        m.setAccessible(true);
-        m.setInt(f, f.getModifiers() & ~FINAL);
-        f.setAccessible(true);
-        f.set(URLApplicationResource.class, initRemoteProtocols());
+        setRemoteProtocols();
 
         URL url = new URL("test1://foo/bar.txt");
         URLApplicationResource resource = new URLApplicationResource("org/apache/tiles/request/test/locale/resource.txt", url);
@@ -252,4 +316,28 @@ public class URLApplicationResourceTest {
             assertEquals(EXPECTED_MESSAGE, e.getMessage());
         }
     }
+
+    /**
+     * Reinitializes the remote protocols of {@link URLApplicationResource}
+     * from the system properties.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    private static void setRemoteProtocols() throws Exception {
+        Field f = URLApplicationResource.class.getDeclaredField("REMOTE_PROTOCOLS");
+        Field m = Field.class.getDeclaredField("modifiers");
+        m.setAccessible(true);
+        m.setInt(f, f.getModifiers() & ~FINAL);
+        f.setAccessible(true);
+        f.set(URLApplicationResource.class, initRemoteProtocols());
+    }
+
+    private static void setMappedDirectories() throws Exception {
+        Field f = URLApplicationResource.class.getDeclaredField("MAPPED_DIRECTORIES");
+        Field m = Field.class.getDeclaredField("modifiers");
+        m.setAccessible(true);
+        m.setInt(f, f.getModifiers() & ~FINAL);
+        f.setAccessible(true);
+        f.set(URLApplicationResource.class, initMappedDirectories());
+    }
 }
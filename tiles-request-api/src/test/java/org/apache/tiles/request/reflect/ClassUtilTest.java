@@ -24,6 +24,8 @@ package org.apache.tiles.request.reflect;
 import static org.junit.Assert.*;
 
 import java.beans.PropertyDescriptor;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -66,6 +68,63 @@ public class ClassUtilTest {
         assertNotNull(descriptor.getWriteMethod());
     }
 
+    /**
+     * Tests that bean infos are introspected once.
+     */
+    @Test
+    public void testCollectBeanInfoCached() {
+        Map<String, PropertyDescriptor> first = new HashMap<String, PropertyDescriptor>();
+        Map<String, PropertyDescriptor> second = new HashMap<String, PropertyDescriptor>();
+        ClassUtil.collectBeanInfo(TestInterface.class, first);
+        ClassUtil.collectBeanInfo(TestInterface.class, second);
+        assertSame(first.get("value"), second.get("value"));
+        assertEquals(int.class, first.get("value").getValue("type"));
+        assertEquals(Boolean.TRUE, first.get("value").getValue("resolvableAtDesignTime"));
+    }
+
+    /**
+     * Test method for {@link ClassUtil#getPropertyAccessors(Class)}.
+     */
+    @Test
+    public void testGetPropertyAccessors() {
+        Map<String, PropertyAccessor> accessors = ClassUtil.getPropertyAccessors(TestBean.class);
+        assertSame(accessors, ClassUtil.getPropertyAccessors(TestBean.class));
+        TestBean bean = new TestBean();
+        PropertyAccessor accessor = accessors.get("count");
+        assertEquals("count", accessor.getName());
+        assertEquals(int.class, accessor.getPropertyType());
+        assertTrue(accessor.isReadable());
+        assertTrue(accessor.isWritable());
+        accessor.setValue(bean, 3);
+        assertEquals(3, accessor.getValue(bean));
+        accessor = accessors.get("label");
+        assertFalse(accessor.isWritable());
+        assertEquals("label", accessor.getValue(bean));
+        try {
+            accessor.setValue(bean, "other");
+            fail("CannotAccessMethodException expected");
+        } catch (CannotAccessMethodException e) {
+            // expected
+        }
+        accessor = accessors.get("broken");
+        try {
+            accessor.getValue(bean);
+            fail("CannotAccessMethodException expected");
+        } catch (CannotAccessMethodException e) {
+            assertTrue(e.getCause() instanceof Exception);
+        }
+    }
+
+    /**
+     * Tests the accessors of a class of a parent class loader, which are not cached.
+     */
+    @Test
+    public void testGetPropertyAccessorsParentLoaderClass() {
+        Map<String, PropertyAccessor> accessors = ClassUtil.getPropertyAccessors(Thread.class);
+        assertNotSame(accessors, ClassUtil.getPropertyAccessors(Thread.class));
+        assertEquals(Thread.currentThread().getName(), accessors.get("name").getValue(Thread.currentThread()));
+    }
+
     /**
      * Test method for {@link org.apache.tiles.request.reflect.ClassUtil#getClass(String, Class)}.
      * @throws ClassNotFoundException If something goes wrong.
@@ -94,6 +153,50 @@ public class ClassUtilTest {
         assertNull(ClassUtil.instantiate("this.class.does.not.Exist", true));
     }
 
+    /**
+     * Tests that classes and missing classes are cached per class loader.
+     *
+     * @throws ClassNotFoundException If something goes wrong.
+     */
+    @Test
+    public void testCache() throws ClassNotFoundException {
+        ClassUtil.clearCache();
+        assertSame(TestClass.class, ClassUtil.getClass(TestClass.class.getName(), Object.class));
+        assertSame(TestClass.class, ClassUtil.getClass(TestClass.class.getName(), Object.class));
+        assertNotSame(ClassUtil.instantiate(TestClass.class.getName()),
+                ClassUtil.instantiate(TestClass.class.getName()));
+        assertNull(ClassUtil.instantiate("this.class.does.not.Exist", true));
+        assertNull(ClassUtil.instantiate("this.class.does.not.Exist", true));
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[0], null));
+        try {
+            assertNull(ClassUtil.instantiate(TestClass.class.getName(), true));
+            assertNull(ClassUtil.instantiate(TestClass.class.getName(), true));
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+        assertTrue(ClassUtil.instantiate(TestClass.class.getName(), true) instanceof TestClass);
+    }
+
+    /**
+     * Tests the instantiation of classes of a parent class loader, whose
+     * constructors are not cached.
+     */
+    @Test
+    public void testInstantiateParentLoaderClass() {
+        Object first = ClassUtil.instantiate(HashMap.class.getName());
+        assertTrue(first instanceof HashMap);
+        assertNotSame(first, ClassUtil.instantiate(HashMap.class.getName()));
+    }
+
+    /**
+     * Tests that exceptions thrown by constructors are reported.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testInstantiateThrowingConstructor() {
+        ClassUtil.instantiate(TestThrowingClass.class.getName());
+    }
+
     /**
      * Test method for {@link org.apache.tiles.request.reflect.ClassUtil#instantiate(String, boolean)}.
      */
@@ -168,6 +271,67 @@ public class ClassUtilTest {
     public static class TestClass {
     }
 
+    /**
+     * A test bean.
+     */
+    public static class TestBean {
+
+        /**
+         * The count.
+         */
+        private int count;
+
+        /**
+         * Returns the count.
+         *
+         * @return The count.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Sets the count.
+         *
+         * @param count The count.
+         */
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        /**
+         * Returns the label.
+         *
+         * @return The label.
+         */
+        public String getLabel() {
+            return "label";
+        }
+
+        /**
+         * Always throws a checked exception.
+         *
+         * @return Nothing.
+         * @throws Exception Always.
+         */
+        public String getBroken() throws Exception {
+            throw new Exception("Thrown on purpose");
+        }
+    }
+
+    /**
+     * A test class whose constructor throws an exception.
+     */
+    public static class TestThrowingClass {
+
+        /**
+         * Constructor.
+         */
+        public TestThrowingClass() {
+            throw new IllegalStateException("Thrown on purpose");
+        }
+    }
+
     /**
      * A test static private class.
      */
@@ -0,0 +1,110 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ApplicationResourceWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ChangeMonitoringApplicationContext}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ChangeMonitoringApplicationContextTest {
+
+    /**
+     * The wrapped context.
+     */
+    private ApplicationContext wrapped;
+
+    /**
+     * The change monitor.
+     */
+    private ResourceChangeMonitor monitor;
+
+    /**
+     * The context to test.
+     */
+    private ChangeMonitoringApplicationContext context;
+
+    /**
+     * Sets up the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Before
+    public void setUp() throws IOException {
+        wrapped = createMock(ApplicationContext.class);
+        monitor = new ResourceChangeMonitor();
+        context = new ChangeMonitoringApplicationContext(wrapped, monitor);
+    }
+
+    /**
+     * Tears down the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @After
+    public void tearDown() throws IOException {
+        monitor.close();
+    }
+
+    /**
+     * Tests resource getting through the context.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetResource() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        ApplicationResource resourceFr = createMock(ApplicationResource.class);
+        expect(wrapped.getResource("/my/path.html")).andReturn(resource);
+        expect(wrapped.getResource("/null/path.html")).andReturn(null);
+        expect(wrapped.getResource(resource, Locale.FRENCH)).andReturn(resourceFr);
+        expect(wrapped.getResources("/my/*.html")).andReturn(Collections.singletonList(resource));
+        expect(resource.getLastModified()).andReturn(1L);
+
+        replay(wrapped, resource, resourceFr);
+        assertSame(monitor, context.getMonitor());
+        ApplicationResource monitored = context.getResource("/my/path.html");
+        assertSame(resource, ((ApplicationResourceWrapper) monitored).getWrappedResource());
+        assertEquals(1L, monitored.getLastModified());
+        assertNull(context.getResource("/null/path.html"));
+        ApplicationResource monitoredFr = context.getResource(monitored, Locale.FRENCH);
+        assertSame(resourceFr, ((ApplicationResourceWrapper) monitoredFr).getWrappedResource());
+        Collection<ApplicationResource> resources = context.getResources("/my/*.html");
+        assertEquals(monitored, resources.iterator().next());
+        verify(wrapped, resource, resourceFr);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.junit.Test;
+
+/**
+ * Tests {@link ContentCache}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ContentCacheTest {
+
+    /**
+     * Test method for {@link ContentCache#get(ApplicationResource)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGet() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        expect(resource.getLocalePath()).andReturn("/my/path.html").times(2);
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+
+        replay(resource);
+        ContentCache cache = new ContentCache(16, 16, -1L, false);
+        ByteBuffer content = cache.get(resource);
+        assertTrue(content.isReadOnly());
+        assertFalse(content.isDirect());
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), content);
+        content.get();
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), cache.get(resource));
+        assertEquals(1, cache.size());
+        assertEquals(3L, cache.getCachedBytes());
+        verify(resource);
+    }
+
+    /**
+     * Test method for {@link ContentCache#get(ApplicationResource)}, in off-heap mode.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetOffHeap() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        expect(resource.getLocalePath()).andReturn("/my/path.html");
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+
+        replay(resource);
+        ContentCache cache = new ContentCache(16, 16, -1L, true);
+        ByteBuffer content = cache.get(resource);
+        assertTrue(content.isDirect());
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), content);
+        verify(resource);
+    }
+
+    /**
+     * Test method for {@link ContentCache#get(ApplicationResource)}, with
+     * revalidation at every access.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetRevalidate() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        expect(resource.getLocalePath()).andReturn("/my/path.html").times(3);
+        expect(resource.getLastModified()).andReturn(1L).times(2);
+        expect(resource.getLastModified()).andReturn(2L);
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream(new byte[] {4, 5}));
+
+        replay(resource);
+        ContentCache cache = new ContentCache(16, 16, 0L, false);
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), cache.get(resource));
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), cache.get(resource));
+        assertEquals(ByteBuffer.wrap(new byte[] {4, 5}), cache.get(resource));
+        assertEquals(2L, cache.getCachedBytes());
+        verify(resource);
+    }
+
+    /**
+     * Tests that the least recently used entries are evicted, and that big
+     * resources are not cached.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        ApplicationResource one = createMock(ApplicationResource.class);
+        ApplicationResource two = createMock(ApplicationResource.class);
+        ApplicationResource big = createMock(ApplicationResource.class);
+        expect(one.getLocalePath()).andReturn("/one").anyTimes();
+        expect(two.getLocalePath()).andReturn("/two").anyTimes();
+        expect(big.getLocalePath()).andReturn("/big").anyTimes();
+        expect(one.getInputStream()).andReturn(new ByteArrayInputStream(new byte[3]));
+        expect(one.getInputStream()).andReturn(new ByteArrayInputStream(new byte[3]));
+        expect(two.getInputStream()).andReturn(new ByteArrayInputStream(new byte[3]));
+        expect(two.getInputStream()).andReturn(new ByteArrayInputStream(new byte[3]));
+        expect(big.getInputStream()).andReturn(new ByteArrayInputStream(new byte[5]));
+        expect(big.getInputStream()).andReturn(new ByteArrayInputStream(new byte[5]));
+
+        replay(one, two, big);
+        ContentCache cache = new ContentCache(4, 4, -1L, false);
+        cache.get(one);
+        cache.get(two);
+        assertEquals(1, cache.size());
+        cache.get(one);
+        assertEquals(3L, cache.getCachedBytes());
+        assertEquals(5, cache.get(big).remaining());
+        assertEquals(5, cache.get(big).remaining());
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0L, cache.getCachedBytes());
+        cache.get(two);
+        verify(one, two, big);
+    }
+
+    /**
+     * Tests that a file is read into the cache without being kept by the
+     * resource itself.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testGetFileResource() throws Exception {
+        File file = File.createTempFile("content", ".html");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[] {1, 2, 3});
+            } finally {
+                out.close();
+            }
+            URLApplicationResource resource = new URLApplicationResource("/content.html", file.toURI().toURL());
+            ContentCache cache = new ContentCache(16, 16, -1L, true);
+            ByteBuffer content = cache.get(resource);
+            assertTrue(content.isDirect());
+            assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), content);
+            assertEquals(3L, cache.getCachedBytes());
+            Field field = URLApplicationResource.class.getDeclaredField("content");
+            field.setAccessible(true);
+            assertNull(field.get(resource));
+        } finally {
+            file.delete();
+        }
+    }
+}
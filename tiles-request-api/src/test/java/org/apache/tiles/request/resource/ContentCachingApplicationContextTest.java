@@ -0,0 +1,118 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ChannelApplicationResource;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ContentCachingApplicationContext}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ContentCachingApplicationContextTest {
+
+    /**
+     * The wrapped context.
+     */
+    private ApplicationContext wrapped;
+
+    /**
+     * The context to test.
+     */
+    private ContentCachingApplicationContext context;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp() {
+        wrapped = createMock(ApplicationContext.class);
+        context = new ContentCachingApplicationContext(wrapped, new ContentCache(1024, 1024, -1L, false));
+    }
+
+    /**
+     * Test method for {@link ContentCachingApplicationContext#getResource(String)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetResource() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        expect(wrapped.getResource("/my/path.html")).andReturn(resource).times(2);
+        expect(wrapped.getResource("/null/path.html")).andReturn(null);
+        expect(resource.getLocalePath()).andReturn("/my/path.html").anyTimes();
+        expect(resource.getPath()).andReturn("/my/path.html");
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+
+        replay(wrapped, resource);
+        ApplicationResource cached = context.getResource("/my/path.html");
+        assertEquals("/my/path.html", cached.getPath());
+        assertEquals(cached, context.getResource("/my/path.html"));
+        assertNull(context.getResource("/null/path.html"));
+        for (int i = 0; i < 2; i++) {
+            InputStream stream = cached.getInputStream();
+            assertEquals(1, stream.read());
+            byte[] rest = new byte[4];
+            assertEquals(2, stream.read(rest, 0, rest.length));
+            assertEquals(3, rest[1]);
+            assertEquals(-1, stream.read());
+            stream.close();
+        }
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), ((ChannelApplicationResource) cached).getContent());
+        verify(wrapped, resource);
+    }
+
+    /**
+     * Test method for {@link ContentCachingApplicationContext#getResource(ApplicationResource, Locale)}
+     * and {@link ContentCachingApplicationContext#getResources(String)}.
+     */
+    @Test
+    public void testGetLocalizedResources() {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        ApplicationResource resourceFr = createMock(ApplicationResource.class);
+        expect(wrapped.getResources("/my/*.html")).andReturn(Collections.singletonList(resource));
+        expect(wrapped.getResource(resource, Locale.FRENCH)).andReturn(resourceFr);
+        expect(resourceFr.getLocale()).andReturn(Locale.FRENCH);
+
+        replay(wrapped, resource, resourceFr);
+        Collection<ApplicationResource> resources = context.getResources("/my/*.html");
+        assertEquals(1, resources.size());
+        ApplicationResource cached = resources.iterator().next();
+        assertEquals(Locale.FRENCH, context.getResource(cached, Locale.FRENCH).getLocale());
+        verify(wrapped, resource, resourceFr);
+    }
+}
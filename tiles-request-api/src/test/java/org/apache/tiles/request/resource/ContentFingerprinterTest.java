@@ -0,0 +1,145 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ChannelApplicationResource;
+import org.apache.tiles.request.Request;
+import org.apache.tiles.request.attribute.Addable;
+import org.junit.Test;
+
+/**
+ * Tests {@link ContentFingerprinter}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ContentFingerprinterTest {
+
+    /**
+     * The MD5 digest of "abc".
+     */
+    private static final String ABC_MD5 = "900150983cd24fb0d6963f7d28e17f72";
+
+    /**
+     * Test method for {@link ContentFingerprinter#getFingerprint(ApplicationResource)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetFingerprint() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        expect(resource.getLocalePath()).andReturn("/css/site.css").anyTimes();
+        expect(resource.getLastModified()).andReturn(1000L).times(2);
+        expect(resource.getLastModified()).andReturn(2000L);
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream("abcd".getBytes("UTF-8")));
+
+        replay(resource);
+        ContentFingerprinter fingerprinter = new ContentFingerprinter();
+        assertEquals(ABC_MD5, fingerprinter.getFingerprint(resource));
+        assertEquals(ABC_MD5, fingerprinter.getFingerprint(resource));
+        assertEquals("e2fc714c4727ee9395f324cd2e7f331f", fingerprinter.getFingerprint(resource));
+        assertEquals(1, fingerprinter.size());
+        fingerprinter.invalidate("/css/site.css");
+        assertEquals(0, fingerprinter.size());
+        verify(resource);
+    }
+
+    /**
+     * Test method for {@link ContentFingerprinter#getFingerprint(ApplicationResource)},
+     * with a channel resource whose modification date is unknown.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetFingerprintChannel() throws IOException {
+        ChannelApplicationResource resource = createMock(ChannelApplicationResource.class);
+        expect(resource.getLocalePath()).andReturn("/js/app.js").anyTimes();
+        expect(resource.getLastModified()).andReturn(0L).times(2);
+        expect(resource.openChannel()).andReturn(
+                Channels.newChannel(new ByteArrayInputStream("abc".getBytes("UTF-8"))));
+        expect(resource.openChannel()).andReturn(
+                Channels.newChannel(new ByteArrayInputStream("abc".getBytes("UTF-8"))));
+
+        replay(resource);
+        ContentFingerprinter fingerprinter = new ContentFingerprinter(16, "MD5");
+        assertEquals(ABC_MD5, fingerprinter.getFingerprint(resource));
+        assertEquals(ABC_MD5, fingerprinter.getFingerprint(resource));
+        assertEquals(0, fingerprinter.size());
+        verify(resource);
+    }
+
+    /**
+     * Test method for {@link ContentFingerprinter#getFingerprintedPath(ApplicationResource)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetFingerprintedPath() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        ApplicationResource noSuffix = createMock(ApplicationResource.class);
+        expect(resource.getLocalePath()).andReturn("/css/site.css").anyTimes();
+        expect(resource.getLastModified()).andReturn(1000L);
+        expect(resource.getInputStream()).andReturn(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+        expect(noSuffix.getLocalePath()).andReturn("/my.dir/LICENSE").anyTimes();
+        expect(noSuffix.getLastModified()).andReturn(1000L);
+        expect(noSuffix.getInputStream()).andReturn(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+
+        replay(resource, noSuffix);
+        ContentFingerprinter fingerprinter = new ContentFingerprinter();
+        assertEquals("/css/site.900150983c.css", fingerprinter.getFingerprintedPath(resource));
+        assertEquals("/my.dir/LICENSE.900150983c", fingerprinter.getFingerprintedPath(noSuffix));
+        verify(resource, noSuffix);
+    }
+
+    /**
+     * Test method for {@link ContentFingerprinter#setImmutableHeaders(Request, String)}.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSetImmutableHeaders() {
+        Request request = createMock(Request.class);
+        Addable<String> headers = createMock(Addable.class);
+        expect(request.getResponseHeaders()).andReturn(headers);
+        headers.setValue("ETag", "\"" + ABC_MD5 + "\"");
+        headers.setValue("Cache-Control", "public, max-age=31536000, immutable");
+
+        replay(request, headers);
+        ContentFingerprinter.setImmutableHeaders(request, ABC_MD5);
+        verify(request, headers);
+    }
+
+    /**
+     * Tests that unknown algorithms are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlgorithm() {
+        new ContentFingerprinter(16, "NO-SUCH-DIGEST");
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.junit.Test;
+
+/**
+ * Tests {@link IndexedApplicationContext}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class IndexedApplicationContextTest {
+
+    /**
+     * Test method for {@link IndexedApplicationContext#getResource(ApplicationResource, Locale)}.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testGetResource() throws Exception {
+        ApplicationContext context = createMock(ApplicationContext.class);
+        ApplicationResource resource = new URLApplicationResource("/WEB-INF/path.jsp",
+                new URL("file:///WEB-INF/path.jsp"));
+        ApplicationResource outside = new URLApplicationResource("/other/path.jsp",
+                new URL("file:///other/path.jsp"));
+        ApplicationResource outsideFr = createMock(ApplicationResource.class);
+        expect(context.getResource(outside, Locale.FRENCH)).andReturn(outsideFr);
+
+        replay(context, outsideFr);
+        LocalizedResourceIndex index = new LocalizedResourceIndex(context,
+                Collections.<String>emptyList());
+        index.add(resource);
+        IndexedApplicationContext indexed = new IndexedApplicationContext(context, index);
+        assertSame(index, indexed.getIndex());
+        assertNull(indexed.getResource(resource, Locale.FRENCH));
+        assertSame(outsideFr, indexed.getResource(outside, Locale.FRENCH));
+        verify(context, outsideFr);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.Request;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.junit.Test;
+
+/**
+ * Tests {@link LocaleNegotiator}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocaleNegotiatorTest {
+
+    /**
+     * Test method for {@link LocaleNegotiator#getPreferredLocales(String)}.
+     */
+    @Test
+    public void testGetPreferredLocales() {
+        LocaleNegotiator negotiator = new LocaleNegotiator();
+        List<Locale> locales = negotiator.getPreferredLocales("it;q=0.5, fr-CA, de;q=0, *;q=0.1, en-us;q=0.8, fr-CA;q=0.2");
+        assertEquals(Arrays.asList(Locale.CANADA_FRENCH, Locale.US, Locale.ITALIAN), locales);
+        assertSame(locales, negotiator.getPreferredLocales("it;q=0.5, fr-CA, de;q=0, *;q=0.1, en-us;q=0.8, fr-CA;q=0.2"));
+        assertEquals(Arrays.asList(Locale.TRADITIONAL_CHINESE, Locale.ENGLISH),
+                negotiator.getPreferredLocales("zh-Hant-TW, en;q=abc, en;q=0.5"));
+        assertTrue(negotiator.getPreferredLocales(null).isEmpty());
+        assertTrue(negotiator.getPreferredLocales("").isEmpty());
+    }
+
+    /**
+     * Tests that the least recently used header is forgotten when the memo is full.
+     */
+    @Test
+    public void testGetPreferredLocalesEviction() {
+        LocaleNegotiator negotiator = new LocaleNegotiator(2);
+        List<Locale> french = negotiator.getPreferredLocales("fr");
+        List<Locale> italian = negotiator.getPreferredLocales("it");
+        assertSame(french, negotiator.getPreferredLocales("fr"));
+        negotiator.getPreferredLocales("de");
+        assertSame(french, negotiator.getPreferredLocales("fr"));
+        assertNotSame(italian, negotiator.getPreferredLocales("it"));
+    }
+
+    /**
+     * Test method for {@link LocaleNegotiator#negotiate(String, java.util.Collection)}.
+     */
+    @Test
+    public void testNegotiateHeader() {
+        LocaleNegotiator negotiator = new LocaleNegotiator();
+        Set<Locale> available = new HashSet<Locale>(Arrays.asList(Locale.ROOT, Locale.FRENCH, Locale.ITALY));
+        assertEquals(Locale.FRENCH, negotiator.negotiate("fr-CA, it-IT;q=0.9", available));
+        assertEquals(Locale.ITALY, negotiator.negotiate("de, it-IT;q=0.9, fr;q=0.8", available));
+        assertNull(negotiator.negotiate("de, en", available));
+        assertNull(negotiator.negotiate("it", available));
+    }
+
+    /**
+     * Test method for {@link LocaleNegotiator#negotiate(Request, java.util.Collection)}.
+     */
+    @Test
+    public void testNegotiateRequest() {
+        Request request = createMock(Request.class);
+        Request noHeader = createMock(Request.class);
+        expect(request.getHeader()).andReturn(Collections.singletonMap("Accept-Language", "it, fr;q=0.5"));
+        expect(noHeader.getHeader()).andReturn(Collections.<String, String>emptyMap());
+        expect(noHeader.getRequestLocale()).andReturn(Locale.CANADA_FRENCH);
+
+        replay(request, noHeader);
+        LocaleNegotiator negotiator = new LocaleNegotiator();
+        Set<Locale> available = new HashSet<Locale>(Arrays.asList(Locale.FRENCH));
+        assertEquals(Locale.FRENCH, negotiator.negotiate(request, available));
+        assertEquals(Locale.FRENCH, negotiator.negotiate(noHeader, available));
+        verify(request, noHeader);
+    }
+
+    /**
+     * Test method for {@link LocaleNegotiator#negotiate(Request, LocalizedResourceIndex, String)}.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testNegotiateIndexed() throws Exception {
+        ApplicationContext applicationContext = createMock(ApplicationContext.class);
+        Request request = createMock(Request.class);
+        URL url = new URL("file:/tmp/defs.xml");
+        ApplicationResource root = new URLApplicationResource("/defs.xml", url);
+        ApplicationResource french = new URLApplicationResource("/defs_fr.xml", url);
+        ApplicationResource italian = new URLApplicationResource("/defs_it.xml", url);
+        expect(applicationContext.getResources("/*.xml")).andReturn(Arrays.asList(root, french));
+        expect(request.getHeader()).andReturn(Collections.singletonMap("Accept-Language", "it, fr-CA;q=0.5")).times(3);
+
+        replay(applicationContext, request);
+        LocalizedResourceIndex index = new LocalizedResourceIndex(applicationContext, Arrays.asList("/*.xml"));
+        index.refresh();
+        LocaleNegotiator negotiator = new LocaleNegotiator();
+        assertSame(french, negotiator.negotiate(request, index, "/defs.xml"));
+        assertSame(french, negotiator.negotiate(request, index, "/defs.xml"));
+        index.add(italian);
+        assertSame(italian, negotiator.negotiate(request, index, "/defs.xml"));
+        verify(applicationContext, request);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link LocalizedResourceIndex}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocalizedResourceIndexTest {
+
+    /**
+     * The application context.
+     */
+    private ApplicationContext applicationContext;
+
+    /**
+     * The index to test.
+     */
+    private LocalizedResourceIndex index;
+
+    /**
+     * A resource.
+     */
+    private ApplicationResource resource;
+
+    /**
+     * The French version of the resource.
+     */
+    private ApplicationResource resourceFr;
+
+    /**
+     * Another resource.
+     */
+    private ApplicationResource other;
+
+    /**
+     * Sets up the test.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Before
+    public void setUp() throws Exception {
+        applicationContext = createMock(ApplicationContext.class);
+        index = new LocalizedResourceIndex(applicationContext, Arrays.asList("/WEB-INF/*.jsp", "/WEB-INF/*.xml"));
+        resource = new URLApplicationResource("/WEB-INF/path.jsp", new URL("file:///WEB-INF/path.jsp"));
+        resourceFr = new URLApplicationResource("/WEB-INF/path_fr.jsp",
+                new URL("file:///WEB-INF/path_fr.jsp"));
+        other = new URLApplicationResource("/WEB-INF/other.xml", new URL("file:///WEB-INF/other.xml"));
+    }
+
+    /**
+     * Test method for {@link LocalizedResourceIndex#refresh()}.
+     */
+    @Test
+    public void testRefresh() {
+        expect(applicationContext.getResources("/WEB-INF/*.jsp")).andReturn(
+                Arrays.asList(resource, resourceFr)).times(2);
+        expect(applicationContext.getResources("/WEB-INF/*.xml")).andReturn(
+                Collections.singletonList(other));
+        expect(applicationContext.getResources("/WEB-INF/*.xml")).andReturn(
+                Collections.<ApplicationResource>emptyList());
+
+        replay(applicationContext);
+        index.refresh();
+        assertEquals(2, index.size());
+        assertTrue(index.isIndexed("/WEB-INF/path.jsp"));
+        assertSame(resource, index.getResource("/WEB-INF/path.jsp", Locale.ROOT));
+        assertSame(resourceFr, index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+        assertNull(index.getResource("/WEB-INF/path.jsp", Locale.ITALIAN));
+        assertSame(other, index.getResource("/WEB-INF/other.xml", Locale.ROOT));
+        Map<Locale, ApplicationResource> variants = index.getVariants("/WEB-INF/path.jsp");
+        index.refresh();
+        assertEquals(1, index.size());
+        assertFalse(index.isIndexed("/WEB-INF/other.xml"));
+        assertSame(variants, index.getVariants("/WEB-INF/path.jsp"));
+        assertTrue(index.getVariants("/WEB-INF/other.xml").isEmpty());
+        verify(applicationContext);
+    }
+
+    /**
+     * Test method for {@link LocalizedResourceIndex#refresh(ExecutorService)}.
+     */
+    @Test
+    public void testRefreshExecutor() {
+        expect(applicationContext.getResources("/WEB-INF/*.jsp")).andReturn(
+                Arrays.asList(resource, resourceFr));
+        expect(applicationContext.getResources("/WEB-INF/*.xml")).andReturn(
+                Collections.singletonList(other));
+
+        replay(applicationContext);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            index.refresh(executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, index.size());
+        assertSame(resourceFr, index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+        verify(applicationContext);
+    }
+
+    /**
+     * Test method for {@link LocalizedResourceIndex#add(ApplicationResource)}
+     * and {@link LocalizedResourceIndex#remove(ApplicationResource)}.
+     */
+    @Test
+    public void testAddRemove() {
+        replay(applicationContext);
+        index.add(resource);
+        index.add(resourceFr);
+        assertEquals(1, index.size());
+        assertSame(resourceFr, index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+        index.remove(resourceFr);
+        assertNull(index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+        assertSame(resource, index.getResource("/WEB-INF/path.jsp", Locale.ROOT));
+        index.remove(resource);
+        assertEquals(0, index.size());
+        index.remove(resource);
+        verify(applicationContext);
+    }
+
+    /**
+     * Test method for {@link LocalizedResourceIndex#fileChanged(File)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testFileChanged() throws IOException {
+        File root = File.createTempFile("tiles-index", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+        File file = new File(root, "path.jsp");
+        File fileFr = new File(root, "path_fr.jsp");
+        File created = new File(root, "created.jsp");
+        try {
+            assertTrue(file.createNewFile());
+            assertTrue(fileFr.createNewFile());
+            ApplicationResource fileResource = new URLApplicationResource("/WEB-INF/path.jsp",
+                    file.toURI().toURL());
+            ApplicationResource fileResourceFr = new URLApplicationResource("/WEB-INF/path_fr.jsp",
+                    fileFr.toURI().toURL());
+            ResourceChangeMonitor monitor = createMock(ResourceChangeMonitor.class);
+
+            monitor.addListener(index);
+            expect(monitor.getLastModified(isA(ApplicationResource.class))).andReturn(0L).anyTimes();
+            expect(applicationContext.getResources("/WEB-INF/*.jsp")).andReturn(
+                    Arrays.asList(fileResource, fileResourceFr)).times(2);
+            expect(applicationContext.getResources("/WEB-INF/*.xml")).andReturn(
+                    Collections.<ApplicationResource>emptyList()).times(2);
+
+            replay(applicationContext, monitor);
+            index.setMonitor(monitor);
+            index.refresh();
+            assertTrue(fileFr.delete());
+            index.fileChanged(fileFr);
+            assertNull(index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+            assertSame(fileResource, index.getResource("/WEB-INF/path.jsp", Locale.ROOT));
+            index.fileChanged(file);
+            assertSame(fileResource, index.getResource("/WEB-INF/path.jsp", Locale.ROOT));
+            assertTrue(created.createNewFile());
+            index.fileChanged(created);
+            assertSame(fileResourceFr, index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+            index.fileChanged(new File(root, "missing.jsp"));
+            verify(applicationContext, monitor);
+        } finally {
+            file.delete();
+            fileFr.delete();
+            created.delete();
+            root.delete();
+        }
+    }
+
+    /**
+     * Tests that the refreshes caused by changes are coalesced and run on the
+     * refresh executor.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testFileChangedRefreshExecutor() throws IOException {
+        File root = File.createTempFile("tiles-index", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+        File file = new File(root, "path.jsp");
+        File created = new File(root, "path_fr.jsp");
+        try {
+            assertTrue(file.createNewFile());
+            ApplicationResource fileResource = new URLApplicationResource("/WEB-INF/path.jsp",
+                    file.toURI().toURL());
+            ApplicationResource createdResource = new URLApplicationResource("/WEB-INF/path_fr.jsp",
+                    created.toURI().toURL());
+            ResourceChangeMonitor monitor = createMock(ResourceChangeMonitor.class);
+            final List<Runnable> tasks = new ArrayList<Runnable>();
+
+            monitor.addListener(index);
+            expect(monitor.getLastModified(isA(ApplicationResource.class))).andReturn(0L).anyTimes();
+            expect(applicationContext.getResources("/WEB-INF/*.jsp")).andReturn(
+                    Arrays.asList(fileResource));
+            expect(applicationContext.getResources("/WEB-INF/*.jsp")).andReturn(
+                    Arrays.asList(fileResource, createdResource));
+            expect(applicationContext.getResources("/WEB-INF/*.xml")).andReturn(
+                    Collections.<ApplicationResource>emptyList()).times(2);
+
+            replay(applicationContext, monitor);
+            index.setMonitor(monitor);
+            index.setRefreshExecutor(new Executor() {
+
+                @Override
+                public void execute(Runnable command) {
+                    tasks.add(command);
+                }
+            });
+            index.refresh();
+            assertTrue(created.createNewFile());
+            index.fileChanged(created);
+            index.fileChanged(created);
+            assertEquals(1, tasks.size());
+            assertNull(index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+            tasks.get(0).run();
+            assertSame(createdResource, index.getResource("/WEB-INF/path.jsp", Locale.FRENCH));
+            verify(applicationContext, monitor);
+        } finally {
+            file.delete();
+            created.delete();
+            root.delete();
+        }
+    }
+}
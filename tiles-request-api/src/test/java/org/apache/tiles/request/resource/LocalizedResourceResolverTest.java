@@ -0,0 +1,102 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link LocalizedResourceResolver}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocalizedResourceResolverTest {
+
+    /**
+     * The application context.
+     */
+    private ApplicationContext applicationContext;
+
+    /**
+     * The resolver to test.
+     */
+    private LocalizedResourceResolver resolver;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp() {
+        applicationContext = createMock(ApplicationContext.class);
+        resolver = new LocalizedResourceResolver(applicationContext);
+    }
+
+    /**
+     * Test method for {@link LocalizedResourceResolver#resolve(String, Locale)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testResolve() throws IOException {
+        ApplicationResource base = createMock(ApplicationResource.class);
+        ApplicationResource english = createMock(ApplicationResource.class);
+        expect(applicationContext.getResource("/my/path.html")).andReturn(base).times(2);
+        expect(applicationContext.getResource(base, Locale.US)).andReturn(null);
+        expect(applicationContext.getResource(base, Locale.ENGLISH)).andReturn(english);
+        expect(applicationContext.getResource(base, Locale.ITALY)).andReturn(null);
+        expect(applicationContext.getResource(base, Locale.ITALIAN)).andReturn(null);
+        expect(base.getLastModified()).andReturn(0L).anyTimes();
+        expect(english.getLastModified()).andReturn(0L).anyTimes();
+
+        replay(applicationContext, base, english);
+        assertSame(english, resolver.resolve("/my/path.html", Locale.US));
+        assertSame(english, resolver.resolve("/my/path.html", Locale.US));
+        assertSame(base, resolver.resolve("/my/path.html", Locale.ITALY));
+        assertSame(base, resolver.resolve("/my/path.html", Locale.ITALY));
+        verify(applicationContext, base, english);
+    }
+
+    /**
+     * Test method for {@link LocalizedResourceResolver#resolve(String, Locale)},
+     * when the resource does not exist.
+     */
+    @Test
+    public void testResolveMissing() {
+        expect(applicationContext.getResource("/null/path.html")).andReturn(null).times(3);
+
+        replay(applicationContext);
+        assertNull(resolver.resolve("/null/path.html", Locale.US));
+        assertNull(resolver.resolve("/null/path.html", Locale.US));
+        assertNull(resolver.resolve("/null/path.html", null));
+        resolver.clear();
+        assertNull(resolver.resolve("/null/path.html", Locale.US));
+        verify(applicationContext);
+    }
+}
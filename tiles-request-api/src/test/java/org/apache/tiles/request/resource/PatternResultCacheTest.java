@@ -0,0 +1,108 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.junit.Test;
+
+/**
+ * Tests {@link PatternResultCache}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class PatternResultCacheTest {
+
+    /**
+     * Test method for {@link PatternResultCache#get(String)} and
+     * {@link PatternResultCache#put(String, Collection)}.
+     */
+    @Test
+    public void testGetPut() {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+
+        replay(resource);
+        PatternResultCache cache = new PatternResultCache(16, -1L);
+        assertNull(cache.get("/WEB-INF/*.xml"));
+        cache.put("/WEB-INF/*.xml", Arrays.asList(resource));
+        cache.put("/WEB-INF/*.txt", Collections.<ApplicationResource>emptyList());
+        Collection<ApplicationResource> result = cache.get("/WEB-INF/*.xml");
+        assertEquals(1, result.size());
+        assertSame(resource, result.iterator().next());
+        try {
+            result.clear();
+            fail("The result should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(1, cache.get("/WEB-INF/*.xml").size());
+        assertTrue(cache.get("/WEB-INF/*.txt").isEmpty());
+        assertEquals(2, cache.size());
+        verify(resource);
+    }
+
+    /**
+     * Test method for {@link PatternResultCache#get(String)}, with revalidation
+     * at every call.
+     */
+    @Test
+    public void testGetRevalidate() {
+        PatternResultCache cache = new PatternResultCache(16, 0L);
+        cache.put("/WEB-INF/*.xml", Collections.<ApplicationResource>emptyList());
+        assertNull(cache.get("/WEB-INF/*.xml"));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that the least recently used pattern is evicted.
+     */
+    @Test
+    public void testEviction() {
+        PatternResultCache cache = new PatternResultCache(2, -1L);
+        cache.put("/a/*.xml", Collections.<ApplicationResource>emptyList());
+        cache.put("/b/*.xml", Collections.<ApplicationResource>emptyList());
+        assertNotNull(cache.get("/a/*.xml"));
+        cache.put("/c/*.xml", Collections.<ApplicationResource>emptyList());
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("/a/*.xml"));
+        assertNull(cache.get("/b/*.xml"));
+        assertNotNull(cache.get("/c/*.xml"));
+    }
+
+    /**
+     * Test method for {@link PatternResultCache#fileChanged(File)}.
+     */
+    @Test
+    public void testFileChanged() {
+        PatternResultCache cache = new PatternResultCache();
+        cache.put("/a/*.xml", Collections.<ApplicationResource>emptyList());
+        cache.fileChanged(new File("defs.xml"));
+        assertEquals(0, cache.size());
+        assertNull(cache.get("/a/*.xml"));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.ApplicationResourceWrapper;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link RemoteCachingApplicationContext}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RemoteCachingApplicationContextTest {
+
+    /**
+     * The wrapped context.
+     */
+    private ApplicationContext wrapped;
+
+    /**
+     * The cache directory.
+     */
+    private File directory;
+
+    /**
+     * The context to test.
+     */
+    private RemoteCachingApplicationContext context;
+
+    /**
+     * Sets up the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Before
+    public void setUp() throws IOException {
+        wrapped = createMock(ApplicationContext.class);
+        directory = Files.createTempDirectory("tiles-remote").toFile();
+        context = new RemoteCachingApplicationContext(wrapped, new RemoteResourceCache(directory, 60000L));
+    }
+
+    /**
+     * Tears down the test.
+     */
+    @After
+    public void tearDown() {
+        directory.delete();
+    }
+
+    /**
+     * Test method for {@link RemoteCachingApplicationContext#getResources(String)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetResources() throws IOException {
+        URL remoteUrl = new URL("http://localhost/defs.xml");
+        URL localUrl = new URL("file:/tmp/defs.xml");
+        ApplicationResource remote = new URLApplicationResource("/defs.xml", remoteUrl);
+        ApplicationResource local = new URLApplicationResource("/defs.xml", localUrl);
+        expect(wrapped.getResources("/*.xml")).andReturn(Arrays.asList(remote, local));
+        expect(wrapped.getResource("/defs.xml")).andReturn(remote);
+        expect(wrapped.getResource(remote, Locale.FRENCH)).andReturn(null);
+
+        replay(wrapped);
+        Collection<ApplicationResource> resources = context.getResources("/*.xml");
+        Iterator<ApplicationResource> it = resources.iterator();
+        ApplicationResource wrappedRemote = it.next();
+        assertTrue(wrappedRemote instanceof ApplicationResourceWrapper);
+        assertSame(remote, ((ApplicationResourceWrapper) wrappedRemote).getWrappedResource());
+        assertSame(local, it.next());
+        ApplicationResource resource = context.getResource("/defs.xml");
+        assertSame(remote, ((ApplicationResourceWrapper) resource).getWrappedResource());
+        assertNull(context.getResource(resource, Locale.FRENCH));
+        assertNotNull(context.getRemoteResourceCache());
+        verify(wrapped);
+    }
+
+    /**
+     * Tests that remote resources are cached when another decorator wraps them first.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetResourceStacked() throws IOException {
+        URL remoteUrl = new URL("http://localhost/defs.xml");
+        ApplicationResource remote = new URLApplicationResource("/defs.xml", remoteUrl);
+        expect(wrapped.getResource("/defs.xml")).andReturn(remote);
+        expect(wrapped.getResource(remote, Locale.FRENCH)).andReturn(null);
+
+        replay(wrapped);
+        ResourceChangeMonitor monitor = new ResourceChangeMonitor();
+        try {
+            RemoteCachingApplicationContext stacked = new RemoteCachingApplicationContext(
+                    new ChangeMonitoringApplicationContext(wrapped, monitor), context.getRemoteResourceCache());
+            ApplicationResource resource = stacked.getResource("/defs.xml");
+            ApplicationResource monitored = ((ApplicationResourceWrapper) resource).getWrappedResource();
+            assertTrue(monitored instanceof ApplicationResourceWrapper);
+            assertSame(remote, ((ApplicationResourceWrapper) monitored).getWrappedResource());
+            assertSame(remote, ApplicationResourceWrapper.unwrap(resource, URLApplicationResource.class));
+            assertNull(stacked.getResource(resource, Locale.FRENCH));
+        } finally {
+            monitor.close();
+        }
+        verify(wrapped);
+    }
+}
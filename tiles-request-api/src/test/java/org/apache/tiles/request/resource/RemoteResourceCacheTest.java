@@ -0,0 +1,416 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests {@link RemoteResourceCache}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RemoteResourceCacheTest {
+
+    /**
+     * The charset of the served content.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The in-process HTTP server.
+     */
+    private HttpServer server;
+
+    /**
+     * The cache directory.
+     */
+    private File directory;
+
+    /**
+     * The served content.
+     */
+    private volatile String body = "<definitions/>";
+
+    /**
+     * The entity tag of the served content.
+     */
+    private volatile String etag = "\"v1\"";
+
+    /**
+     * The number of full responses.
+     */
+    private final AtomicInteger fullResponses = new AtomicInteger();
+
+    /**
+     * The number of "not modified" responses.
+     */
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    /**
+     * Whether the server answers with an error.
+     */
+    private volatile boolean failing;
+
+    /**
+     * If not <code>null</code>, full responses are sent once it is released.
+     */
+    private volatile CountDownLatch release;
+
+    /**
+     * Counted down when a full response is about to be sent.
+     */
+    private final CountDownLatch requested = new CountDownLatch(1);
+
+    /**
+     * The URL of the served resource.
+     */
+    private URL url;
+
+    /**
+     * Sets up the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tiles-remote").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/defs.xml", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String currentEtag = etag;
+                if (failing) {
+                    exchange.sendResponseHeaders(500, -1);
+                } else if (currentEtag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    fullResponses.incrementAndGet();
+                    awaitRelease();
+                    byte[] content = body.getBytes(UTF_8);
+                    exchange.getResponseHeaders().set("ETag", currentEtag);
+                    exchange.sendResponseHeaders(200, content.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(content);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.createContext("/other.xml", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                fullResponses.incrementAndGet();
+                byte[] content = "<definitions></definitions>".getBytes(UTF_8);
+                exchange.sendResponseHeaders(200, content.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(content);
+                out.close();
+                exchange.close();
+            }
+        });
+        server.createContext("/slow.xml", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 100);
+                OutputStream out = exchange.getResponseBody();
+                out.write("<definitions>".getBytes(UTF_8));
+                out.flush();
+                awaitRelease();
+                exchange.close();
+            }
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/defs.xml");
+    }
+
+    /**
+     * Tears down the test.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests that fresh content is read from the disk.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testFresh() throws IOException {
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 60000L);
+        assertTrue(cache.isCacheable(url));
+        assertFalse(cache.isCacheable(new URL("file:/tmp/defs.xml")));
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertTrue(cache.getLastModified(url) > 0L);
+        assertEquals(1, fullResponses.get());
+
+        RemoteResourceCache restarted = new RemoteResourceCache(directory, 60000L);
+        assertEquals("<definitions/>", read(restarted.getInputStream(url)));
+        assertEquals(1, fullResponses.get());
+    }
+
+    /**
+     * Tests the conditional revalidation of stale content.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testRevalidate() throws IOException {
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 0L);
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        long lastModified = cache.getLastModified(url);
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertEquals(1, fullResponses.get());
+        assertEquals(2, notModifiedResponses.get());
+        assertEquals(lastModified, cache.getLastModified(url));
+
+        body = "<definitions><definition/></definitions>";
+        etag = "\"v2\"";
+        assertEquals("<definitions><definition/></definitions>", read(cache.getInputStream(url)));
+        assertEquals(2, fullResponses.get());
+    }
+
+    /**
+     * Tests that stale content is returned while it is revalidated in the
+     * background.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testStaleWhileRevalidate() throws IOException {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 0L, 60000L, new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        body = "<definitions><definition/></definitions>";
+        etag = "\"v2\"";
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(2, fullResponses.get());
+        assertEquals(1, tasks.size());
+        assertEquals("<definitions><definition/></definitions>", read(cache.getInputStream(url)));
+    }
+
+    /**
+     * Tests a missing resource.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test(expected = FileNotFoundException.class)
+    public void testMissing() throws IOException {
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 60000L);
+        cache.getInputStream(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/missing.xml"));
+    }
+
+    /**
+     * Tests that stale content is returned when the server fails.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testStaleIfError() throws IOException {
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 0L);
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        failing = true;
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        failing = false;
+        body = "<definitions><definition/></definitions>";
+        etag = "\"v2\"";
+        assertEquals("<definitions><definition/></definitions>", read(cache.getInputStream(url)));
+    }
+
+    /**
+     * Tests that concurrent fetches of the same URL share one request.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testSingleFlight() throws Exception {
+        final RemoteResourceCache cache = new RemoteResourceCache(directory, 60000L);
+        release = new CountDownLatch(1);
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        Runnable reader = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    results.add(read(cache.getInputStream(url)));
+                } catch (IOException e) {
+                    results.add(e.toString());
+                }
+            }
+        };
+        Thread first = new Thread(reader);
+        first.start();
+        assertTrue(requested.await(10, TimeUnit.SECONDS));
+        Thread second = new Thread(reader);
+        second.start();
+        while (second.getState() != Thread.State.WAITING && second.isAlive()) {
+            Thread.sleep(10L);
+        }
+        release.countDown();
+        first.join();
+        second.join();
+        assertEquals(Arrays.asList("<definitions/>", "<definitions/>"), results);
+        assertEquals(1, fullResponses.get());
+    }
+
+    /**
+     * Tests that invalidated content can still be read through open streams.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testInvalidateOpenStream() throws IOException {
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 60000L);
+        InputStream stream = cache.getInputStream(url);
+        cache.invalidate(url);
+        assertEquals("<definitions/>", read(stream));
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertEquals(2, fullResponses.get());
+    }
+
+    /**
+     * Tests that the content validated least recently is removed when the
+     * maximum size is exceeded.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testMaxSize() throws IOException {
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 60000L);
+        cache.setMaxSize(30L);
+        URL other = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/other.xml");
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertEquals("<definitions></definitions>", read(cache.getInputStream(other)));
+        assertEquals("<definitions></definitions>", read(cache.getInputStream(other)));
+        assertEquals(2, fullResponses.get());
+        assertEquals("<definitions/>", read(cache.getInputStream(url)));
+        assertEquals(3, fullResponses.get());
+    }
+
+    /**
+     * Tests that a read timeout fails the fetch without leaving temporary
+     * files.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testReadTimeout() throws IOException {
+        RemoteResourceCache cache = new RemoteResourceCache(directory, 60000L);
+        cache.setConnectTimeout(1000);
+        cache.setReadTimeout(200);
+        release = new CountDownLatch(1);
+        try {
+            cache.getInputStream(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/slow.xml"));
+            fail("The fetch should have timed out");
+        } catch (SocketTimeoutException e) {
+            // expected
+        } finally {
+            release.countDown();
+        }
+        assertEquals(0, directory.list().length);
+    }
+
+    /**
+     * Waits until full responses are released, if needed.
+     */
+    private void awaitRelease() {
+        requested.countDown();
+        CountDownLatch latch = release;
+        if (latch != null) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reads a stream, closing it.
+     *
+     * @param stream The stream.
+     * @return The content.
+     * @throws IOException If something goes wrong.
+     */
+    private static String read(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[256];
+            int count;
+            while ((count = stream.read(chunk)) >= 0) {
+                out.write(chunk, 0, count);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ResolvedResourceCache}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ResolvedResourceCacheTest {
+
+    /**
+     * The lookup.
+     */
+    private ResolvedResourceCache.Lookup lookup;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp() {
+        lookup = createMock(ResolvedResourceCache.Lookup.class);
+    }
+
+    /**
+     * Test method for {@link ResolvedResourceCache#get(String, ResolvedResourceCache.Lookup)}.
+     */
+    @Test
+    public void testGet() {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        expect(lookup.lookup("/my/path.html")).andReturn(resource);
+        expect(lookup.lookup("/null/path.html")).andReturn(null);
+
+        replay(lookup, resource);
+        ResolvedResourceCache cache = new ResolvedResourceCache(16, -1L);
+        assertSame(resource, cache.get("/my/path.html", lookup));
+        assertSame(resource, cache.get("/my/path.html", lookup));
+        assertNull(cache.get("/null/path.html", lookup));
+        assertNull(cache.get("/null/path.html", lookup));
+        assertEquals(2, cache.size());
+        verify(lookup, resource);
+    }
+
+    /**
+     * Test method for {@link ResolvedResourceCache#get(String, ResolvedResourceCache.Lookup)},
+     * with revalidation at every call.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetRevalidate() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        ApplicationResource resource2 = createMock(ApplicationResource.class);
+        expect(resource.getLastModified()).andReturn(1L).times(2);
+        expect(resource.getLastModified()).andReturn(2L);
+        expect(resource2.getLastModified()).andReturn(2L);
+        expect(lookup.lookup("/my/path.html")).andReturn(resource);
+        expect(lookup.lookup("/my/path.html")).andReturn(resource2);
+        expect(lookup.lookup("/null/path.html")).andReturn(null).times(2);
+
+        replay(lookup, resource, resource2);
+        ResolvedResourceCache cache = new ResolvedResourceCache(16, 0L);
+        assertSame(resource, cache.get("/my/path.html", lookup));
+        assertSame(resource, cache.get("/my/path.html", lookup));
+        assertSame(resource2, cache.get("/my/path.html", lookup));
+        assertNull(cache.get("/null/path.html", lookup));
+        assertNull(cache.get("/null/path.html", lookup));
+        verify(lookup, resource, resource2);
+    }
+
+    /**
+     * Test method for {@link ResolvedResourceCache#invalidate(String)} and
+     * {@link ResolvedResourceCache#invalidateAll()}.
+     */
+    @Test
+    public void testInvalidate() {
+        expect(lookup.lookup("/null/path.html")).andReturn(null).times(3);
+        expect(lookup.lookup("/other/path.html")).andReturn(null).times(2);
+
+        replay(lookup);
+        ResolvedResourceCache cache = new ResolvedResourceCache(16, -1L);
+        assertNull(cache.get("/null/path.html", lookup));
+        assertNull(cache.get("/other/path.html", lookup));
+        cache.invalidate("/null/path.html");
+        assertEquals(1, cache.size());
+        assertNull(cache.get("/null/path.html", lookup));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("/null/path.html", lookup));
+        assertNull(cache.get("/other/path.html", lookup));
+        verify(lookup);
+    }
+
+    /**
+     * Tests that {@link ResolvedResourceCache#invalidate(String)} removes the
+     * localized lookups of the path too.
+     */
+    @Test
+    public void testInvalidateLocalized() {
+        String frenchKey = ResolvedResourceCache.getLocalizedKey("/my/path.html", Locale.FRENCH);
+        String italianKey = ResolvedResourceCache.getLocalizedKey("/my/path.html", Locale.ITALIAN);
+        String otherKey = ResolvedResourceCache.getLocalizedKey("/my/path.html.bak", Locale.FRENCH);
+        expect(lookup.lookup("/my/path.html")).andReturn(null);
+        expect(lookup.lookup(frenchKey)).andReturn(null);
+        expect(lookup.lookup(italianKey)).andReturn(null);
+        expect(lookup.lookup(otherKey)).andReturn(null);
+
+        replay(lookup);
+        ResolvedResourceCache cache = new ResolvedResourceCache(16, -1L);
+        assertNull(cache.get("/my/path.html", lookup));
+        assertNull(cache.get(frenchKey, lookup));
+        assertNull(cache.get(italianKey, lookup));
+        assertNull(cache.get(otherKey, lookup));
+        cache.invalidate("/my/path.html");
+        assertEquals(1, cache.size());
+        assertNull(cache.get(otherKey, lookup));
+        verify(lookup);
+    }
+
+    /**
+     * Tests that unreferenced entries are evicted when the cache is full.
+     */
+    @Test
+    public void testEviction() {
+        expect(lookup.lookup("/one")).andReturn(null);
+        expect(lookup.lookup("/two")).andReturn(null).times(2);
+        expect(lookup.lookup("/three")).andReturn(null);
+
+        replay(lookup);
+        ResolvedResourceCache cache = new ResolvedResourceCache(2, -1L);
+        cache.get("/one", lookup);
+        cache.get("/two", lookup);
+        cache.get("/one", lookup);
+        cache.get("/three", lookup);
+        assertEquals(2, cache.size());
+        cache.get("/one", lookup);
+        cache.get("/two", lookup);
+        verify(lookup);
+    }
+
+    /**
+     * Tests that a full cache evicts a single entry per insertion.
+     */
+    @Test
+    public void testEvictionRemovesOneEntry() {
+        expect(lookup.lookup("/one")).andReturn(null);
+        expect(lookup.lookup("/two")).andReturn(null);
+        expect(lookup.lookup("/three")).andReturn(null);
+        expect(lookup.lookup("/four")).andReturn(null);
+
+        replay(lookup);
+        ResolvedResourceCache cache = new ResolvedResourceCache(3, -1L);
+        cache.get("/one", lookup);
+        cache.get("/two", lookup);
+        cache.get("/three", lookup);
+        cache.get("/four", lookup);
+        assertEquals(3, cache.size());
+        cache.get("/two", lookup);
+        cache.get("/three", lookup);
+        cache.get("/four", lookup);
+        verify(lookup);
+    }
+
+    /**
+     * Tests that a non-positive maximum size is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new ResolvedResourceCache(0, -1L);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ResourceChangeMonitor}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ResourceChangeMonitorTest {
+
+    /**
+     * The maximum time to wait for a file system event.
+     */
+    private static final long TIMEOUT = 30000L;
+
+    /**
+     * The directory containing the test files.
+     */
+    private File root;
+
+    /**
+     * The monitor to test.
+     */
+    private ResourceChangeMonitor monitor;
+
+    /**
+     * The files notified as changed.
+     */
+    private List<File> changed;
+
+    /**
+     * Sets up the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("tiles-monitor", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+        monitor = new ResourceChangeMonitor();
+        changed = new CopyOnWriteArrayList<File>();
+        monitor.addListener(new ResourceChangeMonitor.Listener() {
+
+            @Override
+            public void fileChanged(File file) {
+                changed.add(file);
+            }
+        });
+    }
+
+    /**
+     * Tears down the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @After
+    public void tearDown() throws IOException {
+        monitor.close();
+        File[] files = root.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        root.delete();
+    }
+
+    /**
+     * Tests {@link ResourceChangeMonitor#getLastModified(ApplicationResource)} with a file.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testGetLastModifiedFile() throws Exception {
+        File file = new File(root, "page.html").getAbsoluteFile();
+        write(file);
+        assertTrue(file.setLastModified(100000L));
+        URLApplicationResource resource = new URLApplicationResource("/page.html", file.toURI().toURL());
+        assertEquals(100000L, monitor.getLastModified(resource));
+
+        assertTrue(file.setLastModified(200000L));
+        // No event yet, or the cached value is returned until the event arrives.
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (monitor.getLastModified(resource) != 200000L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50L);
+        }
+        assertEquals(200000L, monitor.getLastModified(resource));
+        assertTrue(changed.contains(file));
+    }
+
+    /**
+     * Tests {@link ResourceChangeMonitor#getLastModified(ApplicationResource)} with a jar entry.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testGetLastModifiedJar() throws Exception {
+        File jar = new File(root, "templates.jar").getAbsoluteFile();
+        writeJar(jar, 100000L);
+        URL url = new URL("jar:" + jar.toURI().toURL().toExternalForm() + "!/page.html");
+        URLApplicationResource resource = new URLApplicationResource("/page.html", url);
+        long time = monitor.getLastModified(resource);
+        assertEquals(resource.getLastModified(), time);
+
+        monitor.start();
+        writeJar(jar, 300000L);
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!changed.contains(jar) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50L);
+        }
+        assertTrue(changed.contains(jar));
+    }
+
+    /**
+     * Tests {@link ResourceChangeMonitor#getLastModified(ApplicationResource)}
+     * with a resource that cannot be tracked.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetLastModifiedOther() throws IOException {
+        ApplicationResource resource = createMock(ApplicationResource.class);
+        expect(resource.getLastModified()).andReturn(1L).times(2);
+
+        replay(resource);
+        assertEquals(1L, monitor.getLastModified(resource));
+        assertEquals(1L, monitor.getLastModified(resource));
+        verify(resource);
+    }
+
+    /**
+     * Writes a small file.
+     *
+     * @param file The file.
+     * @throws IOException If something goes wrong.
+     */
+    private static void write(File file) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write("<html/>".getBytes("UTF-8"));
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Writes a jar with a single entry.
+     *
+     * @param file The jar file.
+     * @param time The time of the entry.
+     * @throws IOException If something goes wrong.
+     */
+    private static void writeJar(File file, long time) throws IOException {
+        JarOutputStream stream = new JarOutputStream(new FileOutputStream(file));
+        try {
+            ZipEntry entry = new ZipEntry("page.html");
+            entry.setTime(time);
+            stream.putNextEntry(entry);
+            stream.write("<html/>".getBytes("UTF-8"));
+            stream.closeEntry();
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.resource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ResourceIndexGenerator} and {@link ResourceIndex}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ResourceIndexGeneratorTest {
+
+    /**
+     * The root directory.
+     */
+    private File root;
+
+    /**
+     * Sets up the test.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("tiles-index", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+        touch("org/apache/defs.xml");
+        touch("org/apache/defs_fr.xml");
+        touch("org/apache/Some.class");
+        touch("META-INF/tiles.xml");
+    }
+
+    /**
+     * Tears down the test.
+     */
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    /**
+     * Test method for {@link ResourceIndexGenerator#list()}.
+     */
+    @Test
+    public void testList() {
+        ResourceIndexGenerator generator = new ResourceIndexGenerator(root, Arrays.asList(".xml"));
+        assertEquals(Arrays.asList("META-INF/tiles.xml", "org/apache/defs.xml",
+                "org/apache/defs_fr.xml"), generator.list());
+        generator = new ResourceIndexGenerator(root, Collections.<String>emptyList());
+        assertEquals(4, generator.list().size());
+    }
+
+    /**
+     * Test method for {@link ResourceIndexGenerator#generate()} and
+     * {@link ResourceIndex#load(ClassLoader)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGenerate() throws IOException {
+        ClassLoader classLoader = new URLClassLoader(new URL[] {root.toURI().toURL()}, null);
+        assertNull(ResourceIndex.load(classLoader));
+        File index = new ResourceIndexGenerator(root, Arrays.asList(".xml")).generate();
+        assertTrue(index.isFile());
+        // The generated index must not be indexed itself.
+        assertEquals(4, new ResourceIndexGenerator(root, Collections.<String>emptyList()).list().size());
+
+        ResourceIndex resourceIndex = ResourceIndex.load(classLoader);
+        List<ResourceIndex.Entry> entries = resourceIndex.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals("META-INF/tiles.xml", entries.get(0).getPath());
+        assertEquals(new File(root, "META-INF/tiles.xml").toURI().toURL().toExternalForm(),
+                entries.get(0).getURL().toExternalForm());
+        entries.get(1).getURL().openStream().close();
+        assertTrue(resourceIndex.isIndexedRoot(root.toURI().toURL().toExternalForm()));
+        assertFalse(resourceIndex.isIndexedRoot("file:/other/"));
+        String rootUrl = root.toURI().toURL().toExternalForm();
+        assertEquals(Arrays.asList(rootUrl), new ArrayList<String>(resourceIndex.getRoots()));
+        assertEquals(3, resourceIndex.getEntries(rootUrl).size());
+        assertTrue(resourceIndex.isCovered(rootUrl, "org/**/*.xml"));
+        assertFalse(resourceIndex.isCovered(rootUrl, "org/**/*.class"));
+        assertFalse(resourceIndex.isCovered("file:/other/", "org/**/*.xml"));
+    }
+
+    /**
+     * Creates an empty file.
+     *
+     * @param path The path of the file, relative to the root directory.
+     * @throws IOException If something goes wrong.
+     */
+    private void touch(String path) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        new FileOutputStream(file).close();
+    }
+
+    /**
+     * Deletes a file or a directory, recursively.
+     *
+     * @param file The file to delete.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.freemarker;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import freemarker.core.Environment;
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.utility.DeepUnwrap;
+
+/**
+ * Caches the results of {@link DeepUnwrap#unwrap(TemplateModel)} for the
+ * lifetime of a FreeMarker {@link Environment}, so that a variable read
+ * several times in the same template is unwrapped once. Models are compared
+ * by identity, so setting a variable never makes a cached value stale.
+ * Only values that readers cannot modify through the cache are cached:
+ * wrapped and adapted objects, that are the original objects anyway, and
+ * scalars, numbers, dates and booleans. Sequences and hashes are unwrapped
+ * into new lists and maps at every call, since readers may modify them.
+ * The cache is stored as a custom attribute of the environment, so it goes
+ * away with it.<br/>
+ * Like the environment itself, instances must be used by one thread at a time.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class UnwrapCache {
+
+    /**
+     * The maximum number of cached values per environment. When reached, the
+     * cache is emptied.
+     */
+    private static final int MAX_SIZE = 256;
+
+    /**
+     * The name of the custom attribute of the environment that contains the cache.
+     */
+    private static final String KEY = UnwrapCache.class.getName();
+
+    /**
+     * Maps models to their unwrapped values.
+     */
+    private final Map<TemplateModel, Object> values = new IdentityHashMap<TemplateModel, Object>();
+
+    /**
+     * Constructor.
+     */
+    private UnwrapCache() {
+    }
+
+    /**
+     * Returns the cache of an environment, creating it if needed.
+     *
+     * @param env The environment.
+     * @return The cache.
+     */
+    public static UnwrapCache getInstance(Environment env) {
+        UnwrapCache retValue = (UnwrapCache) env.getCustomAttribute(KEY);
+        if (retValue == null) {
+            retValue = new UnwrapCache();
+            env.setCustomAttribute(KEY, retValue);
+        }
+        return retValue;
+    }
+
+    /**
+     * Deeply unwraps a model, reusing the value unwrapped for the same model.
+     *
+     * @param model The model to unwrap.
+     * @return The unwrapped object.
+     * @throws TemplateModelException If the model cannot be unwrapped.
+     */
+    public Object unwrap(TemplateModel model) throws TemplateModelException {
+        if (!isCacheable(model)) {
+            return DeepUnwrap.unwrap(model);
+        }
+        Object retValue = values.get(model);
+        if (retValue == null && !values.containsKey(model)) {
+            retValue = DeepUnwrap.unwrap(model);
+            if (values.size() >= MAX_SIZE) {
+                values.clear();
+            }
+            values.put(model, retValue);
+        }
+        return retValue;
+    }
+
+    /**
+     * Removes all the cached values.
+     */
+    public void clear() {
+        values.clear();
+    }
+
+    /**
+     * Returns the number of cached values.
+     *
+     * @return The number of cached values.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Checks if the unwrapped value of a model can be shared, i.e. if
+     * {@link DeepUnwrap#unwrap(TemplateModel)} does not convert it into a new
+     * list or map.
+     *
+     * @param model The model.
+     * @return <code>true</code> if the unwrapped value can be cached.
+     */
+    private static boolean isCacheable(TemplateModel model) {
+        return model instanceof AdapterTemplateModel
+                || model instanceof WrapperTemplateModel
+                || model instanceof TemplateScalarModel
+                || model instanceof TemplateNumberModel
+                || model instanceof TemplateDateModel
+                || model instanceof TemplateBooleanModel;
+    }
+
+    /**
+     * Unwraps a model without converting sequences and hashes: wrapped and
+     * adapted objects are returned as they are, scalars, numbers, dates and
+     * booleans are converted, and any other model is returned itself.
+     *
+     * @param model The model to unwrap.
+     * @return The unwrapped object.
+     * @throws TemplateModelException If the model cannot be read.
+     */
+    public static Object unwrapShallow(TemplateModel model) throws TemplateModelException {
+        if (model instanceof AdapterTemplateModel) {
+            return ((AdapterTemplateModel) model).getAdaptedObject(Object.class);
+        }
+        if (model instanceof WrapperTemplateModel) {
+            return ((WrapperTemplateModel) model).getWrappedObject();
+        }
+        if (model instanceof TemplateScalarModel) {
+            return ((TemplateScalarModel) model).getAsString();
+        }
+        if (model instanceof TemplateNumberModel) {
+            return ((TemplateNumberModel) model).getAsNumber();
+        }
+        if (model instanceof TemplateDateModel) {
+            return ((TemplateDateModel) model).getAsDate();
+        }
+        if (model instanceof TemplateBooleanModel) {
+            return Boolean.valueOf(((TemplateBooleanModel) model).getAsBoolean());
+        }
+        return model;
+    }
+}
@@ -21,6 +21,9 @@
 
 package org.apache.tiles.request.freemarker.autotag;
 
+import org.apache.tiles.request.freemarker.UnwrapCache;
+
+import freemarker.core.Environment;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
 import freemarker.template.utility.DeepUnwrap;
@@ -39,7 +42,9 @@ public final class FreemarkerUtil {
     }
 
     /**
-     * Unwraps a TemplateModel to extract an object.
+     * Unwraps a TemplateModel to extract an object. When called while
+     * processing a template, the unwrapped value is cached in the
+     * {@link UnwrapCache} of the current environment.
      *
      * @param model The TemplateModel to unwrap.
      * @param defaultValue The default value, as specified in the template
@@ -51,7 +56,7 @@ public final class FreemarkerUtil {
             T retValue = defaultValue;
             if (model != null) {
                 @SuppressWarnings("unchecked")
-                T value = (T) DeepUnwrap.unwrap(model);
+                T value = (T) unwrap(model);
                 if (value != null) {
                     retValue = value;
                 }
@@ -61,4 +66,20 @@ public final class FreemarkerUtil {
             throw new FreemarkerAutotagException("Cannot unwrap a model", e);
         }
     }
+
+    /**
+     * Deeply unwraps a model, through the cache of the current environment if
+     * available.
+     *
+     * @param model The model to unwrap.
+     * @return The unwrapped object.
+     * @throws TemplateModelException If the model cannot be unwrapped.
+     */
+    private static Object unwrap(TemplateModel model) throws TemplateModelException {
+        Environment env = Environment.getCurrentEnvironment();
+        if (env != null) {
+            return UnwrapCache.getInstance(env).unwrap(model);
+        }
+        return DeepUnwrap.unwrap(model);
+    }
 }
@@ -25,11 +25,11 @@ import java.util.Enumeration;
 
 import org.apache.tiles.request.attribute.AttributeExtractor;
 import org.apache.tiles.request.freemarker.FreemarkerRequestException;
+import org.apache.tiles.request.freemarker.UnwrapCache;
 
 import freemarker.core.Environment;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
-import freemarker.template.utility.DeepUnwrap;
 
 /**
  * Extract attributes from {@link Environment} objects as a scope.
@@ -44,12 +44,30 @@ public class EnvironmentScopeExtractor implements AttributeExtractor {
     private Environment request;
 
     /**
-     * Constructor.
+     * Whether values are unwrapped without converting sequences and hashes.
+     */
+    private boolean shallow;
+
+    /**
+     * Constructor. Values are deeply unwrapped.
      *
      * @param request The environment.
      */
     public EnvironmentScopeExtractor(Environment request) {
+        this(request, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param request The environment.
+     * @param shallow If <code>true</code>, values are unwrapped without
+     * converting sequences and hashes.
+     * @see UnwrapCache#unwrapShallow(TemplateModel)
+     */
+    public EnvironmentScopeExtractor(Environment request, boolean shallow) {
         this.request = request;
+        this.shallow = shallow;
     }
 
     @Override
@@ -72,7 +90,10 @@ public class EnvironmentScopeExtractor implements AttributeExtractor {
         try {
             TemplateModel variable = request.getVariable(key);
             if (variable != null) {
-                return DeepUnwrap.unwrap(variable);
+                if (shallow) {
+                    return UnwrapCache.unwrapShallow(variable);
+                }
+                return UnwrapCache.getInstance(request).unwrap(variable);
             }
             return null;
         } catch (TemplateModelException e) {
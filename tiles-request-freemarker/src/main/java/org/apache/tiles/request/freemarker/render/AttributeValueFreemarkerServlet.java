@@ -24,6 +24,10 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.tiles.request.freemarker.servlet.SharedVariableLoaderFreemarkerServlet;
 
+import freemarker.ext.servlet.ServletContextHashModel;
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
+
 /**
  * Extends {@link SharedVariableLoaderFreemarkerServlet} to use the attribute value as the template name.
  */
@@ -39,6 +43,11 @@ public class AttributeValueFreemarkerServlet extends SharedVariableLoaderFreemar
      */
     private ThreadLocal<String> valueHolder = new ThreadLocal<String>();
 
+    /**
+     * The application model used when rendering directly, created on first use.
+     */
+    private transient volatile ServletContextHashModel applicationModel;
+
     /**
      * Sets the value to use as the template name.
      *
@@ -53,4 +62,40 @@ public class AttributeValueFreemarkerServlet extends SharedVariableLoaderFreemar
     protected String requestUrlToTemplatePath(HttpServletRequest request) {
         return valueHolder.get();
     }
+
+    /**
+     * Returns the configuration, to render templates without going through
+     * {@link #doGet(HttpServletRequest, javax.servlet.http.HttpServletResponse)}.
+     *
+     * @return The configuration.
+     */
+    @Override
+    public Configuration getConfiguration() {
+        return super.getConfiguration();
+    }
+
+    /**
+     * Returns the object wrapper, to render templates without going through
+     * {@link #doGet(HttpServletRequest, javax.servlet.http.HttpServletResponse)}.
+     *
+     * @return The object wrapper.
+     */
+    @Override
+    public ObjectWrapper getObjectWrapper() {
+        return super.getObjectWrapper();
+    }
+
+    /**
+     * Returns the application model, the same for all the renderings.
+     *
+     * @return The application model.
+     */
+    public ServletContextHashModel getApplicationModel() {
+        ServletContextHashModel retValue = applicationModel;
+        if (retValue == null) {
+            retValue = new ServletContextHashModel(this, getObjectWrapper());
+            applicationModel = retValue;
+        }
+        return retValue;
+    }
 }
@@ -34,12 +34,21 @@ import org.apache.tiles.request.render.Renderer;
 import org.apache.tiles.request.servlet.ExternalWriterHttpServletResponse;
 import org.apache.tiles.request.servlet.ServletRequest;
 
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
 /**
  * FreeMarker renderer for rendering FreeMarker templates as Tiles attributes.
  * It is only usable under a Servlet environment, because it uses
  * {@link AttributeValueFreemarkerServlet} internally to forward the request.<br/>
  * To initialize it correctly, call {@link #setParameter(String, String)} for all the
- * parameters that you want to set, and then call {@link #commit()}.
+ * parameters that you want to set, and then call {@link #commit()}.<br/>
+ * When direct rendering is enabled, templates are processed from the
+ * configuration of the servlet straight into the writer of the request,
+ * skipping the servlet request pipeline: no response header is set. The
+ * servlet models and the <code>include_page</code> directive are available,
+ * JSP taglibs are not.
  *
  * @version $Rev$ $Date$
  */
@@ -50,6 +59,11 @@ public class FreemarkerRenderer implements Renderer {
      */
     private AttributeValueFreemarkerServlet servlet;
 
+    /**
+     * Whether templates are rendered without going through the servlet.
+     */
+    private boolean directRendering = false;
+
     /**
      * Constructor.
      *
@@ -59,6 +73,15 @@ public class FreemarkerRenderer implements Renderer {
         this.servlet = servlet;
     }
 
+    /**
+     * Sets whether templates are rendered without going through the servlet.
+     *
+     * @param directRendering <code>true</code> to process templates directly.
+     */
+    public void setDirectRendering(boolean directRendering) {
+        this.directRendering = directRendering;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void render(String path, Request request) throws IOException {
@@ -68,6 +91,10 @@ public class FreemarkerRenderer implements Renderer {
         ServletRequest servletRequest = org.apache.tiles.request.servlet.ServletUtil.getServletRequest(request);
         HttpServletRequest httpRequest = servletRequest.getRequest();
         HttpServletResponse httpResponse = servletRequest.getResponse();
+        if (directRendering) {
+            renderDirectly(path, request, httpRequest, httpResponse);
+            return;
+        }
         servlet.setValue(path);
         try {
             servlet.doGet(httpRequest,
@@ -78,6 +105,32 @@ public class FreemarkerRenderer implements Renderer {
         }
     }
 
+    /**
+     * Processes a template from the configuration of the servlet, writing
+     * straight into the writer of the request.
+     *
+     * @param path The path of the template.
+     * @param request The Tiles request.
+     * @param httpRequest The HTTP request.
+     * @param httpResponse The HTTP response.
+     * @throws IOException If the template cannot be read or the output cannot
+     * be written.
+     */
+    private void renderDirectly(String path, Request request,
+            HttpServletRequest httpRequest, HttpServletResponse httpResponse)
+            throws IOException {
+        Configuration configuration = servlet.getConfiguration();
+        Template template = configuration.getTemplate(path, configuration.getLocale());
+        RequestScopesHashModel model = new RequestScopesHashModel(request,
+                httpRequest, httpResponse, servlet.getObjectWrapper(),
+                servlet.getApplicationModel());
+        try {
+            template.process(model, request.getWriter());
+        } catch (TemplateException e) {
+            throw new FreemarkerRequestException("Exception when rendering a FreeMarker attribute", e);
+        }
+    }
+
     /** {@inheritDoc} */
     public boolean isRenderable(String path, Request request) {
         return path != null && path.startsWith("/") && path.endsWith(".ftl");
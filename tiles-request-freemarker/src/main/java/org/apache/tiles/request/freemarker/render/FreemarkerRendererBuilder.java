@@ -45,6 +45,16 @@ public final class FreemarkerRendererBuilder {
      */
     private ApplicationContext applicationContext;
 
+    /**
+     * Whether templates are rendered without going through the servlet.
+     */
+    private boolean directRendering = false;
+
+    /**
+     * The servlet to share, or <code>null</code> to create a new one.
+     */
+    private AttributeValueFreemarkerServlet servlet;
+
     /**
      * Constructor.
      */
@@ -84,20 +94,59 @@ public final class FreemarkerRendererBuilder {
     }
 
     /**
-     * Creates a new {@link FreemarkerRenderer} with the given configuration.
+     * Sets whether templates are rendered without going through the internal
+     * servlet.
      *
-     * @return A new Freemarker renderer.
+     * @param directRendering <code>true</code> to process templates directly.
+     * @return This object.
+     * @see FreemarkerRenderer#setDirectRendering(boolean)
      */
-    public FreemarkerRenderer build() {
-        AttributeValueFreemarkerServlet servlet = new AttributeValueFreemarkerServlet();
+    public FreemarkerRendererBuilder setDirectRendering(boolean directRendering) {
+        this.directRendering = directRendering;
+        return this;
+    }
+
+    /**
+     * Sets an already initialized servlet, typically created with
+     * {@link #buildServlet()}, so that renderers share its FreeMarker
+     * configuration, template cache, object wrapper and shared variables.
+     * When set, parameters are ignored.
+     *
+     * @param servlet The servlet to share.
+     * @return This object.
+     */
+    public FreemarkerRendererBuilder setServlet(AttributeValueFreemarkerServlet servlet) {
+        this.servlet = servlet;
+        return this;
+    }
+
+    /**
+     * Creates and initializes a new internal servlet with the given
+     * configuration, that can be shared between renderers through
+     * {@link #setServlet(AttributeValueFreemarkerServlet)}.
+     *
+     * @return A new initialized servlet.
+     */
+    public AttributeValueFreemarkerServlet buildServlet() {
+        AttributeValueFreemarkerServlet retValue = new AttributeValueFreemarkerServlet();
         try {
-            servlet.init(new InitParamsServletConfig(params, applicationContext));
-            return new FreemarkerRenderer(servlet);
+            retValue.init(new InitParamsServletConfig(params, applicationContext));
+            return retValue;
         } catch (ServletException e) {
             throw new FreemarkerRequestException(
                     "Cannot initialize internal servlet", e);
         }
+    }
 
+    /**
+     * Creates a new {@link FreemarkerRenderer} with the given configuration.
+     *
+     * @return A new Freemarker renderer.
+     */
+    public FreemarkerRenderer build() {
+        FreemarkerRenderer renderer = new FreemarkerRenderer(servlet != null ? servlet : buildServlet());
+        renderer.setDirectRendering(directRendering);
+        return renderer;
     }
 
 }
@@ -0,0 +1,169 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.freemarker.render;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.apache.tiles.request.Request;
+
+import freemarker.ext.servlet.FreemarkerServlet;
+import freemarker.ext.servlet.HttpRequestHashModel;
+import freemarker.ext.servlet.HttpRequestParametersHashModel;
+import freemarker.ext.servlet.HttpSessionHashModel;
+import freemarker.ext.servlet.IncludePage;
+import freemarker.ext.servlet.ServletContextHashModel;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * The data model used by {@link FreemarkerRenderer} when rendering templates
+ * directly. It exposes the same <code>Application</code>,
+ * <code>Request</code>, <code>RequestParameters</code> and
+ * <code>Session</code> models, and the <code>include_page</code> directive, of
+ * {@link FreemarkerServlet}, created only when a template reads them, and
+ * resolves any other name through the scopes of the Tiles {@link Request}, in
+ * the order of {@link Request#getAvailableScopes()}. JSP taglibs are not
+ * available.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RequestScopesHashModel implements TemplateHashModel {
+
+    /**
+     * The Tiles request.
+     */
+    private Request request;
+
+    /**
+     * The HTTP request.
+     */
+    private HttpServletRequest httpRequest;
+
+    /**
+     * The HTTP response.
+     */
+    private HttpServletResponse httpResponse;
+
+    /**
+     * The object wrapper.
+     */
+    private ObjectWrapper wrapper;
+
+    /**
+     * The application model.
+     */
+    private ServletContextHashModel applicationModel;
+
+    /**
+     * The request model, created on first use.
+     */
+    private HttpRequestHashModel requestModel;
+
+    /**
+     * The request parameters model, created on first use.
+     */
+    private HttpRequestParametersHashModel parametersModel;
+
+    /**
+     * The session model, created on first use.
+     */
+    private HttpSessionHashModel sessionModel;
+
+    /**
+     * The <code>include_page</code> directive, created on first use.
+     */
+    private IncludePage includePage;
+
+    /**
+     * Constructor.
+     *
+     * @param request The Tiles request.
+     * @param httpRequest The HTTP request.
+     * @param httpResponse The HTTP response.
+     * @param wrapper The object wrapper.
+     * @param applicationModel The application model.
+     */
+    public RequestScopesHashModel(Request request,
+            HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            ObjectWrapper wrapper, ServletContextHashModel applicationModel) {
+        this.request = request;
+        this.httpRequest = httpRequest;
+        this.httpResponse = httpResponse;
+        this.wrapper = wrapper;
+        this.applicationModel = applicationModel;
+    }
+
+    /** {@inheritDoc} */
+    public TemplateModel get(String key) throws TemplateModelException {
+        if (FreemarkerServlet.KEY_APPLICATION.equals(key)
+                || FreemarkerServlet.KEY_APPLICATION_PRIVATE.equals(key)) {
+            return applicationModel;
+        }
+        if (FreemarkerServlet.KEY_REQUEST.equals(key)
+                || FreemarkerServlet.KEY_REQUEST_PRIVATE.equals(key)) {
+            if (requestModel == null) {
+                requestModel = new HttpRequestHashModel(httpRequest, httpResponse, wrapper);
+            }
+            return requestModel;
+        }
+        if (FreemarkerServlet.KEY_REQUEST_PARAMETERS.equals(key)) {
+            if (parametersModel == null) {
+                parametersModel = new HttpRequestParametersHashModel(httpRequest);
+            }
+            return parametersModel;
+        }
+        if (FreemarkerServlet.KEY_SESSION.equals(key)) {
+            if (sessionModel == null) {
+                HttpSession session = httpRequest.getSession(false);
+                if (session == null) {
+                    return null;
+                }
+                sessionModel = new HttpSessionHashModel(session, wrapper);
+            }
+            return sessionModel;
+        }
+        if (FreemarkerServlet.KEY_INCLUDE.equals(key)) {
+            if (includePage == null) {
+                includePage = new IncludePage(httpRequest, httpResponse);
+            }
+            return includePage;
+        }
+        for (String scope : request.getAvailableScopes()) {
+            Map<String, Object> context = request.getContext(scope);
+            Object value = context.get(key);
+            if (value != null) {
+                return wrapper.wrap(value);
+            }
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isEmpty() {
+        return false;
+    }
+}
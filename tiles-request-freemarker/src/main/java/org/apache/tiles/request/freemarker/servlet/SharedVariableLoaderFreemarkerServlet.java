@@ -21,16 +21,27 @@
 
 package org.apache.tiles.request.freemarker.servlet;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 
 import org.apache.tiles.request.reflect.ClassUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import freemarker.cache.CacheStorage;
+import freemarker.cache.MruCacheStorage;
+import freemarker.cache.SoftCacheStorage;
 import freemarker.cache.TemplateLoader;
 import freemarker.ext.servlet.FreemarkerServlet;
 import freemarker.template.Configuration;
@@ -55,14 +66,96 @@ public class SharedVariableLoaderFreemarkerServlet extends FreemarkerServlet {
     public static final String CUSTOM_SHARED_VARIABLE_FACTORIES_INIT_PARAM =
         "org.apache.tiles.request.freemarker.CUSTOM_SHARED_VARIABLE_FACTORIES";
 
+    /**
+     * The init parameter containing the maximum number of templates strongly
+     * kept in the template cache. If this parameter or
+     * {@link #TEMPLATE_CACHE_SOFT_SIZE_INIT_PARAM} is set, the cache is an
+     * MRU cache, otherwise all the templates are softly kept.
+     */
+    public static final String TEMPLATE_CACHE_STRONG_SIZE_INIT_PARAM =
+        "org.apache.tiles.request.freemarker.TEMPLATE_CACHE_STRONG_SIZE";
+
+    /**
+     * The init parameter containing the maximum number of templates softly
+     * kept in the template cache.
+     */
+    public static final String TEMPLATE_CACHE_SOFT_SIZE_INIT_PARAM =
+        "org.apache.tiles.request.freemarker.TEMPLATE_CACHE_SOFT_SIZE";
+
+    /**
+     * The init parameter containing the paths of the templates to load at
+     * startup, separated by commas (,) or semicolons (;).
+     */
+    public static final String PRELOAD_TEMPLATES_INIT_PARAM =
+        "org.apache.tiles.request.freemarker.PRELOAD_TEMPLATES";
+
+    /**
+     * The init parameter that, if <code>true</code>, makes the template cache
+     * collect statistics, available through {@link #getCacheStorage()}.
+     */
+    public static final String TEMPLATE_CACHE_STATISTICS_INIT_PARAM =
+        "org.apache.tiles.request.freemarker.TEMPLATE_CACHE_STATISTICS";
+
+    /**
+     * The init parameters that are not passed to FreemarkerServlet.
+     */
+    private static final Set<String> EXCLUDED_INIT_PARAMS = Collections
+            .unmodifiableSet(new HashSet<String>(Arrays.asList(
+                    CUSTOM_SHARED_VARIABLE_FACTORIES_INIT_PARAM,
+                    TEMPLATE_CACHE_STRONG_SIZE_INIT_PARAM,
+                    TEMPLATE_CACHE_SOFT_SIZE_INIT_PARAM,
+                    PRELOAD_TEMPLATES_INIT_PARAM,
+                    TEMPLATE_CACHE_STATISTICS_INIT_PARAM)));
+
+    /**
+     * The logging object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(SharedVariableLoaderFreemarkerServlet.class);
+
     /**
      * Maps a name of a shared variable to its factory.
      */
     private Map<String, SharedVariableFactory> name2variableFactory =
         new LinkedHashMap<String, SharedVariableFactory>();
 
+    /**
+     * The storage of the template cache, that collects statistics, or
+     * <code>null</code> if statistics are not collected.
+     */
+    private transient StatisticsCacheStorage cacheStorage;
+
+    /**
+     * The maximum number of templates strongly kept in the cache, or -1 to
+     * keep all the templates softly.
+     */
+    private int strongCacheSize = -1;
+
+    /**
+     * The maximum number of templates softly kept in the cache.
+     */
+    private int softCacheSize = Integer.MAX_VALUE;
+
+    /**
+     * Whether the template cache collects statistics.
+     */
+    private boolean cacheStatistics;
+
     @Override
     public void init(ServletConfig config) throws ServletException {
+        String strongSize = config.getInitParameter(TEMPLATE_CACHE_STRONG_SIZE_INIT_PARAM);
+        String softSize = config.getInitParameter(TEMPLATE_CACHE_SOFT_SIZE_INIT_PARAM);
+        if (strongSize != null || softSize != null) {
+            try {
+                strongCacheSize = strongSize != null ? Integer.parseInt(strongSize.trim()) : 0;
+                if (softSize != null) {
+                    softCacheSize = Integer.parseInt(softSize.trim());
+                }
+            } catch (NumberFormatException e) {
+                throw new ServletException("Cannot parse template cache sizes: strong '"
+                        + strongSize + "', soft '" + softSize + "'", e);
+            }
+        }
+        cacheStatistics = Boolean.parseBoolean(config.getInitParameter(TEMPLATE_CACHE_STATISTICS_INIT_PARAM));
         String param = config.getInitParameter(CUSTOM_SHARED_VARIABLE_FACTORIES_INIT_PARAM);
         if (param != null) {
             String[] couples = param.split("\\s*;\\s*");
@@ -78,6 +171,43 @@ public class SharedVariableLoaderFreemarkerServlet extends FreemarkerServlet {
             }
         }
         super.init(new ExcludingParameterServletConfig(config));
+        String preload = config.getInitParameter(PRELOAD_TEMPLATES_INIT_PARAM);
+        if (preload != null && preload.trim().length() > 0) {
+            preloadTemplates(Arrays.asList(preload.trim().split("\\s*[;,]\\s*")));
+        }
+    }
+
+    /**
+     * Loads templates in the template cache, so that they are not loaded at
+     * their first rendering. Templates that cannot be loaded are skipped.
+     *
+     * @param paths The paths of the templates.
+     * @return The number of loaded templates.
+     */
+    public int preloadTemplates(Collection<String> paths) {
+        Configuration configuration = getConfiguration();
+        int loaded = 0;
+        for (String path : paths) {
+            try {
+                configuration.getTemplate(path);
+                loaded++;
+            } catch (IOException e) {
+                LOG.warn("Cannot preload template '" + path + "'", e);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the storage of the template cache, that collects hit, miss and
+     * load time statistics.
+     *
+     * @return The cache storage, or <code>null</code> if
+     * {@link #TEMPLATE_CACHE_STATISTICS_INIT_PARAM} is not <code>true</code>.
+     * It is not used anymore if the <code>cache_storage</code> setting is set.
+     */
+    public StatisticsCacheStorage getCacheStorage() {
+        return cacheStorage;
     }
 
     /**
@@ -94,6 +224,17 @@ public class SharedVariableLoaderFreemarkerServlet extends FreemarkerServlet {
     @Override
     protected Configuration createConfiguration() {
         Configuration configuration = super.createConfiguration();
+        CacheStorage storage;
+        if (strongCacheSize >= 0) {
+            storage = new MruCacheStorage(strongCacheSize, softCacheSize);
+        } else {
+            storage = new SoftCacheStorage();
+        }
+        if (cacheStatistics) {
+            cacheStorage = new StatisticsCacheStorage(storage);
+            storage = cacheStorage;
+        }
+        configuration.setCacheStorage(storage);
 
         for (Map.Entry<String, SharedVariableFactory> entry : name2variableFactory.entrySet()) {
             configuration.setSharedVariable(entry.getKey(), entry.getValue().create());
@@ -141,7 +282,7 @@ public class SharedVariableLoaderFreemarkerServlet extends FreemarkerServlet {
 
         @Override
         public String getInitParameter(String name) {
-            if (CUSTOM_SHARED_VARIABLE_FACTORIES_INIT_PARAM.equals(name)) {
+            if (EXCLUDED_INIT_PARAMS.contains(name)) {
                 return null;
             }
             return config.getInitParameter(name);
@@ -156,9 +297,10 @@ public class SharedVariableLoaderFreemarkerServlet extends FreemarkerServlet {
     }
 
     /**
-     * An enumeration that skip just
+     * An enumeration that skips the init parameters of
+     * {@link SharedVariableLoaderFreemarkerServlet}, like
      * {@link SharedVariableLoaderFreemarkerServlet#CUSTOM_SHARED_VARIABLE_FACTORIES_INIT_PARAM},
-     * again not to let the FreemarkerServlet be angry about it.
+     * again not to let the FreemarkerServlet be angry about them.
      */
     private static class SkippingEnumeration implements Enumeration<String> {
 
@@ -202,7 +344,7 @@ public class SharedVariableLoaderFreemarkerServlet extends FreemarkerServlet {
             boolean done = false;
             while (this.enumeration.hasMoreElements() && !done) {
                 value = this.enumeration.nextElement();
-                if (value.equals(CUSTOM_SHARED_VARIABLE_FACTORIES_INIT_PARAM)) {
+                if (EXCLUDED_INIT_PARAMS.contains(value)) {
                     value = null;
                 } else {
                     done = true;
@@ -0,0 +1,199 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.freemarker.servlet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import freemarker.cache.CacheStorage;
+import freemarker.cache.ConcurrentCacheStorage;
+
+/**
+ * Wraps the template cache storage of a FreeMarker configuration, counting
+ * hits, misses, and the time spent to load templates after a miss.
+ * The load time of a template is measured from the miss to the moment the
+ * loaded template is stored under the same key, so it includes reading and
+ * parsing it. Only misses are recorded, so hits cost just a counter update.
+ * <p>
+ * FreeMarker stores a hit entry again once it has checked whether the
+ * template changed, after the update delay: such stores are counted as
+ * revalidations.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class StatisticsCacheStorage implements ConcurrentCacheStorage {
+
+    /**
+     * The wrapped storage.
+     */
+    private CacheStorage storage;
+
+    /**
+     * The number of lookups that found an entry.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * The number of lookups that did not find an entry.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * The number of entries stored after a miss.
+     */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * The total time spent loading, in nanoseconds.
+     */
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+
+    /**
+     * The number of entries stored again after a hit.
+     */
+    private final AtomicLong revalidationCount = new AtomicLong();
+
+    /**
+     * When the missing entries have been looked up, in nanoseconds, keyed by
+     * entry key.
+     */
+    private final ConcurrentMap<Object, Long> pendingLoads = new ConcurrentHashMap<Object, Long>();
+
+    /**
+     * Constructor.
+     *
+     * @param storage The storage to wrap.
+     */
+    public StatisticsCacheStorage(CacheStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Returns the wrapped storage.
+     *
+     * @return The wrapped storage.
+     */
+    public CacheStorage getStorage() {
+        return storage;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isConcurrent() {
+        return storage instanceof ConcurrentCacheStorage
+                && ((ConcurrentCacheStorage) storage).isConcurrent();
+    }
+
+    /** {@inheritDoc} */
+    public Object get(Object key) {
+        Object value = storage.get(key);
+        if (value != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            pendingLoads.putIfAbsent(key, System.nanoTime());
+        }
+        return value;
+    }
+
+    /** {@inheritDoc} */
+    public void put(Object key, Object value) {
+        Long start = pendingLoads.remove(key);
+        if (start != null) {
+            loadCount.incrementAndGet();
+            totalLoadNanos.addAndGet(System.nanoTime() - start);
+        } else {
+            revalidationCount.incrementAndGet();
+        }
+        storage.put(key, value);
+    }
+
+    /** {@inheritDoc} */
+    public void remove(Object key) {
+        pendingLoads.remove(key);
+        storage.remove(key);
+    }
+
+    /** {@inheritDoc} */
+    public void clear() {
+        pendingLoads.clear();
+        storage.clear();
+    }
+
+    /**
+     * Returns the number of lookups that found an entry.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find an entry.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of templates loaded after a miss, including
+     * negative lookups of templates that do not exist.
+     *
+     * @return The number of loads.
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Returns the total time spent loading templates after a miss.
+     *
+     * @return The load time, in nanoseconds.
+     */
+    public long getTotalLoadNanos() {
+        return totalLoadNanos.get();
+    }
+
+    /**
+     * Returns the number of entries checked again after a hit, because the
+     * update delay elapsed.
+     *
+     * @return The number of revalidations.
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public void resetStatistics() {
+        hitCount.set(0L);
+        missCount.set(0L);
+        loadCount.set(0L);
+        totalLoadNanos.set(0L);
+        revalidationCount.set(0L);
+    }
+}
@@ -18,36 +18,91 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.apache.tiles.request.freemarker.servlet;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.ServletContext;
 
-import freemarker.cache.ClassTemplateLoader;
 import freemarker.cache.TemplateLoader;
 import freemarker.cache.WebappTemplateLoader;
 
 /**
  * Delegates loading templates using a {@link WebappTemplateLoader} and, if not
- * found, a {@link ClassTemplateLoader}. The resources are loaded from the
- * webapp root and from the classpath root.
+ * found, the class path. The resources are loaded from the webapp root and
+ * from the classpath root.
+ * <p>
+ * The backend that owns each name is remembered, including names that are not
+ * found anywhere. Templates found in the webapp are always looked up there
+ * first; names found in the class path, or not found at all, are probed again
+ * in both backends after the lookup interval. Timestamps are read from the
+ * backend that owns the template: for templates inside a jar file, the
+ * timestamp of the jar file is used, so that the jar is not opened to check
+ * for updates, and entries are read through the JVM cache of opened jar
+ * files.
+ * </p>
  *
  * @version $Rev$ $Date$
  */
 public class WebappClassTemplateLoader implements TemplateLoader {
 
+    /**
+     * The default interval, in milliseconds, after which names found in the
+     * class path or not found are probed again.
+     */
+    public static final long DEFAULT_LOOKUP_INTERVAL = 5000L;
+
+    /**
+     * The maximum number of remembered names.
+     */
+    private static final int MAX_LOOKUPS = 4096;
+
+    /**
+     * The backends that can own a template.
+     */
+    private static enum Backend {
+
+        /**
+         * The webapp.
+         */
+        WEBAPP,
+
+        /**
+         * The class path.
+         */
+        CLASS_PATH,
+
+        /**
+         * No backend, the template does not exist.
+         */
+        NONE
+    }
+
     /**
      * The webapp template loader.
      */
     private WebappTemplateLoader webappTemplateLoader;
 
     /**
-     * The webapp template loader.
+     * The interval, in milliseconds, after which names found in the class
+     * path or not found are probed again.
      */
-    private ClassTemplateLoader classTemplateLoader;
+    private long lookupInterval;
+
+    /**
+     * Maps template names to the result of their last lookup.
+     */
+    private final ConcurrentMap<String, Lookup> lookups = new ConcurrentHashMap<String, Lookup>();
 
     /**
      * Constructor.
@@ -55,32 +110,251 @@ public class WebappClassTemplateLoader implements TemplateLoader {
      * @param servletContext The servlet context.
      */
     public WebappClassTemplateLoader(ServletContext servletContext) {
+        this(servletContext, DEFAULT_LOOKUP_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param servletContext The servlet context.
+     * @param lookupInterval The interval, in milliseconds, after which names
+     * found in the class path or not found are probed again. Use 0 to always
+     * probe them again.
+     */
+    public WebappClassTemplateLoader(ServletContext servletContext, long lookupInterval) {
         webappTemplateLoader = new WebappTemplateLoader(servletContext);
-        classTemplateLoader = new ClassTemplateLoader(getClass(), "/");
+        this.lookupInterval = lookupInterval;
     }
 
     /** {@inheritDoc} */
     public Object findTemplateSource(String name) throws IOException {
+        Lookup lookup = lookups.get(name);
+        if (lookup != null) {
+            if (lookup.backend == Backend.WEBAPP) {
+                Object retValue = webappTemplateLoader.findTemplateSource(name);
+                if (retValue == null) {
+                    retValue = findClassPathSource(name);
+                    remember(name, retValue != null ? Backend.CLASS_PATH : Backend.NONE);
+                }
+                return retValue;
+            }
+            if (System.currentTimeMillis() - lookup.checkedAt < lookupInterval) {
+                if (lookup.backend == Backend.NONE) {
+                    return null;
+                }
+                Object retValue = findClassPathSource(name);
+                if (retValue != null) {
+                    return retValue;
+                }
+            }
+        }
         Object retValue = webappTemplateLoader.findTemplateSource(name);
-        if (retValue == null) {
-            retValue = classTemplateLoader.findTemplateSource(name);
+        if (retValue != null) {
+            remember(name, Backend.WEBAPP);
+            return retValue;
         }
+        retValue = findClassPathSource(name);
+        remember(name, retValue != null ? Backend.CLASS_PATH : Backend.NONE);
         return retValue;
     }
 
     /** {@inheritDoc} */
     public void closeTemplateSource(Object templateSource) throws IOException {
-        webappTemplateLoader.closeTemplateSource(templateSource);
+        if (!(templateSource instanceof ClassPathSource)) {
+            webappTemplateLoader.closeTemplateSource(templateSource);
+        }
     }
 
     /** {@inheritDoc} */
     public long getLastModified(Object templateSource) {
+        if (templateSource instanceof ClassPathSource) {
+            return ((ClassPathSource) templateSource).getLastModified();
+        }
         return webappTemplateLoader.getLastModified(templateSource);
     }
 
     /** {@inheritDoc} */
     public Reader getReader(Object templateSource, String encoding)
             throws IOException {
+        if (templateSource instanceof ClassPathSource) {
+            return new InputStreamReader(((ClassPathSource) templateSource).getInputStream(), encoding);
+        }
         return webappTemplateLoader.getReader(templateSource, encoding);
     }
+
+    /**
+     * Forgets the owners of all the names.
+     */
+    public void clearLookups() {
+        lookups.clear();
+    }
+
+    /**
+     * Finds a template in the class path.
+     *
+     * @param name The name of the template.
+     * @return The template source, or <code>null</code> if not found.
+     */
+    private Object findClassPathSource(String name) {
+        URL url = getClass().getResource("/" + name);
+        return url != null ? new ClassPathSource(url) : null;
+    }
+
+    /**
+     * Remembers the owner of a name.
+     *
+     * @param name The name of the template.
+     * @param backend The backend that owns the template.
+     */
+    private void remember(String name, Backend backend) {
+        if (lookups.size() < MAX_LOOKUPS || lookups.containsKey(name)) {
+            lookups.put(name, new Lookup(backend));
+        }
+    }
+
+    /**
+     * The result of a lookup.
+     */
+    private static final class Lookup {
+
+        /**
+         * The backend that owns the template.
+         */
+        private final Backend backend;
+
+        /**
+         * When the lookup has been done.
+         */
+        private final long checkedAt;
+
+        /**
+         * Constructor.
+         *
+         * @param backend The backend that owns the template.
+         */
+        private Lookup(Backend backend) {
+            this.backend = backend;
+            this.checkedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A template found in the class path.
+     */
+    private static final class ClassPathSource {
+
+        /**
+         * The URL of the template.
+         */
+        private final URL url;
+
+        /**
+         * The external form of the URL, used for comparisons.
+         */
+        private final String externalForm;
+
+        /**
+         * The file that contains the template: the template itself or the
+         * jar file that contains it. It is <code>null</code> if unknown.
+         */
+        private final File file;
+
+        /**
+         * Whether {@link #file} is the template itself.
+         */
+        private final boolean plainFile;
+
+        /**
+         * Constructor.
+         *
+         * @param url The URL of the template.
+         */
+        private ClassPathSource(URL url) {
+            this.url = url;
+            externalForm = url.toExternalForm();
+            String protocol = url.getProtocol();
+            if ("file".equals(protocol)) {
+                file = toFile(externalForm);
+                plainFile = true;
+            } else if ("jar".equals(protocol)) {
+                String path = url.getPath();
+                int separator = path.indexOf("!/");
+                file = separator > 0 && path.startsWith("file:") ? toFile(path.substring(0, separator)) : null;
+                plainFile = false;
+            } else {
+                file = null;
+                plainFile = false;
+            }
+        }
+
+        /**
+         * Returns the last modification date of the template.
+         *
+         * @return The last modification date, or -1 if not known.
+         */
+        private long getLastModified() {
+            if (file != null) {
+                long retValue = file.lastModified();
+                return retValue > 0L ? retValue : -1L;
+            }
+            try {
+                URLConnection connection = url.openConnection();
+                long retValue = connection.getLastModified();
+                connection.getInputStream().close();
+                return retValue > 0L ? retValue : -1L;
+            } catch (IOException e) {
+                return -1L;
+            }
+        }
+
+        /**
+         * Opens the template.
+         *
+         * @return The stream to read the template.
+         * @throws IOException If the template cannot be opened.
+         */
+        private InputStream getInputStream() throws IOException {
+            if (plainFile && file != null) {
+                return new FileInputStream(file);
+            }
+            return url.openStream();
+        }
+
+        /**
+         * Converts a file URL to a file.
+         *
+         * @param fileUrl The URL, in its external form.
+         * @return The file, or <code>null</code> if the URL cannot be converted.
+         */
+        private static File toFile(String fileUrl) {
+            try {
+                return new File(new URL(fileUrl).toURI());
+            } catch (IOException e) {
+                return null;
+            } catch (URISyntaxException e) {
+                return null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ClassPathSource
+                    && externalForm.equals(((ClassPathSource) obj).externalForm);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return externalForm.hashCode();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return externalForm;
+        }
+    }
 }
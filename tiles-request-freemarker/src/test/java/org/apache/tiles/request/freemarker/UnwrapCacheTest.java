@@ -0,0 +1,96 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.freemarker;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import freemarker.core.Environment;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleNumber;
+import freemarker.template.SimpleScalar;
+import freemarker.template.SimpleSequence;
+import freemarker.template.Template;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * Tests {@link UnwrapCache}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class UnwrapCacheTest {
+
+    /**
+     * Test method for {@link UnwrapCache#unwrap(freemarker.template.TemplateModel)}.
+     * @throws TemplateModelException If something goes wrong.
+     */
+    @Test
+    public void testUnwrap() throws TemplateModelException {
+        Template template = createMock(Template.class);
+        TemplateHashModel model = createMock(TemplateHashModel.class);
+
+        expect(template.getMacros()).andReturn(new HashMap<Object, Object>()).times(2);
+        expect(template.getCustomAttribute(UnwrapCache.class.getName())).andReturn(null).times(2);
+
+        replay(template, model);
+        Environment env = new Environment(template, model, new StringWriter());
+        UnwrapCache cache = UnwrapCache.getInstance(env);
+        assertSame(cache, UnwrapCache.getInstance(env));
+        assertNotSame(cache, UnwrapCache.getInstance(new Environment(template, model, new StringWriter())));
+
+        SimpleSequence sequence = new SimpleSequence(Arrays.asList("one", "two"), ObjectWrapper.SIMPLE_WRAPPER);
+        List<?> unwrapped = (List<?>) cache.unwrap(sequence);
+        assertEquals(Arrays.asList("one", "two"), unwrapped);
+        assertNotSame(unwrapped, cache.unwrap(sequence));
+        assertEquals(0, cache.size());
+
+        SimpleScalar scalar = new SimpleScalar("value");
+        assertEquals("value", cache.unwrap(scalar));
+        assertEquals("value", cache.unwrap(scalar));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        verify(template, model);
+    }
+
+    /**
+     * Test method for {@link UnwrapCache#unwrapShallow(freemarker.template.TemplateModel)}.
+     * @throws TemplateModelException If something goes wrong.
+     */
+    @Test
+    public void testUnwrapShallow() throws TemplateModelException {
+        assertEquals("value", UnwrapCache.unwrapShallow(new SimpleScalar("value")));
+        assertEquals(42, UnwrapCache.unwrapShallow(new SimpleNumber(42)));
+        assertEquals(Boolean.TRUE, UnwrapCache.unwrapShallow(TemplateBooleanModel.TRUE));
+        SimpleSequence sequence = new SimpleSequence(Arrays.asList("one", "two"), ObjectWrapper.SIMPLE_WRAPPER);
+        assertSame(sequence, UnwrapCache.unwrapShallow(sequence));
+    }
+}
@@ -33,6 +33,7 @@ import java.util.Iterator;
 import java.util.Set;
 
 import org.apache.tiles.request.freemarker.FreemarkerRequestException;
+import org.apache.tiles.request.freemarker.UnwrapCache;
 import org.junit.Test;
 
 import freemarker.core.Environment;
@@ -44,6 +45,7 @@ import freemarker.template.TemplateHashModelEx;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
 import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
 
 /**
  * Tests {@link EnvironmentScopeExtractor}.
@@ -65,6 +67,7 @@ public class EnvironmentScopeExtractorTest {
         Writer writer = new StringWriter();
 
         expect(template.getMacros()).andReturn(new HashMap<Object, Object>());
+        expect(template.getCustomAttribute(UnwrapCache.class.getName())).andReturn(null).anyTimes();
         expect(model.get("key")).andReturn(null);
         expect(template.getConfiguration()).andReturn(configuration);
         expect(configuration.getSharedVariable("key")).andReturn(null);
@@ -149,6 +152,7 @@ public class EnvironmentScopeExtractorTest {
         Writer writer = new StringWriter();
 
         expect(template.getMacros()).andReturn(new HashMap<Object, Object>());
+        expect(template.getCustomAttribute(UnwrapCache.class.getName())).andReturn(null).anyTimes();
         expect(valueModel.getAsString()).andReturn("value");
 
         replay(template, model, valueModel, configuration, objectWrapper);
@@ -159,6 +163,55 @@ public class EnvironmentScopeExtractorTest {
         verify(template, model, valueModel, configuration, objectWrapper);
     }
 
+    /**
+     * Tests that {@link EnvironmentScopeExtractor#getValue(java.lang.String)}
+     * unwraps a value once, even when other variables are set.
+     * @throws TemplateModelException If something goes wrong.
+     */
+    @Test
+    public void testGetValueCached() throws TemplateModelException {
+        Template template = createMock(Template.class);
+        TemplateHashModel model = createMock(TemplateHashModel.class);
+        TemplateScalarModel valueModel = createMock(TemplateScalarModel.class);
+        Writer writer = new StringWriter();
+
+        expect(template.getMacros()).andReturn(new HashMap<Object, Object>());
+        expect(template.getCustomAttribute(UnwrapCache.class.getName())).andReturn(null).anyTimes();
+        expect(valueModel.getAsString()).andReturn("value");
+
+        replay(template, model, valueModel);
+        Environment env = new Environment(template, model, writer);
+        env.setVariable("key", valueModel);
+        EnvironmentScopeExtractor extractor = new EnvironmentScopeExtractor(env);
+        assertEquals("value", extractor.getValue("key"));
+        assertEquals("value", extractor.getValue("key"));
+        extractor.removeValue("other");
+        assertEquals("value", extractor.getValue("key"));
+        verify(template, model, valueModel);
+    }
+
+    /**
+     * Test method for {@link EnvironmentScopeExtractor#getValue(java.lang.String)}
+     * when unwrapping shallowly.
+     * @throws TemplateModelException If something goes wrong.
+     */
+    @Test
+    public void testGetValueShallow() throws TemplateModelException {
+        Template template = createMock(Template.class);
+        TemplateHashModel model = createMock(TemplateHashModel.class);
+        TemplateSequenceModel valueModel = createMock(TemplateSequenceModel.class);
+        Writer writer = new StringWriter();
+
+        expect(template.getMacros()).andReturn(new HashMap<Object, Object>());
+
+        replay(template, model, valueModel);
+        Environment env = new Environment(template, model, writer);
+        env.setVariable("key", valueModel);
+        EnvironmentScopeExtractor extractor = new EnvironmentScopeExtractor(env, true);
+        assertSame(valueModel, extractor.getValue("key"));
+        verify(template, model, valueModel);
+    }
+
     /**
      * Test method for {@link EnvironmentScopeExtractor#getValue(java.lang.String)}.
      * @throws TemplateModelException If something goes wrong.
@@ -224,6 +277,7 @@ public class EnvironmentScopeExtractorTest {
         Writer writer = new StringWriter();
 
         expect(template.getMacros()).andReturn(new HashMap<Object, Object>());
+        expect(template.getCustomAttribute(UnwrapCache.class.getName())).andReturn(null).anyTimes();
         expect(template.getObjectWrapper()).andReturn(objectWrapper);
         expect(objectWrapper.wrap("value")).andReturn(valueModel);
 
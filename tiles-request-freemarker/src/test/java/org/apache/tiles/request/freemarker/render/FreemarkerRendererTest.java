@@ -37,12 +37,15 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.freemarker.servlet.SharedVariableLoaderFreemarkerServlet;
+import org.apache.tiles.request.freemarker.servlet.StatisticsCacheStorage;
 import org.apache.tiles.request.render.CannotRenderException;
 import org.apache.tiles.request.servlet.ServletApplicationContext;
 import org.apache.tiles.request.servlet.ServletRequest;
 import org.junit.Before;
 import org.junit.Test;
 
+import freemarker.cache.MruCacheStorage;
 import freemarker.ext.servlet.HttpRequestHashModel;
 import freemarker.ext.servlet.HttpRequestParametersHashModel;
 import freemarker.ext.servlet.ServletContextHashModel;
@@ -178,6 +181,105 @@ public class FreemarkerRendererTest {
                 response, servlet, servletConfig, objectWrapper);
     }
 
+    /**
+     * Tests {@link FreemarkerRenderer#render(String, org.apache.tiles.request.Request)}
+     * when rendering directly.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testWriteDirect() throws IOException {
+        ApplicationContext applicationContext = createMock(ServletApplicationContext.class);
+        ServletContext servletContext = createMock(ServletContext.class);
+
+        expect(applicationContext.getContext()).andReturn(servletContext).anyTimes();
+        expect(servletContext.getRealPath(isA(String.class))).andReturn(null).anyTimes();
+        URL resource = getClass().getResource("/test.ftl");
+        expect(servletContext.getResource(isA(String.class))).andReturn(resource).anyTimes();
+
+        replay(applicationContext, servletContext);
+
+        FreemarkerRenderer renderer = FreemarkerRendererBuilder
+                .createInstance().setApplicationContext(applicationContext)
+                .setParameter("TemplatePath", "/")
+                .setParameter("NoCache", "true")
+                .setParameter("ContentType", "text/html")
+                .setParameter("template_update_delay", "0")
+                .setParameter("default_encoding", "ISO-8859-1")
+                .setParameter("number_format", "0.##########")
+                .setDirectRendering(true).build();
+
+        ServletRequest request = createMock(ServletRequest.class);
+        HttpServletRequest httpRequest = createMock(HttpServletRequest.class);
+        HttpServletResponse response = createMock(HttpServletResponse.class);
+        StringWriter stringWriter = new StringWriter();
+        PrintWriter printWriter = new PrintWriter(stringWriter);
+
+        expect(request.getRequest()).andReturn(httpRequest);
+        expect(request.getResponse()).andReturn(response);
+        expect(request.getWriter()).andReturn(printWriter);
+
+        replay(request, httpRequest, response);
+        renderer.render("hello", request);
+        printWriter.flush();
+        assertTrue(stringWriter.toString().startsWith("Hello!"));
+        verify(applicationContext, servletContext, request, httpRequest, response);
+    }
+
+    /**
+     * Tests renderers sharing the same servlet, with a preloaded template.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testSharedServlet() throws IOException {
+        ApplicationContext applicationContext = createMock(ServletApplicationContext.class);
+        ServletContext servletContext = createMock(ServletContext.class);
+
+        expect(applicationContext.getContext()).andReturn(servletContext).anyTimes();
+        expect(servletContext.getRealPath(isA(String.class))).andReturn(null).anyTimes();
+        URL resource = getClass().getResource("/test.ftl");
+        expect(servletContext.getResource(isA(String.class))).andReturn(resource).anyTimes();
+
+        replay(applicationContext, servletContext);
+
+        AttributeValueFreemarkerServlet servlet = FreemarkerRendererBuilder
+                .createInstance().setApplicationContext(applicationContext)
+                .setParameter("TemplatePath", "/")
+                .setParameter("default_encoding", "ISO-8859-1")
+                .setParameter(SharedVariableLoaderFreemarkerServlet.TEMPLATE_CACHE_STRONG_SIZE_INIT_PARAM, "5")
+                .setParameter(SharedVariableLoaderFreemarkerServlet.TEMPLATE_CACHE_SOFT_SIZE_INIT_PARAM, "50")
+                .setParameter(SharedVariableLoaderFreemarkerServlet.PRELOAD_TEMPLATES_INIT_PARAM, "hello")
+                .setParameter(SharedVariableLoaderFreemarkerServlet.TEMPLATE_CACHE_STATISTICS_INIT_PARAM, "true")
+                .buildServlet();
+        StatisticsCacheStorage storage = servlet.getCacheStorage();
+        assertTrue(storage.getStorage() instanceof MruCacheStorage);
+        assertEquals(1L, storage.getMissCount());
+        assertEquals(1L, storage.getLoadCount());
+
+        FreemarkerRenderer renderer1 = FreemarkerRendererBuilder.createInstance()
+                .setServlet(servlet).setDirectRendering(true).build();
+        FreemarkerRenderer renderer2 = FreemarkerRendererBuilder.createInstance()
+                .setServlet(servlet).setDirectRendering(true).build();
+
+        ServletRequest request = createMock(ServletRequest.class);
+        HttpServletRequest httpRequest = createMock(HttpServletRequest.class);
+        HttpServletResponse response = createMock(HttpServletResponse.class);
+        StringWriter stringWriter = new StringWriter();
+        PrintWriter printWriter = new PrintWriter(stringWriter);
+
+        expect(request.getRequest()).andReturn(httpRequest).times(2);
+        expect(request.getResponse()).andReturn(response).times(2);
+        expect(request.getWriter()).andReturn(printWriter).times(2);
+
+        replay(request, httpRequest, response);
+        renderer1.render("hello", request);
+        renderer2.render("hello", request);
+        printWriter.flush();
+        assertTrue(stringWriter.toString().startsWith("Hello!"));
+        assertEquals(1L, storage.getMissCount());
+        assertEquals(2L, storage.getHitCount());
+        verify(applicationContext, servletContext, request, httpRequest, response);
+    }
+
     /**
      * Tests {@link FreemarkerRenderer#render(String, org.apache.tiles.request.Request)}.
      * @throws IOException If something goes wrong.
@@ -0,0 +1,175 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.freemarker.render;
+
+import static org.easymock.EasyMock.*;
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.tiles.request.Request;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import freemarker.ext.servlet.FreemarkerServlet;
+import freemarker.ext.servlet.HttpRequestHashModel;
+import freemarker.ext.servlet.IncludePage;
+import freemarker.ext.servlet.ServletContextHashModel;
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleScalar;
+import freemarker.template.Template;
+import freemarker.template.TemplateModelException;
+
+/**
+ * Tests {@link RequestScopesHashModel}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RequestScopesHashModelTest {
+
+    /**
+     * The Tiles request.
+     */
+    private Request request;
+
+    /**
+     * The HTTP request.
+     */
+    private HttpServletRequest httpRequest;
+
+    /**
+     * The HTTP response.
+     */
+    private HttpServletResponse httpResponse;
+
+    /**
+     * The application model.
+     */
+    private ServletContextHashModel applicationModel;
+
+    /**
+     * The model to test.
+     */
+    private RequestScopesHashModel model;
+
+    /**
+     * Sets up the test.
+     */
+    @Before
+    public void setUp() {
+        request = createMock(Request.class);
+        httpRequest = createMock(HttpServletRequest.class);
+        httpResponse = createMock(HttpServletResponse.class);
+        applicationModel = new ServletContextHashModel(createMock(ServletContext.class),
+                ObjectWrapper.SIMPLE_WRAPPER);
+        model = new RequestScopesHashModel(request, httpRequest, httpResponse,
+                ObjectWrapper.SIMPLE_WRAPPER, applicationModel);
+    }
+
+    /**
+     * Tests {@link RequestScopesHashModel#get(String)} for servlet models.
+     * @throws TemplateModelException If something goes wrong.
+     */
+    @Test
+    public void testGetServletModels() throws TemplateModelException {
+        expect(httpRequest.getSession(false)).andReturn(null);
+
+        replay(request, httpRequest, httpResponse);
+        assertSame(applicationModel, model.get(FreemarkerServlet.KEY_APPLICATION));
+        HttpRequestHashModel requestModel = (HttpRequestHashModel) model.get(FreemarkerServlet.KEY_REQUEST);
+        assertSame(httpRequest, requestModel.getRequest());
+        assertSame(httpResponse, requestModel.getResponse());
+        assertSame(requestModel, model.get(FreemarkerServlet.KEY_REQUEST));
+        assertNotNull(model.get(FreemarkerServlet.KEY_REQUEST_PARAMETERS));
+        assertNull(model.get(FreemarkerServlet.KEY_SESSION));
+        IncludePage includePage = (IncludePage) model.get(FreemarkerServlet.KEY_INCLUDE);
+        assertSame(includePage, model.get(FreemarkerServlet.KEY_INCLUDE));
+        assertFalse(model.isEmpty());
+        verify(request, httpRequest, httpResponse);
+    }
+
+    /**
+     * Tests {@link RequestScopesHashModel#get(String)} for scoped attributes.
+     * @throws TemplateModelException If something goes wrong.
+     */
+    @Test
+    public void testGetScopedAttributes() throws TemplateModelException {
+        Map<String, Object> requestScope = new HashMap<String, Object>();
+        Map<String, Object> applicationScope = new HashMap<String, Object>();
+        requestScope.put("one", "requestOne");
+        applicationScope.put("one", "applicationOne");
+        applicationScope.put("two", "applicationTwo");
+
+        expect(request.getAvailableScopes()).andReturn(Arrays.asList("request", "application")).times(3);
+        expect(request.getContext("request")).andReturn(requestScope).times(3);
+        expect(request.getContext("application")).andReturn(applicationScope).times(2);
+
+        replay(request, httpRequest, httpResponse);
+        assertEquals("requestOne", ((SimpleScalar) model.get("one")).getAsString());
+        assertEquals("applicationTwo", ((SimpleScalar) model.get("two")).getAsString());
+        assertNull(model.get("three"));
+        verify(request, httpRequest, httpResponse);
+    }
+
+    /**
+     * Tests rendering a template that uses <code>include_page</code>.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testIncludePage() throws Exception {
+        RequestDispatcher dispatcher = createMock(RequestDispatcher.class);
+        expect(httpResponse.getWriter()).andReturn(new PrintWriter(new StringWriter()));
+        expect(httpRequest.getRequestDispatcher("/included.jsp")).andReturn(dispatcher);
+        dispatcher.include(isA(HttpServletRequest.class), isA(HttpServletResponse.class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+
+            @Override
+            public Object answer() throws IOException {
+                ((ServletResponse) getCurrentArguments()[1]).getWriter().write("included");
+                return null;
+            }
+        });
+
+        replay(request, httpRequest, httpResponse, dispatcher);
+        Template template = new Template("test.ftl",
+                new StringReader("before <@include_page path=\"/included.jsp\"/> after"), new Configuration());
+        StringWriter writer = new StringWriter();
+        template.process(model, writer);
+        assertEquals("before included after", writer.toString());
+        verify(request, httpRequest, httpResponse, dispatcher);
+    }
+}
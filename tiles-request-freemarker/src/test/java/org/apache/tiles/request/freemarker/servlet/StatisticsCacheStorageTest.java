@@ -0,0 +1,90 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.freemarker.servlet;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import freemarker.cache.MruCacheStorage;
+import freemarker.cache.SoftCacheStorage;
+
+/**
+ * Tests {@link StatisticsCacheStorage}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class StatisticsCacheStorageTest {
+
+    /**
+     * Tests the statistics.
+     */
+    @Test
+    public void testStatistics() {
+        MruCacheStorage wrapped = new MruCacheStorage(1, 10);
+        StatisticsCacheStorage storage = new StatisticsCacheStorage(wrapped);
+        assertSame(wrapped, storage.getStorage());
+        assertFalse(storage.isConcurrent());
+
+        assertNull(storage.get("one"));
+        storage.put("one", "value");
+        assertEquals("value", storage.get("one"));
+        assertEquals("value", storage.get("one"));
+        storage.put("one", "other");
+        assertEquals(2L, storage.getHitCount());
+        assertEquals(1L, storage.getMissCount());
+        assertEquals(1L, storage.getLoadCount());
+        assertTrue(storage.getTotalLoadNanos() >= 0L);
+        assertEquals(1L, storage.getRevalidationCount());
+
+        storage.remove("one");
+        assertNull(storage.get("one"));
+        storage.put("two", "value");
+        assertEquals(1L, storage.getLoadCount());
+        assertEquals(2L, storage.getRevalidationCount());
+        assertNull(storage.get("three"));
+        assertNull(storage.get("four"));
+        storage.put("four", "value");
+        storage.put("three", "value");
+        assertEquals(3L, storage.getLoadCount());
+        storage.clear();
+        assertNull(wrapped.get("four"));
+        assertEquals(4L, storage.getMissCount());
+        storage.put("one", "value");
+        assertEquals(3L, storage.getLoadCount());
+        assertEquals(3L, storage.getRevalidationCount());
+
+        storage.resetStatistics();
+        assertEquals(0L, storage.getHitCount());
+        assertEquals(0L, storage.getMissCount());
+        assertEquals(0L, storage.getLoadCount());
+        assertEquals(0L, storage.getTotalLoadNanos());
+        assertEquals(0L, storage.getRevalidationCount());
+    }
+
+    /**
+     * Tests {@link StatisticsCacheStorage#isConcurrent()}.
+     */
+    @Test
+    public void testIsConcurrent() {
+        assertTrue(new StatisticsCacheStorage(new SoftCacheStorage()).isConcurrent());
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.freemarker.servlet;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import javax.servlet.ServletContext;
+
+import org.junit.Test;
+
+import freemarker.template.Template;
+
+/**
+ * Tests {@link WebappClassTemplateLoader}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class WebappClassTemplateLoaderTest {
+
+    /**
+     * Tests loading a template from the class path.
+     * @throws IOException If something goes wrong.
+     * @throws URISyntaxException If something goes wrong.
+     */
+    @Test
+    public void testClassPathTemplate() throws IOException, URISyntaxException {
+        ServletContext servletContext = createMock(ServletContext.class);
+
+        expect(servletContext.getRealPath("/test.ftl")).andReturn(null);
+        expect(servletContext.getResource("/test.ftl")).andReturn(null);
+
+        replay(servletContext);
+        WebappClassTemplateLoader loader = new WebappClassTemplateLoader(servletContext);
+        Object source = loader.findTemplateSource("test.ftl");
+        assertNotNull(source);
+        assertEquals(source, loader.findTemplateSource("test.ftl"));
+        File file = new File(getClass().getResource("/test.ftl").toURI());
+        assertEquals(file.lastModified(), loader.getLastModified(source));
+        BufferedReader reader = new BufferedReader(loader.getReader(source, "ISO-8859-1"));
+        try {
+            String line = reader.readLine();
+            boolean found = false;
+            while (line != null && !found) {
+                found = line.startsWith("Hello!");
+                line = reader.readLine();
+            }
+            assertTrue(found);
+        } finally {
+            reader.close();
+        }
+        loader.closeTemplateSource(source);
+        verify(servletContext);
+    }
+
+    /**
+     * Tests loading a template from a jar in the class path.
+     * @throws IOException If something goes wrong.
+     * @throws URISyntaxException If something goes wrong.
+     */
+    @Test
+    public void testJarTemplate() throws IOException, URISyntaxException {
+        ServletContext servletContext = createMock(ServletContext.class);
+        String name = "freemarker/template/Template.class";
+
+        expect(servletContext.getRealPath("/" + name)).andReturn(null);
+        expect(servletContext.getResource("/" + name)).andReturn(null);
+
+        replay(servletContext);
+        WebappClassTemplateLoader loader = new WebappClassTemplateLoader(servletContext);
+        Object source = loader.findTemplateSource(name);
+        File jarFile = new File(Template.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        assertEquals(jarFile.lastModified(), loader.getLastModified(source));
+        Reader reader = loader.getReader(source, "ISO-8859-1");
+        try {
+            assertTrue(reader.read() >= 0);
+        } finally {
+            reader.close();
+        }
+        verify(servletContext);
+    }
+
+    /**
+     * Tests loading a template from the webapp.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testWebappTemplate() throws IOException {
+        ServletContext servletContext = createMock(ServletContext.class);
+        URL url = getClass().getResource("/test.ftl");
+
+        expect(servletContext.getRealPath("/test.ftl")).andReturn(null).times(2);
+        expect(servletContext.getResource("/test.ftl")).andReturn(url).times(2);
+
+        replay(servletContext);
+        WebappClassTemplateLoader loader = new WebappClassTemplateLoader(servletContext);
+        Object source = loader.findTemplateSource("test.ftl");
+        assertNotNull(source);
+        assertNotNull(loader.findTemplateSource("test.ftl"));
+        assertTrue(loader.getLastModified(source) > 0L);
+        Reader reader = loader.getReader(source, "ISO-8859-1");
+        reader.close();
+        loader.closeTemplateSource(source);
+        verify(servletContext);
+    }
+
+    /**
+     * Tests that missing templates are remembered.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testMissingTemplate() throws IOException {
+        ServletContext servletContext = createMock(ServletContext.class);
+
+        expect(servletContext.getRealPath("/missing.ftl")).andReturn(null);
+        expect(servletContext.getResource("/missing.ftl")).andReturn(null);
+
+        replay(servletContext);
+        WebappClassTemplateLoader loader = new WebappClassTemplateLoader(servletContext);
+        assertNull(loader.findTemplateSource("missing.ftl"));
+        assertNull(loader.findTemplateSource("missing.ftl"));
+        verify(servletContext);
+    }
+
+    /**
+     * Tests that missing templates are probed again after the lookup interval.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testMissingTemplateExpired() throws IOException {
+        ServletContext servletContext = createMock(ServletContext.class);
+
+        expect(servletContext.getRealPath("/missing.ftl")).andReturn(null).times(3);
+        expect(servletContext.getResource("/missing.ftl")).andReturn(null).times(3);
+
+        replay(servletContext);
+        WebappClassTemplateLoader loader = new WebappClassTemplateLoader(servletContext, 0L);
+        assertNull(loader.findTemplateSource("missing.ftl"));
+        assertNull(loader.findTemplateSource("missing.ftl"));
+        loader.clearLookups();
+        assertNull(loader.findTemplateSource("missing.ftl"));
+        verify(servletContext);
+    }
+}
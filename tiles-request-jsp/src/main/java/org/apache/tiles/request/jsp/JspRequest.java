@@ -36,6 +36,8 @@ import javax.servlet.jsp.PageContext;
 import org.apache.tiles.request.AbstractViewRequest;
 import org.apache.tiles.request.ApplicationContext;
 import org.apache.tiles.request.DispatchRequest;
+import org.apache.tiles.request.attribute.AttributeExtractor;
+import org.apache.tiles.request.attribute.OverlayAttributeExtractor;
 import org.apache.tiles.request.collection.ScopeMap;
 import org.apache.tiles.request.jsp.extractor.ScopeExtractor;
 import org.apache.tiles.request.jsp.extractor.SessionScopeExtractor;
@@ -153,14 +155,21 @@ public class JspRequest extends AbstractViewRequest {
     }
 
     /**
-     * Returns the request scope.
+     * Returns the request scope. The framework-internal attributes are kept in
+     * the same overlay used by {@link ServletRequest}.
      *
      * @return The request scope.
      */
     public Map<String, Object> getRequestScope() {
         if ((requestScope == null) && (pageContext != null)) {
-            requestScope = new ScopeMap(new ScopeExtractor(pageContext,
-                    PageContext.REQUEST_SCOPE));
+            AttributeExtractor extractor = new ScopeExtractor(pageContext,
+                    PageContext.REQUEST_SCOPE);
+            if (pageContext.getRequest() instanceof HttpServletRequest) {
+                extractor = new OverlayAttributeExtractor(extractor,
+                        ServletRequest.getAttributeOverlay((HttpServletRequest) pageContext.getRequest()),
+                        ServletRequest.INTERNAL_ATTRIBUTE_NAMES);
+            }
+            requestScope = new ScopeMap(extractor);
         }
         return (requestScope);
     }
@@ -25,6 +25,7 @@ import static org.easymock.classextension.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -32,8 +33,10 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.PageContext;
 
+import org.apache.tiles.request.AbstractRequest;
 import org.apache.tiles.request.ApplicationContext;
 import org.apache.tiles.request.DispatchRequest;
+import org.apache.tiles.request.attribute.AttributeTable;
 import org.apache.tiles.request.collection.ScopeMap;
 import org.apache.tiles.request.servlet.ServletRequest;
 import org.junit.Before;
@@ -164,9 +167,18 @@ public class JspRequestTest {
      */
     @Test
     public void testGetRequestScope() {
-        replay(context, enclosedRequest);
-        assertTrue(request.getRequestScope() instanceof ScopeMap);
-        verify(context, enclosedRequest);
+        HttpServletRequest servletRequest = createMock(HttpServletRequest.class);
+        AttributeTable overlay = new AttributeTable();
+
+        expect(context.getRequest()).andReturn(servletRequest).times(2);
+        expect(servletRequest.getAttribute(ServletRequest.ATTRIBUTE_OVERLAY_NAME)).andReturn(overlay);
+
+        replay(context, enclosedRequest, servletRequest);
+        Map<String, Object> scope = request.getRequestScope();
+        assertTrue(scope instanceof ScopeMap);
+        scope.put(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME, true);
+        assertEquals(true, overlay.get(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME));
+        verify(context, enclosedRequest, servletRequest);
     }
 
     /**
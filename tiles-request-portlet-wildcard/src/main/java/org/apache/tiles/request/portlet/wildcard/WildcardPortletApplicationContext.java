@@ -21,19 +21,19 @@
 
 package org.apache.tiles.request.portlet.wildcard;
 
-import java.io.IOException;
-import java.net.URL;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.portlet.PortletContext;
 
 import org.apache.tiles.request.ApplicationResource;
-import org.apache.tiles.request.locale.URLApplicationResource;
+import org.apache.tiles.request.StreamingApplicationContext;
+import org.apache.tiles.request.resource.PatternResultCache;
 import org.apache.tiles.request.portlet.PortletApplicationContext;
-import org.springframework.core.io.Resource;
+import org.apache.tiles.request.servlet.wildcard.ParallelResourcePatternResolver;
+import org.apache.tiles.request.servlet.wildcard.WildcardResourceLocator;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.web.portlet.context.PortletContextResourcePatternResolver;
 
@@ -43,13 +43,19 @@ import org.springframework.web.portlet.context.PortletContextResourcePatternReso
  *
  * @version $Rev$ $Date$
  */
-public class WildcardPortletApplicationContext extends PortletApplicationContext {
+public class WildcardPortletApplicationContext extends PortletApplicationContext
+        implements StreamingApplicationContext {
 
     /**
      * The pattern resolver.
      */
     protected ResourcePatternResolver resolver;
 
+    /**
+     * Locates the resources through the pattern resolver.
+     */
+    private WildcardResourceLocator locator;
+
     /**
      * Constructor.
      *
@@ -65,52 +71,74 @@ public class WildcardPortletApplicationContext extends PortletApplicationContext
         super.initialize(context);
 
         resolver = new PortletContextResourcePatternResolver(context);
+        locator = new WildcardResourceLocator(resolver.getClassLoader());
+    }
+
+    /**
+     * Sets the pool that scans the root directories of wildcard patterns in
+     * parallel.
+     *
+     * @param scanPool The pool to use, or <code>null</code> to scan sequentially.
+     * @see ParallelResourcePatternResolver
+     */
+    public void setScanPool(ForkJoinPool scanPool) {
+        PortletContext portletContext = context;
+        if (scanPool != null) {
+            resolver = new ParallelResourcePatternResolver(new PortletContextResourcePatternResolver(portletContext), scanPool);
+        } else {
+            resolver = new PortletContextResourcePatternResolver(portletContext);
+        }
+    }
+
+    /**
+     * Drops the jar listings kept by the parallel scan, if enabled with
+     * {@link #setScanPool(ForkJoinPool)}, e.g. once the application has started.
+     */
+    public void clearScanCache() {
+        if (resolver instanceof ParallelResourcePatternResolver) {
+            ((ParallelResourcePatternResolver) resolver).clearCache();
+        }
+    }
+
+    /**
+     * Sets the cache of the results of wildcard patterns.
+     *
+     * @param patternCache The cache to use, or <code>null</code> to disable caching.
+     */
+    public void setPatternCache(PatternResultCache patternCache) {
+        locator.setPatternCache(patternCache);
+    }
+
+    /**
+     * Returns the cache of the results of wildcard patterns.
+     *
+     * @return The cache, or <code>null</code> if caching is disabled.
+     */
+    public PatternResultCache getPatternCache() {
+        return locator.getPatternCache();
     }
 
     /** {@inheritDoc} */
     @Override
     public ApplicationResource getResource(String localePath) {
-        ApplicationResource retValue = null;
-        Collection<ApplicationResource> resourceSet = getResources(localePath);
-        if (resourceSet != null && !resourceSet.isEmpty()) {
-            retValue = resourceSet.iterator().next();
-        }
-        return retValue;
+        return locator.getResource(resolver, localePath, getResourceCache());
     }
 
     /** {@inheritDoc} */
     @Override
     public ApplicationResource getResource(ApplicationResource base, Locale locale) {
-        ApplicationResource retValue = null;
-        Collection<ApplicationResource> resourceSet = getResources(base.getLocalePath(locale));
-        if (resourceSet != null && !resourceSet.isEmpty()) {
-            retValue = resourceSet.iterator().next();
-        }
-        return retValue;
+        return locator.getResource(resolver, base.getLocalePath(locale), getResourceCache());
     }
 
     /** {@inheritDoc} */
     @Override
     public Collection<ApplicationResource> getResources(String path) {
-        Resource[] resources;
-        try {
-            resources = resolver.getResources(path);
-        } catch (IOException e) {
-            return Collections.<ApplicationResource> emptyList();
-        }
-        Collection<ApplicationResource> resourceList = new ArrayList<ApplicationResource>();
-        if (resources != null && resources.length > 0) {
-            for (int i = 0; i < resources.length; i++) {
-                URL url;
-                try {
-                    url = resources[i].getURL();
-                    resourceList.add(new URLApplicationResource(url.toExternalForm(), url));
-                } catch (IOException e) {
-                    // shouldn't happen with the kind of resources we're using
-                    throw new IllegalArgumentException("no URL for " + resources[i].toString(), e);
-                }
-            }
-        }
-        return resourceList;
+        return locator.getResources(resolver, path);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<ApplicationResource> getResourceIterator(String path) {
+        return locator.getResourceIterator(resolver, path);
     }
 }
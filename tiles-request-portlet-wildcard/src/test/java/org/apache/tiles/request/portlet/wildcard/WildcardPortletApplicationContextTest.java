@@ -21,10 +21,18 @@
 package org.apache.tiles.request.portlet.wildcard;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Vector;
@@ -33,7 +41,11 @@ import javax.portlet.PortletContext;
 
 import junit.framework.TestCase;
 
+import org.apache.tiles.request.ApplicationResource;
 import org.apache.tiles.request.locale.URLApplicationResource;
+import org.apache.tiles.request.resource.PatternResultCache;
+import org.apache.tiles.request.resource.ResolvedResourceCache;
+import org.apache.tiles.request.resource.ResourceIndexGenerator;
 import org.easymock.EasyMock;
 
 
@@ -121,6 +133,125 @@ public class WildcardPortletApplicationContextTest extends TestCase {
         EasyMock.verify(portletContext);
     }
 
+    /**
+     * Tests {@link WildcardPortletApplicationContext#getResourceIterator(String)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourceIterator() throws IOException {
+        EasyMock.replay(portletContext);
+
+        String pattern = "classpath*:/test.properties";
+        List<ApplicationResource> resources = new ArrayList<ApplicationResource>();
+        for (Iterator<ApplicationResource> it = context.getResourceIterator(pattern); it.hasNext();) {
+            resources.add(it.next());
+        }
+        assertEquals(TEST_PROPERTIES_SIZE, resources.size());
+        assertEquals(new ArrayList<ApplicationResource>(context.getResources(pattern)), resources);
+        Iterator<ApplicationResource> it = context.getResourceIterator("classpath*:/nothing/*.properties");
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail("NoSuchElementException expected");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        EasyMock.verify(portletContext);
+    }
+
+    /**
+     * Tests resource getting, with the resource and pattern caches.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourcesCached() throws IOException {
+        URL u = new URL("file://tiles/test.properties");
+        EasyMock.expect(portletContext.getResource("/test.properties")).andReturn(u);
+        EasyMock.expect(portletContext.getResource("/missing.properties")).andReturn(null);
+        File dir = new File(".");
+        EasyMock.expect(portletContext.getResource("/WEB-INF/")).andReturn(
+                dir.toURI().toURL()).anyTimes();
+        URL pomUrl = new URL("file://tiles/pom.xml");
+        EasyMock.expect(portletContext.getResource("/WEB-INF/pom.xml"))
+                .andReturn(pomUrl).anyTimes();
+        Set<String> elementSet = new HashSet<String>();
+        elementSet.add("/WEB-INF/pom.xml");
+        EasyMock.expect(portletContext.getResourcePaths("/WEB-INF/")).andReturn(elementSet);
+        EasyMock.replay(portletContext);
+
+        context.setResourceCache(new ResolvedResourceCache(16, -1L));
+        PatternResultCache patternCache = new PatternResultCache(16, -1L);
+        context.setPatternCache(patternCache);
+        assertSame(patternCache, context.getPatternCache());
+        ApplicationResource expected = new URLApplicationResource(u.toExternalForm(), u);
+        assertEquals(expected, context.getResource("/test.properties"));
+        assertEquals(expected, context.getResource("/test.properties"));
+        assertNull(context.getResource("/missing.properties"));
+        assertNull(context.getResource("/missing.properties"));
+        ApplicationResource pom = new URLApplicationResource(pomUrl.toExternalForm(), pomUrl);
+        assertEquals(pom, context.getResource("/WEB-INF/*.xml"));
+        assertEquals(pom, context.getResource("/WEB-INF/*.xml"));
+        assertEquals(1, patternCache.size());
+        EasyMock.verify(portletContext);
+    }
+
+    /**
+     * Tests resource getting, when a resource index is available.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourcesIndexed() throws IOException {
+        File root = File.createTempFile("tiles-index", "");
+        assertTrue(root.delete());
+        File dir = new File(root, "org/apache/tiles");
+        assertTrue(dir.mkdirs());
+        File defs = new File(dir, "defs.xml");
+        new FileOutputStream(defs).close();
+        new FileOutputStream(new File(dir, "defs_fr.xml")).close();
+        new FileOutputStream(new File(dir, "other.txt")).close();
+        new ResourceIndexGenerator(root, Arrays.asList(".xml")).generate();
+        try {
+            Thread.currentThread().setContextClassLoader(
+                    new URLClassLoader(new URL[] {root.toURI().toURL()}, null));
+            PortletContext portletContextIndexed = EasyMock.createMock(PortletContext.class);
+            EasyMock.replay(portletContextIndexed);
+            WildcardPortletApplicationContext indexedContext = new WildcardPortletApplicationContext(portletContextIndexed);
+            Collection<ApplicationResource> resources = indexedContext.getResources(
+                    "classpath*:/org/apache/tiles/*.xml");
+            assertEquals(2, resources.size());
+            resources = indexedContext.getResources("classpath*:org/apache/tiles/defs.xml");
+            assertEquals(1, resources.size());
+            URL url = defs.toURI().toURL();
+            assertEquals(new URLApplicationResource(url.toExternalForm(), url), resources.iterator().next());
+            // Not indexed, so found by scanning.
+            assertEquals(1, indexedContext.getResources("classpath*:/org/apache/tiles/other.txt").size());
+            Iterator<ApplicationResource> it = indexedContext.getResourceIterator("classpath*:/org/apache/tiles/defs*.xml");
+            assertTrue(it.hasNext());
+            assertNotNull(it.next());
+            assertTrue(it.hasNext());
+            assertNotNull(it.next());
+            assertFalse(it.hasNext());
+            EasyMock.verify(portletContextIndexed);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /**
+     * Deletes a file or a directory, recursively.
+     *
+     * @param file The file to delete.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
     /**
      * An mock class loader.
      */
@@ -34,6 +34,7 @@ import org.apache.tiles.request.ApplicationResource;
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
 import org.apache.tiles.request.collection.ScopeMap;
 import org.apache.tiles.request.locale.URLApplicationResource;
+import org.apache.tiles.request.resource.ResolvedResourceCache;
 import org.apache.tiles.request.portlet.extractor.ApplicationScopeExtractor;
 import org.apache.tiles.request.portlet.extractor.InitParameterExtractor;
 
@@ -61,6 +62,12 @@ public class PortletApplicationContext implements ApplicationContext {
      */
     private Map<String, String> initParam = null;
 
+    /**
+     * The cache of resolved resources. If <code>null</code>, resources are
+     * resolved at every call.
+     */
+    private ResolvedResourceCache resourceCache = null;
+
     /**
      * Creates a new instance of PortletTilesApplicationContext.
      *
@@ -115,8 +122,69 @@ public class PortletApplicationContext implements ApplicationContext {
 
     }
 
+    /**
+     * Sets the cache of resolved resources. Both found and missing resources
+     * are cached, so localized lookups that fall back to a parent locale do not
+     * hit the portlet context every time.
+     *
+     * @param resourceCache The cache to use, or <code>null</code> to disable caching.
+     */
+    public void setResourceCache(ResolvedResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
+    /**
+     * Returns the cache of resolved resources.
+     *
+     * @return The cache, or <code>null</code> if caching is disabled.
+     */
+    public ResolvedResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
     /** {@inheritDoc} */
     public ApplicationResource getResource(String localePath) {
+        if (resourceCache == null) {
+            return lookupResource(localePath);
+        }
+        return resourceCache.get(localePath, new ResolvedResourceCache.Lookup() {
+
+            @Override
+            public ApplicationResource lookup(String key) {
+                return lookupResource(key);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public ApplicationResource getResource(final ApplicationResource base, final Locale locale) {
+        if (resourceCache == null) {
+            return lookupResource(base, locale);
+        }
+        String key = ResolvedResourceCache.getLocalizedKey(base.getPath(), locale);
+        return resourceCache.get(key, new ResolvedResourceCache.Lookup() {
+
+            @Override
+            public ApplicationResource lookup(String key) {
+                return lookupResource(base, locale);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public Collection<ApplicationResource> getResources(String path) {
+        ArrayList<ApplicationResource> resources = new ArrayList<ApplicationResource>();
+        resources.add(getResource(path));
+        return resources;
+    }
+
+    /**
+     * Resolves a resource through the portlet context.
+     *
+     * @param localePath The path of the resource, including the locale postfix.
+     * @return The resource, or <code>null</code> if it does not exist.
+     */
+    private ApplicationResource lookupResource(String localePath) {
         try {
             URL url = context.getResource(localePath);
             if (url != null) {
@@ -129,8 +197,14 @@ public class PortletApplicationContext implements ApplicationContext {
         }
     }
 
-    /** {@inheritDoc} */
-    public ApplicationResource getResource(ApplicationResource base, Locale locale) {
+    /**
+     * Resolves a localized version of a resource through the portlet context.
+     *
+     * @param base The base resource.
+     * @param locale The locale.
+     * @return The resource, or <code>null</code> if it does not exist.
+     */
+    private ApplicationResource lookupResource(ApplicationResource base, Locale locale) {
         try {
             URL url = context.getResource(base.getLocalePath(locale));
             if (url != null) {
@@ -142,11 +216,4 @@ public class PortletApplicationContext implements ApplicationContext {
             return null;
         }
     }
-
-    /** {@inheritDoc} */
-    public Collection<ApplicationResource> getResources(String path) {
-        ArrayList<ApplicationResource> resources = new ArrayList<ApplicationResource>();
-        resources.add(getResource(path));
-        return resources;
-    }
 }
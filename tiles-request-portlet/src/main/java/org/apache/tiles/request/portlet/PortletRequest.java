@@ -42,6 +42,7 @@ import org.apache.tiles.request.attribute.Addable;
 import org.apache.tiles.request.collection.HeaderValuesMap;
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
 import org.apache.tiles.request.collection.ScopeMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.apache.tiles.request.portlet.delegate.RequestDelegate;
 import org.apache.tiles.request.portlet.delegate.ResponseDelegate;
 import org.apache.tiles.request.portlet.extractor.HeaderExtractor;
@@ -248,6 +249,16 @@ public class PortletRequest extends AbstractClientRequest {
         return requestDelegate.getParamValues();
     }
 
+    /**
+     * Returns the request parameters as typed values, parsed at most once
+     * per request.
+     *
+     * @return The typed parameter view.
+     */
+    public TypedParameterView getTypedParam() {
+        return requestDelegate.getTypedParam();
+    }
+
     /** {@inheritDoc} */
     public boolean isUserInRole(String role) {
         return request.isUserInRole(role);
@@ -25,6 +25,7 @@ import java.util.Map;
 import javax.portlet.PortletRequest;
 
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.apache.tiles.request.portlet.extractor.ParameterExtractor;
 
 /**
@@ -51,6 +52,11 @@ public class PortletRequestDelegate implements RequestDelegate {
      */
     private Map<String, String[]> paramValues = null;
 
+    /**
+     * <p>The lazily instantiated typed view of request parameters.</p>
+     */
+    private TypedParameterView typedParam = null;
+
     /**
      * Constructor.
      *
@@ -75,4 +81,12 @@ public class PortletRequestDelegate implements RequestDelegate {
         }
         return (paramValues);
     }
+
+    /** {@inheritDoc} */
+    public TypedParameterView getTypedParam() {
+        if ((typedParam == null) && (request != null)) {
+            typedParam = new TypedParameterView(new ParameterExtractor(request));
+        }
+        return (typedParam);
+    }
 }
@@ -22,6 +22,8 @@ package org.apache.tiles.request.portlet.delegate;
 
 import java.util.Map;
 
+import org.apache.tiles.request.collection.TypedParameterView;
+
 /**
  * Exposes the parameters of a portlet request, if available.
  *
@@ -42,4 +44,11 @@ public interface RequestDelegate {
      * @return The parameters.
      */
     Map<String, String[]> getParamValues();
+
+    /**
+     * The parameters, as typed values parsed at most once.
+     *
+     * @return The parameters.
+     */
+    TypedParameterView getTypedParam();
 }
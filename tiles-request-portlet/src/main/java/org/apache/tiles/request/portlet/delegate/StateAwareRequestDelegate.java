@@ -26,6 +26,7 @@ import javax.portlet.PortletRequest;
 import javax.portlet.StateAwareResponse;
 
 import org.apache.tiles.request.collection.AddableParameterMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.apache.tiles.request.portlet.extractor.StateAwareParameterExtractor;
 
 /**
@@ -70,6 +71,11 @@ public class StateAwareRequestDelegate implements RequestDelegate {
      */
     private Map<String, String[]> paramValues = null;
 
+    /**
+     * <p>The lazily instantiated typed view of request parameters.</p>
+     */
+    private TypedParameterView typedParam = null;
+
     /** {@inheritDoc} */
     public Map<String, String> getParam() {
         if ((param == null) && (request != null)) {
@@ -87,4 +93,13 @@ public class StateAwareRequestDelegate implements RequestDelegate {
         }
         return (paramValues);
     }
+
+    /** {@inheritDoc} */
+    public TypedParameterView getTypedParam() {
+        if ((typedParam == null) && (request != null)) {
+            typedParam = new TypedParameterView(new StateAwareParameterExtractor(
+                    request, response));
+        }
+        return (typedParam);
+    }
 }
@@ -34,6 +34,7 @@ import javax.portlet.PortletContext;
 import org.apache.tiles.request.ApplicationResource;
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
 import org.apache.tiles.request.collection.ScopeMap;
+import org.apache.tiles.request.resource.ResolvedResourceCache;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -133,6 +134,36 @@ public class PortletApplicationContextTest {
         verify(portletContext);
     }
 
+    /**
+     * Test method for {@link PortletApplicationContext#getResource(String)}, with a resource cache.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void testGetResourceCached() throws IOException {
+        URL url = new URL("file:///portletContext/my/path.html");
+        URL urlFr = new URL("file:///portletContext/my/path_fr.html");
+        expect(portletContext.getResource("/my/path.html")).andReturn(url);
+        expect(portletContext.getResource("/my/path_fr.html")).andReturn(urlFr);
+        expect(portletContext.getResource("/my/path_it.html")).andReturn(null);
+        expect(portletContext.getResource("/null/path.html")).andReturn(null);
+
+        replay(portletContext);
+        ResolvedResourceCache cache = new ResolvedResourceCache(16, -1L);
+        context.setResourceCache(cache);
+        assertSame(cache, context.getResourceCache());
+        ApplicationResource resource = context.getResource("/my/path.html");
+        assertSame(resource, context.getResource("/my/path.html"));
+        ApplicationResource resourceFr = context.getResource(resource, Locale.FRENCH);
+        assertEquals("/my/path_fr.html", resourceFr.getLocalePath());
+        assertSame(resourceFr, context.getResource(resource, Locale.FRENCH));
+        assertNull(context.getResource(resource, Locale.ITALIAN));
+        assertNull(context.getResource(resource, Locale.ITALIAN));
+        assertNull(context.getResource("/null/path.html"));
+        assertNull(context.getResource("/null/path.html"));
+        assertEquals(4, cache.size());
+        verify(portletContext);
+    }
+
     /**
      * Test method for {@link PortletApplicationContext#getResources(String)}.
      * @throws IOException If something goes wrong.
@@ -39,6 +39,7 @@ import org.apache.tiles.request.ApplicationContext;
 import org.apache.tiles.request.collection.HeaderValuesMap;
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
 import org.apache.tiles.request.collection.ScopeMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.apache.tiles.request.portlet.delegate.RequestDelegate;
 import org.apache.tiles.request.portlet.delegate.ResponseDelegate;
 import org.apache.tiles.request.portlet.extractor.HeaderExtractor;
@@ -285,6 +286,20 @@ public class PortletRequestTest {
         verify(applicationContext, request, response, paramMap, portletContext, requestDelegate, responseDelegate);
     }
 
+    /**
+     * Test method for {@link org.apache.tiles.request.portlet.PortletRequest#getTypedParam()}.
+     */
+    @Test
+    public void testGetTypedParam() {
+        TypedParameterView typedParam = createMock(TypedParameterView.class);
+
+        expect(requestDelegate.getTypedParam()).andReturn(typedParam);
+
+        replay(applicationContext, request, response, typedParam, portletContext, requestDelegate, responseDelegate);
+        assertEquals(typedParam, req.getTypedParam());
+        verify(applicationContext, request, response, typedParam, portletContext, requestDelegate, responseDelegate);
+    }
+
     /**
      * Test method for {@link org.apache.tiles.request.portlet.PortletRequest#getRequestScope()}.
      */
@@ -28,6 +28,7 @@ import java.util.Map;
 import javax.portlet.PortletRequest;
 
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -67,6 +68,21 @@ public class PortletRequestDelegateTest {
         verify(request);
     }
 
+    /**
+     * Test method for {@link org.apache.tiles.request.portlet.delegate.PortletRequestDelegate#getTypedParam()}.
+     */
+    @Test
+    public void testGetTypedParam() {
+        expect(request.getParameter("flag")).andReturn("true");
+
+        replay(request);
+        TypedParameterView typedParam = delegate.getTypedParam();
+        assertSame(typedParam, delegate.getTypedParam());
+        assertTrue(typedParam.getBoolean("flag", false));
+        assertTrue(typedParam.getBoolean("flag", false));
+        verify(request);
+    }
+
     /**
      * Test method for {@link org.apache.tiles.request.portlet.delegate.PortletRequestDelegate#getParamValues()}.
      */
@@ -30,6 +30,7 @@ import javax.portlet.PortletRequest;
 import javax.portlet.StateAwareResponse;
 
 import org.apache.tiles.request.collection.AddableParameterMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -75,6 +76,20 @@ public class StateAwareRequestDelegateTest {
         verify(request);
     }
 
+    /**
+     * Test method for {@link org.apache.tiles.request.portlet.delegate.StateAwareRequestDelegate#getTypedParam()}.
+     */
+    @Test
+    public void testGetTypedParam() {
+        expect(request.getParameter("count")).andReturn("42");
+
+        replay(request, response);
+        TypedParameterView typedParam = delegate.getTypedParam();
+        assertSame(typedParam, delegate.getTypedParam());
+        assertEquals(42L, typedParam.getLong("count", 0L));
+        verify(request, response);
+    }
+
     /**
      * Test method for {@link org.apache.tiles.request.portlet.delegate.StateAwareRequestDelegate#getParamValues()}.
      */
@@ -0,0 +1,304 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.servlet.wildcard;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.apache.tiles.request.resource.ResourceIndex;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Resolves <code>classpath*:</code> patterns with a {@link ResourceIndex}.
+ * Resources of the classpath roots whose index covers the pattern are matched
+ * against the index; the other roots are scanned through the pattern
+ * resolver, so that jars and directories without an index, and files that
+ * have not been indexed, are still found.
+ * <p>
+ * Resources are returned in the order of their classpath roots, as with the
+ * pattern resolver alone, since the order of definition files matters.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public final class IndexedClasspathResolver {
+
+    /**
+     * The index of classpath resources.
+     */
+    private final ResourceIndex resourceIndex;
+
+    /**
+     * The resolver that scans the roots without an index.
+     */
+    private final ResourcePatternResolver resolver;
+
+    /**
+     * The matcher of patterns against the index.
+     */
+    private final PathMatcher pathMatcher;
+
+    /**
+     * Constructor.
+     *
+     * @param resourceIndex The index of classpath resources.
+     * @param resolver The resolver that scans the roots without an index.
+     * @param pathMatcher The matcher of patterns against the index.
+     */
+    public IndexedClasspathResolver(ResourceIndex resourceIndex,
+            ResourcePatternResolver resolver, PathMatcher pathMatcher) {
+        this.resourceIndex = resourceIndex;
+        this.resolver = resolver;
+        this.pathMatcher = pathMatcher;
+    }
+
+    /**
+     * Returns the resources matching a classpath pattern. Application
+     * resources are created while iterating, and each root without an index
+     * is scanned only when the iteration reaches it.
+     *
+     * @param pattern The pattern, without the <code>classpath*:</code> prefix.
+     * @return An iterator over the matching resources.
+     */
+    public Iterator<ApplicationResource> getResourceIterator(String pattern) {
+        return new IndexedResourceIterator(pattern.startsWith("/") ? pattern.substring(1) : pattern);
+    }
+
+    /**
+     * Lists the classpath roots to search, in class loader order. The indexed
+     * roots are merged with the roots containing the root directory of the
+     * pattern, as listed by the pattern resolver: an indexed root that is not
+     * listed, e.g. a jar without directory entries, comes right before the
+     * next listed indexed root.
+     *
+     * @param rootDir The root directory of the pattern.
+     * @return The roots.
+     */
+    private List<ClasspathRoot> listRoots(String rootDir) {
+        List<String> indexedRoots = new ArrayList<String>(resourceIndex.getRoots());
+        List<ClasspathRoot> retValue = new ArrayList<ClasspathRoot>();
+        int nextIndexed = 0;
+        try {
+            for (Resource rootDirResource : resolver.getResources(
+                    ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + rootDir)) {
+                String url = rootDirResource.getURL().toExternalForm();
+                int position = -1;
+                if (url.endsWith(rootDir)) {
+                    position = indexedRoots.indexOf(url.substring(0, url.length() - rootDir.length()));
+                }
+                if (position < 0) {
+                    retValue.add(new ClasspathRoot(null, url));
+                }
+                for (; nextIndexed <= position; nextIndexed++) {
+                    retValue.add(new ClasspathRoot(indexedRoots.get(nextIndexed), null));
+                }
+            }
+        } catch (IOException e) {
+            // Same as the pattern resolver: an unreadable root gives no resources.
+        }
+        for (; nextIndexed < indexedRoots.size(); nextIndexed++) {
+            retValue.add(new ClasspathRoot(indexedRoots.get(nextIndexed), null));
+        }
+        return retValue;
+    }
+
+    /**
+     * Scans a location, that can be a pattern or a single resource.
+     *
+     * @param location The location.
+     * @return The matching resources.
+     */
+    private List<Resource> scan(String location) {
+        try {
+            if (pathMatcher.isPattern(location)) {
+                return Arrays.asList(resolver.getResources(location));
+            }
+            Resource resource = resolver.getResource(location);
+            return resource.exists() ? Collections.singletonList(resource) : Collections.<Resource>emptyList();
+        } catch (IOException e) {
+            // Same as the pattern resolver: an unreadable root gives no resources.
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the position of the first wildcard character of a pattern.
+     *
+     * @param pattern The pattern.
+     * @return The position, or the length of the pattern if there is none.
+     */
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    /**
+     * A classpath root to search.
+     */
+    private static final class ClasspathRoot {
+
+        /**
+         * The URL of the root, if it has an index file, or <code>null</code>.
+         */
+        private final String indexedUrl;
+
+        /**
+         * The URL of the root directory of the pattern in the root, if it has
+         * no index file, or <code>null</code>.
+         */
+        private final String rootDirUrl;
+
+        /**
+         * Constructor.
+         *
+         * @param indexedUrl The URL of the root, if it has an index file.
+         * @param rootDirUrl The URL of the root directory of the pattern, if
+         * the root has no index file.
+         */
+        private ClasspathRoot(String indexedUrl, String rootDirUrl) {
+            this.indexedUrl = indexedUrl;
+            this.rootDirUrl = rootDirUrl;
+        }
+    }
+
+    /**
+     * Iterates over the resources matching a classpath pattern, root by root,
+     * through the index for the roots it covers and by scanning the others.
+     */
+    private final class IndexedResourceIterator implements Iterator<ApplicationResource> {
+
+        /**
+         * The pattern, without the leading slash.
+         */
+        private final String pattern;
+
+        /**
+         * Whether the pattern contains wildcards.
+         */
+        private final boolean isPattern;
+
+        /**
+         * The root directory of the pattern.
+         */
+        private final String rootDir;
+
+        /**
+         * The roots to search, once listed.
+         */
+        private Iterator<ClasspathRoot> roots;
+
+        /**
+         * The entries of the current indexed root.
+         */
+        private Iterator<ResourceIndex.Entry> entries = Collections.<ResourceIndex.Entry>emptyList().iterator();
+
+        /**
+         * The resources of the current scanned root.
+         */
+        private Iterator<Resource> scanned = Collections.<Resource>emptyList().iterator();
+
+        /**
+         * The URL of the next resource, if already found.
+         */
+        private URL nextUrl;
+
+        /**
+         * Constructor.
+         *
+         * @param pattern The pattern, without the leading slash.
+         */
+        private IndexedResourceIterator(String pattern) {
+            this.pattern = pattern;
+            isPattern = pathMatcher.isPattern(pattern);
+            rootDir = isPattern ? pattern.substring(0, pattern.lastIndexOf('/', firstWildcard(pattern)) + 1)
+                    : pattern;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            if (roots == null) {
+                roots = listRoots(rootDir).iterator();
+            }
+            while (nextUrl == null) {
+                if (entries.hasNext()) {
+                    ResourceIndex.Entry entry = entries.next();
+                    if (isPattern ? pathMatcher.match(pattern, entry.getPath())
+                            : pattern.equals(entry.getPath())) {
+                        nextUrl = entry.getURL();
+                    }
+                } else if (scanned.hasNext()) {
+                    Resource resource = scanned.next();
+                    try {
+                        nextUrl = resource.getURL();
+                    } catch (IOException e) {
+                        // shouldn't happen with the kind of resources we're using
+                        throw new IllegalArgumentException("no URL for " + resource.toString(), e);
+                    }
+                } else if (roots.hasNext()) {
+                    ClasspathRoot root = roots.next();
+                    if (root.indexedUrl == null) {
+                        scanned = scan(root.rootDirUrl + pattern.substring(rootDir.length())).iterator();
+                    } else if (resourceIndex.isCovered(root.indexedUrl, pattern)) {
+                        entries = resourceIndex.getEntries(root.indexedUrl).iterator();
+                    } else {
+                        scanned = scan(root.indexedUrl + pattern).iterator();
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ApplicationResource next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            URL url = nextUrl;
+            nextUrl = null;
+            return new URLApplicationResource(url.toExternalForm(), url);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Resources cannot be removed");
+        }
+    }
+}
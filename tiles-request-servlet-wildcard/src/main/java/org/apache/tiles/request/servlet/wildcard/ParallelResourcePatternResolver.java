@@ -0,0 +1,375 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.servlet.wildcard;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.tiles.request.resource.ResourceChangeMonitor;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.PathMatcher;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * A {@link ResourcePatternResolver} that scans the root directories of a
+ * pattern, such as the jars and directories matching a <code>classpath*:</code>
+ * prefix, in parallel on a {@link ForkJoinPool}. It works on top of the
+ * resolver of the container, e.g. a
+ * {@link org.springframework.web.context.support.ServletContextResourcePatternResolver}
+ * or a <code>PortletContextResourcePatternResolver</code>.
+ * <p>
+ * Plain jar files are scanned through their entry listings, kept between
+ * patterns. Every other root directory, including OSGi bundle and JBoss VFS
+ * URLs, is scanned by the wrapped resolver, so their special handling is
+ * preserved. Results are merged in the order of the root directories, so they
+ * are the same as the ones of the wrapped resolver.
+ * </p>
+ * <p>
+ * Entry listings are checked against the modification date and size of their
+ * jar file, and at most {@link #MAX_CACHED_JARS} listings are kept. Registered
+ * as a {@link ResourceChangeMonitor.Listener}, the resolver drops the listing
+ * of a jar file as soon as it changes; {@link #clearCache()} drops them all.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class ParallelResourcePatternResolver implements ResourcePatternResolver,
+        ResourceChangeMonitor.Listener {
+
+    /**
+     * The maximum number of cached jar listings.
+     */
+    public static final int MAX_CACHED_JARS = 256;
+
+    /**
+     * The resolver of the container.
+     */
+    private final PathMatchingResourcePatternResolver delegate;
+
+    /**
+     * The pool that runs the scans.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The entry listings of the scanned jar files, keyed by absolute path, the
+     * least recently used first.
+     */
+    private final Map<String, JarListing> jarListings = new LinkedHashMap<String, JarListing>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JarListing> eldest) {
+            return size() > MAX_CACHED_JARS;
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The resolver of the container.
+     * @param pool The pool that runs the scans.
+     */
+    public ParallelResourcePatternResolver(PathMatchingResourcePatternResolver delegate, ForkJoinPool pool) {
+        this.delegate = delegate;
+        this.pool = pool;
+    }
+
+    /**
+     * Drops the cached entry listings of jar files.
+     */
+    public void clearCache() {
+        synchronized (jarListings) {
+            jarListings.clear();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void fileChanged(File file) {
+        synchronized (jarListings) {
+            jarListings.remove(file.getAbsolutePath());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Resource getResource(String location) {
+        return delegate.getResource(location);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ClassLoader getClassLoader() {
+        return delegate.getClassLoader();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Resource[] getResources(String locationPattern) throws IOException {
+        PathMatcher pathMatcher = delegate.getPathMatcher();
+        int prefixEnd = locationPattern.indexOf(':') + 1;
+        if (!pathMatcher.isPattern(locationPattern.substring(prefixEnd))) {
+            return delegate.getResources(locationPattern);
+        }
+        String rootDir = determineRootDir(locationPattern, prefixEnd, pathMatcher);
+        String subPattern = locationPattern.substring(rootDir.length());
+        Resource[] rootDirResources = delegate.getResources(rootDir);
+        if (rootDirResources.length <= 1) {
+            return delegate.getResources(locationPattern);
+        }
+        final List<RootDirScanTask> tasks = new ArrayList<RootDirScanTask>(rootDirResources.length);
+        for (Resource rootDirResource : rootDirResources) {
+            tasks.add(new RootDirScanTask(rootDirResource, subPattern));
+        }
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+        Set<Resource> result = new LinkedHashSet<Resource>(16);
+        for (RootDirScanTask task : tasks) {
+            if (task.error != null) {
+                throw task.error;
+            }
+            result.addAll(task.join());
+        }
+        return result.toArray(new Resource[result.size()]);
+    }
+
+    /**
+     * Returns the part of a pattern without wildcards, e.g.
+     * <code>classpath*:/org/apache/tiles/</code> for
+     * <code>classpath*:/org/apache/tiles/**&#47;*.xml</code>.
+     *
+     * @param locationPattern The pattern.
+     * @param prefixEnd The position after the URL prefix.
+     * @param pathMatcher The matcher that recognizes patterns.
+     * @return The root directory.
+     */
+    private static String determineRootDir(String locationPattern, int prefixEnd, PathMatcher pathMatcher) {
+        int rootDirEnd = locationPattern.length();
+        while (rootDirEnd > prefixEnd && pathMatcher.isPattern(locationPattern.substring(prefixEnd, rootDirEnd))) {
+            rootDirEnd = locationPattern.lastIndexOf('/', rootDirEnd - 2) + 1;
+        }
+        if (rootDirEnd == 0) {
+            rootDirEnd = prefixEnd;
+        }
+        return locationPattern.substring(0, rootDirEnd);
+    }
+
+    /**
+     * Finds the resources matching a pattern under a single root directory.
+     *
+     * @param rootDirResource The root directory.
+     * @param subPattern The pattern to match, relative to the root directory.
+     * @return The matching resources.
+     * @throws IOException If the root directory cannot be read.
+     */
+    private Set<Resource> scanRootDir(Resource rootDirResource, String subPattern) throws IOException {
+        URL rootUrl = rootDirResource.getURL();
+        String urlFile = rootUrl.getFile();
+        int separatorIndex = urlFile.indexOf(ResourceUtils.JAR_URL_SEPARATOR);
+        if (ResourceUtils.URL_PROTOCOL_JAR.equals(rootUrl.getProtocol()) && separatorIndex >= 0) {
+            String rootEntryPath = urlFile.substring(separatorIndex + ResourceUtils.JAR_URL_SEPARATOR.length());
+            URL jarFileUrl = new URL(urlFile.substring(0, separatorIndex));
+            if (ResourceUtils.isFileURL(jarFileUrl) && !rootEntryPath.contains(ResourceUtils.JAR_URL_SEPARATOR)) {
+                return scanJar(rootDirResource, ResourceUtils.getFile(jarFileUrl), rootEntryPath, subPattern);
+            }
+        }
+        Set<Resource> result = new LinkedHashSet<Resource>(8);
+        Collections.addAll(result, delegate.getResources(rootUrl.toExternalForm() + subPattern));
+        return result;
+    }
+
+    /**
+     * Finds the resources matching a pattern in a jar file, through its
+     * cached entry listing.
+     *
+     * @param rootDirResource The root directory, inside the jar file.
+     * @param file The jar file.
+     * @param rootEntryPath The path of the root directory inside the jar file, URL-encoded.
+     * @param subPattern The pattern to match, relative to the root directory.
+     * @return The matching resources.
+     * @throws IOException If the jar file cannot be read.
+     */
+    private Set<Resource> scanJar(Resource rootDirResource, File file, String rootEntryPath, String subPattern)
+            throws IOException {
+        String entryPrefix = URLDecoder.decode(rootEntryPath.replace("+", "%2B"), "UTF-8");
+        if (entryPrefix.length() > 0 && !entryPrefix.endsWith("/")) {
+            entryPrefix = entryPrefix + "/";
+        }
+        PathMatcher pathMatcher = delegate.getPathMatcher();
+        Set<Resource> result = new LinkedHashSet<Resource>(8);
+        for (String entryPath : getJarEntries(file)) {
+            if (entryPath.startsWith(entryPrefix)) {
+                String relativePath = entryPath.substring(entryPrefix.length());
+                if (pathMatcher.match(subPattern, relativePath)) {
+                    result.add(rootDirResource.createRelative(relativePath));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the entries of a jar file, listing them again if
+     * the jar file changed since it was last listed.
+     *
+     * @param file The jar file.
+     * @return The entry names, in the order of the jar file.
+     * @throws IOException If the jar file cannot be read.
+     */
+    private List<String> getJarEntries(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        JarListing listing;
+        synchronized (jarListings) {
+            listing = jarListings.get(key);
+        }
+        if (listing == null || listing.lastModified != lastModified || listing.length != length) {
+            List<String> names = new ArrayList<String>();
+            JarFile jarFile = new JarFile(file);
+            try {
+                for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements();) {
+                    names.add(entries.nextElement().getName());
+                }
+            } finally {
+                jarFile.close();
+            }
+            listing = new JarListing(Collections.unmodifiableList(names), lastModified, length);
+            synchronized (jarListings) {
+                jarListings.put(key, listing);
+            }
+        }
+        return listing.names;
+    }
+
+    /**
+     * The entry names of a jar file, with the state of the file when they were read.
+     */
+    private static final class JarListing {
+
+        /**
+         * The entry names.
+         */
+        private final List<String> names;
+
+        /**
+         * The modification date of the jar file.
+         */
+        private final long lastModified;
+
+        /**
+         * The size of the jar file.
+         */
+        private final long length;
+
+        /**
+         * Constructor.
+         *
+         * @param names The entry names.
+         * @param lastModified The modification date of the jar file.
+         * @param length The size of the jar file.
+         */
+        private JarListing(List<String> names, long lastModified, long length) {
+            this.names = names;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Scans a single root directory.
+     */
+    private final class RootDirScanTask extends RecursiveTask<Set<Resource>> {
+
+        /**
+         * Serializable UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The root directory.
+         */
+        private final Resource rootDirResource;
+
+        /**
+         * The pattern to match, relative to the root directory.
+         */
+        private final String subPattern;
+
+        /**
+         * The error raised by the scan, if any.
+         */
+        private IOException error;
+
+        /**
+         * Constructor.
+         *
+         * @param rootDirResource The root directory.
+         * @param subPattern The pattern to match, relative to the root directory.
+         */
+        private RootDirScanTask(Resource rootDirResource, String subPattern) {
+            this.rootDirResource = rootDirResource;
+            this.subPattern = subPattern;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Set<Resource> compute() {
+            try {
+                return scanRootDir(rootDirResource, subPattern);
+            } catch (IOException e) {
+                error = e;
+                return Collections.<Resource>emptySet();
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.servlet.wildcard;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.tiles.request.ApplicationResource;
+import org.apache.tiles.request.locale.URLApplicationResource;
+import org.apache.tiles.request.resource.PatternResultCache;
+import org.apache.tiles.request.resource.ResolvedResourceCache;
+import org.apache.tiles.request.resource.ResourceIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Locates the resources of the wildcard application contexts, e.g.
+ * {@link WildcardServletApplicationContext} and the portlet one, through the
+ * {@link ResourcePatternResolver} of their container.
+ * <p>
+ * Paths without wildcards are looked up directly, through a
+ * {@link ResolvedResourceCache} if given. <code>classpath*:</code> paths are
+ * matched against the {@link ResourceIndex} of the classpath, if available.
+ * The results of the other patterns can be kept in a
+ * {@link PatternResultCache}.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+public class WildcardResourceLocator {
+
+    /**
+     * The logging object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(WildcardResourceLocator.class);
+
+    /**
+     * The index of classpath resources, generated at build time, or
+     * <code>null</code>.
+     */
+    private final ResourceIndex resourceIndex;
+
+    /**
+     * The matcher of patterns.
+     */
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * The cache of the results of wildcard patterns. If <code>null</code>,
+     * patterns are resolved at every call.
+     */
+    private PatternResultCache patternCache;
+
+    /**
+     * Constructor, loading the resource indexes visible from a class loader.
+     *
+     * @param classLoader The class loader, usually the one of the pattern
+     * resolver. If <code>null</code>, no index is used.
+     */
+    public WildcardResourceLocator(ClassLoader classLoader) {
+        this.resourceIndex = loadResourceIndex(classLoader);
+    }
+
+    /**
+     * Returns the index of classpath resources.
+     *
+     * @return The index, or <code>null</code> if no index is available.
+     */
+    public ResourceIndex getResourceIndex() {
+        return resourceIndex;
+    }
+
+    /**
+     * Sets the cache of the results of wildcard patterns.
+     *
+     * @param patternCache The cache to use, or <code>null</code> to disable caching.
+     */
+    public void setPatternCache(PatternResultCache patternCache) {
+        this.patternCache = patternCache;
+    }
+
+    /**
+     * Returns the cache of the results of wildcard patterns.
+     *
+     * @return The cache, or <code>null</code> if caching is disabled.
+     */
+    public PatternResultCache getPatternCache() {
+        return patternCache;
+    }
+
+    /**
+     * Returns the first resource matching a path. Paths without wildcards are
+     * looked up directly.
+     *
+     * @param resolver The pattern resolver.
+     * @param path The path, that may contain wildcards.
+     * @param resourceCache The cache of direct lookups, or <code>null</code>.
+     * @return The resource, or <code>null</code> if none matches.
+     */
+    public ApplicationResource getResource(ResourcePatternResolver resolver, String path,
+            ResolvedResourceCache resourceCache) {
+        if (isDirectPath(path)) {
+            return getDirectResource(resolver, path, resourceCache);
+        }
+        Iterator<ApplicationResource> resources;
+        if (patternCache != null) {
+            resources = getResources(resolver, path).iterator();
+        } else {
+            resources = getResourceIterator(resolver, path);
+        }
+        return resources.hasNext() ? resources.next() : null;
+    }
+
+    /**
+     * Returns the resources matching a path, through the pattern cache if set.
+     *
+     * @param resolver The pattern resolver.
+     * @param path The path, that may contain wildcards.
+     * @return The matching resources.
+     */
+    public Collection<ApplicationResource> getResources(ResourcePatternResolver resolver, String path) {
+        PatternResultCache cache = patternCache;
+        if (cache == null) {
+            return toList(resolveResourceIterator(resolver, path));
+        }
+        Collection<ApplicationResource> retValue = cache.get(path);
+        if (retValue == null) {
+            retValue = toList(resolveResourceIterator(resolver, path));
+            cache.put(path, retValue);
+        }
+        return retValue;
+    }
+
+    /**
+     * Returns an iterator over the resources matching a path. Unless the
+     * result is cached, application resources are created while iterating.
+     *
+     * @param resolver The pattern resolver.
+     * @param path The path, that may contain wildcards.
+     * @return An iterator over the matching resources.
+     */
+    public Iterator<ApplicationResource> getResourceIterator(ResourcePatternResolver resolver, String path) {
+        PatternResultCache cache = patternCache;
+        if (cache != null) {
+            Collection<ApplicationResource> retValue = cache.get(path);
+            if (retValue != null) {
+                return retValue.iterator();
+            }
+        }
+        return resolveResourceIterator(resolver, path);
+    }
+
+    /**
+     * Resolves a path, that may contain wildcards, through the pattern
+     * resolver, or the resource index for <code>classpath*:</code> paths.
+     *
+     * @param resolver The pattern resolver.
+     * @param path The path.
+     * @return An iterator over the matching resources.
+     */
+    private Iterator<ApplicationResource> resolveResourceIterator(ResourcePatternResolver resolver, String path) {
+        if (resourceIndex != null && path.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX)) {
+            return new IndexedClasspathResolver(resourceIndex, resolver, pathMatcher).getResourceIterator(
+                    path.substring(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX.length()));
+        }
+        Resource[] resources;
+        try {
+            resources = resolver.getResources(path);
+        } catch (IOException e) {
+            return Collections.<ApplicationResource> emptyList().iterator();
+        }
+        if (resources == null) {
+            return Collections.<ApplicationResource> emptyList().iterator();
+        }
+        return new ResolvedResourceIterator(resources);
+    }
+
+    /**
+     * Checks if a path can be resolved with a direct lookup, i.e. if it is
+     * neither a wildcard pattern nor a <code>classpath*:</code> path.
+     *
+     * @param path The path.
+     * @return <code>true</code> if the path can be resolved directly.
+     */
+    private boolean isDirectPath(String path) {
+        return !path.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX)
+                && !pathMatcher.isPattern(path);
+    }
+
+    /**
+     * Resolves a path without wildcards, through the resource cache if set.
+     *
+     * @param resolver The pattern resolver.
+     * @param path The path.
+     * @param resourceCache The cache of direct lookups, or <code>null</code>.
+     * @return The resource, or <code>null</code> if it does not exist.
+     */
+    private ApplicationResource getDirectResource(final ResourcePatternResolver resolver, String path,
+            ResolvedResourceCache resourceCache) {
+        if (resourceCache == null) {
+            return lookupDirectResource(resolver, path);
+        }
+        return resourceCache.get(path, new ResolvedResourceCache.Lookup() {
+
+            @Override
+            public ApplicationResource lookup(String key) {
+                return lookupDirectResource(resolver, key);
+            }
+        });
+    }
+
+    /**
+     * Resolves a path without wildcards through the resource loader.
+     *
+     * @param resolver The pattern resolver.
+     * @param path The path.
+     * @return The resource, or <code>null</code> if it does not exist.
+     */
+    private static ApplicationResource lookupDirectResource(ResourcePatternResolver resolver, String path) {
+        Resource resource = resolver.getResource(path);
+        try {
+            URL url = resource.getURL();
+            return new URLApplicationResource(url.toExternalForm(), url);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            // shouldn't happen with the kind of resources we're using
+            throw new IllegalArgumentException("no URL for " + resource.toString(), e);
+        }
+    }
+
+    /**
+     * Copies the remaining elements of an iterator in a list.
+     *
+     * @param iterator The iterator.
+     * @return The list.
+     */
+    private static Collection<ApplicationResource> toList(Iterator<ApplicationResource> iterator) {
+        Collection<ApplicationResource> resourceList = new ArrayList<ApplicationResource>();
+        while (iterator.hasNext()) {
+            resourceList.add(iterator.next());
+        }
+        return resourceList;
+    }
+
+    /**
+     * Loads the resource indexes visible from a class loader.
+     *
+     * @param classLoader The class loader, or <code>null</code>.
+     * @return The merged index, or <code>null</code> if no index is available.
+     */
+    private static ResourceIndex loadResourceIndex(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return null;
+        }
+        try {
+            return ResourceIndex.load(classLoader);
+        } catch (IOException e) {
+            LOG.warn("Cannot read the resource index, the classpath will be scanned", e);
+            return null;
+        }
+    }
+
+    /**
+     * Iterates over the resources found by the pattern resolver, creating the
+     * application resources one at a time.
+     */
+    private static final class ResolvedResourceIterator implements Iterator<ApplicationResource> {
+
+        /**
+         * The resources found by the pattern resolver.
+         */
+        private final Resource[] resources;
+
+        /**
+         * The index of the next resource.
+         */
+        private int index;
+
+        /**
+         * Constructor.
+         *
+         * @param resources The resources found by the pattern resolver.
+         */
+        private ResolvedResourceIterator(Resource[] resources) {
+            this.resources = resources;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return index < resources.length;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ApplicationResource next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Resource resource = resources[index++];
+            try {
+                URL url = resource.getURL();
+                return new URLApplicationResource(url.toExternalForm(), url);
+            } catch (IOException e) {
+                // shouldn't happen with the kind of resources we're using
+                throw new IllegalArgumentException("no URL for " + resource.toString(), e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Resources cannot be removed");
+        }
+    }
+}
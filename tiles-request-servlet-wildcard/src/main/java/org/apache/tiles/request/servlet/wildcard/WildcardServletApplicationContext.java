@@ -21,19 +21,17 @@
 
 package org.apache.tiles.request.servlet.wildcard;
 
-import java.io.IOException;
-import java.net.URL;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.servlet.ServletContext;
 
 import org.apache.tiles.request.ApplicationResource;
-import org.apache.tiles.request.locale.URLApplicationResource;
+import org.apache.tiles.request.StreamingApplicationContext;
+import org.apache.tiles.request.resource.PatternResultCache;
 import org.apache.tiles.request.servlet.ServletApplicationContext;
-import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.web.context.support.ServletContextResourcePatternResolver;
 
@@ -43,13 +41,19 @@ import org.springframework.web.context.support.ServletContextResourcePatternReso
  *
  * @version $Rev$ $Date$
  */
-public class WildcardServletApplicationContext extends ServletApplicationContext {
+public class WildcardServletApplicationContext extends ServletApplicationContext
+        implements StreamingApplicationContext {
 
     /**
      * The pattern resolver.
      */
     protected ResourcePatternResolver resolver;
 
+    /**
+     * Locates the resources through the pattern resolver.
+     */
+    private WildcardResourceLocator locator;
+
     /**
      * Constructor.
      *
@@ -58,52 +62,74 @@ public class WildcardServletApplicationContext extends ServletApplicationContext
     public WildcardServletApplicationContext(ServletContext servletContext) {
         super(servletContext);
         resolver = new ServletContextResourcePatternResolver(servletContext);
+        locator = new WildcardResourceLocator(resolver.getClassLoader());
+    }
+
+    /**
+     * Sets the pool that scans the root directories of wildcard patterns in
+     * parallel.
+     *
+     * @param scanPool The pool to use, or <code>null</code> to scan sequentially.
+     * @see ParallelResourcePatternResolver
+     */
+    public void setScanPool(ForkJoinPool scanPool) {
+        ServletContext servletContext = (ServletContext) getContext();
+        if (scanPool != null) {
+            resolver = new ParallelResourcePatternResolver(new ServletContextResourcePatternResolver(servletContext), scanPool);
+        } else {
+            resolver = new ServletContextResourcePatternResolver(servletContext);
+        }
+    }
+
+    /**
+     * Drops the jar listings kept by the parallel scan, if enabled with
+     * {@link #setScanPool(ForkJoinPool)}, e.g. once the application has started.
+     */
+    public void clearScanCache() {
+        if (resolver instanceof ParallelResourcePatternResolver) {
+            ((ParallelResourcePatternResolver) resolver).clearCache();
+        }
+    }
+
+    /**
+     * Sets the cache of the results of wildcard patterns.
+     *
+     * @param patternCache The cache to use, or <code>null</code> to disable caching.
+     */
+    public void setPatternCache(PatternResultCache patternCache) {
+        locator.setPatternCache(patternCache);
+    }
+
+    /**
+     * Returns the cache of the results of wildcard patterns.
+     *
+     * @return The cache, or <code>null</code> if caching is disabled.
+     */
+    public PatternResultCache getPatternCache() {
+        return locator.getPatternCache();
     }
 
     /** {@inheritDoc} */
     @Override
     public ApplicationResource getResource(String localePath) {
-        ApplicationResource retValue = null;
-        Collection<ApplicationResource> urlSet = getResources(localePath);
-        if (urlSet != null && !urlSet.isEmpty()) {
-            retValue = urlSet.iterator().next();
-        }
-        return retValue;
+        return locator.getResource(resolver, localePath, getResourceCache());
     }
 
     /** {@inheritDoc} */
     @Override
     public ApplicationResource getResource(ApplicationResource base, Locale locale) {
-        ApplicationResource retValue = null;
-        Collection<ApplicationResource> urlSet = getResources(base.getLocalePath(locale));
-        if (urlSet != null && !urlSet.isEmpty()) {
-            retValue = urlSet.iterator().next();
-        }
-        return retValue;
+        return locator.getResource(resolver, base.getLocalePath(locale), getResourceCache());
     }
 
     /** {@inheritDoc} */
     @Override
     public Collection<ApplicationResource> getResources(String path) {
-        Resource[] resources;
-        try {
-            resources = resolver.getResources(path);
-        } catch (IOException e) {
-            return Collections.<ApplicationResource> emptyList();
-        }
-        Collection<ApplicationResource> resourceList = new ArrayList<ApplicationResource>();
-        if (resources != null && resources.length > 0) {
-            for (int i = 0; i < resources.length; i++) {
-                URL url;
-                try {
-                    url = resources[i].getURL();
-                    resourceList.add(new URLApplicationResource(url.toExternalForm(), url));
-                } catch (IOException e) {
-                    // shouldn't happen with the kind of resources we're using
-                    throw new IllegalArgumentException("no URL for " + resources[i].toString(), e);
-                }
-            }
-        }
-        return resourceList;
+        return locator.getResources(resolver, path);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<ApplicationResource> getResourceIterator(String path) {
+        return locator.getResourceIterator(resolver, path);
     }
 }
@@ -0,0 +1,207 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.request.servlet.wildcard;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.servlet.ServletContext;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.web.context.support.ServletContextResourcePatternResolver;
+
+/**
+ * Tests {@link ParallelResourcePatternResolver}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ParallelResourcePatternResolverTest extends TestCase {
+
+    /**
+     * The temporary directory containing the classpath roots.
+     */
+    private File root;
+
+    /**
+     * The original class loader.
+     */
+    private ClassLoader original;
+
+    /**
+     * The pool that runs the scans.
+     */
+    private ForkJoinPool pool;
+
+    /** {@inheritDoc} */
+    @Override
+    public void setUp() throws IOException {
+        root = File.createTempFile("tiles-parallel", "");
+        assertTrue(root.delete());
+        File dir1 = createDirectory(new File(root, "dir1"), "a.xml", "a.txt");
+        File dir2 = createDirectory(new File(root, "dir2"), "b.xml", "sub/b_fr.xml");
+        File jar1 = createJar(new File(root, "one.jar"), "c.xml", "sub/c.txt", "sub/c.xml");
+        File jar2 = createJar(new File(root, "two.jar"), "d.xml");
+        original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[] {
+                dir1.toURI().toURL(), jar1.toURI().toURL(),
+                dir2.toURI().toURL(), jar2.toURI().toURL()}, null));
+        pool = new ForkJoinPool(4);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void tearDown() {
+        pool.shutdown();
+        Thread.currentThread().setContextClassLoader(original);
+        delete(root);
+    }
+
+    /**
+     * Tests that the results are the same as the sequential resolver, in the
+     * same order.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResources() throws IOException {
+        ServletContext servletContext = EasyMock.createMock(ServletContext.class);
+        EasyMock.replay(servletContext);
+
+        ServletContextResourcePatternResolver sequential = new ServletContextResourcePatternResolver(servletContext);
+        ParallelResourcePatternResolver resolver = new ParallelResourcePatternResolver(sequential, pool);
+        String[] patterns = new String[] {"classpath*:org/apache/tiles/**/*.xml",
+                "classpath*:/org/apache/tiles/sub/*.*", "classpath*:org/apache/tiles/*.txt",
+                "classpath*:org/apache/tiles/**/*.xml"};
+        for (String pattern : patterns) {
+            Resource[] expected = sequential.getResources(pattern);
+            Resource[] resources = resolver.getResources(pattern);
+            assertEquals(pattern, Arrays.asList(expected), Arrays.asList(resources));
+        }
+        assertEquals(6, resolver.getResources(patterns[0]).length);
+        resolver.clearCache();
+        assertEquals(6, resolver.getResources(patterns[0]).length);
+        EasyMock.verify(servletContext);
+    }
+
+    /**
+     * Tests that a changed jar file is listed again.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourcesChangedJar() throws IOException {
+        File jar1 = new File(root, "one.jar");
+        File jar2 = new File(root, "two.jar");
+        final List<URL> roots = Arrays.asList(
+                new URL("jar:" + jar1.toURI().toURL().toExternalForm() + "!/org/apache/tiles/"),
+                new URL("jar:" + jar2.toURI().toURL().toExternalForm() + "!/org/apache/tiles/"));
+        // Class loaders keep their jar files open, so the roots are returned without opening them.
+        ClassLoader classLoader = new ClassLoader(null) {
+
+            @Override
+            public Enumeration<URL> getResources(String name) {
+                if ("org/apache/tiles/".equals(name)) {
+                    return Collections.enumeration(roots);
+                }
+                return Collections.enumeration(Collections.<URL>emptyList());
+            }
+        };
+        ParallelResourcePatternResolver resolver = new ParallelResourcePatternResolver(
+                new PathMatchingResourcePatternResolver(classLoader), pool);
+        String pattern = "classpath*:org/apache/tiles/*.xml";
+        assertEquals(2, resolver.getResources(pattern).length);
+        createJar(jar2, "d.xml", "e.xml");
+        assertTrue(jar2.setLastModified(jar2.lastModified() - 10000L));
+        assertEquals(3, resolver.getResources(pattern).length);
+        resolver.fileChanged(jar2);
+        resolver.clearCache();
+        assertEquals(3, resolver.getResources(pattern).length);
+    }
+
+    /**
+     * Creates a classpath root directory.
+     *
+     * @param dir The directory to create.
+     * @param names The names of the files, under <code>org/apache/tiles</code>.
+     * @return The directory.
+     * @throws IOException If something goes wrong.
+     */
+    private static File createDirectory(File dir, String... names) throws IOException {
+        for (String name : names) {
+            File file = new File(dir, "org/apache/tiles/" + name);
+            assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            new FileOutputStream(file).close();
+        }
+        return dir;
+    }
+
+    /**
+     * Creates a jar file.
+     *
+     * @param file The jar file to create.
+     * @param names The names of the entries, under <code>org/apache/tiles</code>.
+     * @return The jar file.
+     * @throws IOException If something goes wrong.
+     */
+    private static File createJar(File file, String... names) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new JarEntry("org/"));
+            out.putNextEntry(new JarEntry("org/apache/"));
+            out.putNextEntry(new JarEntry("org/apache/tiles/"));
+            out.putNextEntry(new JarEntry("org/apache/tiles/sub/"));
+            for (String name : names) {
+                out.putNextEntry(new JarEntry("org/apache/tiles/" + name));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Deletes a file or a directory, recursively.
+     *
+     * @param file The file to delete.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
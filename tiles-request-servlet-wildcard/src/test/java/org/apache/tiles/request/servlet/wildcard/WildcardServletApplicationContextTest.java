@@ -22,14 +22,26 @@ package org.apache.tiles.request.servlet.wildcard;
 
 import junit.framework.TestCase;
 
+import org.apache.tiles.request.ApplicationResource;
 import org.apache.tiles.request.locale.URLApplicationResource;
+import org.apache.tiles.request.resource.PatternResultCache;
+import org.apache.tiles.request.resource.ResolvedResourceCache;
+import org.apache.tiles.request.resource.ResourceIndexGenerator;
 import org.easymock.EasyMock;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Vector;
 import java.util.HashSet;
@@ -49,6 +61,11 @@ public class WildcardServletApplicationContextTest extends TestCase {
      */
     private static final int TEST_PROPERTIES_SIZE = 3;
 
+    /**
+     * Number of test classes.
+     */
+    private static final int TEST_TEST_SIZE = 2;
+
     /**
      * The root Tiles application context.
      */
@@ -111,11 +128,179 @@ public class WildcardServletApplicationContextTest extends TestCase {
         assertEquals(TEST_PROPERTIES_SIZE, context.getResources(
                 "classpath*:/test.properties").size());
 
-        assertEquals(1, context.getResources(
+        assertEquals(TEST_TEST_SIZE, context.getResources(
                 "classpath*:/org/apache/tiles/request/servlet/wildcard/*Test.class").size());
         EasyMock.verify(servletContext);
     }
 
+    /**
+     * Tests {@link WildcardServletApplicationContext#getResourceIterator(String)}.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourceIterator() throws IOException {
+        EasyMock.replay(servletContext);
+
+        String pattern = "classpath*:/test.properties";
+        List<ApplicationResource> resources = new ArrayList<ApplicationResource>();
+        for (Iterator<ApplicationResource> it = context.getResourceIterator(pattern); it.hasNext();) {
+            resources.add(it.next());
+        }
+        assertEquals(TEST_PROPERTIES_SIZE, resources.size());
+        assertEquals(new ArrayList<ApplicationResource>(context.getResources(pattern)), resources);
+        Iterator<ApplicationResource> it = context.getResourceIterator("classpath*:/nothing/*.properties");
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail("NoSuchElementException expected");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        EasyMock.verify(servletContext);
+    }
+
+    /**
+     * Tests resource getting, with the resource and pattern caches.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourcesCached() throws IOException {
+        URL u = new URL("file://tiles/test.properties");
+        EasyMock.expect(servletContext.getResource("/test.properties")).andReturn(u);
+        EasyMock.expect(servletContext.getResource("/missing.properties")).andReturn(null);
+        File dir = new File(".");
+        EasyMock.expect(servletContext.getResource("/WEB-INF/")).andReturn(
+                dir.toURI().toURL()).anyTimes();
+        URL pomUrl = new URL("file://tiles/pom.xml");
+        EasyMock.expect(servletContext.getResource("/WEB-INF/pom.xml"))
+                .andReturn(pomUrl).anyTimes();
+        Set<String> elementSet = new HashSet<String>();
+        elementSet.add("/WEB-INF/pom.xml");
+        EasyMock.expect(servletContext.getResourcePaths("/WEB-INF/")).andReturn(elementSet);
+        EasyMock.replay(servletContext);
+
+        context.setResourceCache(new ResolvedResourceCache(16, -1L));
+        PatternResultCache patternCache = new PatternResultCache(16, -1L);
+        context.setPatternCache(patternCache);
+        assertSame(patternCache, context.getPatternCache());
+        ApplicationResource expected = new URLApplicationResource(u.toExternalForm(), u);
+        assertEquals(expected, context.getResource("/test.properties"));
+        assertEquals(expected, context.getResource("/test.properties"));
+        assertNull(context.getResource("/missing.properties"));
+        assertNull(context.getResource("/missing.properties"));
+        ApplicationResource pom = new URLApplicationResource(pomUrl.toExternalForm(), pomUrl);
+        assertEquals(pom, context.getResource("/WEB-INF/*.xml"));
+        assertEquals(pom, context.getResource("/WEB-INF/*.xml"));
+        assertEquals(1, patternCache.size());
+        EasyMock.verify(servletContext);
+    }
+
+    /**
+     * Tests resource getting, when a resource index is available.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourcesIndexed() throws IOException {
+        File root = File.createTempFile("tiles-index", "");
+        assertTrue(root.delete());
+        File dir = new File(root, "org/apache/tiles");
+        assertTrue(dir.mkdirs());
+        File defs = new File(dir, "defs.xml");
+        new FileOutputStream(defs).close();
+        new FileOutputStream(new File(dir, "defs_fr.xml")).close();
+        new FileOutputStream(new File(dir, "other.txt")).close();
+        new ResourceIndexGenerator(root, Arrays.asList(".xml")).generate();
+        try {
+            Thread.currentThread().setContextClassLoader(
+                    new URLClassLoader(new URL[] {root.toURI().toURL()}, null));
+            ServletContext servletContextIndexed = EasyMock.createMock(ServletContext.class);
+            EasyMock.replay(servletContextIndexed);
+            WildcardServletApplicationContext indexedContext = new WildcardServletApplicationContext(servletContextIndexed);
+            Collection<ApplicationResource> resources = indexedContext.getResources(
+                    "classpath*:/org/apache/tiles/*.xml");
+            assertEquals(2, resources.size());
+            resources = indexedContext.getResources("classpath*:org/apache/tiles/defs.xml");
+            assertEquals(1, resources.size());
+            URL url = defs.toURI().toURL();
+            assertEquals(new URLApplicationResource(url.toExternalForm(), url), resources.iterator().next());
+            // Not indexed, so found by scanning.
+            assertEquals(1, indexedContext.getResources("classpath*:/org/apache/tiles/other.txt").size());
+            assertEquals(1, indexedContext.getResources("classpath*:/org/apache/tiles/*.txt").size());
+            Iterator<ApplicationResource> it = indexedContext.getResourceIterator("classpath*:/org/apache/tiles/defs*.xml");
+            assertTrue(it.hasNext());
+            assertNotNull(it.next());
+            assertTrue(it.hasNext());
+            assertNotNull(it.next());
+            assertFalse(it.hasNext());
+            EasyMock.verify(servletContextIndexed);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /**
+     * Tests resource getting, when only some classpath roots have a resource index.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testGetResourcesPartiallyIndexed() throws IOException {
+        File root = File.createTempFile("tiles-index", "");
+        assertTrue(root.delete());
+        File dir = new File(root, "org/apache/tiles");
+        assertTrue(dir.mkdirs());
+        new FileOutputStream(new File(dir, "defs.xml")).close();
+        new ResourceIndexGenerator(root, Arrays.asList(".xml")).generate();
+        File unindexedRoot = File.createTempFile("tiles-noindex", "");
+        assertTrue(unindexedRoot.delete());
+        File unindexedDir = new File(unindexedRoot, "org/apache/tiles");
+        assertTrue(unindexedDir.mkdirs());
+        File extra = new File(unindexedDir, "extra.xml");
+        new FileOutputStream(extra).close();
+        try {
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                    new URL[] {root.toURI().toURL(), unindexedRoot.toURI().toURL()}, null));
+            ServletContext servletContextIndexed = EasyMock.createMock(ServletContext.class);
+            EasyMock.replay(servletContextIndexed);
+            WildcardServletApplicationContext indexedContext = new WildcardServletApplicationContext(servletContextIndexed);
+            Collection<ApplicationResource> resources = indexedContext.getResources(
+                    "classpath*:/org/apache/tiles/*.xml");
+            assertEquals(2, resources.size());
+            Iterator<ApplicationResource> it = resources.iterator();
+            assertEquals(new File(dir, "defs.xml").toURI().toURL(), ((URLApplicationResource) it.next()).getURL());
+            assertEquals(extra.toURI().toURL(), ((URLApplicationResource) it.next()).getURL());
+            resources = indexedContext.getResources("classpath*:org/apache/tiles/extra.xml");
+            assertEquals(1, resources.size());
+
+            // Classpath order is kept when the unindexed root comes first.
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                    new URL[] {unindexedRoot.toURI().toURL(), root.toURI().toURL()}, null));
+            indexedContext = new WildcardServletApplicationContext(servletContextIndexed);
+            it = indexedContext.getResources("classpath*:/org/apache/tiles/*.xml").iterator();
+            assertEquals(extra.toURI().toURL(), ((URLApplicationResource) it.next()).getURL());
+            assertEquals(new File(dir, "defs.xml").toURI().toURL(), ((URLApplicationResource) it.next()).getURL());
+            assertFalse(it.hasNext());
+            EasyMock.verify(servletContextIndexed);
+        } finally {
+            delete(root);
+            delete(unindexedRoot);
+        }
+    }
+
+    /**
+     * Deletes a file or a directory, recursively.
+     *
+     * @param file The file to delete.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
     /**
      * An mock class loader.
      */
@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
@@ -38,9 +39,13 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.tiles.request.AbstractClientRequest;
 import org.apache.tiles.request.ApplicationContext;
 import org.apache.tiles.request.attribute.Addable;
+import org.apache.tiles.request.attribute.AttributeExtractor;
+import org.apache.tiles.request.attribute.AttributeTable;
+import org.apache.tiles.request.attribute.OverlayAttributeExtractor;
 import org.apache.tiles.request.collection.HeaderValuesMap;
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
 import org.apache.tiles.request.collection.ScopeMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.apache.tiles.request.servlet.extractor.ParameterExtractor;
 import org.apache.tiles.request.servlet.extractor.RequestScopeExtractor;
 import org.apache.tiles.request.servlet.extractor.HeaderExtractor;
@@ -59,6 +64,20 @@ public class ServletRequest extends AbstractClientRequest {
     private static final List<String> SCOPES
             = Collections.unmodifiableList(Arrays.asList(REQUEST_SCOPE, "session", APPLICATION_SCOPE));
 
+    /**
+     * The framework-internal request attributes that are kept out of the
+     * container by default.
+     */
+    public static final Set<String> INTERNAL_ATTRIBUTE_NAMES
+            = Collections.singleton(FORCE_INCLUDE_ATTRIBUTE_NAME);
+
+    /**
+     * The name of the request attribute that holds the {@link AttributeTable}
+     * shared by all the requests wrapping the same servlet request.
+     */
+    public static final String ATTRIBUTE_OVERLAY_NAME = ServletRequest.class
+            .getName() + ".ATTRIBUTE_OVERLAY";
+
     /**
      * The request object to use.
      */
@@ -69,6 +88,12 @@ public class ServletRequest extends AbstractClientRequest {
      */
     private HttpServletResponse response;
 
+    /**
+     * The names of the request attributes that are not written to the
+     * servlet request.
+     */
+    private Set<String> localAttributeNames;
+
     /**
      * The response output stream, lazily initialized.
      */
@@ -105,6 +130,11 @@ public class ServletRequest extends AbstractClientRequest {
      */
     private Map<String, String> param = null;
 
+    /**
+     * <p>The lazily instantiated typed view of request parameters.</p>
+     */
+    private TypedParameterView typedParam = null;
+
 
     /**
      * <p>The lazily instantiated <code>Map</code> of request scope
@@ -120,7 +150,8 @@ public class ServletRequest extends AbstractClientRequest {
 
 
     /**
-     * Creates a new instance of ServletTilesRequestContext.
+     * Creates a new instance of ServletTilesRequestContext, keeping
+     * {@link #INTERNAL_ATTRIBUTE_NAMES} in the request-local overlay.
      *
      * @param applicationContext The application context.
      * @param request The request object.
@@ -129,9 +160,30 @@ public class ServletRequest extends AbstractClientRequest {
     public ServletRequest(
             ApplicationContext applicationContext,
             HttpServletRequest request, HttpServletResponse response) {
+        this(applicationContext, request, response, INTERNAL_ATTRIBUTE_NAMES);
+    }
+
+    /**
+     * Creates a new instance of ServletTilesRequestContext, keeping some
+     * request attributes in a request-local overlay.
+     * The overlay is stored in the servlet request, so all the instances
+     * wrapping the same servlet request share it.
+     *
+     * @param applicationContext The application context.
+     * @param request The request object.
+     * @param response The response object.
+     * @param localAttributeNames The names of the request attributes that will
+     * be never written to the servlet request. Pass an empty set to write all
+     * the attributes to the servlet request.
+     */
+    public ServletRequest(
+            ApplicationContext applicationContext,
+            HttpServletRequest request, HttpServletResponse response,
+            Set<String> localAttributeNames) {
         super(applicationContext);
         this.request = request;
         this.response = response;
+        this.localAttributeNames = localAttributeNames;
     }
 
     /** {@inheritDoc} */
@@ -176,6 +228,22 @@ public class ServletRequest extends AbstractClientRequest {
     }
 
 
+    /**
+     * Returns the request parameters as typed values, parsed at most once
+     * per request.
+     *
+     * @return The typed parameter view.
+     */
+    public TypedParameterView getTypedParam() {
+
+        if ((typedParam == null) && (request != null)) {
+            typedParam = new TypedParameterView(new ParameterExtractor(request));
+        }
+        return (typedParam);
+
+    }
+
+
     /** {@inheritDoc} */
     @SuppressWarnings("unchecked")
     public Map<String, String[]> getParamValues() {
@@ -198,7 +266,12 @@ public class ServletRequest extends AbstractClientRequest {
     public Map<String, Object> getRequestScope() {
 
         if ((requestScope == null) && (request != null)) {
-            requestScope = new ScopeMap(new RequestScopeExtractor(request));
+            AttributeExtractor extractor = new RequestScopeExtractor(request);
+            if (!localAttributeNames.isEmpty()) {
+                extractor = new OverlayAttributeExtractor(extractor,
+                        getAttributeOverlay(request), localAttributeNames);
+            }
+            requestScope = new ScopeMap(extractor);
         }
         return (requestScope);
 
@@ -215,6 +288,23 @@ public class ServletRequest extends AbstractClientRequest {
 
     }
 
+    /**
+     * Returns the attribute overlay stored in a servlet request, creating it
+     * if needed. Requests of other technologies wrapping the same servlet
+     * request use it to share the local attributes.
+     *
+     * @param request The servlet request.
+     * @return The attribute overlay.
+     */
+    public static AttributeTable getAttributeOverlay(HttpServletRequest request) {
+        AttributeTable overlay = (AttributeTable) request.getAttribute(ATTRIBUTE_OVERLAY_NAME);
+        if (overlay == null) {
+            overlay = new AttributeTable();
+            request.setAttribute(ATTRIBUTE_OVERLAY_NAME, overlay);
+        }
+        return overlay;
+    }
+
     @Override
     public List<String> getAvailableScopes() {
         return SCOPES;
@@ -26,6 +26,7 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
 
@@ -35,10 +36,13 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.tiles.request.AbstractRequest;
 import org.apache.tiles.request.ApplicationContext;
+import org.apache.tiles.request.attribute.AttributeTable;
 import org.apache.tiles.request.collection.HeaderValuesMap;
 import org.apache.tiles.request.collection.ReadOnlyEnumerationMap;
 import org.apache.tiles.request.collection.ScopeMap;
+import org.apache.tiles.request.collection.TypedParameterView;
 import org.apache.tiles.request.servlet.extractor.HeaderExtractor;
 import org.junit.Before;
 import org.junit.Test;
@@ -242,6 +246,21 @@ public class ServletRequestTest {
         assertTrue(req.getParam() instanceof ReadOnlyEnumerationMap);
     }
 
+    /**
+     * Test method for {@link org.apache.tiles.request.servlet.ServletRequest#getTypedParam()}.
+     */
+    @Test
+    public void testGetTypedParam() {
+        expect(request.getParameter("page")).andReturn("3");
+
+        replay(applicationContext, request, response);
+        TypedParameterView typedParam = req.getTypedParam();
+        assertSame(typedParam, req.getTypedParam());
+        assertEquals(3, typedParam.getInt("page", 1));
+        assertEquals(3L, typedParam.getLong("page", 1L));
+        verify(applicationContext, request, response);
+    }
+
     /**
      * Test method for {@link org.apache.tiles.request.servlet.ServletRequest#getParamValues()}.
      */
@@ -262,7 +281,52 @@ public class ServletRequestTest {
      */
     @Test
     public void testGetRequestScope() {
+        expect(request.getAttribute(ServletRequest.ATTRIBUTE_OVERLAY_NAME)).andReturn(new AttributeTable());
+
+        replay(applicationContext, request, response);
         assertTrue(req.getRequestScope() instanceof ScopeMap);
+        verify(applicationContext, request, response);
+    }
+
+    /**
+     * Test method for {@link org.apache.tiles.request.servlet.ServletRequest#getRequestScope()}
+     * when internal attributes are kept in the overlay.
+     */
+    @Test
+    public void testGetRequestScopeOverlay() {
+        AttributeTable overlay = new AttributeTable();
+
+        expect(request.getAttribute(ServletRequest.ATTRIBUTE_OVERLAY_NAME)).andReturn(overlay);
+        expect(request.getAttribute("user")).andReturn(null);
+        request.setAttribute("user", "value");
+
+        replay(applicationContext, request, response);
+        Map<String, Object> scope = req.getRequestScope();
+        assertNull(scope.get(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME));
+        scope.put(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME, true);
+        scope.put("user", "value");
+        assertEquals(true, scope.get(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME));
+        assertEquals(true, overlay.get(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME));
+        scope.remove(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME);
+        assertEquals(0, overlay.size());
+        verify(applicationContext, request, response);
+    }
+
+    /**
+     * Test method for {@link org.apache.tiles.request.servlet.ServletRequest#getRequestScope()}
+     * when no attribute is kept local.
+     */
+    @Test
+    public void testGetRequestScopeNoOverlay() {
+        req = new ServletRequest(applicationContext, request, response,
+                Collections.<String>emptySet());
+
+        expect(request.getAttribute(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME)).andReturn(null);
+        request.setAttribute(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME, true);
+
+        replay(applicationContext, request, response);
+        req.getRequestScope().put(AbstractRequest.FORCE_INCLUDE_ATTRIBUTE_NAME, true);
+        verify(applicationContext, request, response);
     }
 
     /**